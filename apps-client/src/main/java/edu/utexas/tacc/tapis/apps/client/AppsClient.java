@@ -2,6 +2,7 @@ package edu.utexas.tacc.tapis.apps.client;
 
 import java.lang.reflect.Type;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import org.apache.commons.lang3.StringUtils;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
@@ -10,8 +11,11 @@ import com.google.gson.reflect.TypeToken;
 
 import edu.utexas.tacc.tapis.client.shared.Utils;
 import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+import edu.utexas.tacc.tapis.client.shared.resilience.RequestHedger;
 import edu.utexas.tacc.tapis.client.shared.ClientTapisGsonUtils;
 import edu.utexas.tacc.tapis.client.shared.ITapisClient;
+import edu.utexas.tacc.tapis.client.shared.TapisHttpTransport;
+import edu.utexas.tacc.tapis.client.shared.TapisRequestContext;
 import edu.utexas.tacc.tapis.apps.client.gen.ApiClient;
 import edu.utexas.tacc.tapis.apps.client.gen.ApiException;
 import edu.utexas.tacc.tapis.apps.client.gen.api.ApplicationsApi;
@@ -31,6 +35,7 @@ import edu.utexas.tacc.tapis.apps.client.gen.model.ReqPatchApp;
 import edu.utexas.tacc.tapis.apps.client.gen.model.RespChangeCount;
 import edu.utexas.tacc.tapis.apps.client.gen.model.RespNameArray;
 import edu.utexas.tacc.tapis.apps.client.gen.model.RespResourceUrl;
+import edu.utexas.tacc.tapis.apps.client.gen.model.ResultResourceUrl;
 import edu.utexas.tacc.tapis.apps.client.gen.model.RespApp;
 import edu.utexas.tacc.tapis.apps.client.gen.model.TapisApp;
 import static edu.utexas.tacc.tapis.client.shared.Utils.DEFAULT_COMPUTETOTAL;
@@ -54,12 +59,18 @@ public class AppsClient implements ITapisClient
   // *********************** Constants **************************************
   // ************************************************************************
 
+  // Configuration defaults.
+  private static final String APPS_CLIENT_USER_AGENT = "AppsClient";
+
   // Header key for JWT
   public static final String TAPIS_JWT_HEADER = "X-Tapis-Token";
 
   // Create a TypeToken to be used by gson for processing of LinkedTreeMap objects
   private static final Type linkedTreeMapType = new TypeToken<LinkedTreeMap<Object,Object>>(){}.getType();
 
+  // Result type of a list of apps, used by the non-blocking calls.
+  private static final Type appListType = new TypeToken<List<TapisApp>>(){}.getType();
+
   // Named null values to make it clear what is being passed in to a method
   private static final String impersonationIdNull = null;
   private static final String resourceTenantNull = null;
@@ -78,9 +89,13 @@ public class AppsClient implements ITapisClient
 
   // Instance of the underlying autogenerated client.
   private final ApiClient apiClient;
+  // Shared transport, null if apiClient owns its http client.
+  private final TapisHttpTransport transport;
   private final ApplicationsApi appApi;
   private final PermissionsApi permsApi;
   private final GeneralApi generalApi;
+  // Optional hedging of latency critical read calls.
+  private volatile RequestHedger hedger;
 
   // ************************************************************************
   // *********************** Constructors ***********************************
@@ -93,6 +108,8 @@ public class AppsClient implements ITapisClient
   public AppsClient()
   {
     apiClient = new ApiClient();
+    apiClient.setUserAgent(APPS_CLIENT_USER_AGENT);
+    transport = null;
     appApi = new ApplicationsApi(apiClient);
     permsApi = new PermissionsApi(apiClient);
     generalApi = new GeneralApi(apiClient);
@@ -109,7 +126,23 @@ public class AppsClient implements ITapisClient
    */
   public AppsClient(String path, String jwt)
   {
-    apiClient = new ApiClient();
+    this(path, jwt, null);
+  }
+
+  /**
+   * Constructor that overrides the compiled-in basePath value in ApiClient and uses
+   * the connection pool and dispatcher of a shared transport.
+   * If transport is null the client creates its own http client.
+   *
+   * @param path the base path URL prefix up to and including the service root
+   * @param jwt the token to set in an HTTP header
+   * @param transport1 shared http transport, may be null
+   */
+  public AppsClient(String path, String jwt, TapisHttpTransport transport1)
+  {
+    transport = transport1;
+    apiClient = (transport == null ? new ApiClient() : new ApiClient(transport.getHttpClient()));
+    apiClient.setUserAgent(APPS_CLIENT_USER_AGENT);
     if (!StringUtils.isBlank(path)) apiClient.setBasePath(path);
     if (!StringUtils.isBlank(jwt)) apiClient.addDefaultHeader(TAPIS_JWT_HEADER, jwt);
     appApi = new ApplicationsApi(apiClient);
@@ -133,11 +166,15 @@ public class AppsClient implements ITapisClient
   // Add http header to default client
   public AppsClient addDefaultHeader(String key, String val) { apiClient.addDefaultHeader(key, val); return this;}
 
+  // Hedge the operations enabled in the hedger, currently only "getApp". Null turns hedging off.
+  public AppsClient setRequestHedger(RequestHedger hedger1) { hedger = hedger1; return this;}
+
   /**
    *  Close connections and stop threads that can sometimes prevent JVM shutdown.
    */
   public void close()
   {
+    if (transport != null) return;
     try {
       // Best effort attempt to shut things down.
       var okClient = apiClient.getHttpClient();
@@ -203,6 +240,24 @@ public class AppsClient implements ITapisClient
     if (resp != null && resp.getResult() != null) return resp.getResult().getUrl(); else return null;
   }
 
+  /**
+   * Non-blocking createApp.  The future fails with a TapisClientException.
+   *
+   * @param req Request body specifying attributes
+   * @return future url pointing to created resource
+   */
+  public CompletableFuture<String> createAppAsync(ReqPostApp req)
+  {
+    try
+    {
+      var call = appApi.createAppVersionCall(req, null);
+      return Utils.executeAsync(apiClient.getHttpClient(), call, ResultResourceUrl.class,
+                                (ResultResourceUrl r) -> r == null ? null : r.getUrl());
+    }
+    catch (ApiException e) { return Utils.failedFuture(e.getCode(), e.getResponseBody(), e); }
+    catch (Exception e) { return Utils.failedFuture(-1, null, e); }
+  }
+
   /**
    * Update selected attributes of an app
    *
@@ -449,7 +504,25 @@ public class AppsClient implements ITapisClient
     String selectStr1 = DEFAULT_SELECT_ALL;
     if (!StringUtils.isBlank(selectStr)) selectStr1 = selectStr;
     RespApp resp = null;
-    try {resp = appApi.getApp(appId, appVersion, requireExecPerm, impersonationId, selectStr1, resourceTenant); }
+    // Hedged requests stream the result directly.
+    RequestHedger hedger1 = hedger;
+    if (hedger1 != null && hedger1.isEnabled("getApp"))
+    {
+      TapisApp app = null;
+      try
+      {
+        var call = appApi.getAppCall(appId, appVersion, requireExecPerm,
+                                     TapisRequestContext.resolveImpersonationId(impersonationId), selectStr1,
+                                     resourceTenant, null);
+        app = Utils.executeHedged(hedger1, "getApp", apiClient.getHttpClient(), call, TapisApp.class);
+      }
+      catch (TapisClientException e) { throw e; }
+      catch (ApiException e) { Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e); }
+      catch (Exception e) { Utils.throwTapisClientException(-1, null, e); }
+      return app == null ? null : postProcessApp(app);
+    }
+    try {resp = appApi.getApp(appId, appVersion, requireExecPerm, TapisRequestContext.resolveImpersonationId(impersonationId), selectStr1,
+                                   resourceTenant); }
     catch (ApiException e) { Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e); }
     catch (Exception e) { Utils.throwTapisClientException(-1, null, e); }
     if (resp == null || resp.getResult() == null) return null;
@@ -458,6 +531,40 @@ public class AppsClient implements ITapisClient
     return app;
   }
 
+  /**
+   * Non-blocking getApp using minimal attributes.  The future fails with a TapisClientException.
+   *
+   * @param appId id of the application
+   * @param appVersion Version of the application
+   * @return future app, completed with null if app not found
+   */
+  public CompletableFuture<TapisApp> getAppAsync(String appId, String appVersion)
+  {
+    return getAppAsync(appId, appVersion, Boolean.FALSE, impersonationIdNull, DEFAULT_SELECT_ALL, resourceTenantNull);
+  }
+
+  /**
+   * Non-blocking getApp using all supported parameters.  See getApp for a description
+   *   of the parameters.  The future fails with a TapisClientException.
+   *
+   * @return future app, completed with null if app not found
+   */
+  public CompletableFuture<TapisApp> getAppAsync(String appId, String appVersion, Boolean requireExecPerm,
+                                                 String impersonationId, String selectStr, String resourceTenant)
+  {
+    String selectStr1 = DEFAULT_SELECT_ALL;
+    if (!StringUtils.isBlank(selectStr)) selectStr1 = selectStr;
+    try
+    {
+      var call = appApi.getAppCall(appId, appVersion, requireExecPerm, TapisRequestContext.resolveImpersonationId(impersonationId),
+                                   selectStr1, resourceTenant, null);
+      return Utils.executeAsync(apiClient.getHttpClient(), call, TapisApp.class,
+                                (TapisApp app) -> app == null ? null : postProcessApp(app));
+    }
+    catch (ApiException e) { return Utils.failedFuture(e.getCode(), e.getResponseBody(), e); }
+    catch (Exception e) { return Utils.failedFuture(-1, null, e); }
+  }
+
   /**
    * Retrieve applications.
    *
@@ -555,6 +662,32 @@ public class AppsClient implements ITapisClient
     return resp.getResult();
   }
 
+  /**
+   * Non-blocking getApps using all supported parameters.  See getApps for a description
+   *   of the parameters.  The future fails with a TapisClientException.
+   *
+   * @return future list of apps accessible to the caller
+   */
+  public CompletableFuture<List<TapisApp>> getAppsAsync(String searchStr, ListTypeEnum listTypeEnum, int limit,
+                                                        String orderBy, int skip, String startAfter, String selectStr,
+                                                        boolean showDeleted)
+  {
+    String selectStr1 = DEFAULT_SELECT_SUMMARY;
+    if (!StringUtils.isBlank(selectStr)) selectStr1 = selectStr;
+    try
+    {
+      var call = appApi.getAppsCall(searchStr, listTypeEnum, limit, orderBy, skip, startAfter, DEFAULT_COMPUTETOTAL,
+                                    selectStr1, showDeleted, null);
+      return Utils.executeAsync(apiClient.getHttpClient(), call, appListType, (List<TapisApp> apps) -> {
+        if (apps == null) return null;
+        for (TapisApp app : apps) postProcessApp(app);
+        return apps;
+      });
+    }
+    catch (ApiException e) { return Utils.failedFuture(e.getCode(), e.getResponseBody(), e); }
+    catch (Exception e) { return Utils.failedFuture(-1, null, e); }
+  }
+
   /**
    * Get apps using search based on an array of strings representing an SQL-like WHERE clause
    * By default most recent version of each app is returned.
@@ -721,7 +854,7 @@ public class AppsClient implements ITapisClient
     // Notes requires special handling. It must be null or a JsonObject
     Object notes = app.getNotes();
     if (notes == null) rApp.notes(null);
-    else if (notes instanceof String) rApp.notes(ClientTapisGsonUtils.getGson().fromJson((String) notes, JsonObject.class));
+    else if (notes instanceof String) rApp.notes(gson.fromJson((String) notes, JsonObject.class));
     else if (notes instanceof JsonObject) rApp.notes(notes);
     else rApp.notes(null);
     return rApp;
@@ -746,7 +879,7 @@ public class AppsClient implements ITapisClient
     // Notes requires special handling. It must be null or a JsonObject
     Object notes = app.getNotes();
     if (notes == null) rApp.notes(null);
-    else if (notes instanceof String) rApp.notes(ClientTapisGsonUtils.getGson().fromJson((String) notes, JsonObject.class));
+    else if (notes instanceof String) rApp.notes(gson.fromJson((String) notes, JsonObject.class));
     else if (notes instanceof JsonObject) rApp.notes(notes);
     else rApp.notes(null);
     return rApp;
@@ -844,6 +977,6 @@ public class AppsClient implements ITapisClient
     }
     // Convert the gson LinkedTreeMap to a string.
     var lmap = (LinkedTreeMap<String, String>) notes;
-    return  ClientTapisGsonUtils.getGson().toJson(lmap, linkedTreeMapType);
+    return  gson.toJson(lmap, linkedTreeMapType);
   }
 }
@@ -1,5 +1,6 @@
 package edu.utexas.tacc.tapis.auth.client;
 
+import java.util.concurrent.CompletableFuture;
 
 import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
 import edu.utexas.tacc.tapis.auth.client.gen.ApiException;
@@ -7,14 +8,11 @@ import edu.utexas.tacc.tapis.auth.client.gen.api.TokensApi;
 import edu.utexas.tacc.tapis.auth.client.gen.ApiClient;
 import edu.utexas.tacc.tapis.auth.client.model.GetTokenParms;
 import edu.utexas.tacc.tapis.client.shared.Utils;
-import edu.utexas.tacc.tapis.client.shared.ClientTapisGsonUtils;
 import edu.utexas.tacc.tapis.client.shared.ITapisClient;
+import edu.utexas.tacc.tapis.client.shared.TapisHttpTransport;
 
 import org.apache.commons.lang3.StringUtils;
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-import java.util.Map;
 
 /**
  * Class providing a convenient front-end for the automatically generated client code
@@ -28,6 +26,9 @@ public class AuthClient
   // ************************************************************************
   // *********************** Constants **************************************
   // ************************************************************************
+
+  // Configuration defaults.
+  private static final String AUTH_CLIENT_USER_AGENT = "AuthClient";
   private static final String GRANT_TYPE = "password";
 
   // ************************************************************************
@@ -37,13 +38,13 @@ public class AuthClient
   // ************************************************************************
   // *********************** Fields *****************************************
   // ************************************************************************
-  // Response serializer.
-  private static final Gson _gson = ClientTapisGsonUtils.getGson();
-
   // Instance of the underlying autogenerated client.
   private final ApiClient apiClient;
   private final TokensApi tokensApi;
 
+  // Shared transport, null if apiClient owns its http client.
+  private final TapisHttpTransport transport;
+
   // ************************************************************************
   // *********************** Constructors ***********************************
   // ************************************************************************
@@ -54,7 +55,9 @@ public class AuthClient
    */
   public AuthClient()
   {
+    transport = null;
     apiClient = new ApiClient();
+    apiClient.setUserAgent(AUTH_CLIENT_USER_AGENT);
     tokensApi = new TokensApi(apiClient);
   }
 
@@ -66,9 +69,22 @@ public class AuthClient
    *
    * @param path the base path URL prefix up to and including the service root
    */
-  public AuthClient(String path)
+  public AuthClient(String path) { this(path, (TapisHttpTransport) null); }
+
+  /**
+   * Constructor that overrides the compiled-in basePath value in ApiClient and builds
+   * on a shared http transport.  The connection pool and dispatcher of the transport are
+   * shared with all other clients using it.  If transport is null this client creates
+   * its own http client.
+   *
+   * @param path the base path URL prefix up to and including the service root
+   * @param transport1 the shared transport, can be null
+   */
+  public AuthClient(String path, TapisHttpTransport transport1)
   {
-    apiClient = new ApiClient();
+    transport = transport1;
+    apiClient = (transport == null ? new ApiClient() : new ApiClient(transport.getHttpClient()));
+    apiClient.setUserAgent(AUTH_CLIENT_USER_AGENT);
     if (!StringUtils.isBlank(path)) apiClient.setBasePath(path);
     tokensApi = new TokensApi(apiClient);
   }
@@ -94,6 +110,8 @@ public class AuthClient
    */
   public void close()
   {
+      // The shared transport outlives this client.
+      if (transport != null) return;
       try {
           // Best effort attempt to shut things down.
           var okClient = apiClient.getHttpClient();
@@ -116,33 +134,61 @@ public class AuthClient
    */
   public String getToken(String userName, String userPassword) throws TapisClientException
   {
-    String result = null;
-    // Build the request
-    var req = new GetTokenParms();
-    req.setGrantType(GRANT_TYPE);
-    req.setUsername(userName);
-    req.setPassword(userPassword);
-
-    // Make the call and return the result
-    Map resp = null;
+    // Make the call and stream only the result element of the response.
+    JsonObject jsonObj = null;
     try
     {
-      resp = (Map) tokensApi.createToken(req);
+      jsonObj = Utils.executeForResult(tokensApi.createTokenCall(buildTokenParms(userName, userPassword), null),
+                                       JsonObject.class);
     }
+    catch (TapisClientException e) { throw e; }
     catch (ApiException e) { Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e); }
     catch (Exception e) { Utils.throwTapisClientException(-1, null, e); }
 
-    // If response came back null return null
-    if (resp == null) return result;
+    return getAccessToken(jsonObj);
+  }
+
+  /**
+   * Non-blocking getToken.  The future fails with a TapisClientException.
+   *
+   * @param userName
+   * @param userPassword
+   * @return a future string representing a user JWT, completed with null if no token was returned.
+   */
+  public CompletableFuture<String> getTokenAsync(String userName, String userPassword)
+  {
+    try
+    {
+      return Utils.executeAsync(apiClient.getHttpClient(),
+                                tokensApi.createTokenCall(buildTokenParms(userName, userPassword), null),
+                                JsonObject.class, AuthClient::getAccessToken);
+    }
+    catch (ApiException e) { return Utils.failedFuture(e.getCode(), e.getResponseBody(), e); }
+    catch (Exception e) { return Utils.failedFuture(-1, null, e); }
+  }
+
+  // ************************************************************************
+  // *********************** Private Methods ********************************
+  // ************************************************************************
 
-    // Marshal only the result from the map.
-    String json = _gson.toJson(resp.get("result"));
-    // If no result return null
-    if (StringUtils.isBlank(json)) return result;
+  /**
+   * Build the password grant request
+   */
+  private static GetTokenParms buildTokenParms(String userName, String userPassword)
+  {
+    var req = new GetTokenParms();
+    req.setGrantType(GRANT_TYPE);
+    req.setUsername(userName);
+    req.setPassword(userPassword);
+    return req;
+  }
 
-    // Get the access token string.
-    JsonObject jsonObj = JsonParser.parseString(json).getAsJsonObject();
-    result = jsonObj.get("access_token").getAsJsonObject().get("access_token").getAsString();
-    return result;
+  /**
+   * Get the access token string from the result element, null if there is no result
+   */
+  private static String getAccessToken(JsonObject jsonObj)
+  {
+    if (jsonObj == null) return null;
+    return jsonObj.get("access_token").getAsJsonObject().get("access_token").getAsString();
   }
 }
\ No newline at end of file
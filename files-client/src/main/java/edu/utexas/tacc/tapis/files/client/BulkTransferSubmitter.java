@@ -0,0 +1,373 @@
+package edu.utexas.tacc.tapis.files.client;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import edu.utexas.tacc.tapis.client.shared.TapisExecutor;
+import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+import edu.utexas.tacc.tapis.client.shared.resilience.RetryPolicy;
+import edu.utexas.tacc.tapis.files.client.gen.ApiException;
+import edu.utexas.tacc.tapis.files.client.gen.model.ReqTransfer;
+import edu.utexas.tacc.tapis.files.client.gen.model.ReqTransferElement;
+import edu.utexas.tacc.tapis.files.client.gen.model.TransferTask;
+
+/**
+ * Submits transfers of any number of elements as several transfer tasks.
+ *
+ * The elements are split into ReqTransfer chunks limited both by element count and by
+ * the estimated size of the request body.  Elements are spread evenly over the fewest
+ * chunks that respect the limits, so 1001 elements with a limit of 1000 become two
+ * chunks of about 500 rather than one full chunk and one nearly empty one.  Element
+ * order is kept.  Each chunk gets the request's tag followed by "-" and its number.
+ *
+ * Chunks are submitted with createTransferTask, at most concurrency at a time on
+ * TapisExecutor.getDefault().  Only a chunk rejected with 429 or 503, which mean the
+ * service turned the request away before acting on it, is submitted again, and only if
+ * the RetryPolicy also deems the status retryable.  The wait is the response's
+ * Retry-After or else the policy's backoff; a Retry-After longer than the policy's
+ * maximum backoff is not waited for.  Other failures, including other 5xx statuses, are
+ * not retried because a request that reached the service may have created its task.
+ * They are reported as failed chunks and a failed chunk does not stop the others.
+ *
+ * The returned Handle holds the created tasks and the chunks that failed.  It can
+ * resubmit failed chunks once the caller has checked that they did not create tasks,
+ * cancel all tasks and track all tasks together with a TransferWatcher, reporting
+ * combined progress.
+ */
+public final class BulkTransferSubmitter
+{
+  // ************************************************************************
+  // *********************** Constants **************************************
+  // ************************************************************************
+
+  // Default maximum number of elements per transfer task.
+  public static final int DEFAULT_MAX_ELEMENTS = 1000;
+
+  // Default maximum estimated request body size per transfer task.
+  public static final long DEFAULT_MAX_REQUEST_BYTES = 1024 * 1024;
+
+  // Default number of chunks submitted at the same time.
+  public static final int DEFAULT_CONCURRENCY = 4;
+
+  // Estimated JSON bytes per element besides its URIs.
+  private static final int ELEMENT_OVERHEAD = 64;
+
+  // Statuses with which the service rejects a request without acting on it.
+  private static final Set<Integer> REJECTED_STATUS = Set.of(429, 503);
+
+  // ************************************************************************
+  // *********************** Fields *****************************************
+  // ************************************************************************
+  private final FilesClient client;
+  private final int maxElements;
+  private final long maxRequestBytes;
+  private final int concurrency;
+  private final RetryPolicy retryPolicy;
+
+  // ************************************************************************
+  // *********************** Constructors ***********************************
+  // ************************************************************************
+
+  /**
+   * Create a submitter with the default limits, concurrency and retry policy.
+   *
+   * @param client1 the client used to create transfer tasks
+   */
+  public BulkTransferSubmitter(FilesClient client1)
+  {
+    this(client1, DEFAULT_MAX_ELEMENTS, DEFAULT_MAX_REQUEST_BYTES, DEFAULT_CONCURRENCY, RetryPolicy.DEFAULT);
+  }
+
+  /**
+   * Create a submitter.
+   *
+   * @param client1 the client used to create transfer tasks
+   * @param maxElements1 the maximum number of elements per transfer task
+   * @param maxRequestBytes1 the maximum estimated request body size per transfer task
+   * @param concurrency1 the maximum number of chunks submitted at the same time
+   * @param retryPolicy1 the retry policy applied to each chunk
+   */
+  public BulkTransferSubmitter(FilesClient client1, int maxElements1, long maxRequestBytes1, int concurrency1,
+                               RetryPolicy retryPolicy1)
+  {
+    if (maxElements1 < 1) throw new IllegalArgumentException("maxElements must be positive: " + maxElements1);
+    if (maxRequestBytes1 < 1) throw new IllegalArgumentException("maxRequestBytes must be positive: " + maxRequestBytes1);
+    if (concurrency1 < 1) throw new IllegalArgumentException("concurrency must be positive: " + concurrency1);
+    client = client1;
+    maxElements = maxElements1;
+    maxRequestBytes = maxRequestBytes1;
+    concurrency = concurrency1;
+    retryPolicy = retryPolicy1;
+  }
+
+  // ************************************************************************
+  // *********************** Public Methods *********************************
+  // ************************************************************************
+
+  /**
+   * Split a transfer request into chunks and submit them.
+   *
+   * @param req the transfer request, its elements may be any number
+   * @return handle on the created tasks and the failed chunks
+   * @throws TapisClientException - If interrupted
+   */
+  public Handle submit(ReqTransfer req) throws TapisClientException
+  {
+    return submit(req.getElements(), req.getTag());
+  }
+
+  /**
+   * Split transfer elements into chunks and submit them.
+   *
+   * @param elements the elements to transfer
+   * @param tag tag of the chunks followed by "-" and the chunk number, can be null
+   * @return handle on the created tasks and the failed chunks
+   * @throws TapisClientException - If interrupted
+   */
+  public Handle submit(List<ReqTransferElement> elements, String tag) throws TapisClientException
+  {
+    List<List<ReqTransferElement>> parts = split(elements, maxElements, maxRequestBytes);
+    var chunks = new ArrayList<ReqTransfer>(parts.size());
+    for (int i = 0; i < parts.size(); i++)
+    {
+      var chunk = new ReqTransfer().elements(parts.get(i));
+      if (tag != null) chunk.setTag(tag + "-" + (i + 1));
+      chunks.add(chunk);
+    }
+    var handle = new Handle(chunks);
+    handle.submit(IntStream.range(0, chunks.size()).boxed().collect(Collectors.toList()));
+    return handle;
+  }
+
+  // ************************************************************************
+  // *********************** Package Methods ********************************
+  // ************************************************************************
+
+  /*
+   * Spread elements evenly over the fewest chunks that respect both limits.  An element
+   *   larger than maxBytes gets a chunk of its own.
+   */
+  static List<List<ReqTransferElement>> split(List<ReqTransferElement> elements, int maxElements, long maxBytes)
+  {
+    if (elements.isEmpty()) return List.of();
+    long totalBytes = 0;
+    for (ReqTransferElement e : elements) totalBytes += estimateBytes(e);
+    long n = Math.max((elements.size() + maxElements - 1) / maxElements, (totalBytes + maxBytes - 1) / maxBytes);
+    long perChunk = (elements.size() + n - 1) / n;
+
+    var chunks = new ArrayList<List<ReqTransferElement>>();
+    var chunk = new ArrayList<ReqTransferElement>();
+    long bytes = 0;
+    for (ReqTransferElement e : elements)
+    {
+      long size = estimateBytes(e);
+      if (!chunk.isEmpty() && (chunk.size() >= perChunk || bytes + size > maxBytes))
+      {
+        chunks.add(chunk);
+        chunk = new ArrayList<>();
+        bytes = 0;
+      }
+      chunk.add(e);
+      bytes += size;
+    }
+    chunks.add(chunk);
+    return chunks;
+  }
+
+  static long estimateBytes(ReqTransferElement e)
+  {
+    return utf8Length(e.getSourceURI()) + utf8Length(e.getDestinationURI()) + ELEMENT_OVERHEAD;
+  }
+
+  // ************************************************************************
+  // *********************** Private Methods ********************************
+  // ************************************************************************
+
+  private static long utf8Length(String s) { return s == null ? 0 : s.getBytes(StandardCharsets.UTF_8).length; }
+
+  /*
+   * Create the task of one chunk, retrying rejections the retry policy allows and
+   *   honouring their Retry-After.
+   */
+  private TransferTask createWithRetry(ReqTransfer chunk) throws TapisClientException
+  {
+    int attempt = 0;
+    while (true)
+    {
+      long waitNanos;
+      try { return client.createTransferTask(chunk); }
+      catch (TapisClientException e)
+      {
+        if (!REJECTED_STATUS.contains(e.getCode()) || !retryPolicy.isRetryable(e.getCode())
+            || ++attempt >= retryPolicy.getMaxAttempts()) throw e;
+        waitNanos = RetryPolicy.retryAfterNanos(retryAfter(e));
+        if (waitNanos < 0) waitNanos = retryPolicy.backoffNanos(attempt);
+        else if (waitNanos > retryPolicy.getMaxBackoffNanos()) throw e;
+      }
+
+      try { TimeUnit.NANOSECONDS.sleep(waitNanos); }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+        throw new TapisClientException("Interrupted while retrying transfer chunk " + chunk.getTag(), e);
+      }
+    }
+  }
+
+  /*
+   * Return the Retry-After header of the response that caused a failure, or null.
+   */
+  private static String retryAfter(TapisClientException e)
+  {
+    if (!(e.getCause() instanceof ApiException) || ((ApiException) e.getCause()).getResponseHeaders() == null)
+      return null;
+    for (var header : ((ApiException) e.getCause()).getResponseHeaders().entrySet())
+      if ("Retry-After".equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty())
+        return header.getValue().get(0);
+    return null;
+  }
+
+  // ************************************************************************
+  // *********************** Public Classes *********************************
+  // ************************************************************************
+
+  /**
+   * Handle on the transfer tasks created for one bulk submission.  Thread safe.
+   */
+  public final class Handle
+  {
+    // The chunks, and the created tasks and failures by chunk index.
+    private final List<ReqTransfer> chunks;
+    private final Map<Integer, TransferTask> tasks = Collections.synchronizedMap(new TreeMap<>());
+    private final Map<Integer, TapisClientException> failures = Collections.synchronizedMap(new TreeMap<>());
+
+    private Handle(List<ReqTransfer> chunks1) { chunks = chunks1; }
+
+    /** Return all chunks in submission order.  Chunk i is tagged with number i + 1. */
+    public List<ReqTransfer> getChunks() { return Collections.unmodifiableList(chunks); }
+
+    /** Return the tasks created so far, in chunk order. */
+    public List<TransferTask> getTasks()
+    {
+      synchronized (tasks) { return new ArrayList<>(tasks.values()); }
+    }
+
+    /** Return the last failure of each chunk without a task, by chunk index. */
+    public Map<Integer, TapisClientException> getFailures()
+    {
+      synchronized (failures) { return new TreeMap<>(failures); }
+    }
+
+    /** Determine whether every chunk has a task. */
+    public boolean isFullySubmitted() { return failures.isEmpty(); }
+
+    /** Return the number of elements covered by the created tasks. */
+    public int getElementCount()
+    {
+      synchronized (tasks) { return tasks.keySet().stream().mapToInt(i -> chunks.get(i).getElements().size()).sum(); }
+    }
+
+    /**
+     * Submit the failed chunks again.  A chunk that failed with a status other than 429
+     *   or 503 may have created a task, so check first that resubmitting it does not
+     *   duplicate a transfer.  Calls are serialized so that two callers never submit
+     *   the same chunk at once.
+     *
+     * @return true if every chunk now has a task
+     * @throws TapisClientException - If interrupted
+     */
+    public synchronized boolean resubmitFailed() throws TapisClientException
+    {
+      List<Integer> failed;
+      synchronized (failures) { failed = new ArrayList<>(failures.keySet()); }
+      submit(failed);
+      return isFullySubmitted();
+    }
+
+    /**
+     * Cancel all created tasks.
+     *
+     * @return the tasks that could not be cancelled with their failure
+     * @throws TapisClientException - If interrupted
+     */
+    public Map<TransferTask, TapisClientException> cancel() throws TapisClientException
+    {
+      var errors = new ConcurrentHashMap<TransferTask, TapisClientException>();
+      TapisExecutor.getDefault().invokeAll(getTasks(), concurrency, task -> {
+        try { client.cancelTransferTask(task.getUuid().toString()); }
+        catch (TapisClientException e) { errors.put(task, e); }
+        return task;
+      });
+      return errors;
+    }
+
+    /**
+     * Watch all created tasks until they reach a terminal status.  The listener receives
+     *   the bytes transferred and the estimated total bytes summed over all tasks, on the
+     *   watcher's thread.
+     *
+     * @param watcher the watcher polling the tasks
+     * @param listener receives combined progress, can be null
+     * @return future completed with the final tasks in chunk order, or failed with the
+     *         first failure to watch a task
+     */
+    public CompletableFuture<List<TransferTask>> track(TransferWatcher watcher, TransferProgressListener listener)
+    {
+      List<TransferTask> created = getTasks();
+      var bytes = new ConcurrentHashMap<String, Long>();
+      var totals = new ConcurrentHashMap<String, Long>();
+      var futures = new ArrayList<CompletableFuture<TransferTask>>(created.size());
+      for (TransferTask task : created)
+      {
+        String id = task.getUuid().toString();
+        futures.add(watcher.watch(id, update -> {
+          if (listener == null) return;
+          if (update.getTotalBytesTransferred() != null) bytes.put(id, update.getTotalBytesTransferred());
+          if (update.getEstimatedTotalBytes() != null) totals.put(id, update.getEstimatedTotalBytes());
+          listener.progress(sum(bytes), sum(totals));
+        }));
+      }
+      return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(v -> {
+        var finals = new ArrayList<TransferTask>(futures.size());
+        for (var f : futures) finals.add(f.join());
+        return finals;
+      });
+    }
+
+    /*
+     * Submit chunks concurrently and record their outcomes.
+     */
+    private void submit(List<Integer> indexes) throws TapisClientException
+    {
+      TapisExecutor.getDefault().invokeAll(indexes, concurrency, i -> {
+        ReqTransfer chunk = chunks.get(i);
+        try
+        {
+          TransferTask task = createWithRetry(chunk);
+          if (task == null) throw new TapisClientException("No transfer task returned for chunk " + (i + 1));
+          failures.remove(i);
+          tasks.put(i, task);
+        }
+        catch (TapisClientException e) { failures.put(i, e); }
+        return i;
+      });
+    }
+
+    private long sum(Map<String, Long> values)
+    {
+      long total = 0;
+      for (long v : values.values()) total += v;
+      return total;
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package edu.utexas.tacc.tapis.files.client;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Small properties file kept next to a partial download that records which ranges
+ * of the remote file have been written, together with the identity of the remote file
+ * (system, path, size and last modified time) and the range size used to split it.
+ *
+ * The file is rewritten after each completed range.  Writes go to a temporary file
+ * that is then moved over the checkpoint, so a crash leaves either the old or the new
+ * checkpoint and never a torn one.  A range is only recorded once all its bytes are
+ * in the partial file, so resuming never skips data.
+ */
+final class DownloadCheckpoint
+{
+  // ************************************************************************
+  // *********************** Constants **************************************
+  // ************************************************************************
+
+  // Bumped if the format changes, older checkpoints are then discarded.
+  private static final String VERSION = "1";
+
+  // ************************************************************************
+  // *********************** Fields *****************************************
+  // ************************************************************************
+  private final Path file;
+  private final String systemId;
+  private final String path;
+  private final long size;
+  private final Instant lastModified;
+  private final long rangeSize;
+  private final TreeSet<Long> completed = new TreeSet<>();
+
+  // ************************************************************************
+  // *********************** Constructors ***********************************
+  // ************************************************************************
+
+  DownloadCheckpoint(Path file1, String systemId1, String path1, long size1, Instant lastModified1, long rangeSize1)
+  {
+    file = file1; systemId = systemId1; path = path1; size = size1; lastModified = lastModified1;
+    rangeSize = rangeSize1;
+  }
+
+  // ************************************************************************
+  // *********************** Package Methods ********************************
+  // ************************************************************************
+
+  /*
+   * Read a checkpoint, returning null if there is none or it cannot be parsed.
+   */
+  static DownloadCheckpoint load(Path file)
+  {
+    var props = new Properties();
+    try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) { props.load(in); }
+    catch (IOException e) { return null; }
+    try
+    {
+      if (!VERSION.equals(props.getProperty("version"))) return null;
+      String modified = props.getProperty("lastModified", "");
+      var checkpoint = new DownloadCheckpoint(file, props.getProperty("systemId"), props.getProperty("path"),
+                                              Long.parseLong(props.getProperty("size")),
+                                              modified.isEmpty() ? null : Instant.parse(modified),
+                                              Long.parseLong(props.getProperty("rangeSize")));
+      for (String start : props.getProperty("completed", "").split(","))
+        if (!start.isEmpty()) checkpoint.completed.add(Long.parseLong(start));
+      return checkpoint;
+    }
+    catch (RuntimeException e) { return null; }
+  }
+
+  /*
+   * Determine whether this checkpoint describes the given remote file.
+   */
+  boolean matches(String systemId1, String path1, long size1, Instant lastModified1)
+  {
+    return Objects.equals(systemId, systemId1) && Objects.equals(path, path1) && size == size1
+           && Objects.equals(lastModified, lastModified1);
+  }
+
+  /*
+   * Record a completed range and persist the checkpoint.
+   */
+  synchronized void complete(long start) throws IOException
+  {
+    completed.add(start);
+    save();
+  }
+
+  /*
+   * Write the checkpoint atomically.
+   */
+  synchronized void save() throws IOException
+  {
+    var props = new Properties();
+    props.setProperty("version", VERSION);
+    props.setProperty("systemId", systemId);
+    props.setProperty("path", path);
+    props.setProperty("size", Long.toString(size));
+    props.setProperty("lastModified", lastModified == null ? "" : lastModified.toString());
+    props.setProperty("rangeSize", Long.toString(rangeSize));
+    props.setProperty("completed", completed.stream().map(String::valueOf).collect(Collectors.joining(",")));
+
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (Writer out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8))
+    {
+      props.store(out, "Tapis download checkpoint");
+    }
+    try { Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE); }
+    catch (AtomicMoveNotSupportedException e) { Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING); }
+  }
+
+  synchronized boolean isCompleted(long start) { return completed.contains(start); }
+
+  long getRangeSize() { return rangeSize; }
+}
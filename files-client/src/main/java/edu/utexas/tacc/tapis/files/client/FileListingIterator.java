@@ -0,0 +1,138 @@
+package edu.utexas.tacc.tapis.files.client;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+import edu.utexas.tacc.tapis.client.shared.exceptions.UncheckedTapisClientException;
+import edu.utexas.tacc.tapis.files.client.gen.model.FileInfo;
+
+/**
+ * Iterator over a file listing of any length that fetches the listing one page at a
+ * time with the limit and offset parameters of listFiles.
+ *
+ * The first page is fetched on the first call to hasNext() or next().  As soon as a
+ * page arrives the following page is requested in the background, so at most two pages
+ * are held at any time.  A page shorter than the page size ends the listing.  Closing
+ * the iterator cancels the outstanding request, which is how a short-circuiting stream
+ * stops paging, see FilesClient.streamFiles().
+ *
+ * Failures are thrown from hasNext() and next() as UncheckedTapisClientException.
+ * Instances are not thread safe.
+ */
+public final class FileListingIterator implements Iterator<FileInfo>, AutoCloseable
+{
+  // ************************************************************************
+  // *********************** Fields *****************************************
+  // ************************************************************************
+  private final FilesClient client;
+  private final String systemId;
+  private final String path;
+  private final String pattern;
+  private final int pageSize;
+  private final boolean recurse;
+  private final String impersonationId;
+  private final String sharedCtx;
+
+  private long offset;
+  private Iterator<FileInfo> current = Collections.emptyIterator();
+  private CompletableFuture<List<FileInfo>> next;
+  private boolean started;
+  private boolean last;
+
+  // ************************************************************************
+  // *********************** Constructors ***********************************
+  // ************************************************************************
+
+  /**
+   * Create an iterator over a listing.
+   *
+   * @param client1 the client used to list
+   * @param systemId1 system
+   * @param path1 path relative to system rootDir
+   * @param pattern1 name pattern to filter on, can be null
+   * @param pageSize1 the number of entries requested per page
+   * @param recurse1 Flag indicating if a recursive listing is to be provided.
+   * @param impersonationId1 - use provided Tapis username instead of oboUser, can be null
+   * @param sharedCtx1 - Grantor for the case of a shared context, can be null
+   */
+  public FileListingIterator(FilesClient client1, String systemId1, String path1, String pattern1, int pageSize1,
+                             boolean recurse1, String impersonationId1, String sharedCtx1)
+  {
+    if (pageSize1 < 1) throw new IllegalArgumentException("pageSize must be positive: " + pageSize1);
+    client = client1; systemId = systemId1; path = path1; pattern = pattern1; pageSize = pageSize1;
+    recurse = recurse1; impersonationId = impersonationId1; sharedCtx = sharedCtx1;
+  }
+
+  // ************************************************************************
+  // *********************** Public Methods *********************************
+  // ************************************************************************
+
+  @Override
+  public boolean hasNext()
+  {
+    while (!current.hasNext())
+    {
+      if (last) return false;
+      advance();
+    }
+    return true;
+  }
+
+  @Override
+  public FileInfo next()
+  {
+    if (!hasNext()) throw new NoSuchElementException();
+    return current.next();
+  }
+
+  /**
+   * Stop paging and cancel the request for the next page, if any.
+   */
+  @Override
+  public void close()
+  {
+    last = true;
+    current = Collections.emptyIterator();
+    if (next != null) next.cancel(true);
+    next = null;
+  }
+
+  // ************************************************************************
+  // *********************** Private Methods ********************************
+  // ************************************************************************
+
+  /*
+   * Take the next page, fetching it now if it was not prefetched, and prefetch the one
+   *   after it.
+   */
+  private void advance()
+  {
+    List<FileInfo> page;
+    try
+    {
+      if (!started) page = client.listFiles(systemId, path, pattern, pageSize, offset, recurse, impersonationId, sharedCtx);
+      else page = next.join();
+    }
+    catch (TapisClientException e) { last = true; throw new UncheckedTapisClientException(e); }
+    catch (CompletionException e)
+    {
+      last = true;
+      if (e.getCause() instanceof TapisClientException)
+        throw new UncheckedTapisClientException((TapisClientException) e.getCause());
+      throw e;
+    }
+    started = true;
+    next = null;
+    if (page == null) page = Collections.emptyList();
+
+    offset += page.size();
+    if (page.size() < pageSize) last = true;
+    else next = client.listFilesAsync(systemId, path, pattern, pageSize, offset, recurse, impersonationId, sharedCtx);
+    current = page.iterator();
+  }
+}
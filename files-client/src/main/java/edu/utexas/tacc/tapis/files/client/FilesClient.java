@@ -1,24 +1,37 @@
 package edu.utexas.tacc.tapis.files.client;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import okhttp3.Call;
+import okhttp3.MultipartBody;
+import okhttp3.Request;
+import okhttp3.RequestBody;
 import okhttp3.Response;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 
 import edu.utexas.tacc.tapis.client.shared.ITapisClient;
+import edu.utexas.tacc.tapis.client.shared.TapisHttpTransport;
+import edu.utexas.tacc.tapis.client.shared.TapisRequestContext;
 import edu.utexas.tacc.tapis.client.shared.Utils;
 import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
 import edu.utexas.tacc.tapis.files.client.gen.ApiClient;
@@ -63,6 +76,9 @@ public class FilesClient implements ITapisClient
   // *********************** Constants **************************************
   // ************************************************************************
 
+  // Configuration defaults.
+  private static final String FILES_CLIENT_USER_AGENT = "FilesClient";
+
   // Header key for JWT
   public static final String TAPIS_JWT_HEADER = "X-Tapis-Token";
 
@@ -71,6 +87,9 @@ public class FilesClient implements ITapisClient
   private static final String sharedCtxNull = null;
   private static final String patternNull = null;
 
+  // Result types used when streaming responses.
+  private static final Type FILE_INFO_LIST_TYPE = new TypeToken<List<FileInfo>>(){}.getType();
+
   // Timeouts.
   private static int DEFAULT_CLIENT_CONNECTION_TIMEOUT=120000;
   private static int DEFAULT_CLIENT_READ_TIMEOUT=120000;
@@ -85,13 +104,31 @@ public class FilesClient implements ITapisClient
   private final GeneralApi fileHealth;
   private final ApiClient apiClient;
 
+  // Shared transport, null if apiClient owns its http client.
+  private final TapisHttpTransport transport;
+
   /**
    * Default constructor which uses the compiled-in basePath based on the openapi spec
    *   used to autogenerate the client.
    */
-  public FilesClient()
+  public FilesClient() { this(null, null, null); }
+
+  /**
+   * Constructor that overrides the compiled-in basePath value in ApiClient and builds
+   *   on a shared http transport.  The connection pool and dispatcher of the transport are
+   *   shared with all other clients using it, while the base path, headers and timeouts
+   *   set on this client remain private to this client.  If transport is null this client
+   *   creates its own http client.
+   *
+   * @param basePath the base path URL prefix up to and including the service root
+   * @param jwt the token to set in an HTTP header
+   * @param transport1 the shared transport, can be null
+   */
+  public FilesClient(String basePath, String jwt, TapisHttpTransport transport1)
   {
-    apiClient = new ApiClient();
+    transport = transport1;
+    apiClient = (transport == null ? new ApiClient() : new ApiClient(transport.getHttpClient()));
+    apiClient.setUserAgent(FILES_CLIENT_USER_AGENT);
     apiClient.setConnectTimeout(DEFAULT_CLIENT_CONNECTION_TIMEOUT);
     apiClient.setReadTimeout(DEFAULT_CLIENT_READ_TIMEOUT);
     apiClient.setWriteTimeout(DEFAULT_CLIENT_WRITE_TIMEOUT);
@@ -107,13 +144,18 @@ public class FilesClient implements ITapisClient
     fileSharing = new SharingApi(apiClient);
     fileTransfers = new TransfersApi(apiClient);
     fileHealth = new GeneralApi(apiClient);
+    if (!StringUtils.isBlank(basePath)) apiClient.setBasePath(basePath);
+    if (!StringUtils.isBlank(jwt)) apiClient.addDefaultHeader("x-tapis-token", jwt);
   }
 
   /** 
    * Close connections and stop threads that can sometimes prevent JVM shutdown.
+   * A shared transport is left untouched since other clients may be using it.
    */
   public void close()
   {
+      // The shared transport outlives this client.
+      if (transport != null) return;
       try {
           // Best effort attempt to shut things down.
           var okClient = apiClient.getHttpClient();
@@ -134,9 +176,7 @@ public class FilesClient implements ITapisClient
    * @param jwt the token to set in an HTTP header
    */
     public FilesClient(String basePath, String jwt) {
-      this();
-        if (!StringUtils.isBlank(basePath)) apiClient.setBasePath(basePath);
-        if (!StringUtils.isBlank(jwt)) apiClient.addDefaultHeader("x-tapis-token", jwt);
+      this(basePath, jwt, null);
     }
 
     // getApiClient: Return underlying ApiClient
@@ -210,12 +250,81 @@ public class FilesClient implements ITapisClient
           throws TapisClientException
   {
     FileListingResponse resp = null;
-    try { resp = fileOperations.listFiles(systemId, path, pattern, limit, offset, recurse, impersonationId, sharedCtx); }
+    try { resp = fileOperations.listFiles(systemId, path, pattern, limit, offset, recurse,
+                                          TapisRequestContext.resolveImpersonationId(impersonationId), sharedCtx); }
     catch (ApiException e) { Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e); }
     catch (Exception e) { Utils.throwTapisClientException(-1, null, e); }
     if (resp != null && resp.getResult() != null) return resp.getResult(); else return null;
   }
 
+  /**
+   * Non-blocking listFiles.  The future fails with a TapisClientException.
+   *
+   * @param systemId system
+   * @param path path relative to system rootDir
+   * @param pattern name pattern to filter on, can be null
+   * @param limit pagination limit
+   * @param offset pagination offset
+   * @param recurse Flag indicating if a recursive listing is to be provided.
+   * @param impersonationId - use provided Tapis username instead of oboUser when checking auth and
+   *                          resolving effectiveUserId
+   * @param sharedCtx - Grantor for the case of a shared context.
+   * @return future list of FileInfo objects
+   */
+  public CompletableFuture<List<FileInfo>> listFilesAsync(String systemId, String path, String pattern, int limit,
+                                                          long offset, boolean recurse, String impersonationId,
+                                                          String sharedCtx)
+  {
+    try {
+      Call call = fileOperations.listFilesCall(systemId, path, pattern, limit, offset, recurse,
+                                               TapisRequestContext.resolveImpersonationId(impersonationId), sharedCtx, null);
+      return Utils.executeAsync(apiClient.getHttpClient(), call, FILE_INFO_LIST_TYPE);
+    }
+    catch (ApiException e) { return Utils.failedFuture(e.getCode(), e.getResponseBody(), e); }
+    catch (Exception e) { return Utils.failedFuture(-1, null, e); }
+  }
+
+  /*
+   * listFilesAsync wrapper method for convenience
+   */
+  public CompletableFuture<List<FileInfo>> listFilesAsync(String systemId, String path, int limit, long offset, boolean recurse)
+  {
+    return listFilesAsync(systemId, path, patternNull, limit, offset, recurse, impersonationIdNull, sharedCtxNull);
+  }
+
+  /**
+   * Stream a listing of any length, fetching it page by page as the stream is consumed.
+   * The next page is prefetched while the current one is consumed, so at most two pages
+   *   are held in memory.  Short-circuiting operations such as findFirst() or limit() stop
+   *   paging; close the stream, for example with try-with-resources, to also cancel the
+   *   prefetch.  Failures are thrown as UncheckedTapisClientException.
+   *
+   * @param systemId system
+   * @param path path relative to system rootDir
+   * @param pattern name pattern to filter on, can be null
+   * @param pageSize number of entries fetched per request
+   * @param recurse Flag indicating if a recursive listing is to be provided.
+   * @param impersonationId - use provided Tapis username instead of oboUser when checking auth and
+   *                          resolving effectiveUserId
+   * @param sharedCtx - Grantor for the case of a shared context.
+   * @return lazy stream of FileInfo objects
+   */
+  public Stream<FileInfo> streamFiles(String systemId, String path, String pattern, int pageSize, boolean recurse,
+                                      String impersonationId, String sharedCtx)
+  {
+    var iterator = new FileListingIterator(this, systemId, path, pattern, pageSize, recurse, impersonationId, sharedCtx);
+    var spliterator = Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL);
+    return StreamSupport.stream(spliterator, false).onClose(iterator::close);
+  }
+
+  /*
+   * streamFiles wrapper method for convenience
+   */
+  public Stream<FileInfo> streamFiles(String systemId, String path, int pageSize, boolean recurse)
+  {
+    return streamFiles(systemId, path, patternNull, pageSize, recurse, impersonationIdNull, sharedCtxNull);
+  }
+
   /*
    * listFiles wrapper method for convenience / backward compatibility
    */
@@ -255,7 +364,8 @@ public class FilesClient implements ITapisClient
       String filename = FilenameUtils.getName(path);
 
       try {
-          Call call = fileContents.getContentsCall(systemId, path, null, zip, null, impersonationId, sharedCtx, null);
+          Call call = fileContents.getContentsCall(systemId, path, null, zip, null,
+                                   TapisRequestContext.resolveImpersonationId(impersonationId), sharedCtx, null);
           Response response =  call.execute();
           stream = response.body().byteStream();
 
@@ -288,7 +398,8 @@ public class FilesClient implements ITapisClient
     String filename = FilenameUtils.getName(StringUtils.stripEnd(path, "/"));
 
     try {
-      Call call = fileContents.getContentsCall(systemId, path, null, true, null, impersonationIdNull, sharedCtxNull, null);
+      Call call = fileContents.getContentsCall(systemId, path, null, true, null,
+                                 TapisRequestContext.resolveImpersonationId(impersonationIdNull), sharedCtxNull, null);
       Response response =  call.execute();
       filename = FilenameUtils.removeExtension(filename) + ".zip";
       zipStream = response.body().byteStream();
@@ -298,6 +409,60 @@ public class FilesClient implements ITapisClient
     return new StreamedFile(zipStream, filename);
   }
 
+  /**
+   * Download a file to a local path by fetching byte ranges concurrently.
+   * Uses a RangedDownloader with default settings, create one directly to change the
+   *   range size, concurrency or retry policy.
+   *
+   * @param systemId system
+   * @param path path relative to system rootDir
+   * @param target the local file, created or replaced once the download completes, left
+   *               unchanged if it fails
+   * @param listener receives download progress, can be null
+   * @return the number of bytes downloaded
+   * @throws TapisClientException - If api call throws an exception
+   */
+  public long download(String systemId, String path, Path target, TransferProgressListener listener)
+          throws TapisClientException
+  {
+    return new RangedDownloader(this).download(systemId, path, target, listener);
+  }
+
+  /**
+   * Download a file to a local path so that an interrupted download can be resumed by
+   *   calling this method again.  See RangedDownloader.downloadResumable().
+   *
+   * @param systemId system
+   * @param path path relative to system rootDir
+   * @param target the local file, created or replaced once the download completes
+   * @param listener receives download progress, can be null
+   * @return the number of bytes fetched by this call
+   * @throws TapisClientException - If api call throws an exception
+   */
+  public long downloadResumable(String systemId, String path, Path target, TransferProgressListener listener)
+          throws TapisClientException
+  {
+    return new RangedDownloader(this).downloadResumable(systemId, path, target, listener);
+  }
+
+  /**
+   * Open a reader over a remote UTF-8 text file that fetches pages as they are read.
+   *   See TextPageReader.
+   *
+   * @param systemId system
+   * @param path path relative to system rootDir
+   * @param startOffset the byte offset to start reading at, negative to start that many bytes before the end
+   * @param follow keep reading as the file grows until the reader is closed
+   * @return the reader
+   * @throws TapisClientException - If api call throws an exception
+   */
+  public TextPageReader getTextReader(String systemId, String path, long startOffset, boolean follow)
+          throws TapisClientException
+  {
+    return new TextPageReader(this, systemId, path, startOffset, TextPageReader.DEFAULT_PAGE_SIZE,
+                              follow ? TextPageReader.DEFAULT_POLL_INTERVAL : null);
+  }
+
   /**
    * Rename a file or folder
    *
@@ -322,7 +487,8 @@ public class FilesClient implements ITapisClient
 
   /**
    * Upload a file.
-   * The file will be added at the {path} independent of the original file name
+   * The file will be added at the {path} independent of the original file name.
+   * The stream is uploaded as it is read, see insert(String, String, InputStream, long, TransferProgressListener).
    *
    * @param systemId system
    * @param path path relative to system rootDir
@@ -332,22 +498,100 @@ public class FilesClient implements ITapisClient
    */
   public FileStringResponse insert(String systemId, String path, InputStream inputStream) throws TapisClientException
   {
-    File tmp = null;
-    FileStringResponse resp = null;
+    return insert(systemId, path, inputStream, -1, null);
+  }
+
+  /**
+   * Upload a file by streaming it straight into the request.
+   * The file will be added at the {path} independent of the original file name.
+   * Memory use is constant and no temporary copy of the data is made.  If contentLength
+   *   is known the stream must supply exactly that many bytes, otherwise chunked transfer
+   *   encoding is used.  The stream is closed once it has been sent.  Since a stream can
+   *   only be read once the upload is not retried.
+   *
+   * @param systemId system
+   * @param path path relative to system rootDir
+   * @param inputStream file to upload
+   * @param contentLength number of bytes in the stream, -1 if not known
+   * @param listener receives upload progress, can be null
+   * @return FileStringResponse
+   * @throws TapisClientException - If api call throws an exception
+   */
+  public FileStringResponse insert(String systemId, String path, InputStream inputStream, long contentLength,
+                                   TransferProgressListener listener)
+          throws TapisClientException
+  {
+    return insert(systemId, path, new StreamingRequestBody(inputStream, contentLength, null, listener));
+  }
+
+  /**
+   * Upload a local file.
+   * The file will be added at the {path} independent of the local file name.
+   *
+   * @param systemId system
+   * @param path path relative to system rootDir
+   * @param file local file to upload
+   * @return FileStringResponse
+   * @throws TapisClientException - If api call throws an exception
+   */
+  public FileStringResponse insert(String systemId, String path, Path file) throws TapisClientException
+  {
+    return insert(systemId, path, file, null);
+  }
+
+  /**
+   * Upload a local file straight from its FileChannel.
+   * The file will be added at the {path} independent of the local file name.
+   * The file is not staged in a temporary file and is not read into memory as a whole.  Its
+   *   content is transferred from the channel into the request's pooled okio segments a block
+   *   at a time, see StreamingRequestBody.  Since the channel is read by position the upload
+   *   can be retried.
+   *
+   * @param systemId system
+   * @param path path relative to system rootDir
+   * @param file local file to upload
+   * @param listener receives upload progress, can be null
+   * @return FileStringResponse
+   * @throws TapisClientException - If api call throws an exception
+   */
+  public FileStringResponse insert(String systemId, String path, Path file, TransferProgressListener listener)
+          throws TapisClientException
+  {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return insert(systemId, path, new StreamingRequestBody(channel, 0, channel.size(), null, listener));
+    }
+    catch (IOException e) { Utils.throwTapisClientException(-1, null, e); }
+    return null;
+  }
+
+  /**
+   * Non-blocking insert of a local file, see insert(String, String, Path, TransferProgressListener).
+   * The file is read on an OkHttp dispatcher thread and closed once the future completes.
+   *   The future fails with a TapisClientException.
+   *
+   * @param systemId system
+   * @param path path relative to system rootDir
+   * @param file local file to upload
+   * @param listener receives upload progress, can be null
+   * @return future FileStringResponse
+   */
+  public CompletableFuture<FileStringResponse> insertAsync(String systemId, String path, Path file,
+                                                           TransferProgressListener listener)
+  {
+    FileChannel channel = null;
     try {
-      tmp = File.createTempFile("files-java-client", null);
-      try (FileOutputStream out = new FileOutputStream(tmp)) {
-        IOUtils.copy(inputStream, out);
-      }
-      tmp.deleteOnExit();
-      resp = fileOperations.insert(systemId, path, tmp);
+      channel = FileChannel.open(file, StandardOpenOption.READ);
+      Call call = insertCall(systemId, path, new StreamingRequestBody(channel, 0, channel.size(), null, listener));
+      var future = Utils.executeAsyncForBody(apiClient.getHttpClient(), call, FileStringResponse.class,
+                                             FilesClient::withResult);
+      FileChannel opened = channel;
+      future.whenComplete((r, t) -> closeQuietly(opened));
+      return future;
     }
-    catch (ApiException e) { Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e); }
-    catch (Exception e) { Utils.throwTapisClientException(-1, null, e); }
-    finally {
-      if (tmp != null) tmp.delete();
+    catch (Exception e) {
+      closeQuietly(channel);
+      return Utils.failedFuture(-1, null, e);
     }
-    if (resp != null && resp.getResult() != null) return resp; else return null;
   }
 
   /**
@@ -368,6 +612,24 @@ public class FilesClient implements ITapisClient
     if (resp != null && resp.getResult() != null) return resp; else return null;
   }
 
+  /**
+   * Non-blocking delete.  The future fails with a TapisClientException.
+   *
+   * @param systemId system
+   * @param path path relative to system rootDir
+   * @return future FileStringResponse
+   */
+  public CompletableFuture<FileStringResponse> deleteAsync(String systemId, String path)
+  {
+    try {
+      Call call = fileOperations.deleteCall(systemId, path, null);
+      return Utils.executeAsyncForBody(apiClient.getHttpClient(), call, FileStringResponse.class,
+                                       FilesClient::withResult);
+    }
+    catch (ApiException e) { return Utils.failedFuture(e.getCode(), e.getResponseBody(), e); }
+    catch (Exception e) { return Utils.failedFuture(-1, null, e); }
+  }
+
   /**
    * Create a directory
    * Create a directory in the system at path the given path
@@ -403,6 +665,27 @@ public class FilesClient implements ITapisClient
     if (resp != null && resp.getResult() != null) return resp; else return null;
   }
 
+  /**
+   * Non-blocking mkdir.  The future fails with a TapisClientException.
+   *
+   * @param systemId system
+   * @param path path relative to system rootDir
+   * @param sharedCtx - Grantor for the case of a shared context.
+   * @return future FileStringResponse
+   */
+  public CompletableFuture<FileStringResponse> mkdirAsync(String systemId, String path, String sharedCtx)
+  {
+    var req = new MkdirRequest();
+    req.setPath(path);
+    try {
+      Call call = fileOperations.mkdirCall(systemId, sharedCtx, req, null);
+      return Utils.executeAsyncForBody(apiClient.getHttpClient(), call, FileStringResponse.class,
+                                       FilesClient::withResult);
+    }
+    catch (ApiException e) { return Utils.failedFuture(e.getCode(), e.getResponseBody(), e); }
+    catch (Exception e) { return Utils.failedFuture(-1, null, e); }
+  }
+
   // -----------------------------------------------------------------------
   // --------------------------- Permissions -------------------------------
   // -----------------------------------------------------------------------
@@ -578,6 +861,35 @@ public class FilesClient implements ITapisClient
     if (resp != null && resp.getResult() != null) return resp.getResult(); else return null;
   }
 
+  /**
+   * Non-blocking createTransferTask.  The future fails with a TapisClientException.
+   *
+   * @param req Request body specifying attributes
+   * @return future transfer task
+   */
+  public CompletableFuture<TransferTask> createTransferTaskAsync(ReqTransfer req)
+  {
+    try {
+      Call call = fileTransfers.createTransferTaskCall(req, null);
+      return Utils.executeAsync(apiClient.getHttpClient(), call, TransferTask.class);
+    }
+    catch (ApiException e) { return Utils.failedFuture(e.getCode(), e.getResponseBody(), e); }
+    catch (Exception e) { return Utils.failedFuture(-1, null, e); }
+  }
+
+  /**
+   * Create transfer tasks for a request with any number of elements.  The elements are
+   *   split into chunks that are submitted concurrently, see BulkTransferSubmitter.
+   *
+   * @param req Request body specifying attributes
+   * @return handle on the created tasks and any chunks that failed
+   * @throws TapisClientException - If interrupted
+   */
+  public BulkTransferSubmitter.Handle createTransferTasks(ReqTransfer req) throws TapisClientException
+  {
+    return new BulkTransferSubmitter(this).submit(req);
+  }
+
   /**
    * Get a transfer task
    *
@@ -594,6 +906,30 @@ public class FilesClient implements ITapisClient
     if (resp != null && resp.getResult() != null) return resp.getResult(); else return null;
   }
 
+  /**
+   * Non-blocking getTransferTask.  The future fails with a TapisClientException.
+   *
+   * @param transferTaskId Transfer task ID
+   * @return future transfer task
+   */
+  public CompletableFuture<TransferTask> getTransferTaskAsync(String transferTaskId)
+  {
+    try {
+      Call call = fileTransfers.getTransferTaskCall(transferTaskId, null);
+      return Utils.executeAsync(apiClient.getHttpClient(), call, TransferTask.class);
+    }
+    catch (ApiException e) { return Utils.failedFuture(e.getCode(), e.getResponseBody(), e); }
+    catch (Exception e) { return Utils.failedFuture(-1, null, e); }
+  }
+
+  /**
+   * Create a watcher that polls transfer tasks with adaptive intervals until they reach
+   *   a terminal status.  See TransferWatcher.  The watcher should be closed when done.
+   *
+   * @return transfer watcher using the default intervals
+   */
+  public TransferWatcher newTransferWatcher() { return new TransferWatcher(this); }
+
   /**
    * Get a list of recent transfer tasks
    *
@@ -633,7 +969,7 @@ public class FilesClient implements ITapisClient
   public TransferTask getTransferTaskHistory(String transferTaskId, String impersonationId) throws TapisClientException
   {
     TransferTaskResponse resp = null;
-    try { resp = fileTransfers.getTransferTaskDetails(transferTaskId, impersonationId); }
+    try { resp = fileTransfers.getTransferTaskDetails(transferTaskId, TapisRequestContext.resolveImpersonationId(impersonationId)); }
     catch (ApiException e) { Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e); }
     catch (Exception e) { Utils.throwTapisClientException(-1, null, e); }
     if (resp != null && resp.getResult() != null) return resp.getResult(); else return null;
@@ -722,6 +1058,47 @@ public class FilesClient implements ITapisClient
   // *********************** Private Methods ********************************
   // ************************************************************************
 
+  /*
+   * Upload the given body as the file part of a multipart insert request.  The generated
+   *   insertCall() only accepts a File, which it reads while building the request, so the
+   *   request is built here with the same url and the default headers of the ApiClient.
+   */
+  private FileStringResponse insert(String systemId, String path, RequestBody body) throws TapisClientException
+  {
+    FileStringResponse resp = null;
+    try {
+      Call call = insertCall(systemId, path, body);
+      resp = apiClient.<FileStringResponse>execute(call, FileStringResponse.class).getData();
+    }
+    catch (ApiException e) { Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e); }
+    catch (Exception e) { Utils.throwTapisClientException(-1, null, e); }
+    return withResult(resp);
+  }
+
+  // Build the multipart insert request for a body.
+  private Call insertCall(String systemId, String path, RequestBody body)
+  {
+    String filename = FilenameUtils.getName(StringUtils.stripEnd(path, "/"));
+    String opsPath = "/v3/files/ops/" + apiClient.escapeString(systemId) + "/" + apiClient.escapeString(path);
+    var multipart = new MultipartBody.Builder().setType(MultipartBody.FORM)
+                                               .addFormDataPart("file", filename, body).build();
+    var builder = new Request.Builder().url(apiClient.buildUrl(null, opsPath, List.of(), List.of()));
+    apiClient.processHeaderParams(Map.of("Accept", "application/json"), builder);
+    return apiClient.getHttpClient().newCall(builder.post(multipart).build());
+  }
+
+  // A response without a result is returned as null, as by the blocking calls.
+  private static FileStringResponse withResult(FileStringResponse resp)
+  {
+    return resp != null && resp.getResult() != null ? resp : null;
+  }
+
+  private static void closeQuietly(FileChannel channel)
+  {
+    if (channel == null) return;
+    try { channel.close(); } catch (IOException e) { /* nothing more to do */ }
+  }
+
   // ************************************************************************
   // *********************** Classes ****************************************
   // ************************************************************************
@@ -0,0 +1,672 @@
+package edu.utexas.tacc.tapis.files.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.lang3.StringUtils;
+
+import okhttp3.Call;
+import okhttp3.Response;
+
+import edu.utexas.tacc.tapis.client.shared.TapisExecutor;
+import edu.utexas.tacc.tapis.client.shared.TapisRequestContext;
+import edu.utexas.tacc.tapis.client.shared.Utils;
+import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+import edu.utexas.tacc.tapis.files.client.gen.ApiException;
+import edu.utexas.tacc.tapis.files.client.gen.api.ContentApi;
+import edu.utexas.tacc.tapis.files.client.gen.model.MoveCopyRequest;
+
+/**
+ * Rsync-like engine that mirrors a local directory tree to a directory on a Tapis
+ * system or the other way around.
+ *
+ * plan() compares the local tree with a listing of the remote tree made by FilesWalker
+ * and returns the operations needed to make the target match the source.  The plan can
+ * be printed as a dry run or passed to execute().  Files are compared by size and
+ * modification time:
+ *   UPLOAD   - the remote copy is missing, has a different size or is older than the
+ *              local file.  Tapis sets the modification time of uploaded files to the
+ *              upload time, so an unchanged file is never older than its source.
+ *   DOWNLOAD - the local copy is missing, has a different size or a different
+ *              modification time.  Downloaded files get the remote modification time.
+ * With checksum comparison files of equal size are instead compared by SHA-256 digest,
+ * which requires reading the remote file but avoids rewriting unchanged data.
+ *
+ * The plan is kept minimal:
+ *   - insert creates missing parent directories, so MKDIR is only planned for missing
+ *     directories that receive no file,
+ *   - a directory that only exists on the target is deleted as a whole,
+ *   - when uploading with deletion and checksum comparison, a new file with the same
+ *     name, size and digest as an extraneous remote file is moved with moveCopy instead
+ *     of being uploaded again.  Without checksums a file of the same name and size is
+ *     not proof of equal content, runs often write fixed size outputs of the same name,
+ *     so the file is uploaded.
+ * Planning is linear in the number of entries apart from sorting the plan.
+ * Entries whose type differs between source and target, a file on one side and a
+ * directory on the other, are reported as conflicts and left alone.
+ *
+ * execute() runs the operations in phases, MKDIR, transfers, MOVE and then DELETE,
+ * each phase with at most the configured number of concurrent operations on
+ * TapisExecutor.getDefault().  A failed operation does not stop the others; failures
+ * are collected in the Result.
+ */
+public final class FilesSync
+{
+  // ************************************************************************
+  // *********************** Constants **************************************
+  // ************************************************************************
+
+  // Default number of operations run at the same time.
+  public static final int DEFAULT_CONCURRENCY = 8;
+
+  // Digest used for checksum comparison.
+  private static final String DIGEST_ALGORITHM = "SHA-256";
+
+  // FileInfo type of directories.
+  private static final String DIR_TYPE = "dir";
+
+  // ************************************************************************
+  // *********************** Fields *****************************************
+  // ************************************************************************
+  private final FilesClient client;
+  private final ContentApi contentApi;
+  private final int concurrency;
+
+  // ************************************************************************
+  // *********************** Constructors ***********************************
+  // ************************************************************************
+
+  /**
+   * Create a sync engine with the default concurrency.
+   *
+   * @param client1 the client used for listings and operations
+   */
+  public FilesSync(FilesClient client1) { this(client1, DEFAULT_CONCURRENCY); }
+
+  /**
+   * Create a sync engine.
+   *
+   * @param client1 the client used for listings and operations
+   * @param concurrency1 the maximum number of operations, listings and checksums run at the same time
+   */
+  public FilesSync(FilesClient client1, int concurrency1)
+  {
+    if (concurrency1 < 1) throw new IllegalArgumentException("concurrency must be positive: " + concurrency1);
+    client = client1;
+    contentApi = new ContentApi(client1.getApiClient());
+    concurrency = concurrency1;
+  }
+
+  // ************************************************************************
+  // *********************** Public Methods *********************************
+  // ************************************************************************
+
+  /**
+   * Compute the operations that make the target tree match the source tree.  Nothing is
+   *   changed, so the plan doubles as a dry run.
+   *
+   * @param direction UPLOAD to make the remote tree match the local one, DOWNLOAD for the reverse
+   * @param localRoot the local directory
+   * @param systemId system
+   * @param remoteRoot the remote directory relative to system rootDir
+   * @param delete delete target entries that do not exist in the source
+   * @param checksum compare files of equal size by digest instead of modification time
+   * @return the plan
+   * @throws TapisClientException - If the source directory does not exist or a listing or checksum fails
+   */
+  public Plan plan(Direction direction, Path localRoot, String systemId, String remoteRoot, boolean delete,
+                   boolean checksum)
+          throws TapisClientException
+  {
+    boolean upload = direction == Direction.UPLOAD;
+    Map<String, Entry> local = listLocal(localRoot, upload);
+    Map<String, Entry> remote = listRemote(systemId, remoteRoot, !upload);
+    Map<String, Entry> source = upload ? local : remote;
+    Map<String, Entry> target = upload ? remote : local;
+    var plan = new Plan(direction, localRoot, systemId, remoteRoot);
+    OpType transfer = transferType(direction);
+
+    // Source entries missing or different on the target.  New files are held back until
+    // moves have been matched.
+    var missingDirs = new ArrayList<String>();
+    var newFiles = new ArrayList<Entry>();
+    var sameSize = new ArrayList<String>();
+    for (Entry src : source.values())
+    {
+      Entry dst = target.get(src.path);
+      if (dst != null && dst.dir != src.dir) { plan.conflicts.add(src.path); continue; }
+      if (src.dir) { if (dst == null) missingDirs.add(src.path); continue; }
+      if (dst == null) newFiles.add(src);
+      else if (dst.size != src.size) plan.add(new Operation(transfer, src.path, null, src.size, "size", src.modified));
+      else if (checksum) sameSize.add(src.path);
+      else if (upload ? dst.modified.isBefore(src.modified) : !dst.modified.equals(src.modified))
+        plan.add(new Operation(transfer, src.path, null, src.size, "mtime", src.modified));
+    }
+    if (!sameSize.isEmpty()) compareChecksums(plan, localRoot, systemId, remoteRoot, sameSize, source);
+
+    // Target entries missing from the source, outermost only.
+    var extraneous = new ArrayList<Entry>();
+    if (delete)
+      for (Entry dst : target.values())
+        if (!source.containsKey(dst.path) && isOutermost(dst, source, target))
+          extraneous.add(dst);
+    Map<String, Entry> moves = upload && delete && checksum
+            ? matchMoves(newFiles, extraneous, localRoot, systemId, remoteRoot) : Collections.emptyMap();
+    var moved = new HashSet<Entry>(moves.values());
+    for (Entry src : newFiles)
+    {
+      Entry dst = moves.get(src.path);
+      if (dst == null) plan.add(new Operation(transfer, src.path, null, src.size, "new", src.modified));
+      else plan.add(new Operation(OpType.MOVE, src.path, dst.path, src.size, "moved", src.modified));
+    }
+    for (Entry dst : extraneous)
+      if (!moved.contains(dst)) plan.add(new Operation(OpType.DELETE, dst.path, null, dst.size, "extraneous", dst.modified));
+
+    // Directories that no transfer or deeper directory will create.  Moves run after
+    // transfers and are not assumed to create parents.  Marking the ancestors of every
+    // transfer and missing directory stops at the first ancestor already marked, so
+    // each directory is marked once.
+    var created = new HashSet<String>();
+    for (Operation op : plan.operations) if (op.isTransfer()) markAncestors(op.path, created);
+    for (String dir : missingDirs) markAncestors(dir, created);
+    for (String dir : missingDirs)
+      if (!created.contains(dir)) plan.add(new Operation(OpType.MKDIR, dir, null, 0, "new", null));
+    plan.sort();
+    return plan;
+  }
+
+  /**
+   * Run the operations of a plan.
+   *
+   * @param plan the plan made by plan()
+   * @param listener receives the number of bytes transferred so far out of plan.getBytesToTransfer(), can be null
+   * @return the outcome of the operations
+   * @throws TapisClientException - If interrupted
+   */
+  public Result execute(Plan plan, TransferProgressListener listener) throws TapisClientException
+  {
+    var result = new Result();
+    var transferred = new AtomicLong();
+    long total = plan.getBytesToTransfer();
+    long start = System.nanoTime();
+    for (List<Operation> phase : plan.phases())
+    {
+      TapisExecutor.getDefault().invokeAll(phase, concurrency, op -> {
+        try
+        {
+          run(plan, op);
+          result.succeeded(op);
+          if (op.isTransfer())
+          {
+            long n = transferred.addAndGet(op.size);
+            if (listener != null) listener.progress(n, total);
+          }
+        }
+        catch (TapisClientException | IOException | RuntimeException e) { result.failed(op, e); }
+        return op;
+      });
+    }
+    result.bytes = transferred.get();
+    result.elapsedNanos = System.nanoTime() - start;
+    return result;
+  }
+
+  // ************************************************************************
+  // *********************** Public Classes *********************************
+  // ************************************************************************
+
+  /** Direction of a sync, from source to target. */
+  public enum Direction {UPLOAD, DOWNLOAD}
+
+  /** Kind of operation, in the order of execution phases. */
+  public enum OpType {MKDIR, UPLOAD, DOWNLOAD, MOVE, DELETE}
+
+  /**
+   * One planned operation.  Paths are relative to the roots of the plan and use '/'.
+   */
+  public static final class Operation
+  {
+    private final OpType type;
+    private final String path;
+    private final String fromPath;
+    private final long size;
+    private final String reason;
+    private final Instant modified;
+
+    private Operation(OpType type1, String path1, String fromPath1, long size1, String reason1, Instant modified1)
+    {
+      type = type1; path = path1; fromPath = fromPath1; size = size1; reason = reason1; modified = modified1;
+    }
+
+    public OpType getType() { return type; }
+    public String getPath() { return path; }
+    public String getFromPath() { return fromPath; }
+    public long getSize() { return size; }
+    public String getReason() { return reason; }
+    public boolean isTransfer() { return type == OpType.UPLOAD || type == OpType.DOWNLOAD; }
+
+    @Override
+    public String toString()
+    {
+      String target = type == OpType.MOVE ? fromPath + " -> " + path : path;
+      return String.format("%-8s %s%s (%s)", type, target, isTransfer() ? " " + size + " bytes" : "", reason);
+    }
+  }
+
+  /**
+   * Operations needed to make a target tree match a source tree.  toString() lists one
+   *   operation per line, like a dry run.
+   */
+  public static final class Plan
+  {
+    private final Direction direction;
+    private final Path localRoot;
+    private final String systemId;
+    private final String remoteRoot;
+    private final List<Operation> operations = new ArrayList<>();
+    private final List<String> conflicts = new ArrayList<>();
+
+    private Plan(Direction direction1, Path localRoot1, String systemId1, String remoteRoot1)
+    {
+      direction = direction1; localRoot = localRoot1; systemId = systemId1; remoteRoot = remoteRoot1;
+    }
+
+    public Direction getDirection() { return direction; }
+    public List<Operation> getOperations() { return Collections.unmodifiableList(operations); }
+    public List<String> getConflicts() { return Collections.unmodifiableList(conflicts); }
+    public boolean isEmpty() { return operations.isEmpty(); }
+
+    /** Return the total size of the files to upload or download. */
+    public long getBytesToTransfer()
+    {
+      return operations.stream().filter(Operation::isTransfer).mapToLong(Operation::getSize).sum();
+    }
+
+    @Override
+    public String toString()
+    {
+      var sb = new StringBuilder();
+      sb.append(direction).append(' ').append(localRoot).append(direction == Direction.UPLOAD ? " -> " : " <- ")
+        .append(systemId).append(':').append(remoteRoot).append('\n');
+      for (Operation op : operations) sb.append(op).append('\n');
+      for (String path : conflicts) sb.append(String.format("%-8s %s (type differs)%n", "CONFLICT", path));
+      sb.append(operations.size()).append(" operations, ").append(getBytesToTransfer()).append(" bytes to transfer");
+      return sb.toString();
+    }
+
+    private void add(Operation op) { operations.add(op); }
+
+    // Order by phase and then path, so the plan reads like a listing.
+    private void sort() { operations.sort((a, b) -> a.type != b.type ? a.type.compareTo(b.type) : a.path.compareTo(b.path)); }
+
+    // Operations grouped by phase.  Uploads and downloads form one phase.
+    private List<List<Operation>> phases()
+    {
+      var phases = new LinkedHashMap<Integer, List<Operation>>();
+      for (Operation op : operations)
+        phases.computeIfAbsent(op.isTransfer() ? OpType.UPLOAD.ordinal() : op.type.ordinal(), k -> new ArrayList<>()).add(op);
+      return new ArrayList<>(phases.values());
+    }
+  }
+
+  /**
+   * Outcome of executing a plan.
+   */
+  public static final class Result
+  {
+    private final List<Operation> succeeded = Collections.synchronizedList(new ArrayList<>());
+    private final Map<Operation, Exception> failures = Collections.synchronizedMap(new LinkedHashMap<>());
+    private long bytes;
+    private long elapsedNanos;
+
+    private Result() {}
+
+    public List<Operation> getSucceeded() { return succeeded; }
+    public Map<Operation, Exception> getFailures() { return failures; }
+    public boolean isSuccess() { return failures.isEmpty(); }
+    public long getBytesTransferred() { return bytes; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    /** Return the transfer rate in bytes per second over the whole execution. */
+    public double getBytesPerSecond() { return elapsedNanos == 0 ? 0 : bytes / (elapsedNanos / 1e9); }
+
+    @Override
+    public String toString()
+    {
+      return String.format("%d succeeded, %d failed, %d bytes in %.1f ms (%.1f MB/s)", succeeded.size(), failures.size(),
+                           bytes, elapsedNanos / 1e6, getBytesPerSecond() / (1024 * 1024));
+    }
+
+    private void succeeded(Operation op) { succeeded.add(op); }
+    private void failed(Operation op, Exception e) { failures.put(op, e); }
+  }
+
+  // ************************************************************************
+  // *********************** Private Methods ********************************
+  // ************************************************************************
+
+  private static OpType transferType(Direction direction)
+  {
+    return direction == Direction.UPLOAD ? OpType.UPLOAD : OpType.DOWNLOAD;
+  }
+
+  /*
+   * Run one operation against the local tree or the remote system.
+   */
+  private void run(Plan plan, Operation op) throws TapisClientException, IOException
+  {
+    Path local = plan.localRoot.resolve(op.path);
+    String remote = remotePath(plan.remoteRoot, op.path);
+    boolean upload = plan.direction == Direction.UPLOAD;
+    switch (op.type)
+    {
+      case MKDIR:
+        if (upload) client.mkdir(plan.systemId, remote); else Files.createDirectories(local);
+        break;
+      case UPLOAD:
+        client.insert(plan.systemId, remote, local);
+        break;
+      case DOWNLOAD:
+        Files.createDirectories(local.getParent());
+        new RangedDownloader(client).download(plan.systemId, remote, op.size, local, null);
+        Files.setLastModifiedTime(local, FileTime.from(op.modified));
+        break;
+      case MOVE:
+        client.moveCopy(plan.systemId, remotePath(plan.remoteRoot, op.fromPath), remote, MoveCopyRequest.OperationEnum.MOVE);
+        break;
+      case DELETE:
+        if (upload) client.delete(plan.systemId, remote); else deleteLocal(local);
+        break;
+    }
+  }
+
+  /*
+   * Pair new uploads with extraneous remote files of the same name, size and digest.
+   *   Extraneous files are indexed by name and size, and every candidate on either side
+   *   is digested once, concurrently, before matching.  Each extraneous file is matched
+   *   at most once.
+   *
+   * Returns the matched extraneous entry by the path of the new file.
+   */
+  private Map<String, Entry> matchMoves(List<Entry> newFiles, List<Entry> extraneous, Path localRoot,
+                                        String systemId, String remoteRoot)
+          throws TapisClientException
+  {
+    var bySizeAndName = new HashMap<String, List<Entry>>();
+    for (Entry dst : extraneous)
+      if (!dst.dir) bySizeAndName.computeIfAbsent(moveKey(dst), k -> new ArrayList<>()).add(dst);
+    if (bySizeAndName.isEmpty()) return Collections.emptyMap();
+
+    var srcs = new ArrayList<Entry>();
+    var dsts = new LinkedHashSet<Entry>();
+    for (Entry src : newFiles)
+    {
+      List<Entry> candidates = bySizeAndName.get(moveKey(src));
+      if (candidates == null) continue;
+      srcs.add(src);
+      dsts.addAll(candidates);
+    }
+    if (srcs.isEmpty()) return Collections.emptyMap();
+
+    var tasks = TapisExecutor.getDefault();
+    List<byte[]> l = tasks.invokeAll(srcs, concurrency, src -> localDigest(localRoot.resolve(src.path)));
+    List<byte[]> r = tasks.invokeAll(new ArrayList<>(dsts), concurrency,
+                                     dst -> remoteDigest(systemId, remotePath(remoteRoot, dst.path)));
+    var remoteDigests = new HashMap<Entry, byte[]>();
+    int i = 0;
+    for (Entry dst : dsts) remoteDigests.put(dst, r.get(i++));
+
+    var moves = new HashMap<String, Entry>();
+    for (i = 0; i < srcs.size(); i++)
+    {
+      Entry src = srcs.get(i);
+      var it = bySizeAndName.get(moveKey(src)).iterator();
+      while (it.hasNext())
+      {
+        Entry dst = it.next();
+        if (!Arrays.equals(l.get(i), remoteDigests.get(dst))) continue;
+        moves.put(src.path, dst);
+        it.remove();
+        break;
+      }
+    }
+    return moves;
+  }
+
+  // Files that may be moved into each other have the same name and size.
+  private static String moveKey(Entry e) { return e.size + "/" + nameOf(e.path); }
+
+  // Add the ancestor directories of a path, stopping at the first one already present.
+  private static void markAncestors(String path, Set<String> dirs)
+  {
+    for (String dir = parentOf(path); !dir.isEmpty() && dirs.add(dir); dir = parentOf(dir)) {}
+  }
+
+  /*
+   * Compare files of equal size by digest and plan transfers for those that differ.
+   */
+  private void compareChecksums(Plan plan, Path localRoot, String systemId, String remoteRoot, List<String> paths,
+                                Map<String, Entry> source)
+          throws TapisClientException
+  {
+    List<String> differ = TapisExecutor.getDefault().invokeAll(paths, concurrency, path -> {
+      byte[] l = localDigest(localRoot.resolve(path));
+      byte[] r = remoteDigest(systemId, remotePath(remoteRoot, path));
+      return Arrays.equals(l, r) ? null : path;
+    });
+    for (String path : differ)
+      if (path != null) plan.add(new Operation(transferType(plan.direction), path, null, source.get(path).size, "checksum",
+                                  source.get(path).modified));
+  }
+
+  private static byte[] localDigest(Path file) throws TapisClientException
+  {
+    try (InputStream in = Files.newInputStream(file)) { return digest(in); }
+    catch (IOException e) { throw new TapisClientException("Unable to read " + file, e); }
+  }
+
+  /*
+   * Digest a remote file.  The response status is checked so that an error body is never
+   *   digested as file content.
+   */
+  private byte[] remoteDigest(String systemId, String path) throws TapisClientException
+  {
+    try
+    {
+      Call call = contentApi.getContentsCall(systemId, path, null, false, null,
+                                             TapisRequestContext.resolveImpersonationId(null), null, null);
+      try (Response response = call.execute())
+      {
+        var body = response.body();
+        if (!response.isSuccessful())
+          throw Utils.newTapisClientException(response.code(), body == null ? null : body.string(), null);
+        return digest(body.byteStream());
+      }
+    }
+    catch (ApiException e) { throw Utils.newTapisClientException(e.getCode(), e.getResponseBody(), e); }
+    catch (IOException e) { throw new TapisClientException("Unable to read " + systemId + ":" + path, e); }
+  }
+
+  private static byte[] digest(InputStream in) throws IOException
+  {
+    try
+    {
+      var digestIn = new DigestInputStream(in, MessageDigest.getInstance(DIGEST_ALGORITHM));
+      digestIn.transferTo(OutputStream.nullOutputStream());
+      return digestIn.getMessageDigest().digest();
+    }
+    catch (NoSuchAlgorithmException e) { throw new IllegalStateException(e); }
+  }
+
+  /*
+   * List the local tree by relative path, without the root itself.  A missing target
+   *   directory is an empty tree, but a missing source would make every target entry
+   *   extraneous, so it is an error.
+   */
+  private static Map<String, Entry> listLocal(Path root, boolean isSource) throws TapisClientException
+  {
+    var entries = new TreeMap<String, Entry>();
+    if (!Files.isDirectory(root))
+    {
+      if (isSource) throw new TapisClientException("Source directory " + root + " does not exist or is not a directory");
+      return entries;
+    }
+    try
+    {
+      Files.walkFileTree(root, new SimpleFileVisitor<>()
+      {
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+        {
+          if (!dir.equals(root)) add(dir, attrs);
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+        {
+          add(file, attrs);
+          return FileVisitResult.CONTINUE;
+        }
+
+        private void add(Path p, BasicFileAttributes attrs)
+        {
+          String rel = root.relativize(p).toString().replace(p.getFileSystem().getSeparator(), "/");
+          entries.put(rel, new Entry(rel, attrs.isDirectory(), attrs.size(), attrs.lastModifiedTime().toInstant()));
+        }
+      });
+    }
+    catch (IOException e) { throw new TapisClientException("Unable to list " + root, e); }
+    return entries;
+  }
+
+  /*
+   * List the remote tree by relative path with FilesWalker.  As for listLocal() only a
+   *   missing target directory is an empty tree.
+   */
+  private Map<String, Entry> listRemote(String systemId, String remoteRoot, boolean isSource)
+          throws TapisClientException
+  {
+    var entries = new TreeMap<String, Entry>();
+    String rootPrefix = StringUtils.strip(remoteRoot, "/");
+    rootPrefix = rootPrefix.isEmpty() ? "" : rootPrefix + "/";
+    var walker = new FilesWalker(client, concurrency, FilesWalker.DEFAULT_PAGE_SIZE);
+    var outside = new AtomicReference<String>();
+    try
+    {
+      final String prefix = rootPrefix;
+      walker.walk(systemId, remoteRoot, FilesWalker.UNLIMITED_DEPTH, null, null, (info, depth) -> {
+        String path = StringUtils.stripStart(info.getPath(), "/");
+        // Guessing where an entry belongs could delete or overwrite the wrong file.
+        if (!path.startsWith(prefix)) { outside.set(info.getPath()); return false; }
+        String rel = path.substring(prefix.length());
+        boolean dir = DIR_TYPE.equalsIgnoreCase(info.getType());
+        long size = info.getSize() == null ? 0 : info.getSize();
+        Instant modified = info.getLastModified() == null ? Instant.EPOCH : info.getLastModified();
+        entries.put(StringUtils.stripEnd(rel, "/"), new Entry(StringUtils.stripEnd(rel, "/"), dir, size, modified));
+        return true;
+      });
+    }
+    catch (TapisClientException e)
+    {
+      if (isSource || e.getCode() != 404) throw e;
+    }
+    if (outside.get() != null)
+      throw new TapisClientException("Listing of " + systemId + ":" + remoteRoot + " returned " + outside.get()
+                                     + ", which is not below the listed directory");
+    return entries;
+  }
+
+  private static void deleteLocal(Path path) throws IOException
+  {
+    if (!Files.isDirectory(path)) { Files.deleteIfExists(path); return; }
+    Files.walkFileTree(path, new SimpleFileVisitor<>()
+    {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+      {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException
+      {
+        if (e != null) throw e;
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  /*
+   * An extraneous entry is outermost if its parent is a directory on both sides, so
+   *   deleting it covers everything below it and nothing below a conflict is touched.
+   */
+  private static boolean isOutermost(Entry dst, Map<String, Entry> source, Map<String, Entry> target)
+  {
+    String parent = parentOf(dst.path);
+    if (parent.isEmpty()) return true;
+    Entry src = source.get(parent);
+    Entry dstParent = target.get(parent);
+    return src != null && src.dir && dstParent != null && dstParent.dir;
+  }
+
+  private static String parentOf(String path)
+  {
+    int i = path.lastIndexOf('/');
+    return i < 0 ? "" : path.substring(0, i);
+  }
+
+  private static String nameOf(String path) { return path.substring(path.lastIndexOf('/') + 1); }
+
+  private static String remotePath(String remoteRoot, String relativePath)
+  {
+    String root = StringUtils.stripEnd(remoteRoot, "/");
+    return root.isEmpty() ? relativePath : root + "/" + relativePath;
+  }
+
+  // ************************************************************************
+  // *********************** Private Classes ********************************
+  // ************************************************************************
+
+  /*
+   * A file or directory on either side.
+   */
+  private static final class Entry
+  {
+    private final String path;
+    private final boolean dir;
+    private final long size;
+    private final Instant modified;
+
+    private Entry(String path1, boolean dir1, long size1, Instant modified1)
+    {
+      path = path1; dir = dir1; size = size1; modified = modified1;
+    }
+  }
+}
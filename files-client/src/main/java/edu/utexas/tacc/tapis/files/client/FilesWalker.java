@@ -0,0 +1,353 @@
+package edu.utexas.tacc.tapis.files.client;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.StringUtils;
+
+import edu.utexas.tacc.tapis.client.shared.TapisExecutor;
+import edu.utexas.tacc.tapis.client.shared.TapisRequestContext;
+import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+import edu.utexas.tacc.tapis.client.shared.tracing.TraceContext;
+import edu.utexas.tacc.tapis.files.client.gen.model.FileInfo;
+
+/**
+ * Client-side recursive directory walker.  Instead of asking the service to recurse,
+ * which can time out or truncate on deep trees, the walker lists one directory per
+ * request and runs up to a fixed number of asynchronous listings concurrently, so no
+ * thread waits on a listing.  Directories are listed in the order they are found, so
+ * the tree is traversed breadth first.  Each directory is listed page by page so that
+ * very large directories do not need one huge response.
+ *
+ * Every entry found is passed to a Visitor.  The walk can be limited by depth, entries
+ * can be filtered with an include glob and subtrees can be skipped with a prune glob.
+ * A glob without a '/' is matched against the entry name, for example "*.log" or
+ * ".git", otherwise it is matched against the path relative to the walk's root, for
+ * example "logs/*.tmp".
+ *
+ * A walk ends when all directories have been listed, when a listing fails, when the
+ * visitor returns false or when the walk's future is cancelled.  Listings that are in
+ * flight when a walk ends are cancelled.
+ *
+ * The calling thread's TapisRequestContext and TraceContext, if any, are applied to
+ * every listing.  Instances are immutable and may run several walks at once.
+ */
+public final class FilesWalker
+{
+  // ************************************************************************
+  // *********************** Constants **************************************
+  // ************************************************************************
+
+  // Default number of directories listed at the same time.
+  public static final int DEFAULT_CONCURRENCY = 16;
+
+  // Default number of entries requested per listing page.
+  public static final int DEFAULT_PAGE_SIZE = 1000;
+
+  // Depth limit meaning no limit.
+  public static final int UNLIMITED_DEPTH = Integer.MAX_VALUE;
+
+  // FileInfo type of directories.
+  private static final String DIR_TYPE = "dir";
+
+  // ************************************************************************
+  // *********************** Fields *****************************************
+  // ************************************************************************
+  private final FilesClient client;
+  private final int concurrency;
+  private final int pageSize;
+
+  // ************************************************************************
+  // *********************** Constructors ***********************************
+  // ************************************************************************
+
+  /**
+   * Create a walker with the default concurrency and page size.
+   *
+   * @param client1 the client used to list directories
+   */
+  public FilesWalker(FilesClient client1) { this(client1, DEFAULT_CONCURRENCY, DEFAULT_PAGE_SIZE); }
+
+  /**
+   * Create a walker.
+   *
+   * @param client1 the client used to list directories
+   * @param concurrency1 the maximum number of directories listed at the same time
+   * @param pageSize1 the number of entries requested per listing page
+   */
+  public FilesWalker(FilesClient client1, int concurrency1, int pageSize1)
+  {
+    if (concurrency1 < 1) throw new IllegalArgumentException("concurrency must be positive: " + concurrency1);
+    if (pageSize1 < 1) throw new IllegalArgumentException("pageSize must be positive: " + pageSize1);
+    client = client1;
+    concurrency = concurrency1;
+    pageSize = pageSize1;
+  }
+
+  // ************************************************************************
+  // *********************** Public Methods *********************************
+  // ************************************************************************
+
+  /**
+   * Walk a directory tree and wait for the walk to end.
+   *
+   * @param systemId system
+   * @param path path of the root directory relative to system rootDir
+   * @param maxDepth the depth of the deepest entries visited, 1 for the root's entries only
+   * @param includeGlob only entries matching this glob are visited, null for all entries
+   * @param pruneGlob directories matching this glob are neither visited nor descended, can be null
+   * @param visitor receives the entries found
+   * @return the number of entries visited
+   * @throws TapisClientException - If a listing fails or the walk is interrupted
+   */
+  public long walk(String systemId, String path, int maxDepth, String includeGlob, String pruneGlob, Visitor visitor)
+          throws TapisClientException
+  {
+    var future = walkAsync(systemId, path, maxDepth, includeGlob, pruneGlob, visitor);
+    try { return future.get(); }
+    catch (InterruptedException e)
+    {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new TapisClientException("Interrupted while walking " + systemId + ":" + path, e);
+    }
+    catch (ExecutionException e)
+    {
+      Throwable cause = e.getCause();
+      if (cause instanceof TapisClientException) throw (TapisClientException) cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      throw new TapisClientException(cause.getMessage(), cause);
+    }
+  }
+
+  /**
+   * Start walking a directory tree.  Cancelling the returned future ends the walk.
+   *
+   * @param systemId system
+   * @param path path of the root directory relative to system rootDir
+   * @param maxDepth the depth of the deepest entries visited, 1 for the root's entries only
+   * @param includeGlob only entries matching this glob are visited, null for all entries
+   * @param pruneGlob directories matching this glob are neither visited nor descended, can be null
+   * @param visitor receives the entries found
+   * @return future completed with the number of entries visited, or exceptionally with
+   *         the TapisClientException of a failed listing or the exception thrown by the visitor
+   */
+  public CompletableFuture<Long> walkAsync(String systemId, String path, int maxDepth, String includeGlob,
+                                           String pruneGlob, Visitor visitor)
+  {
+    if (maxDepth < 1) throw new IllegalArgumentException("maxDepth must be positive: " + maxDepth);
+    var walk = new Walk(systemId, path, maxDepth, matcher(includeGlob), matcher(pruneGlob),
+                        isNameGlob(includeGlob), isNameGlob(pruneGlob), visitor);
+    walk.start();
+    return walk.future;
+  }
+
+  // ************************************************************************
+  // *********************** Public Interfaces ******************************
+  // ************************************************************************
+
+  /**
+   * Receives the entries found by a walk.  Calls are made by one thread at a time, but
+   *   not always the same thread, so implementations need not be thread safe.
+   */
+  @FunctionalInterface
+  public interface Visitor
+  {
+    /**
+     * Visit an entry.
+     *
+     * @param info the entry as returned by listFiles
+     * @param depth the depth of the entry, 1 for entries of the root directory
+     * @return true to continue the walk, false to end it
+     */
+    boolean visit(FileInfo info, int depth);
+  }
+
+  // ************************************************************************
+  // *********************** Private Methods ********************************
+  // ************************************************************************
+
+  private static PathMatcher matcher(String glob)
+  {
+    return StringUtils.isBlank(glob) ? null : FileSystems.getDefault().getPathMatcher("glob:" + glob);
+  }
+
+  private static boolean isNameGlob(String glob) { return glob != null && glob.indexOf('/') < 0; }
+
+  // ************************************************************************
+  // *********************** Private Classes ********************************
+  // ************************************************************************
+
+  /*
+   * A directory waiting to be listed.
+   */
+  private static final class Dir
+  {
+    private final String path;
+    private final String relativePath;
+    private final int depth;
+
+    private Dir(String path1, String relativePath1, int depth1)
+    {
+      path = path1; relativePath = relativePath1; depth = depth1;
+    }
+  }
+
+  /*
+   * State of one walk.  The queue, the count of running listings, the pending listing
+   *   calls and the visitor are guarded by this object's monitor.
+   */
+  private final class Walk
+  {
+    private final String systemId;
+    private final int maxDepth;
+    private final PathMatcher include;
+    private final PathMatcher prune;
+    private final boolean includeByName;
+    private final boolean pruneByName;
+    private final Visitor visitor;
+    private final TapisRequestContext ctx = TapisRequestContext.current();
+    private final TraceContext trace = TraceContext.current();
+    private final CompletableFuture<Long> future = new CompletableFuture<>();
+    private final AtomicLong visited = new AtomicLong();
+    private final ArrayDeque<Dir> queue = new ArrayDeque<>();
+    private final HashSet<CompletableFuture<List<FileInfo>>> pages = new HashSet<>();
+    private int running;
+
+    private Walk(String systemId1, String path, int maxDepth1, PathMatcher include1, PathMatcher prune1,
+                 boolean includeByName1, boolean pruneByName1, Visitor visitor1)
+    {
+      systemId = systemId1; maxDepth = maxDepth1; include = include1; prune = prune1;
+      includeByName = includeByName1; pruneByName = pruneByName1; visitor = visitor1;
+      queue.add(new Dir(path, "", 0));
+      future.whenComplete((n, e) -> cancelPages());
+    }
+
+    private void start()
+    {
+      synchronized (this) { schedule(); }
+    }
+
+    /*
+     * Cancel the listing calls still in flight once the walk has ended.
+     */
+    private void cancelPages()
+    {
+      List<CompletableFuture<List<FileInfo>>> pending;
+      synchronized (this) { pending = new ArrayList<>(pages); }
+      for (var page : pending) page.cancel(true);
+    }
+
+    /*
+     * Start listings while there is capacity, and complete the walk once nothing is
+     *   queued or running.  Called with the monitor held.
+     */
+    private void schedule()
+    {
+      if (future.isDone()) return;
+      while (running < concurrency && !queue.isEmpty())
+      {
+        Dir dir = queue.poll();
+        running++;
+        TapisExecutor.getDefault().getExecutorService().execute(() -> list(dir, 0));
+      }
+      if (running == 0 && queue.isEmpty()) future.complete(visited.get());
+    }
+
+    /*
+     * Request one page of a directory.  Called without the monitor held.
+     */
+    private void list(Dir dir, long offset)
+    {
+      CompletableFuture<List<FileInfo>> call;
+      try (var scope = ctx == null ? null : ctx.bind();
+           var traceScope = trace == null ? null : trace.bind())
+      {
+        call = client.listFilesAsync(systemId, dir.path, pageSize, offset, false);
+      }
+      catch (RuntimeException e) { call = CompletableFuture.failedFuture(e); }
+      var page = call;
+      synchronized (this)
+      {
+        if (future.isDone()) page.cancel(true);
+        else pages.add(page);
+      }
+      page.whenComplete((entries, e) -> onPage(dir, offset, page, entries, e));
+    }
+
+    /*
+     * Visit the entries of a page and queue its subdirectories, then request the next
+     *   page of the directory or, once it is complete, start other listings.
+     */
+    private void onPage(Dir dir, long offset, CompletableFuture<List<FileInfo>> page, List<FileInfo> entries,
+                        Throwable error)
+    {
+      boolean more = false;
+      synchronized (this)
+      {
+        pages.remove(page);
+        try
+        {
+          if (error != null)
+            future.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+          else if (!future.isDone())
+          {
+            if (entries == null) entries = List.of();
+            for (FileInfo info : entries) if (!accept(dir, info)) break;
+            more = entries.size() >= pageSize && !future.isDone();
+          }
+        }
+        catch (RuntimeException e) { future.completeExceptionally(e); }
+        finally
+        {
+          if (!more) { running--; schedule(); }
+        }
+      }
+      if (more) list(dir, offset + pageSize);
+    }
+
+    /*
+     * Handle one entry.  Return false once the walk has ended.  Called with the monitor held.
+     */
+    private boolean accept(Dir parent, FileInfo info)
+    {
+      if (future.isDone()) return false;
+      int depth = parent.depth + 1;
+      String name = info.getName();
+      String relativePath = parent.relativePath.isEmpty() ? name : parent.relativePath + "/" + name;
+      boolean isDir = DIR_TYPE.equalsIgnoreCase(info.getType());
+      if (isDir && matches(prune, pruneByName, name, relativePath)) return true;
+
+      if (include == null || matches(include, includeByName, name, relativePath))
+      {
+        visited.incrementAndGet();
+        if (!visitor.visit(info, depth))
+        {
+          future.complete(visited.get());
+          return false;
+        }
+      }
+      if (isDir && depth < maxDepth)
+      {
+        String childPath = StringUtils.isBlank(info.getPath()) ? StringUtils.stripEnd(parent.path, "/") + "/" + name
+                                                               : info.getPath();
+        queue.add(new Dir(childPath, relativePath, depth));
+      }
+      return true;
+    }
+
+    private boolean matches(PathMatcher matcher, boolean byName, String name, String relativePath)
+    {
+      return matcher != null && matcher.matches(Path.of(byName ? name : relativePath));
+    }
+  }
+}
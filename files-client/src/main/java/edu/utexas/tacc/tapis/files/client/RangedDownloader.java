@@ -0,0 +1,450 @@
+package edu.utexas.tacc.tapis.files.client;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import okhttp3.Call;
+import okhttp3.Response;
+import okio.BufferedSource;
+
+import edu.utexas.tacc.tapis.client.shared.TapisExecutor;
+import edu.utexas.tacc.tapis.client.shared.TapisRequestContext;
+import edu.utexas.tacc.tapis.client.shared.Utils;
+import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+import edu.utexas.tacc.tapis.client.shared.resilience.RetryPolicy;
+import edu.utexas.tacc.tapis.files.client.gen.ApiException;
+import edu.utexas.tacc.tapis.files.client.gen.api.ContentApi;
+import edu.utexas.tacc.tapis.files.client.gen.model.FileInfo;
+
+/**
+ * Download engine that splits a file into byte ranges and fetches them concurrently
+ * through the content endpoint's range parameter.
+ *
+ * Data is written to a file next to the target, which replaces the target only once
+ * every range has arrived, so a failed download never leaves a truncated or partly
+ * filled target behind and an existing file survives it.  The file is preallocated to
+ * the size of the remote file and each range is written directly at its offset with positional FileChannel writes, so ranges can
+ * complete in any order and no data is buffered beyond okio's pooled segments.  Ranges
+ * run on TapisExecutor.getDefault() and share the connection pool of the client.
+ *
+ * Each range is retried on its own: after an i/o failure or a retryable status the
+ * range is requested again from the first byte not yet received, after the backoff of
+ * the RetryPolicy.  Attempts are counted from the last attempt that made progress, so
+ * a long range on a flaky link is not abandoned while it keeps moving.  When a range
+ * runs out of attempts the download fails and the remaining ranges are cancelled.
+ *
+ * Instances are immutable and thread safe.
+ */
+public final class RangedDownloader
+{
+  // ************************************************************************
+  // *********************** Constants **************************************
+  // ************************************************************************
+
+  // Default size of each range, large enough to amortize the request overhead.
+  public static final long DEFAULT_RANGE_SIZE = 32L * 1024 * 1024;
+
+  // Default number of ranges fetched at the same time.
+  public static final int DEFAULT_CONCURRENCY = 8;
+
+  // Suffixes of the partial file and checkpoint of a resumable download.
+  public static final String PART_SUFFIX = ".part";
+  public static final String CHECKPOINT_SUFFIX = ".part.checkpoint";
+
+  // Number of bytes written between progress notifications.
+  private static final long BLOCK_SIZE = StreamingRequestBody.BLOCK_SIZE;
+
+  // ************************************************************************
+  // *********************** Fields *****************************************
+  // ************************************************************************
+  private final FilesClient client;
+  private final ContentApi contentApi;
+  private final long rangeSize;
+  private final int concurrency;
+  private final RetryPolicy retryPolicy;
+
+  // ************************************************************************
+  // *********************** Constructors ***********************************
+  // ************************************************************************
+
+  /**
+   * Create a downloader with the default range size, concurrency and retry policy.
+   *
+   * @param client1 the client whose base path, headers and connection pool are used
+   */
+  public RangedDownloader(FilesClient client1)
+  {
+    this(client1, DEFAULT_RANGE_SIZE, DEFAULT_CONCURRENCY, RetryPolicy.DEFAULT);
+  }
+
+  /**
+   * Create a downloader.
+   *
+   * @param client1 the client whose base path, headers and connection pool are used
+   * @param rangeSize1 the number of bytes requested per range
+   * @param concurrency1 the maximum number of ranges fetched at the same time
+   * @param retryPolicy1 the retry policy applied to each range
+   */
+  public RangedDownloader(FilesClient client1, long rangeSize1, int concurrency1, RetryPolicy retryPolicy1)
+  {
+    if (rangeSize1 < 1) throw new IllegalArgumentException("rangeSize must be positive: " + rangeSize1);
+    if (concurrency1 < 1) throw new IllegalArgumentException("concurrency must be positive: " + concurrency1);
+    client = client1;
+    contentApi = new ContentApi(client1.getApiClient());
+    rangeSize = rangeSize1;
+    concurrency = concurrency1;
+    retryPolicy = retryPolicy1;
+  }
+
+  // ************************************************************************
+  // *********************** Public Methods *********************************
+  // ************************************************************************
+
+  /**
+   * Download a file, looking up its size first.
+   *
+   * @param systemId system
+   * @param path path relative to system rootDir
+   * @param target the local file, created or replaced
+   * @param listener receives download progress, can be null
+   * @return the number of bytes downloaded
+   * @throws TapisClientException - If api call throws an exception or the local file cannot be written
+   */
+  public long download(String systemId, String path, Path target, TransferProgressListener listener)
+          throws TapisClientException
+  {
+    return download(systemId, path, getFileInfo(systemId, path).getSize(), target, listener);
+  }
+
+  /**
+   * Download a file whose size is already known.
+   * The data is written to a temporary file in the directory of target, which is moved
+   *   over target when the download completes and deleted if it fails.
+   *
+   * @param systemId system
+   * @param path path relative to system rootDir
+   * @param size the size of the remote file
+   * @param target the local file, created or replaced once the download completes
+   * @param listener receives download progress, can be null
+   * @return the number of bytes downloaded
+   * @throws TapisClientException - If api call throws an exception or the local file cannot be written
+   */
+  public long download(String systemId, String path, long size, Path target, TransferProgressListener listener)
+          throws TapisClientException
+  {
+    Path tmp = null;
+    boolean completed = false;
+    try
+    {
+      tmp = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName() + ".", ".tmp");
+      try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.READ))
+      {
+        preallocate(channel, size);
+        download(systemId, path, channel, split(size, rangeSize), size, 0, listener, null);
+      }
+      moveIntoPlace(tmp, target);
+      completed = true;
+    }
+    catch (IOException e) { Utils.throwTapisClientException(-1, null, e); }
+    finally
+    {
+      if (!completed && tmp != null)
+        try { Files.deleteIfExists(tmp); } catch (IOException e) {}
+    }
+    return size;
+  }
+
+  /**
+   * Download a file so that an interrupted download can be resumed.
+   * Data is written to target + PART_SUFFIX and the completed ranges are recorded in a
+   *   checkpoint file target + CHECKPOINT_SUFFIX.  If both exist and the checkpoint was
+   *   made for the same remote file, with the same size and last modified time, only the
+   *   missing ranges are fetched.  Otherwise the download starts over.  Ranges that were
+   *   only partly written when the download stopped are fetched again in full.
+   * When all ranges are complete the partial file is moved to target and the checkpoint
+   *   is deleted.  If the download fails both are kept, call this method again to resume.
+   *
+   * @param systemId system
+   * @param path path relative to system rootDir
+   * @param target the local file, created or replaced once the download completes
+   * @param listener receives download progress, including ranges from earlier attempts, can be null
+   * @return the number of bytes fetched by this call
+   * @throws TapisClientException - If api call throws an exception or the local files cannot be written
+   */
+  public long downloadResumable(String systemId, String path, Path target, TransferProgressListener listener)
+          throws TapisClientException
+  {
+    FileInfo info = getFileInfo(systemId, path);
+    long size = info.getSize();
+    Path part = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+    Path checkpointFile = target.resolveSibling(target.getFileName() + CHECKPOINT_SUFFIX);
+    long fetched = 0;
+    try
+    {
+      // Resume only if the remote file is unchanged and the partial file is intact.
+      DownloadCheckpoint checkpoint = DownloadCheckpoint.load(checkpointFile);
+      if (checkpoint == null || !checkpoint.matches(systemId, path, size, info.getLastModified())
+          || !Files.isRegularFile(part) || Files.size(part) != size)
+      {
+        Files.deleteIfExists(part);
+        checkpoint = new DownloadCheckpoint(checkpointFile, systemId, path, size, info.getLastModified(), rangeSize);
+        checkpoint.save();
+      }
+
+      var ranges = new ArrayList<Range>();
+      long alreadyDone = 0;
+      for (Range range : split(size, checkpoint.getRangeSize()))
+        if (checkpoint.isCompleted(range.start)) alreadyDone += range.count; else ranges.add(range);
+
+      try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                  StandardOpenOption.READ))
+      {
+        preallocate(channel, size);
+        // Completed ranges must be on disk before the checkpoint says so.
+        final DownloadCheckpoint cp = checkpoint;
+        download(systemId, path, channel, ranges, size, alreadyDone, listener, range -> {
+          try { channel.force(false); cp.complete(range.start); }
+          catch (IOException e) { throw new UncheckedIOException(e); }
+        });
+      }
+      fetched = size - alreadyDone;
+
+      moveIntoPlace(part, target);
+      Files.deleteIfExists(checkpointFile);
+    }
+    catch (IOException e) { Utils.throwTapisClientException(-1, null, e); }
+    catch (UncheckedIOException e) { Utils.throwTapisClientException(-1, null, e.getCause()); }
+    return fetched;
+  }
+
+  // ************************************************************************
+  // *********************** Package Methods ********************************
+  // ************************************************************************
+
+  /*
+   * Look up the size and modification time of a remote file.
+   */
+  FileInfo getFileInfo(String systemId, String path) throws TapisClientException
+  {
+    List<FileInfo> files = client.listFiles(systemId, path, 1, 0, false);
+    if (files == null || files.isEmpty() || files.get(0).getSize() == null)
+      throw new TapisClientException("Unable to determine the size of " + systemId + ":" + path);
+    return files.get(0);
+  }
+
+  /*
+   * Split a file of the given size into ranges.
+   */
+  static List<Range> split(long size, long rangeSize)
+  {
+    var ranges = new ArrayList<Range>();
+    for (long start = 0; start < size; start += rangeSize)
+      ranges.add(new Range(start, Math.min(rangeSize, size - start)));
+    return ranges;
+  }
+
+  /*
+   * Set the size of the target file so ranges can be written at any offset.
+   */
+  static void preallocate(FileChannel channel, long size) throws IOException
+  {
+    if (channel.size() > size) channel.truncate(size);
+    else if (channel.size() < size) channel.write(ByteBuffer.allocate(1), size - 1);
+  }
+
+  /*
+   * Fetch the given ranges into the preallocated channel.  Progress starts from
+   *   alreadyDone bytes and onComplete, if not null, is called as each range finishes.
+   */
+  void download(String systemId, String path, FileChannel channel, List<Range> ranges, long size, long alreadyDone,
+                TransferProgressListener listener, Consumer<Range> onComplete)
+          throws TapisClientException
+  {
+    var done = new AtomicLong(alreadyDone);
+    String impersonationId = TapisRequestContext.resolveImpersonationId(null);
+    TapisExecutor.getDefault().invokeAll(ranges, concurrency, range -> {
+      fetch(systemId, path, impersonationId, channel, range, size, done, listener);
+      if (onComplete != null) onComplete.accept(range);
+      return range;
+    });
+    if (listener != null) listener.progress(done.get(), size);
+  }
+
+  // ************************************************************************
+  // *********************** Private Methods ********************************
+  // ************************************************************************
+
+  /*
+   * Replace target with a completed download, atomically where the file system allows.
+   */
+  private static void moveIntoPlace(Path from, Path target) throws IOException
+  {
+    try { Files.move(from, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE); }
+    catch (AtomicMoveNotSupportedException e) { Files.move(from, target, StandardCopyOption.REPLACE_EXISTING); }
+  }
+
+  /*
+   * Fetch one range, retrying from the first byte not yet received.
+   */
+  private void fetch(String systemId, String path, String impersonationId, FileChannel channel, Range range,
+                     long size, AtomicLong done, TransferProgressListener listener)
+          throws TapisClientException
+  {
+    int attempt = 0;
+    while (true)
+    {
+      long before = range.received;
+      try
+      {
+        fetchOnce(systemId, path, impersonationId, channel, range, size, done, listener);
+        return;
+      }
+      catch (StatusException e)
+      {
+        if (!retryPolicy.isRetryable(e.status) || ++attempt >= retryPolicy.getMaxAttempts())
+          throw Utils.newTapisClientException(e.status, e.body, e);
+      }
+      catch (ClosedChannelException e) { throw Utils.newTapisClientException(-1, null, e); }
+      catch (IOException e)
+      {
+        if (range.received > before) attempt = 0;
+        if (++attempt >= retryPolicy.getMaxAttempts()) throw Utils.newTapisClientException(-1, null, e);
+      }
+      catch (ApiException e) { throw Utils.newTapisClientException(e.getCode(), e.getResponseBody(), e); }
+
+      try { TimeUnit.NANOSECONDS.sleep(retryPolicy.backoffNanos(attempt)); }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+        throw new TapisClientException("Interrupted while retrying range " + range, e);
+      }
+    }
+  }
+
+  /*
+   * Request the rest of a range and write it at its offset.
+   */
+  private void fetchOnce(String systemId, String path, String impersonationId, FileChannel channel, Range range,
+                         long size, AtomicLong done, TransferProgressListener listener)
+          throws IOException, ApiException
+  {
+    long start = range.start + range.received;
+    long remaining = range.count - range.received;
+    Call call = contentApi.getContentsCall(systemId, path, formatRange(start, remaining), false, null,
+                                           impersonationId, null, null);
+    try (Response response = call.execute())
+    {
+      var body = response.body();
+      if (!response.isSuccessful())
+        throw new StatusException(response.code(), body == null ? null : body.string());
+      checkRange(response, start, remaining);
+      BufferedSource source = body.source();
+      while (range.received < range.count)
+      {
+        long n = channel.transferFrom(source, range.start + range.received,
+                                      Math.min(BLOCK_SIZE, range.count - range.received));
+        if (n <= 0) throw new EOFException("Range " + range + " ended after " + range.received + " bytes");
+        range.received += n;
+        long total = done.addAndGet(n);
+        if (listener != null) listener.progress(total, size);
+      }
+    }
+  }
+
+  /*
+   * Verify that a response holds exactly the requested bytes: either a 206 whose
+   * Content-Range covers them, or a 200 whose length is the requested count, which is
+   * how the Files service answers its range parameter.  Any other response, such as a
+   * chunked 200, may be the whole file and writing it at the range's offset would
+   * silently corrupt the download.  TextPageReader applies the same check to its pages.
+   */
+  static void checkRange(Response response, long start, long count) throws IOException
+  {
+    long length = response.body().contentLength();
+    if (response.code() == 206)
+    {
+      String header = response.header("Content-Range");
+      long[] bounds = parseContentRange(header);
+      if (bounds != null && bounds[0] == start && bounds[1] == start + count - 1 && (length < 0 || length == count))
+        return;
+      throw new StatusException(206, "Expected bytes " + start + "-" + (start + count - 1)
+                                     + " but the response has Content-Range " + header);
+    }
+    if (response.code() == 200 && length == count) return;
+    throw new StatusException(response.code(), "Expected " + count + " bytes at offset " + start
+                              + " but the response has " + (length < 0 ? "no length" : length + " bytes"));
+  }
+
+  /*
+   * Parse the first and last byte of a "bytes first-last/size" Content-Range header,
+   * returning null if the header is missing or malformed.
+   */
+  static long[] parseContentRange(String header)
+  {
+    if (header == null || !header.startsWith("bytes ")) return null;
+    int dash = header.indexOf('-', 6);
+    int slash = header.indexOf('/', dash + 1);
+    if (dash < 0 || slash < 0) return null;
+    try
+    {
+      return new long[] {Long.parseLong(header.substring(6, dash).trim()),
+                         Long.parseLong(header.substring(dash + 1, slash).trim())};
+    }
+    catch (NumberFormatException e) { return null; }
+  }
+
+  /*
+   * The Files service reads the range parameter as "startByte,count".
+   */
+  static String formatRange(long start, long count) { return start + "," + count; }
+
+  // ************************************************************************
+  // *********************** Classes ****************************************
+  // ************************************************************************
+
+  /*
+   * A byte range of the remote file and the number of its bytes received so far.
+   *   Each range is only ever fetched by one thread at a time.
+   */
+  static final class Range
+  {
+    final long start;
+    final long count;
+    volatile long received;
+
+    Range(long start1, long count1) { start = start1; count = count1; }
+
+    @Override
+    public String toString() { return start + "+" + count; }
+  }
+
+  /*
+   * Unsuccessful response, retried if the status is retryable.
+   */
+  private static final class StatusException extends IOException
+  {
+    private final int status;
+    private final String body;
+
+    private StatusException(int status1, String body1)
+    {
+      super("HTTP " + status1 + (body1 == null ? "" : ": " + body1));
+      status = status1;
+      body = body1;
+    }
+  }
+}
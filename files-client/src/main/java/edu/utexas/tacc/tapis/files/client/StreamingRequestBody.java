@@ -0,0 +1,161 @@
+package edu.utexas.tacc.tapis.files.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * Request body that streams its content from an InputStream or a FileChannel straight
+ * into the http sink, so uploads of any size run in constant memory and need no local
+ * scratch space.
+ *
+ * Data moves through okio's pooled segments, one BLOCK_SIZE block at a time, and the
+ * optional TransferProgressListener is notified after each block.  When the content
+ * length is known it is sent in the Content-Length header and the source must supply
+ * exactly that many bytes, otherwise chunked transfer encoding is used.
+ *
+ * A FileChannel region is transferred with FileChannel.transferTo() into the sink's
+ * segments.  Nothing is staged in a temporary file and memory use stays bounded by the
+ * pooled segments, but the bytes are still copied through the JDK's cached direct
+ * buffer into the segments, which live on the heap.  OkHttp writes through okio, so
+ * socket zero-copy such as sendfile is not available.  The channel is read by position
+ * so the body can be written again if the request is retried.  A body built from an
+ * InputStream can only be written once, so it is reported as one-shot and is never
+ * retried by OkHttp or the resilience interceptor.
+ */
+public final class StreamingRequestBody extends RequestBody
+{
+  // ************************************************************************
+  // *********************** Constants **************************************
+  // ************************************************************************
+
+  // Number of bytes moved between progress notifications.
+  public static final int BLOCK_SIZE = 64 * 1024;
+
+  public static final MediaType OCTET_STREAM = MediaType.get("application/octet-stream");
+
+  // ************************************************************************
+  // *********************** Fields *****************************************
+  // ************************************************************************
+  private final InputStream inputStream;
+  private final FileChannel channel;
+  private final long position;
+  private final long contentLength;
+  private final MediaType contentType;
+  private final TransferProgressListener listener;
+
+  // ************************************************************************
+  // *********************** Constructors ***********************************
+  // ************************************************************************
+
+  /**
+   * Create a body that streams the given input stream.  The stream is closed once it
+   * has been written.
+   *
+   * @param inputStream1 the content
+   * @param contentLength1 the number of bytes in the stream, -1 if not known
+   * @param contentType1 the media type of the content, null for application/octet-stream
+   * @param listener1 the progress listener, can be null
+   */
+  public StreamingRequestBody(InputStream inputStream1, long contentLength1, MediaType contentType1,
+                              TransferProgressListener listener1)
+  {
+    if (inputStream1 == null) throw new IllegalArgumentException("inputStream is null");
+    inputStream = inputStream1;
+    channel = null;
+    position = 0;
+    contentLength = contentLength1 < 0 ? -1 : contentLength1;
+    contentType = contentType1 == null ? OCTET_STREAM : contentType1;
+    listener = listener1;
+  }
+
+  /**
+   * Create a body that streams a region of the given file channel.  The channel is not
+   *   closed by this body since it may be written more than once.
+   *
+   * @param channel1 the channel holding the content
+   * @param position1 the position of the first byte in the channel
+   * @param count the number of bytes to send
+   * @param contentType1 the media type of the content, null for application/octet-stream
+   * @param listener1 the progress listener, can be null
+   */
+  public StreamingRequestBody(FileChannel channel1, long position1, long count, MediaType contentType1,
+                              TransferProgressListener listener1)
+  {
+    if (channel1 == null) throw new IllegalArgumentException("channel is null");
+    if (position1 < 0 || count < 0) throw new IllegalArgumentException("Invalid region " + position1 + "+" + count);
+    inputStream = null;
+    channel = channel1;
+    position = position1;
+    contentLength = count;
+    contentType = contentType1 == null ? OCTET_STREAM : contentType1;
+    listener = listener1;
+  }
+
+  // ************************************************************************
+  // *********************** Public Methods *********************************
+  // ************************************************************************
+
+  @Override
+  public MediaType contentType() { return contentType; }
+
+  @Override
+  public long contentLength() { return contentLength; }
+
+  @Override
+  public boolean isOneShot() { return channel == null; }
+
+  @Override
+  public void writeTo(BufferedSink sink) throws IOException
+  {
+    if (channel != null) writeChannel(sink); else writeStream(sink);
+  }
+
+  // ************************************************************************
+  // *********************** Private Methods ********************************
+  // ************************************************************************
+
+  private void writeChannel(BufferedSink sink) throws IOException
+  {
+    long total = 0;
+    while (total < contentLength)
+    {
+      long n = channel.transferTo(position + total, Math.min(BLOCK_SIZE, contentLength - total), sink.getBuffer());
+      if (n <= 0) break;
+      total += n;
+      sink.emitCompleteSegments();
+      if (listener != null) listener.progress(total, contentLength);
+    }
+    // The file may have been truncated since the length was taken.
+    if (total != contentLength)
+      throw new IOException("File channel ended after " + total + " of " + contentLength + " bytes");
+    if (listener != null) listener.progress(total, contentLength);
+  }
+
+  private void writeStream(BufferedSink sink) throws IOException
+  {
+    long total = 0;
+    try (Source source = Okio.source(inputStream))
+    {
+      while (contentLength < 0 || total < contentLength)
+      {
+        long max = contentLength < 0 ? BLOCK_SIZE : Math.min(BLOCK_SIZE, contentLength - total);
+        long n = source.read(sink.getBuffer(), max);
+        if (n < 0) break;
+        total += n;
+        sink.emitCompleteSegments();
+        if (listener != null) listener.progress(total, contentLength);
+      }
+    }
+    // A short stream would leave the server waiting for bytes that never arrive.
+    if (contentLength >= 0 && total != contentLength)
+      throw new IOException("Input stream ended after " + total + " of " + contentLength + " bytes");
+    if (listener != null) listener.progress(total, contentLength);
+  }
+}
@@ -0,0 +1,320 @@
+package edu.utexas.tacc.tapis.files.client;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Response;
+
+import edu.utexas.tacc.tapis.client.shared.TapisRequestContext;
+import edu.utexas.tacc.tapis.client.shared.Utils;
+import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+import edu.utexas.tacc.tapis.files.client.gen.ApiException;
+import edu.utexas.tacc.tapis.files.client.gen.api.ContentApi;
+
+/**
+ * Reader over a remote UTF-8 text file that fetches the file one page at a time as it
+ * is read, for previewing or tailing large files without downloading them.
+ *
+ * Pages are fetched through the content endpoint's range parameter.  The service's
+ * own "more" pages are fixed at 1 KB, which costs a round trip per kilobyte, so the
+ * page size is configurable here and reading can start at any byte offset.  While a
+ * page is being read the next one is already requested in the background.  Multi-byte
+ * characters split across pages are decoded correctly.  Malformed input, including a
+ * character cut by a start offset, is replaced with U+FFFD.
+ *
+ * In follow mode the reader does not end at the end of the file.  It polls the file's
+ * size every poll interval and returns new text as the file grows, like "tail -f".  A
+ * file that shrinks is assumed to have been replaced and is read again from the start.
+ * read() then blocks until text arrives or the reader is closed, which may be done
+ * from another thread.
+ *
+ * Like other Readers, instances are not meant to be read by several threads at once.
+ */
+public final class TextPageReader extends Reader
+{
+  // ************************************************************************
+  // *********************** Constants **************************************
+  // ************************************************************************
+
+  // Default number of bytes requested per page.
+  public static final int DEFAULT_PAGE_SIZE = 64 * 1024;
+
+  // Default interval between size checks in follow mode.
+  public static final Duration DEFAULT_POLL_INTERVAL = Duration.ofSeconds(2);
+
+  // ************************************************************************
+  // *********************** Fields *****************************************
+  // ************************************************************************
+  private final RangedDownloader downloader;
+  private final ContentApi contentApi;
+  private final FilesClient client;
+  private final String systemId;
+  private final String path;
+  private final int pageSize;
+  private final Duration pollInterval;
+  private final String impersonationId;
+
+  private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+          .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+  private final CountDownLatch closed = new CountDownLatch(1);
+
+  // Bytes not yet decoded and decoded chars not yet read.
+  private ByteBuffer bytes = ByteBuffer.allocate(0);
+  private final CharBuffer chars;
+
+  // Offset of the next byte to fetch, the known file size and the page being prefetched.
+  private long offset;
+  private long size;
+  private volatile CompletableFuture<byte[]> prefetch;
+  private boolean eof;
+
+  // ************************************************************************
+  // *********************** Constructors ***********************************
+  // ************************************************************************
+
+  /**
+   * Create a reader for the whole file with the default page size.
+   *
+   * @param client1 the client whose base path, headers and connection pool are used
+   * @param systemId1 system
+   * @param path1 path relative to system rootDir
+   * @throws TapisClientException - If the file size cannot be determined
+   */
+  public TextPageReader(FilesClient client1, String systemId1, String path1) throws TapisClientException
+  {
+    this(client1, systemId1, path1, 0, DEFAULT_PAGE_SIZE, null);
+  }
+
+  /**
+   * Create a reader.
+   *
+   * @param client1 the client whose base path, headers and connection pool are used
+   * @param systemId1 system
+   * @param path1 path relative to system rootDir
+   * @param startOffset the byte offset to start reading at, negative to start that many bytes before the end
+   * @param pageSize1 the number of bytes requested per page
+   * @param pollInterval1 the interval between size checks in follow mode, null to stop at the end of the file
+   * @throws TapisClientException - If the file size cannot be determined
+   */
+  public TextPageReader(FilesClient client1, String systemId1, String path1, long startOffset, int pageSize1,
+                        Duration pollInterval1)
+          throws TapisClientException
+  {
+    if (pageSize1 < 1) throw new IllegalArgumentException("pageSize must be positive: " + pageSize1);
+    client = client1;
+    systemId = systemId1;
+    path = path1;
+    pageSize = pageSize1;
+    pollInterval = pollInterval1;
+    downloader = new RangedDownloader(client1);
+    contentApi = new ContentApi(client1.getApiClient());
+    impersonationId = TapisRequestContext.resolveImpersonationId(null);
+    // Room for a page plus the bytes of a character split off the previous page.
+    chars = CharBuffer.allocate(pageSize1 + 4);
+    chars.flip();
+
+    size = downloader.getFileInfo(systemId, path).getSize();
+    offset = startOffset >= 0 ? Math.min(startOffset, size) : Math.max(0, size + startOffset);
+  }
+
+  /**
+   * Create a reader that follows the end of a file, starting with its last bytes.
+   *
+   * @param client1 the client whose base path, headers and connection pool are used
+   * @param systemId1 system
+   * @param path1 path relative to system rootDir
+   * @param lastBytes the number of bytes before the current end of the file to start with
+   * @return the reader
+   * @throws TapisClientException - If the file size cannot be determined
+   */
+  public static TextPageReader tail(FilesClient client1, String systemId1, String path1, long lastBytes)
+          throws TapisClientException
+  {
+    return new TextPageReader(client1, systemId1, path1, -Math.max(0, lastBytes), DEFAULT_PAGE_SIZE,
+                              DEFAULT_POLL_INTERVAL);
+  }
+
+  // ************************************************************************
+  // *********************** Public Methods *********************************
+  // ************************************************************************
+
+  @Override
+  public int read(char[] cbuf, int off, int len) throws IOException
+  {
+    if (len == 0) return 0;
+    while (!chars.hasRemaining())
+    {
+      if (eof || isClosed()) return -1;
+      fill();
+    }
+    int n = Math.min(len, chars.remaining());
+    chars.get(cbuf, off, n);
+    return n;
+  }
+
+  /**
+   * Close the reader and cancel any outstanding request.  A read blocked in follow mode
+   *   returns -1.
+   */
+  @Override
+  public void close()
+  {
+    closed.countDown();
+    var p = prefetch;
+    if (p != null) p.cancel(true);
+  }
+
+  /**
+   * Return the offset in the remote file of the next byte to fetch.  Bytes before it have
+   *   been fetched, but may still be buffered in this reader.
+   */
+  public long getOffset() { return offset; }
+
+  // ************************************************************************
+  // *********************** Private Methods ********************************
+  // ************************************************************************
+
+  /*
+   * Decode the next page into chars, waiting for growth in follow mode.
+   */
+  private void fill() throws IOException
+  {
+    if (offset >= size && !awaitGrowth())
+    {
+      // End of file, emit whatever the decoder still holds.
+      eof = true;
+      chars.clear();
+      decoder.decode(bytes, chars, true);
+      decoder.flush(chars);
+      chars.flip();
+      return;
+    }
+
+    byte[] page = nextPage();
+    offset += page.length;
+    if (page.length == 0) throw new IOException("No data returned at offset " + offset + " of " + systemId + ":" + path);
+    if (offset < size) prefetch = fetchAsync(offset);
+
+    // Append to the undecoded bytes left from the previous page and decode.  UTF-8
+    // never decodes to more chars than bytes, so the page fits into chars.
+    var in = ByteBuffer.allocate(bytes.remaining() + page.length);
+    in.put(bytes).put(page).flip();
+    chars.clear();
+    decoder.decode(in, chars, false);
+    chars.flip();
+    bytes = in;
+  }
+
+  /*
+   * Return the prefetched page if there is one, otherwise fetch the page now.
+   */
+  private byte[] nextPage() throws IOException
+  {
+    var p = prefetch;
+    prefetch = null;
+    try
+    {
+      if (p != null) return p.get();
+      return fetch(offset);
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reading " + systemId + ":" + path, e);
+    }
+    catch (ExecutionException e) { throw new IOException(e.getCause().getMessage(), e.getCause()); }
+    catch (TapisClientException e) { throw new IOException(e.getMessage(), e); }
+  }
+
+  /*
+   * In follow mode poll the size of the file until it changes.  Return false at the
+   *   end of the file when not following, or once the reader is closed.
+   */
+  private boolean awaitGrowth() throws IOException
+  {
+    if (pollInterval == null) return false;
+    try
+    {
+      while (!closed.await(pollInterval.toMillis(), TimeUnit.MILLISECONDS))
+      {
+        long newSize = downloader.getFileInfo(systemId, path).getSize();
+        if (newSize < offset)
+        {
+          // Replaced or truncated, start over.
+          offset = 0;
+          bytes = ByteBuffer.allocate(0);
+          decoder.reset();
+        }
+        size = newSize;
+        if (offset < size) return true;
+      }
+      return false;
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while following " + systemId + ":" + path, e);
+    }
+    catch (TapisClientException e) { throw new IOException(e.getMessage(), e); }
+  }
+
+  /*
+   * Fetch the page at start.  The service may ignore the range and send the whole file,
+   *   which would be appended at the wrong offset, so the response must hold exactly the
+   *   requested bytes.
+   */
+  private byte[] fetch(long start) throws TapisClientException
+  {
+    long count = pageCount(start);
+    try (Response response = contentCall(start, count).execute())
+    {
+      var body = response.body();
+      if (!response.isSuccessful())
+        Utils.throwTapisClientException(response.code(), body == null ? null : body.string(), null);
+      checkPage(response, start, count);
+      return body.bytes();
+    }
+    catch (TapisClientException e) { throw e; }
+    catch (ApiException e) { throw Utils.newTapisClientException(e.getCode(), e.getResponseBody(), e); }
+    catch (Exception e) { throw Utils.newTapisClientException(-1, null, e); }
+  }
+
+  private CompletableFuture<byte[]> fetchAsync(long start)
+  {
+    // The size can change while following, so the page is checked against the count requested.
+    long count = pageCount(start);
+    try
+    {
+      return Utils.executeAsyncForBytes(client.getApiClient().getHttpClient(), contentCall(start, count),
+                                        response -> checkPage(response, start, count));
+    }
+    catch (ApiException e) { return Utils.failedFuture(e.getCode(), e.getResponseBody(), e); }
+  }
+
+  private void checkPage(Response response, long start, long count) throws TapisClientException
+  {
+    try { RangedDownloader.checkRange(response, start, count); }
+    catch (IOException e) { throw Utils.newTapisClientException(response.code(), null, e); }
+  }
+
+  private long pageCount(long start) { return Math.min(pageSize, size - start); }
+
+  private Call contentCall(long start, long count) throws ApiException
+  {
+    String range = RangedDownloader.formatRange(start, count);
+    return contentApi.getContentsCall(systemId, path, range, false, null, impersonationId, null, null);
+  }
+
+  private boolean isClosed() { return closed.getCount() == 0; }
+}
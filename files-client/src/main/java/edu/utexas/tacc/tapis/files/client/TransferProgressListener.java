@@ -0,0 +1,20 @@
+package edu.utexas.tacc.tapis.files.client;
+
+/**
+ * Receives progress notifications while file data is transferred by FilesClient.
+ *
+ * Notifications are delivered on the thread doing the i/o, which may be an http
+ * dispatcher thread, so implementations must be fast and thread safe.
+ */
+@FunctionalInterface
+public interface TransferProgressListener
+{
+  /**
+   * Called each time a block of data has been transferred and once more when the
+   * transfer is complete.
+   *
+   * @param bytesTransferred the total number of bytes transferred so far
+   * @param totalBytes the total size of the transfer, -1 if not known
+   */
+  void progress(long bytesTransferred, long totalBytes);
+}
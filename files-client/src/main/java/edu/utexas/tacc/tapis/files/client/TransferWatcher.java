@@ -0,0 +1,346 @@
+package edu.utexas.tacc.tapis.files.client;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import edu.utexas.tacc.tapis.client.shared.TapisRequestContext;
+import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+import edu.utexas.tacc.tapis.client.shared.tracing.TraceContext;
+import edu.utexas.tacc.tapis.files.client.gen.model.TransferTask;
+import edu.utexas.tacc.tapis.files.client.gen.model.TransferTask.StatusEnum;
+
+/**
+ * Watches many transfer tasks at once until they reach a terminal status.
+ *
+ * All polling is driven by one scheduler thread.  Tasks are kept in a queue ordered by
+ * their next poll time.  Whenever tasks are due the thread issues getTransferTaskAsync
+ * for them, at most maxInFlight at a time, and handles the responses as they arrive, so
+ * watching thousands of tasks needs neither thousands of threads nor a burst of
+ * thousands of requests.
+ *
+ * Each task has its own poll interval between minInterval and maxInterval:
+ *   - a poll that shows a new status or more bytes transferred halves the interval,
+ *   - a poll that shows no change doubles it,
+ *   - a PAUSED task is polled at maxInterval,
+ *   - a task whose transfer rate predicts completion before the next poll is polled
+ *     when it is expected to complete.
+ * Intervals carry up to 10% random jitter so tasks created together do not stay in step.
+ * A failed poll doubles the interval, and after MAX_POLL_FAILURES consecutive failures,
+ * or at once on a 404, the task's future fails with the TapisClientException.
+ *
+ * watch() returns a future that completes with the task once its status is COMPLETED,
+ * CANCELLED, FAILED or FAILED_OPT.  Cancelling the future stops watching the task.  A
+ * listener passed to watch() receives the task whenever its status or byte count
+ * changes.  Listeners run on the scheduler thread and must not block.
+ *
+ * The TapisRequestContext and TraceContext of the thread that calls watch(), if any,
+ * are applied to the task's polls.
+ */
+public final class TransferWatcher implements AutoCloseable
+{
+  // ************************************************************************
+  // *********************** Constants **************************************
+  // ************************************************************************
+
+  // Default bounds of the poll interval of a task.
+  public static final Duration DEFAULT_MIN_INTERVAL = Duration.ofSeconds(1);
+  public static final Duration DEFAULT_MAX_INTERVAL = Duration.ofSeconds(60);
+
+  // Default number of polls outstanding at the same time.
+  public static final int DEFAULT_MAX_IN_FLIGHT = 16;
+
+  // Consecutive failed polls after which a task's future fails.
+  public static final int MAX_POLL_FAILURES = 5;
+
+  // Statuses after which a task no longer changes.
+  private static final Set<StatusEnum> TERMINAL =
+          Set.of(StatusEnum.COMPLETED, StatusEnum.CANCELLED, StatusEnum.FAILED, StatusEnum.FAILED_OPT);
+
+  // ************************************************************************
+  // *********************** Fields *****************************************
+  // ************************************************************************
+  private final FilesClient client;
+  private final long minIntervalNanos;
+  private final long maxIntervalNanos;
+  private final int maxInFlight;
+  private final ScheduledExecutorService scheduler;
+  private final Map<String, Watch> watches = new ConcurrentHashMap<>();
+
+  // Guarded by confinement to the scheduler thread.
+  private final PriorityQueue<Watch> queue = new PriorityQueue<>((a, b) -> Long.compare(a.nextPoll, b.nextPoll));
+  private int inFlight;
+  private ScheduledFuture<?> wakeup;
+  private long wakeupAt;
+
+  // ************************************************************************
+  // *********************** Constructors ***********************************
+  // ************************************************************************
+
+  /**
+   * Create a watcher with the default intervals and number of outstanding polls.
+   *
+   * @param client1 the client used to poll
+   */
+  public TransferWatcher(FilesClient client1)
+  {
+    this(client1, DEFAULT_MIN_INTERVAL, DEFAULT_MAX_INTERVAL, DEFAULT_MAX_IN_FLIGHT);
+  }
+
+  /**
+   * Create a watcher.
+   *
+   * @param client1 the client used to poll
+   * @param minInterval the shortest time between two polls of a task, also the first poll's delay
+   * @param maxInterval the longest time between two polls of a task
+   * @param maxInFlight1 the maximum number of polls outstanding at the same time
+   */
+  public TransferWatcher(FilesClient client1, Duration minInterval, Duration maxInterval, int maxInFlight1)
+  {
+    if (minInterval.isNegative() || minInterval.isZero())
+      throw new IllegalArgumentException("minInterval must be positive: " + minInterval);
+    if (maxInterval.compareTo(minInterval) < 0)
+      throw new IllegalArgumentException("maxInterval must not be less than minInterval: " + maxInterval);
+    if (maxInFlight1 < 1) throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight1);
+    client = client1;
+    minIntervalNanos = minInterval.toNanos();
+    maxIntervalNanos = maxInterval.toNanos();
+    maxInFlight = maxInFlight1;
+    scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      var t = new Thread(r, "TransferWatcher-poll");
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  // ************************************************************************
+  // *********************** Public Methods *********************************
+  // ************************************************************************
+
+  /**
+   * Watch a transfer task.
+   *
+   * @param transferTaskId Transfer task ID
+   * @return future completed with the task once it reaches a terminal status
+   */
+  public CompletableFuture<TransferTask> watch(String transferTaskId) { return watch(transferTaskId, null); }
+
+  /**
+   * Watch a transfer task.  Watching a task that is already watched returns the
+   *   existing future and ignores the listener.
+   *
+   * @param transferTaskId Transfer task ID
+   * @param listener receives the task whenever its status or byte count changes, can be null
+   * @return future completed with the task once it reaches a terminal status
+   */
+  public CompletableFuture<TransferTask> watch(String transferTaskId, TransferTaskListener listener)
+  {
+    Objects.requireNonNull(transferTaskId, "transferTaskId");
+    if (scheduler.isShutdown()) throw new IllegalStateException("TransferWatcher is closed");
+    var watch = new Watch(transferTaskId, listener);
+    Watch existing = watches.putIfAbsent(transferTaskId, watch);
+    if (existing != null) return existing.future;
+
+    watch.future.whenComplete((task, e) -> watches.remove(transferTaskId, watch));
+    watch.nextPoll = System.nanoTime() + jitter(watch.interval);
+    submit(() -> { queue.add(watch); pump(); });
+    return watch.future;
+  }
+
+  /**
+   * Return the number of tasks currently watched.
+   */
+  public int getWatchedCount() { return watches.size(); }
+
+  /**
+   * Stop polling.  Futures of tasks still watched fail with a TapisClientException.
+   */
+  @Override
+  public void close()
+  {
+    scheduler.shutdownNow();
+    var e = new TapisClientException("TransferWatcher closed");
+    for (Watch watch : watches.values()) watch.future.completeExceptionally(e);
+  }
+
+  // ************************************************************************
+  // *********************** Public Interfaces ******************************
+  // ************************************************************************
+
+  /**
+   * Receives progress of a watched transfer task.
+   */
+  @FunctionalInterface
+  public interface TransferTaskListener
+  {
+    /**
+     * Called when a poll shows a new status or byte count, including the final poll.
+     *
+     * @param task the task as returned by getTransferTask
+     */
+    void update(TransferTask task);
+  }
+
+  // ************************************************************************
+  // *********************** Private Methods ********************************
+  // ************************************************************************
+
+  private void submit(Runnable r)
+  {
+    try { scheduler.execute(r); }
+    catch (RejectedExecutionException e) { /* closed, futures already failed */ }
+  }
+
+  /*
+   * Poll the tasks that are due while there is capacity, then sleep until the next one
+   *   is due.  Runs on the scheduler thread.
+   */
+  private void pump()
+  {
+    long now = System.nanoTime();
+    while (inFlight < maxInFlight && !queue.isEmpty() && queue.peek().nextPoll <= now)
+    {
+      Watch watch = queue.poll();
+      if (watch.future.isDone()) continue;
+      inFlight++;
+      poll(watch);
+    }
+
+    // With all polls in flight the next response calls pump() again.
+    if (queue.isEmpty() || inFlight >= maxInFlight) return;
+    long next = queue.peek().nextPoll;
+    if (wakeup != null && !wakeup.isDone() && wakeupAt <= next) return;
+    if (wakeup != null) wakeup.cancel(false);
+    wakeupAt = next;
+    try { wakeup = scheduler.schedule(this::pump, Math.max(0, next - now), TimeUnit.NANOSECONDS); }
+    catch (RejectedExecutionException e) { /* closed */ }
+  }
+
+  private void poll(Watch watch)
+  {
+    CompletableFuture<TransferTask> f;
+    try (var scope = watch.ctx == null ? null : watch.ctx.bind();
+         var traceScope = watch.trace == null ? null : watch.trace.bind())
+    {
+      f = client.getTransferTaskAsync(watch.id);
+    }
+    f.whenComplete((task, e) -> submit(() -> {
+      inFlight--;
+      handle(watch, task, e);
+      pump();
+    }));
+  }
+
+  /*
+   * Process the outcome of one poll and requeue the task unless it is done.
+   */
+  private void handle(Watch watch, TransferTask task, Throwable e)
+  {
+    if (watch.future.isDone()) return;
+    long now = System.nanoTime();
+    if (e != null || task == null)
+    {
+      TapisClientException tce = unwrap(e, watch.id);
+      if (tce.getCode() == 404 || ++watch.failures >= MAX_POLL_FAILURES)
+      {
+        watches.remove(watch.id, watch);
+        watch.future.completeExceptionally(tce);
+        return;
+      }
+      watch.interval = Math.min(maxIntervalNanos, watch.interval * 2);
+    }
+    else
+    {
+      watch.failures = 0;
+      StatusEnum status = task.getStatus();
+      long bytes = task.getTotalBytesTransferred() == null ? 0 : task.getTotalBytesTransferred();
+      boolean changed = status != watch.status || bytes != watch.bytes;
+      if (changed && watch.listener != null)
+      {
+        try { watch.listener.update(task); }
+        catch (RuntimeException ignored) { /* a listener failure must not stop the watch */ }
+      }
+      if (status != null && TERMINAL.contains(status))
+      {
+        // Removed first so the task is no longer counted when dependents run.
+        watches.remove(watch.id, watch);
+        watch.future.complete(task);
+        return;
+      }
+      watch.interval = nextInterval(watch, task, changed, bytes, now);
+      watch.status = status;
+      watch.bytes = bytes;
+      watch.lastPoll = now;
+      watch.polled = true;
+    }
+    watch.nextPoll = now + jitter(watch.interval);
+    queue.add(watch);
+  }
+
+  /*
+   * Adapt the poll interval of a task to its state and progress.
+   */
+  private long nextInterval(Watch watch, TransferTask task, boolean changed, long bytes, long now)
+  {
+    if (task.getStatus() == StatusEnum.PAUSED) return maxIntervalNanos;
+    long interval = changed ? watch.interval / 2 : watch.interval * 2;
+
+    // If the transfer rate since the last poll predicts completion sooner, poll then.
+    Long total = task.getEstimatedTotalBytes();
+    if (total != null && total > bytes && bytes > watch.bytes && watch.polled)
+    {
+      double rate = (double) (bytes - watch.bytes) / (now - watch.lastPoll);
+      interval = Math.min(interval, (long) ((total - bytes) / rate));
+    }
+    return Math.max(minIntervalNanos, Math.min(maxIntervalNanos, interval));
+  }
+
+  private static long jitter(long interval)
+  {
+    return interval - (long) (interval * 0.1 * ThreadLocalRandom.current().nextDouble());
+  }
+
+  private static TapisClientException unwrap(Throwable e, String id)
+  {
+    while (e instanceof CompletionException && e.getCause() != null) e = e.getCause();
+    if (e instanceof TapisClientException) return (TapisClientException) e;
+    return new TapisClientException("Unable to get transfer task " + id, e);
+  }
+
+  // ************************************************************************
+  // *********************** Private Classes ********************************
+  // ************************************************************************
+
+  /*
+   * State of one watched task.  Only the scheduler thread reads and writes the mutable
+   *   fields after the task is queued.
+   */
+  private final class Watch
+  {
+    private final String id;
+    private final TransferTaskListener listener;
+    private final TapisRequestContext ctx = TapisRequestContext.current();
+    private final TraceContext trace = TraceContext.current();
+    private final CompletableFuture<TransferTask> future = new CompletableFuture<>();
+    private long interval = minIntervalNanos;
+    private long nextPoll;
+    private long lastPoll;
+    private boolean polled;   // nanoTime values may be zero or negative
+    private StatusEnum status;
+    private long bytes;
+    private int failures;
+
+    private Watch(String id1, TransferTaskListener listener1) { id = id1; listener = listener1; }
+  }
+}
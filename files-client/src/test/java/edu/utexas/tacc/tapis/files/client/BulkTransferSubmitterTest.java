@@ -0,0 +1,242 @@
+package edu.utexas.tacc.tapis.files.client;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+
+import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+import edu.utexas.tacc.tapis.client.shared.resilience.RetryPolicy;
+import edu.utexas.tacc.tapis.files.client.gen.model.ReqTransfer;
+import edu.utexas.tacc.tapis.files.client.gen.model.ReqTransferElement;
+import edu.utexas.tacc.tapis.files.client.gen.model.TransferTask;
+
+import static edu.utexas.tacc.tapis.files.client.Utils.*;
+
+/**
+ * Verify chunking, bounded concurrent submission, chunk retries and aggregate tracking
+ * of BulkTransferSubmitter.  The local JDK http server creates a task per request,
+ * answers chosen chunks by tag with 503 or 502 once or with 400 until cleared, and
+ * reports every task as completed.
+ */
+@Test(groups={"unit"})
+public class BulkTransferSubmitterTest
+{
+  private static final RetryPolicy RETRY =
+          new RetryPolicy(3, Duration.ofMillis(1), Duration.ofMillis(5), RetryPolicy.DEFAULT_RETRYABLE_STATUS);
+
+  private LocalServer server;
+  private FilesClient client;
+  private final List<String> tags = new CopyOnWriteArrayList<>();
+  private final AtomicLong elements = new AtomicLong();
+  private final Set<String> busyOnce = ConcurrentHashMap.newKeySet();
+  private final Set<String> errorOnce = ConcurrentHashMap.newKeySet();
+  private volatile String retryAfter;
+  private final Set<String> rejected = ConcurrentHashMap.newKeySet();
+  private final Set<String> cancelled = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger active = new AtomicInteger();
+  private final AtomicInteger maxActive = new AtomicInteger();
+
+  @BeforeClass
+  public void setUp() throws Exception
+  {
+    server = startLocalServer(Map.of("/v3/files/transfers", this::transfers));
+    client = server.client;
+  }
+
+  @AfterClass
+  public void tearDown()
+  {
+    server.close();
+  }
+
+  @BeforeMethod
+  public void reset()
+  {
+    tags.clear();
+    elements.set(0);
+    busyOnce.clear();
+    errorOnce.clear();
+    retryAfter = null;
+    rejected.clear();
+    cancelled.clear();
+    maxActive.set(0);
+  }
+
+  // Elements are spread evenly, respecting both the element and the byte limit.
+  @Test
+  public void testSplit()
+  {
+    var chunks = BulkTransferSubmitter.split(elements(2500, 10), 1000, Long.MAX_VALUE);
+    Assert.assertEquals(chunks.stream().map(List::size).toArray(), new Integer[] {834, 834, 832});
+
+    chunks = BulkTransferSubmitter.split(elements(1001, 10), 1000, Long.MAX_VALUE);
+    Assert.assertEquals(chunks.stream().map(List::size).toArray(), new Integer[] {501, 500});
+
+    long perElement = BulkTransferSubmitter.estimateBytes(elements(1, 100).get(0));
+    chunks = BulkTransferSubmitter.split(elements(100, 100), 1000, perElement * 30);
+    Assert.assertEquals(chunks.size(), 4);
+    for (var chunk : chunks) Assert.assertTrue(chunk.size() <= 30);
+    Assert.assertEquals(chunks.stream().mapToInt(List::size).sum(), 100);
+
+    Assert.assertTrue(BulkTransferSubmitter.split(List.of(), 10, 10).isEmpty());
+  }
+
+  // All chunks are submitted with bounded concurrency, retryable rejections are retried
+  // and tracking reports combined progress.
+  @Test
+  public void testSubmitAndTrack() throws Exception
+  {
+    busyOnce.add("stage-3");
+    var submitter = new BulkTransferSubmitter(client, 100, BulkTransferSubmitter.DEFAULT_MAX_REQUEST_BYTES, 3, RETRY);
+    var req = new ReqTransfer().tag("stage").elements(elements(1000, 20));
+    var handle = submitter.submit(req);
+
+    Assert.assertTrue(handle.isFullySubmitted(), handle.getFailures().toString());
+    Assert.assertEquals(handle.getTasks().size(), 10);
+    Assert.assertEquals(handle.getElementCount(), 1000);
+    Assert.assertEquals(elements.get(), 1000);
+    Assert.assertEquals(tags.stream().filter("stage-3"::equals).count(), 2);
+    Assert.assertTrue(maxActive.get() > 1 && maxActive.get() <= 3, "maxActive " + maxActive.get());
+    Assert.assertEquals(handle.getTasks().get(0).getTag(), "stage-1");
+
+    var progress = new AtomicLong();
+    try (var watcher = new TransferWatcher(client, Duration.ofMillis(5), Duration.ofMillis(20), 4))
+    {
+      List<TransferTask> finals = handle.track(watcher, (n, total) -> progress.set(n)).get(10, TimeUnit.SECONDS);
+      Assert.assertEquals(finals.size(), 10);
+      for (TransferTask task : finals) Assert.assertEquals(task.getStatus(), TransferTask.StatusEnum.COMPLETED);
+    }
+    Assert.assertEquals(progress.get(), 10 * 100L);
+
+    Assert.assertTrue(handle.cancel().isEmpty());
+    Assert.assertEquals(cancelled.size(), 10);
+  }
+
+  // A Retry-After within the policy's maximum backoff is waited for and a longer one
+  // fails the chunk.
+  @Test
+  public void testRetryAfter() throws Exception
+  {
+    var policy = new RetryPolicy(3, Duration.ofMillis(1), Duration.ofSeconds(2), RetryPolicy.DEFAULT_RETRYABLE_STATUS);
+    var submitter = new BulkTransferSubmitter(client, 10, BulkTransferSubmitter.DEFAULT_MAX_REQUEST_BYTES, 1, policy);
+    retryAfter = "1";
+    busyOnce.add("wait-1");
+    long start = System.nanoTime();
+    Assert.assertTrue(submitter.submit(elements(5, 10), "wait").isFullySubmitted());
+    Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(900));
+    Assert.assertEquals(tags, List.of("wait-1", "wait-1"));
+
+    tags.clear();
+    retryAfter = "5";
+    busyOnce.add("long-1");
+    var handle = submitter.submit(elements(5, 10), "long");
+    Assert.assertEquals(handle.getFailures().get(0).getCode(), 503);
+    Assert.assertEquals(tags, List.of("long-1"));
+  }
+
+  // Chunks rejected for good or failed with a server error are reported without retries
+  // and can be resubmitted without touching the others, once even by concurrent callers.
+  @Test
+  public void testFailedChunk() throws Exception
+  {
+    rejected.add("batch-2");
+    errorOnce.add("batch-3");
+    var submitter = new BulkTransferSubmitter(client, 10, BulkTransferSubmitter.DEFAULT_MAX_REQUEST_BYTES, 2, RETRY);
+    var handle = submitter.submit(elements(30, 10), "batch");
+
+    Assert.assertFalse(handle.isFullySubmitted());
+    Assert.assertEquals(handle.getFailures().keySet(), Set.of(1, 2));
+    Assert.assertEquals(handle.getFailures().get(1).getCode(), 400);
+    Assert.assertEquals(handle.getFailures().get(2).getCode(), 502);
+    Assert.assertEquals(tags.stream().filter("batch-2"::equals).count(), 1);
+    Assert.assertEquals(tags.stream().filter("batch-3"::equals).count(), 1);
+    Assert.assertEquals(handle.getTasks().size(), 1);
+
+    rejected.clear();
+    tags.clear();
+    var other = CompletableFuture.supplyAsync(() -> {
+      try { return handle.resubmitFailed(); }
+      catch (TapisClientException e) { throw new IllegalStateException(e); }
+    });
+    Assert.assertTrue(handle.resubmitFailed());
+    Assert.assertTrue(other.get(10, TimeUnit.SECONDS));
+    Assert.assertEquals(tags.size(), 2, tags.toString());
+    Assert.assertEquals(Set.copyOf(tags), Set.of("batch-2", "batch-3"));
+    Assert.assertEquals(handle.getTasks().size(), 3);
+    Assert.assertEquals(handle.getTasks().get(1).getTag(), "batch-2");
+  }
+
+  private static List<ReqTransferElement> elements(int n, int pathLength)
+  {
+    var list = new ArrayList<ReqTransferElement>(n);
+    String pad = "x".repeat(pathLength);
+    for (int i = 0; i < n; i++)
+    {
+      var e = new ReqTransferElement();
+      e.setSourceURI("tapis://src/" + pad + i);
+      e.setDestinationURI("tapis://dst/" + pad + i);
+      list.add(e);
+    }
+    return list;
+  }
+
+  private void transfers(HttpExchange exchange) throws IOException
+  {
+    String path = exchange.getRequestURI().getPath();
+    String method = exchange.getRequestMethod();
+    if ("POST".equals(method))
+    {
+      var req = JsonParser.parseString(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8))
+                          .getAsJsonObject();
+      String tag = req.get("tag").getAsString();
+      int count = req.getAsJsonArray("elements").size();
+      tags.add(tag);
+      maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+      try { Thread.sleep(20); } catch (InterruptedException e) {}
+      finally { active.decrementAndGet(); }
+      if (busyOnce.remove(tag))
+      {
+        if (retryAfter != null) exchange.getResponseHeaders().set("Retry-After", retryAfter);
+        respond(exchange, 503, "{\"status\":\"error\",\"message\":\"busy\"}");
+        return;
+      }
+      if (errorOnce.remove(tag)) { respond(exchange, 502, "{\"status\":\"error\",\"message\":\"bad gateway\"}"); return; }
+      if (rejected.contains(tag)) { respond(exchange, 400, "{\"status\":\"error\",\"message\":\"bad\"}"); return; }
+      elements.addAndGet(count);
+      respond(exchange, 200, task(UUID.randomUUID().toString(), tag, "ACCEPTED", 0));
+    }
+    else if ("DELETE".equals(method))
+    {
+      cancelled.add(path.substring(path.lastIndexOf('/') + 1));
+      respond(exchange, 200, "{\"status\":\"success\",\"result\":\"cancelled\"}");
+    }
+    else
+      respond(exchange, 200, task(path.substring(path.lastIndexOf('/') + 1), null, "COMPLETED", 100));
+  }
+
+  private static String task(String uuid, String tag, String status, long bytes)
+  {
+    return "{\"status\":\"success\",\"result\":{\"uuid\":\"" + uuid + "\"," + (tag == null ? "" : "\"tag\":\"" + tag + "\",")
+           + "\"status\":\"" + status + "\",\"totalBytesTransferred\":" + bytes + ",\"estimatedTotalBytes\":100}}";
+  }
+}
@@ -0,0 +1,134 @@
+package edu.utexas.tacc.tapis.files.client;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import edu.utexas.tacc.tapis.client.shared.exceptions.UncheckedTapisClientException;
+import edu.utexas.tacc.tapis.files.client.gen.model.FileInfo;
+
+import static edu.utexas.tacc.tapis.files.client.Utils.*;
+
+/**
+ * Verify paging, prefetching and early termination of FilesClient.streamFiles.  The
+ * local JDK http server lists entries file0, file1, ... honoring limit and offset and
+ * records the offsets requested.
+ */
+@Test(groups={"unit"})
+public class FileListingIteratorTest
+{
+  private LocalServer server;
+  private FilesClient client;
+  private volatile int entries;
+  private volatile long failAt;
+  private final List<Long> offsets = new CopyOnWriteArrayList<>();
+
+  @BeforeClass
+  public void setUp() throws Exception
+  {
+    server = startLocalServer(Map.of("/v3/files/ops/", this::list));
+    client = server.client;
+  }
+
+  @AfterClass
+  public void tearDown()
+  {
+    server.close();
+  }
+
+  @BeforeMethod
+  public void reset()
+  {
+    offsets.clear();
+    failAt = -1;
+  }
+
+  // All pages are fetched in order and a short page ends the listing.
+  @Test
+  public void testAllPages()
+  {
+    entries = 25;
+    try (var stream = client.streamFiles("sys1", "dir", 10, false))
+    {
+      var names = stream.map(FileInfo::getName).collect(Collectors.toList());
+      Assert.assertEquals(names.size(), 25);
+      Assert.assertEquals(names.get(0), "file0");
+      Assert.assertEquals(names.get(24), "file24");
+    }
+    Assert.assertEquals(offsets, List.of(0L, 10L, 20L));
+
+    // A full last page needs one more request to find the end.
+    entries = 20;
+    offsets.clear();
+    Assert.assertEquals(client.streamFiles("sys1", "dir", 10, false).count(), 20);
+    Assert.assertEquals(offsets, List.of(0L, 10L, 20L));
+  }
+
+  // A short-circuited stream stops after the current page and its prefetch.
+  @Test
+  public void testEarlyStop() throws Exception
+  {
+    entries = 1000;
+    try (var stream = client.streamFiles("sys1", "dir", 10, false))
+    {
+      Assert.assertEquals(stream.skip(12).findFirst().get().getName(), "file12");
+    }
+    Thread.sleep(100);
+    Assert.assertTrue(offsets.size() <= 3, "Requested " + offsets);
+    Assert.assertEquals(offsets.subList(0, 2), List.of(0L, 10L));
+  }
+
+  // A failed page is reported as an unchecked exception.
+  @Test
+  public void testFailure()
+  {
+    entries = 25;
+    failAt = 10;
+    try (var stream = client.streamFiles("sys1", "dir", 10, false))
+    {
+      var e = Assert.expectThrows(UncheckedTapisClientException.class, stream::count);
+      Assert.assertEquals(e.getCause().getCode(), 500);
+    }
+  }
+
+  private void list(HttpExchange exchange) throws IOException
+  {
+    String query = exchange.getRequestURI().getQuery();
+    int limit = Integer.parseInt(param(query, "limit"));
+    long offset = Long.parseLong(param(query, "offset"));
+    offsets.add(offset);
+    byte[] body;
+    int status = 200;
+    if (offset == failAt)
+    {
+      status = 500;
+      body = "{\"status\":\"error\",\"message\":\"failed\"}".getBytes(StandardCharsets.UTF_8);
+    }
+    else
+    {
+      var json = new StringBuilder("{\"status\":\"success\",\"result\":[");
+      for (long i = offset; i < Math.min(entries, offset + limit); i++)
+        json.append(i == offset ? "" : ",").append("{\"name\":\"file").append(i).append("\",\"type\":\"file\",\"size\":1}");
+      body = json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+    respond(exchange, status, body);
+  }
+
+  private static String param(String query, String name)
+  {
+    for (String p : query.split("&"))
+      if (p.startsWith(name + "=")) return p.substring(name.length() + 1);
+    return null;
+  }
+}
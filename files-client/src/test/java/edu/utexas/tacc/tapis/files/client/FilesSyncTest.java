@@ -0,0 +1,378 @@
+package edu.utexas.tacc.tapis.files.client;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+
+import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+import edu.utexas.tacc.tapis.files.client.FilesSync.Direction;
+import edu.utexas.tacc.tapis.files.client.FilesSync.OpType;
+import edu.utexas.tacc.tapis.files.client.FilesSync.Operation;
+
+import static edu.utexas.tacc.tapis.files.client.Utils.*;
+
+/**
+ * Verify the plans made by FilesSync in both directions and their execution against
+ * the local JDK http server, which keeps an in-memory tree and implements listing,
+ * insert, mkdir, move, delete and content requests.  Content requests for files named
+ * broken.bin fail.
+ */
+@Test(groups={"unit"})
+public class FilesSyncTest
+{
+  private static final Instant T0 = Instant.parse("2024-01-01T00:00:00Z");
+
+  // Remote tree by path relative to system rootDir, directories have no data.
+  private final Map<String, Node> remote = new TreeMap<>();
+  private final AtomicInteger contentRequests = new AtomicInteger();
+  private volatile boolean strayListing;
+  private LocalServer server;
+  private FilesClient client;
+  private Path local;
+
+  @BeforeClass
+  public void setUp() throws Exception
+  {
+    server = startLocalServer(Map.of("/v3/files/ops/sys1", this::ops, "/v3/files/content/sys1/", this::content));
+    client = server.client;
+  }
+
+  @AfterClass
+  public void tearDown()
+  {
+    server.close();
+  }
+
+  @BeforeMethod
+  public void reset() throws IOException
+  {
+    synchronized (remote) { remote.clear(); }
+    contentRequests.set(0);
+    strayListing = false;
+    local = Files.createTempDirectory("sync");
+  }
+
+  // Upload with deletion plans the minimal operations, runs them and leaves nothing to do.
+  // Without checksums a file of the same name and size as an extraneous remote file is
+  // uploaded, not moved, since the contents may differ.
+  @Test
+  public void testUpload() throws Exception
+  {
+    putRemote("proj/same.txt", "same", T0);
+    putRemote("proj/changed.txt", "old", T0);
+    putRemote("proj/old.txt", "aaaa", T0);
+    putRemote("proj/m.bin", "moved!", T0);
+    putRemote("proj/gone.txt", "gone", T0);
+    putRemote("proj/olddir/f.txt", "f", T0);
+    putRemote("proj/c/inner.txt", "i", T0);
+    putLocal("same.txt", "same", T0.minusSeconds(60));
+    putLocal("changed.txt", "changed", T0);
+    putLocal("old.txt", "bbbb", T0.plusSeconds(60));
+    putLocal("a.txt", "new file", null);
+    putLocal("sub/n.txt", "nested", null);
+    putLocal("moved/m.bin", "moved!", T0.minusSeconds(60));
+    putLocal("c", "conflict", null);
+    Files.createDirectories(local.resolve("emptydir/deeper"));
+
+    var sync = new FilesSync(client, 4);
+    var plan = sync.plan(Direction.UPLOAD, local, "sys1", "proj", true, false);
+    Assert.assertEquals(describe(plan.getOperations()),
+                        List.of("MKDIR emptydir/deeper", "UPLOAD a.txt", "UPLOAD changed.txt", "UPLOAD moved/m.bin",
+                                "UPLOAD old.txt", "UPLOAD sub/n.txt", "DELETE gone.txt", "DELETE m.bin",
+                                "DELETE olddir"));
+    Assert.assertEquals(plan.getConflicts(), List.of("c"));
+    Assert.assertEquals(plan.getBytesToTransfer(), 8 + 7 + 6 + 4 + 6);
+    Assert.assertTrue(plan.toString().contains("CONFLICT c (type differs)"), plan.toString());
+
+    var result = sync.execute(plan, null);
+    Assert.assertTrue(result.isSuccess(), result.getFailures().toString());
+    Assert.assertEquals(result.getSucceeded().size(), 9);
+    Assert.assertEquals(result.getBytesTransferred(), plan.getBytesToTransfer());
+    Assert.assertTrue(result.getBytesPerSecond() > 0);
+    Assert.assertEquals(remoteText("proj/changed.txt"), "changed");
+    Assert.assertEquals(remoteText("proj/sub/n.txt"), "nested");
+    Assert.assertEquals(remoteText("proj/moved/m.bin"), "moved!");
+    Assert.assertTrue(isRemoteDir("proj/emptydir/deeper"));
+    Assert.assertNull(remoteText("proj/m.bin"));
+    Assert.assertNull(remoteText("proj/olddir/f.txt"));
+    Assert.assertEquals(remoteText("proj/c/inner.txt"), "i");
+
+    Assert.assertTrue(sync.plan(Direction.UPLOAD, local, "sys1", "proj", true, false).isEmpty());
+  }
+
+  // Download with checksums replaces files whose content differs, creates empty
+  // directories, deletes extraneous local files and sets remote modification times.
+  @Test
+  public void testDownloadChecksum() throws Exception
+  {
+    putRemote("proj/x.txt", "remote", T0);
+    putRemote("proj/same.txt", "same", T0);
+    putRemote("proj/d/y.txt", "why", T0);
+    mkdirRemote("proj/e");
+    putLocal("x.txt", "locals", T0);
+    putLocal("same.txt", "same", T0.plusSeconds(60));
+    putLocal("z/z.txt", "zed", null);
+
+    var sync = new FilesSync(client, 2);
+    var plan = sync.plan(Direction.DOWNLOAD, local, "sys1", "proj", true, true);
+    Assert.assertEquals(describe(plan.getOperations()),
+                        List.of("MKDIR e", "DOWNLOAD d/y.txt", "DOWNLOAD x.txt", "DELETE z"));
+    Assert.assertEquals(contentRequests.get(), 2);
+
+    var progress = new AtomicInteger();
+    var result = sync.execute(plan, (n, total) -> progress.set((int) n));
+    Assert.assertTrue(result.isSuccess(), result.getFailures().toString());
+    Assert.assertEquals(progress.get(), 9);
+    Assert.assertEquals(Files.readString(local.resolve("x.txt")), "remote");
+    Assert.assertEquals(Files.readString(local.resolve("d/y.txt")), "why");
+    Assert.assertEquals(Files.getLastModifiedTime(local.resolve("d/y.txt")).toInstant(), T0);
+    Assert.assertTrue(Files.isDirectory(local.resolve("e")));
+    Assert.assertFalse(Files.exists(local.resolve("z")));
+
+    // same.txt differs by modification time only.
+    Assert.assertEquals(describe(sync.plan(Direction.DOWNLOAD, local, "sys1", "proj", true, false).getOperations()),
+                        List.of("DOWNLOAD same.txt"));
+    Assert.assertTrue(sync.plan(Direction.DOWNLOAD, local, "sys1", "proj", true, true).isEmpty());
+  }
+
+  // A missing remote root is an empty tree and operations that fail are reported.
+  @Test
+  public void testMissingRootAndFailure() throws Exception
+  {
+    putLocal("a.txt", "a", null);
+    putLocal("fail.txt", "b", null);
+    var sync = new FilesSync(client);
+    var plan = sync.plan(Direction.UPLOAD, local, "sys1", "newroot", false, false);
+    Assert.assertEquals(describe(plan.getOperations()), List.of("UPLOAD a.txt", "UPLOAD fail.txt"));
+
+    var result = sync.execute(plan, null);
+    Assert.assertEquals(result.getSucceeded().size(), 1);
+    Assert.assertEquals(result.getFailures().keySet().iterator().next().getPath(), "fail.txt");
+    Assert.assertEquals(remoteText("newroot/a.txt"), "a");
+  }
+
+  // A missing remote source fails the plan instead of making every local entry extraneous.
+  @Test
+  public void testMissingDownloadSource() throws Exception
+  {
+    putLocal("keep.txt", "keep", T0);
+    var sync = new FilesSync(client);
+    var e = Assert.expectThrows(TapisClientException.class, () ->
+      sync.plan(Direction.DOWNLOAD, local, "sys1", "typo", true, false));
+    Assert.assertEquals(e.getCode(), 404);
+    Assert.assertTrue(Files.exists(local.resolve("keep.txt")));
+  }
+
+  // A missing local source fails the plan instead of making every remote entry extraneous.
+  @Test
+  public void testMissingUploadSource() throws Exception
+  {
+    putRemote("proj/keep.txt", "keep", T0);
+    var sync = new FilesSync(client);
+    var e = Assert.expectThrows(TapisClientException.class, () ->
+      sync.plan(Direction.UPLOAD, local.resolve("typo"), "sys1", "proj", true, false));
+    Assert.assertTrue(e.getMessage().contains("does not exist"), e.getMessage());
+    Assert.assertEquals(remoteText("proj/keep.txt"), "keep");
+  }
+
+  // In checksum mode move candidates are digested once each, and failed reads and
+  // listings that do not match the root fail the plan.
+  @Test
+  public void testChecksumMovesAndErrors() throws Exception
+  {
+    putRemote("proj/m.bin", "moved!", T0);
+    putRemote("proj/x.bin", "bbbbbb", T0);
+    putLocal("moved/m.bin", "moved!", T0.plusSeconds(60));
+    putLocal("other/m.bin", "moved!", null);
+    putLocal("n/x.bin", "aaaaaa", null);
+
+    var sync = new FilesSync(client, 4);
+    var plan = sync.plan(Direction.UPLOAD, local, "sys1", "proj", true, true);
+    Assert.assertEquals(describe(plan.getOperations()),
+                        List.of("MKDIR moved", "UPLOAD n/x.bin", "UPLOAD other/m.bin", "MOVE m.bin>moved/m.bin",
+                                "DELETE x.bin"));
+    Assert.assertTrue(plan.toString().contains("MOVE     m.bin -> moved/m.bin"), plan.toString());
+    Assert.assertEquals(contentRequests.get(), 2);
+
+    putRemote("proj/broken.bin", "remote", T0);
+    putLocal("broken.bin", "locals", T0);
+    var e = Assert.expectThrows(TapisClientException.class, () ->
+      sync.plan(Direction.DOWNLOAD, local, "sys1", "proj", false, true));
+    Assert.assertEquals(e.getCode(), 500);
+
+    strayListing = true;
+    e = Assert.expectThrows(TapisClientException.class, () ->
+      sync.plan(Direction.DOWNLOAD, local, "sys1", "proj", false, false));
+    Assert.assertTrue(e.getMessage().contains("not below"), e.getMessage());
+  }
+
+  private static List<String> describe(List<Operation> ops)
+  {
+    return ops.stream().map(op -> op.getType() + " " + (op.getType() == OpType.MOVE ? op.getFromPath() + ">" : "")
+                                  + op.getPath()).collect(Collectors.toList());
+  }
+
+  private void putLocal(String path, String text, Instant modified) throws IOException
+  {
+    Path file = local.resolve(path);
+    Files.createDirectories(file.getParent());
+    Files.writeString(file, text);
+    if (modified != null) Files.setLastModifiedTime(file, FileTime.from(modified));
+  }
+
+  private void putRemote(String path, String text, Instant modified)
+  {
+    synchronized (remote)
+    {
+      remote.put(path, new Node(text.getBytes(StandardCharsets.UTF_8), modified));
+      for (int i = path.lastIndexOf('/'); i > 0; i = path.lastIndexOf('/', i - 1))
+        remote.putIfAbsent(path.substring(0, i), new Node(null, modified));
+    }
+  }
+
+  private void mkdirRemote(String path)
+  {
+    synchronized (remote)
+    {
+      for (int i = path.length(); i > 0; i = path.lastIndexOf('/', i - 1))
+        remote.putIfAbsent(path.substring(0, i), new Node(null, Instant.now()));
+    }
+  }
+
+  private String remoteText(String path)
+  {
+    synchronized (remote)
+    {
+      Node node = remote.get(path);
+      return node == null || node.data == null ? null : new String(node.data, StandardCharsets.UTF_8);
+    }
+  }
+
+  private boolean isRemoteDir(String path)
+  {
+    synchronized (remote) { return remote.containsKey(path) && remote.get(path).data == null; }
+  }
+
+  /*
+   * Listing, insert, mkdir, move and delete.
+   */
+  private void ops(HttpExchange exchange) throws IOException
+  {
+    String uriPath = exchange.getRequestURI().getPath();
+    String path = uriPath.length() > "/v3/files/ops/sys1/".length()
+                  ? uriPath.substring("/v3/files/ops/sys1/".length()) : "";
+    byte[] body = exchange.getRequestBody().readAllBytes();
+    synchronized (remote)
+    {
+      switch (exchange.getRequestMethod())
+      {
+        case "GET":
+          if (!isRemoteDir(path)) { respond(exchange, 404, "{\"status\":\"error\",\"message\":\"not found\"}"); return; }
+          String query = exchange.getRequestURI().getQuery();
+          int limit = Integer.parseInt(query.replaceAll(".*limit=(\\d+).*", "$1"));
+          int offset = Integer.parseInt(query.replaceAll(".*offset=(\\d+).*", "$1"));
+          String entries = remote.entrySet().stream()
+                  .filter(e -> e.getKey().startsWith(path + "/") && e.getKey().indexOf('/', path.length() + 1) < 0)
+                  .skip(offset).limit(limit)
+                  .map(e -> entry(strayListing ? e.getKey().substring(e.getKey().lastIndexOf('/') + 1) : e.getKey(),
+                                  e.getValue()))
+                  .collect(Collectors.joining(","));
+          respond(exchange, 200, "{\"status\":\"success\",\"result\":[" + entries + "]}");
+          return;
+        case "POST":
+          if (path.isEmpty())
+            mkdirRemote(JsonParser.parseString(new String(body, StandardCharsets.UTF_8)).getAsJsonObject()
+                                  .get("path").getAsString());
+          else if (path.endsWith("fail.txt"))
+          {
+            respond(exchange, 500, "{\"status\":\"error\",\"message\":\"failed\"}");
+            return;
+          }
+          else
+            putRemote(path, new String(filePart(exchange, body), StandardCharsets.UTF_8), Instant.now());
+          break;
+        case "PUT":
+          var req = JsonParser.parseString(new String(body, StandardCharsets.UTF_8)).getAsJsonObject();
+          String newPath = req.get("newPath").getAsString();
+          if (!isRemoteDir(newPath.substring(0, newPath.lastIndexOf('/'))))
+          {
+            respond(exchange, 404, "{\"status\":\"error\",\"message\":\"no parent\"}");
+            return;
+          }
+          remote.put(newPath, remote.remove(path));
+          break;
+        case "DELETE":
+          remote.keySet().removeIf(k -> k.equals(path) || k.startsWith(path + "/"));
+          break;
+      }
+    }
+    respond(exchange, 200, "{\"status\":\"success\",\"result\":\"ok\"}");
+  }
+
+  /*
+   * Whole files or a "start,count" range.
+   */
+  private void content(HttpExchange exchange) throws IOException
+  {
+    contentRequests.incrementAndGet();
+    String path = exchange.getRequestURI().getPath().substring("/v3/files/content/sys1/".length());
+    String query = exchange.getRequestURI().getQuery();
+    if (path.endsWith("broken.bin"))
+    {
+      respond(exchange, 500, "{\"status\":\"error\",\"message\":\"failed\"}");
+      return;
+    }
+    byte[] data;
+    synchronized (remote) { data = remote.get(path).data; }
+    if (query != null && query.contains("range="))
+    {
+      String[] range = query.substring(query.indexOf("range=") + 6).split("&")[0].split(",");
+      int start = Integer.parseInt(range[0]);
+      data = Arrays.copyOfRange(data, start, start + Integer.parseInt(range[1]));
+    }
+    respond(exchange, 200, data);
+  }
+
+  private static String entry(String path, Node node)
+  {
+    return "{\"name\":\"" + path.substring(path.lastIndexOf('/') + 1) + "\",\"path\":\"" + path + "\",\"type\":\""
+           + (node.data == null ? "dir" : "file") + "\",\"size\":" + (node.data == null ? 0 : node.data.length)
+           + ",\"lastModified\":\"" + node.modified + "\"}";
+  }
+
+  // The content of the single part of a multipart upload.
+  private static byte[] filePart(HttpExchange exchange, byte[] body)
+  {
+    String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+    byte[] end = ("\r\n--" + contentType.substring(contentType.indexOf("boundary=") + 9)).getBytes(StandardCharsets.UTF_8);
+    String text = new String(body, StandardCharsets.ISO_8859_1);
+    int start = text.indexOf("\r\n\r\n") + 4;
+    return Arrays.copyOfRange(body, start, text.indexOf(new String(end, StandardCharsets.ISO_8859_1), start));
+  }
+
+  private static final class Node
+  {
+    private final byte[] data;
+    private final Instant modified;
+
+    private Node(byte[] data1, Instant modified1) { data = data1; modified = modified1; }
+  }
+}
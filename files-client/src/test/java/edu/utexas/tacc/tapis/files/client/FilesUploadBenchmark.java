@@ -0,0 +1,128 @@
+package edu.utexas.tacc.tapis.files.client;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import edu.utexas.tacc.tapis.files.client.gen.api.FileOperationsApi;
+
+import static edu.utexas.tacc.tapis.files.client.Utils.*;
+
+/**
+ * Compare the upload paths of FilesClient against a local JDK http server that
+ * discards the request body.  This is not a unit test, run it by hand with the test
+ * classpath and a heap large enough for the staged path:
+ * <pre>
+ *   java -Xmx4g -cp ... edu.utexas.tacc.tapis.files.client.FilesUploadBenchmark [sizeMB] [rounds]
+ * </pre>
+ * The paths are
+ *   staged - copy the stream to a temp file and upload it with the generated insert(),
+ *            which is what insert(InputStream) used to do,
+ *   stream - insert(InputStream) with a known length,
+ *   path   - insert(Path), which transfers from the file's channel.
+ * For each path the best elapsed time and the peak heap growth are reported.
+ */
+public class FilesUploadBenchmark
+{
+  public static void main(String[] args) throws Exception
+  {
+    long size = (args.length > 0 ? Long.parseLong(args[0]) : 1024) * 1024 * 1024;
+    int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+    var server = startLocalServer(Map.of("/", exchange -> {
+      exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      respond(exchange, 200, "{\"status\":\"success\",\"result\":\"ok\"}");
+    }));
+    var client = server.client;
+
+    // Source file filled with a repeating pattern.
+    Path file = Files.createTempFile("FilesUploadBenchmark", ".bin");
+    try (var channel = FileChannel.open(file, StandardOpenOption.WRITE))
+    {
+      var block = ByteBuffer.allocate(1024 * 1024);
+      for (int i = 0; i < block.capacity(); i++) block.put((byte) ('a' + i % 26));
+      for (long written = 0; written < size; )
+      {
+        block.clear().limit((int) Math.min(block.capacity(), size - written));
+        written += channel.write(block);
+      }
+    }
+
+    System.out.printf("size=%d MB rounds=%d%n", size >> 20, rounds);
+    try
+    {
+      run("staged", rounds, size, () -> {
+        File tmp = File.createTempFile("files-java-client", null);
+        try (InputStream in = Files.newInputStream(file)) { Files.copy(in, tmp.toPath(), StandardCopyOption.REPLACE_EXISTING); }
+        try { new FileOperationsApi(client.getApiClient()).insert("sys1", "data.bin", tmp); }
+        finally { tmp.delete(); }
+      });
+      run("stream", rounds, size, () -> {
+        try (InputStream in = Files.newInputStream(file)) { client.insert("sys1", "data.bin", in, size, null); }
+      });
+      run("path", rounds, size, () -> client.insert("sys1", "data.bin", file));
+    }
+    finally
+    {
+      Files.delete(file);
+      server.close();
+    }
+  }
+
+  private interface Upload { void run() throws Exception; }
+
+  private static void run(String name, int rounds, long size, Upload upload)
+  {
+    long best = Long.MAX_VALUE, peak = 0;
+    try
+    {
+      for (int r = 0; r < rounds; r++)
+      {
+        System.gc();
+        long base = heapUsed();
+        resetPeaks();
+        long start = System.nanoTime();
+        upload.run();
+        best = Math.min(best, System.nanoTime() - start);
+        peak = Math.max(peak, peakHeapUsed() - base);
+      }
+      System.out.printf("%-7s best %9.1f ms  %8.1f MB/s  peak heap growth %8.1f MB%n", name, best / 1e6,
+                        size / (1024.0 * 1024.0) / (best / 1e9), peak / (1024.0 * 1024.0));
+    }
+    catch (OutOfMemoryError e) { System.out.printf("%-7s out of memory%n", name); }
+    catch (Exception e) { System.out.printf("%-7s failed: %s%n", name, e); }
+  }
+
+  private static long heapUsed()
+  {
+    long used = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+      if (pool.getType() == MemoryType.HEAP) used += pool.getUsage().getUsed();
+    return used;
+  }
+
+  private static void resetPeaks()
+  {
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) pool.resetPeakUsage();
+  }
+
+  // Sum of the per-pool peaks, an upper bound of the actual peak.
+  private static long peakHeapUsed()
+  {
+    long used = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+      if (pool.getType() == MemoryType.HEAP) used += pool.getPeakUsage().getUsed();
+    return used;
+  }
+}
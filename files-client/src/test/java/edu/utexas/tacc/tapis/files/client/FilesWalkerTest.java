@@ -0,0 +1,199 @@
+package edu.utexas.tacc.tapis.files.client;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+
+import static edu.utexas.tacc.tapis.files.client.Utils.*;
+
+/**
+ * Verify traversal order, depth limits, glob filtering, early termination and
+ * cancellation of FilesWalker.  The local JDK http server lists a small fixed tree,
+ * one page at a time, with an optional delay per listing.  The tree is served below any
+ * root directory and each test walks its own root, so listings left over from one test
+ * are never counted by another.
+ */
+@Test(groups={"unit"})
+public class FilesWalkerTest
+{
+  // Directory contents relative to the root, names ending in '/' are directories.
+  private static final Map<String, List<String>> TREE = Map.of(
+    "", List.of("a/", "b/", ".git/", "top.log"),
+    "/a", List.of("x.log", "y.txt", "deep/"),
+    "/a/deep", List.of("z.log"),
+    "/b", List.of("1.txt", "2.txt", "3.txt", "4.log", "5.txt"),
+    "/.git", List.of("HEAD", "objects/"),
+    "/.git/objects", List.of("pack"));
+
+  // Listing statistics and settings of one root.
+  private static final class Root
+  {
+    private volatile int delayMs;
+    private volatile String failDir;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+  }
+
+  private LocalServer server;
+  private FilesClient client;
+  private final Map<String, Root> roots = new ConcurrentHashMap<>();
+
+  @BeforeClass
+  public void setUp() throws Exception
+  {
+    server = startLocalServer(Map.of("/v3/files/ops/sys1/", this::list));
+    client = server.client;
+  }
+
+  @AfterClass
+  public void tearDown()
+  {
+    server.close();
+  }
+
+  private Root root(String name)
+  {
+    return roots.computeIfAbsent(name, k -> new Root());
+  }
+
+  // Every entry is visited with its depth, shallow entries first, using concurrent listings.
+  @Test
+  public void testWalk() throws Exception
+  {
+    var root = root("walk");
+    root.delayMs = 30;
+    var seen = new ArrayList<String>();
+    long n = new FilesWalker(client, 4, 2).walk("sys1", "walk", FilesWalker.UNLIMITED_DEPTH, null, null,
+                                                (info, depth) -> seen.add(depth + ":" + info.getPath()));
+    Assert.assertEquals(n, 16);
+    Assert.assertEquals(seen.size(), 16);
+    Assert.assertTrue(seen.indexOf("1:walk/top.log") < seen.indexOf("2:walk/a/x.log"));
+    Assert.assertTrue(seen.indexOf("2:walk/a/deep") < seen.indexOf("3:walk/a/deep/z.log"));
+    Assert.assertTrue(seen.contains("3:walk/.git/objects/pack"));
+    int maxActive = root.maxActive.get();
+    Assert.assertTrue(maxActive > 1 && maxActive <= 4, "maxActive " + maxActive);
+  }
+
+  // Depth limits stop descent and globs filter and prune.
+  @Test
+  public void testDepthAndGlobs() throws Exception
+  {
+    var walker = new FilesWalker(client, 4, 10);
+    var seen = new ArrayList<String>();
+    walker.walk("sys1", "depth", 1, null, null, (info, depth) -> seen.add(info.getName()));
+    Assert.assertEquals(seen.size(), 4);
+    Assert.assertEquals(root("depth").requests.get(), 1);
+
+    seen.clear();
+    walker.walk("sys1", "globs", FilesWalker.UNLIMITED_DEPTH, "*.log", ".git", (info, depth) -> seen.add(info.getPath()));
+    seen.sort(null);
+    Assert.assertEquals(seen, List.of("globs/a/deep/z.log", "globs/a/x.log", "globs/b/4.log", "globs/top.log"));
+
+    seen.clear();
+    walker.walk("sys1", "globs", FilesWalker.UNLIMITED_DEPTH, "a/**", null, (info, depth) -> seen.add(info.getPath()));
+    seen.sort(null);
+    Assert.assertEquals(seen, List.of("globs/a/deep", "globs/a/deep/z.log", "globs/a/x.log", "globs/a/y.txt"));
+  }
+
+  // The visitor can end the walk.
+  @Test
+  public void testVisitorStops() throws Exception
+  {
+    var count = new AtomicInteger();
+    long n = new FilesWalker(client, 1, 10).walk("sys1", "stops", FilesWalker.UNLIMITED_DEPTH, null, null,
+                                                 (info, depth) -> count.incrementAndGet() < 3);
+    Assert.assertEquals(n, 3);
+    Assert.assertEquals(count.get(), 3);
+    Assert.assertEquals(root("stops").requests.get(), 1);
+  }
+
+  // Cancelling the future cancels the listing in flight and ends the walk without
+  // further listings.
+  @Test
+  public void testCancel() throws Exception
+  {
+    var root = root("cancel");
+    root.delayMs = 1000;
+    var dispatcher = client.getApiClient().getHttpClient().dispatcher();
+    var future = new FilesWalker(client, 1, 10).walkAsync("sys1", "cancel", FilesWalker.UNLIMITED_DEPTH, null, null,
+                                                          (info, depth) -> true);
+    for (int i = 0; i < 100 && root.requests.get() == 0; i++) Thread.sleep(10);
+    Assert.assertEquals(dispatcher.runningCallsCount(), 1);
+    future.cancel(true);
+    Assert.assertThrows(CancellationException.class, future::join);
+
+    // The call ends long before the server would have answered.
+    for (int i = 0; i < 50 && dispatcher.runningCallsCount() > 0; i++) Thread.sleep(10);
+    Assert.assertEquals(dispatcher.runningCallsCount(), 0);
+    Thread.sleep(1200);
+    Assert.assertEquals(root.requests.get(), 1);
+  }
+
+  // A failed listing fails the walk.
+  @Test
+  public void testFailure()
+  {
+    root("fail").failDir = "/b";
+    var e = Assert.expectThrows(TapisClientException.class, () ->
+      new FilesWalker(client, 2, 10).walk("sys1", "fail", FilesWalker.UNLIMITED_DEPTH, null, null, (info, depth) -> true));
+    Assert.assertEquals(e.getCode(), 500);
+  }
+
+  private void list(HttpExchange exchange) throws IOException
+  {
+    String dir = exchange.getRequestURI().getPath().substring("/v3/files/ops/sys1/".length());
+    int slash = dir.indexOf('/');
+    String rel = slash < 0 ? "" : dir.substring(slash);
+    var root = root(slash < 0 ? dir : dir.substring(0, slash));
+    root.requests.incrementAndGet();
+    root.maxActive.accumulateAndGet(root.active.incrementAndGet(), Math::max);
+    try
+    {
+      if (root.delayMs > 0) TimeUnit.MILLISECONDS.sleep(root.delayMs);
+    }
+    catch (InterruptedException e) {}
+    finally { root.active.decrementAndGet(); }
+
+    String query = exchange.getRequestURI().getQuery();
+    int limit = Integer.parseInt(query.replaceAll(".*limit=(\\d+).*", "$1"));
+    int offset = Integer.parseInt(query.replaceAll(".*offset=(\\d+).*", "$1"));
+    byte[] body;
+    int status = 200;
+    if (rel.equals(root.failDir))
+    {
+      status = 500;
+      body = "{\"status\":\"error\",\"message\":\"failed\"}".getBytes(StandardCharsets.UTF_8);
+    }
+    else
+    {
+      var entries = TREE.getOrDefault(rel, List.of());
+      var json = new StringBuilder("{\"status\":\"success\",\"result\":[");
+      for (int i = offset; i < Math.min(entries.size(), offset + limit); i++)
+      {
+        String entry = entries.get(i);
+        boolean isDir = entry.endsWith("/");
+        String name = isDir ? entry.substring(0, entry.length() - 1) : entry;
+        json.append(i == offset ? "" : ",").append("{\"name\":\"").append(name).append("\",\"path\":\"")
+            .append(dir).append('/').append(name).append("\",\"type\":\"").append(isDir ? "dir" : "file").append("\"}");
+      }
+      body = json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+    respond(exchange, status, body);
+  }
+}
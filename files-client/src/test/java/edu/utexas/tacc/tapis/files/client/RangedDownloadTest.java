@@ -0,0 +1,253 @@
+package edu.utexas.tacc.tapis.files.client;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+import edu.utexas.tacc.tapis.client.shared.resilience.RetryPolicy;
+
+import static edu.utexas.tacc.tapis.files.client.Utils.*;
+
+/**
+ * Verify that RangedDownloader fetches ranges concurrently into the right offsets,
+ * retries failed ranges on their own and resumes interrupted downloads.  The local JDK
+ * http server serves a generated file through the listing and content endpoints and
+ * can break, reject or fail the first request for chosen ranges.
+ */
+@Test(groups={"unit"})
+public class RangedDownloadTest
+{
+  private static final int SIZE = 1_000_003;
+  private static final long RANGE_SIZE = 100_000;
+
+  private final byte[] data = new byte[SIZE];
+  private LocalServer server;
+  private FilesClient client;
+  private Path target;
+  private final RetryPolicy retryPolicy = new RetryPolicy(3, Duration.ofMillis(1), Duration.ofMillis(10),
+                                                          RetryPolicy.DEFAULT_RETRYABLE_STATUS);
+
+  // Failure injection and observations, keyed by range start.
+  private final Set<Long> truncateOnce = ConcurrentHashMap.newKeySet();
+  private final Set<Long> rejectOnce = ConcurrentHashMap.newKeySet();
+  private final Set<Long> failOnce = ConcurrentHashMap.newKeySet();
+  private volatile String lastModified;
+  private volatile boolean ignoreRange;
+  private volatile boolean chunked;
+  private volatile boolean partial;
+  private volatile long partialShift;
+  private final AtomicInteger requests = new AtomicInteger();
+  private final AtomicInteger active = new AtomicInteger();
+  private final AtomicInteger maxActive = new AtomicInteger();
+
+  @BeforeClass
+  public void setUp() throws Exception
+  {
+    for (int i = 0; i < SIZE; i++) data[i] = (byte) (i * 31 + i / 251);
+    server = startLocalServer(Map.of(
+      "/v3/files/ops/", exchange -> respond(exchange, 200, "{\"status\":\"success\",\"result\":[{\"name\":\"data.bin\","
+                                            + "\"path\":\"data.bin\",\"type\":\"file\",\"size\":" + SIZE
+                                            + ",\"lastModified\":\"" + lastModified + "\"}]}"),
+      "/v3/files/content/", this::content));
+    client = server.client;
+  }
+
+  @AfterClass
+  public void tearDown()
+  {
+    server.close();
+  }
+
+  @BeforeMethod
+  public void reset() throws IOException
+  {
+    truncateOnce.clear(); rejectOnce.clear(); failOnce.clear(); ignoreRange = false;
+    chunked = false; partial = false; partialShift = 0;
+    lastModified = "2024-01-01T00:00:00Z";
+    requests.set(0); maxActive.set(0);
+    target = Files.createTempFile("RangedDownloadTest", ".bin");
+  }
+
+  @AfterMethod
+  public void cleanUp() throws IOException
+  {
+    Files.deleteIfExists(target);
+    Files.deleteIfExists(part());
+    Files.deleteIfExists(checkpoint());
+  }
+
+  // All ranges arrive at their offsets, concurrently, with progress reaching the size.
+  @Test
+  public void testDownload() throws Exception
+  {
+    Files.write(target, new byte[SIZE + 500]);
+    var progress = new AtomicLong();
+    var downloader = new RangedDownloader(client, RANGE_SIZE, 4, retryPolicy);
+    Assert.assertEquals(downloader.download("sys1", "data.bin", target, (n, total) -> {
+      Assert.assertEquals(total, SIZE);
+      progress.set(Math.max(progress.get(), n));
+    }), SIZE);
+    Assert.assertTrue(Arrays.equals(Files.readAllBytes(target), data));
+    Assert.assertEquals(progress.get(), SIZE);
+    Assert.assertEquals(requests.get(), 11);
+    Assert.assertTrue(maxActive.get() > 1 && maxActive.get() <= 4, "maxActive " + maxActive.get());
+  }
+
+  // A broken range resumes from its first missing byte and a rejected range is requested again.
+  @Test
+  public void testRetryRange() throws Exception
+  {
+    truncateOnce.add(2 * RANGE_SIZE);
+    rejectOnce.add(5 * RANGE_SIZE);
+    new RangedDownloader(client, RANGE_SIZE, 4, retryPolicy).download("sys1", "data.bin", SIZE, target, null);
+    Assert.assertTrue(Arrays.equals(Files.readAllBytes(target), data));
+    Assert.assertEquals(requests.get(), 13);
+  }
+
+  // A server that ignores the range fails the download instead of corrupting the file,
+  // and the existing target is left as it was with no temporary file behind.
+  @Test
+  public void testRangeIgnored() throws Exception
+  {
+    ignoreRange = true;
+    Files.writeString(target, "keep");
+    var downloader = new RangedDownloader(client, RANGE_SIZE, 4, retryPolicy);
+    Assert.assertThrows(TapisClientException.class, () -> downloader.download("sys1", "data.bin", target, null));
+    Assert.assertEquals(Files.readString(target), "keep");
+    String tmpPrefix = target.getFileName() + ".";
+    try (var siblings = Files.list(target.getParent()))
+    {
+      Assert.assertTrue(siblings.noneMatch(p -> p.getFileName().toString().startsWith(tmpPrefix)
+                                                && p.getFileName().toString().endsWith(".tmp")));
+    }
+  }
+
+  // A chunked 200 has no length to check, so it is taken as the whole file and fails the range.
+  @Test
+  public void testChunkedFullBody()
+  {
+    ignoreRange = true;
+    chunked = true;
+    var downloader = new RangedDownloader(client, RANGE_SIZE, 4, retryPolicy);
+    var e = Assert.expectThrows(TapisClientException.class, () -> downloader.download("sys1", "data.bin", target, null));
+    Assert.assertTrue(e.getMessage().contains("no length"), e.getMessage());
+    // The failed ranges are not retried and the others are cancelled.
+    Assert.assertTrue(requests.get() <= 4, "requests " + requests.get());
+  }
+
+  // A 206 is accepted when its Content-Range matches the requested bytes and rejected otherwise.
+  @Test
+  public void testPartialContent() throws Exception
+  {
+    partial = true;
+    var downloader = new RangedDownloader(client, RANGE_SIZE, 4, retryPolicy);
+    Assert.assertEquals(downloader.download("sys1", "data.bin", target, null), SIZE);
+    Assert.assertTrue(Arrays.equals(Files.readAllBytes(target), data));
+
+    partialShift = 1;
+    Assert.assertThrows(TapisClientException.class, () -> downloader.download("sys1", "data.bin", target, null));
+    Assert.assertNull(RangedDownloader.parseContentRange("bytes */1000"));
+    Assert.assertEquals(RangedDownloader.parseContentRange("bytes 5-9/*"), new long[] {5, 9});
+  }
+
+  // An interrupted resumable download fetches only the missing ranges when run again.
+  @Test
+  public void testResume() throws Exception
+  {
+    failOnce.add(5 * RANGE_SIZE);
+    var downloader = new RangedDownloader(client, RANGE_SIZE, 1, retryPolicy);
+    Assert.assertThrows(TapisClientException.class, () -> downloader.downloadResumable("sys1", "data.bin", target, null));
+    Assert.assertTrue(Files.exists(part()));
+    Assert.assertTrue(Files.readString(checkpoint()).contains("completed=0,100000,200000,300000,400000"));
+
+    requests.set(0);
+    var progress = new AtomicLong(-1);
+    Assert.assertEquals(downloader.downloadResumable("sys1", "data.bin", target, (n, total) -> {
+      if (progress.get() < 0) progress.set(n);
+    }), SIZE - 5 * RANGE_SIZE);
+    Assert.assertEquals(requests.get(), 6);
+    Assert.assertTrue(progress.get() > 5 * RANGE_SIZE, "First progress " + progress.get());
+    Assert.assertTrue(Arrays.equals(Files.readAllBytes(target), data));
+    Assert.assertFalse(Files.exists(part()));
+    Assert.assertFalse(Files.exists(checkpoint()));
+  }
+
+  // A checkpoint for an older version of the remote file is discarded.
+  @Test
+  public void testResumeChanged() throws Exception
+  {
+    failOnce.add(5 * RANGE_SIZE);
+    var downloader = new RangedDownloader(client, RANGE_SIZE, 1, retryPolicy);
+    Assert.assertThrows(TapisClientException.class, () -> downloader.downloadResumable("sys1", "data.bin", target, null));
+
+    lastModified = "2024-01-02T00:00:00Z";
+    requests.set(0);
+    Assert.assertEquals(downloader.downloadResumable("sys1", "data.bin", target, null), SIZE);
+    Assert.assertEquals(requests.get(), 11);
+    Assert.assertTrue(Arrays.equals(Files.readAllBytes(target), data));
+  }
+
+  private Path part() { return target.resolveSibling(target.getFileName() + RangedDownloader.PART_SUFFIX); }
+
+  private Path checkpoint() { return target.resolveSibling(target.getFileName() + RangedDownloader.CHECKPOINT_SUFFIX); }
+
+  private void content(HttpExchange exchange) throws IOException
+  {
+    requests.incrementAndGet();
+    maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+    try
+    {
+      String query = exchange.getRequestURI().getQuery();
+      String[] range = query.substring(query.indexOf("range=") + 6).split("&")[0].split(",");
+      int start = Integer.parseInt(range[0]);
+      int count = Integer.parseInt(range[1]);
+      try { Thread.sleep(20); } catch (InterruptedException e) {}
+      if (failOnce.remove((long) start))
+        respond(exchange, 500, "{\"status\":\"error\",\"message\":\"failed\"}");
+      else if (rejectOnce.remove((long) start))
+        respond(exchange, 503, "{\"status\":\"error\",\"message\":\"busy\"}");
+      else if (ignoreRange && chunked)
+      {
+        exchange.sendResponseHeaders(200, 0);
+        exchange.getResponseBody().write(data);
+        exchange.close();
+      }
+      else if (ignoreRange)
+        respond(exchange, 200, data);
+      else if (partial)
+      {
+        long first = start + partialShift;
+        exchange.getResponseHeaders().add("Content-Range",
+                                          "bytes " + first + "-" + (first + count - 1) + "/" + SIZE);
+        respond(exchange, 206, Arrays.copyOfRange(data, start, start + count));
+      }
+      else if (truncateOnce.remove((long) start))
+      {
+        exchange.sendResponseHeaders(200, count);
+        exchange.getResponseBody().write(data, start, count / 2);
+        exchange.getResponseBody().flush();
+        exchange.close();
+      }
+      else
+        respond(exchange, 200, Arrays.copyOfRange(data, start, start + count));
+    }
+    finally { active.decrementAndGet(); }
+  }
+}
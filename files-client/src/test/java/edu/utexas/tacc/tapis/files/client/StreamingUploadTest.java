@@ -0,0 +1,148 @@
+package edu.utexas.tacc.tapis.files.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+import okio.Buffer;
+
+import static edu.utexas.tacc.tapis.files.client.Utils.*;
+
+/**
+ * Verify that FilesClient.insert and insertAsync stream uploads from input streams and local files as
+ * multipart requests with and without a known content length and reports progress.  The local JDK http server records the
+ * request it received.
+ */
+@Test(groups={"unit"})
+public class StreamingUploadTest
+{
+  private static final int SIZE = 1_000_000;
+
+  private LocalServer server;
+  private FilesClient client;
+  private volatile String lastPath;
+  private volatile String lastContentLength;
+  private volatile String lastBody;
+
+  @BeforeClass
+  public void setUp() throws Exception
+  {
+    server = startLocalServer(Map.of("/", exchange -> {
+      lastPath = exchange.getRequestURI().getPath();
+      lastContentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+      lastBody = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.ISO_8859_1);
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      respond(exchange, 200, "{\"status\":\"success\",\"result\":\"ok\"}");
+    }));
+    client = server.client;
+  }
+
+  @AfterClass
+  public void tearDown()
+  {
+    server.close();
+  }
+
+  // With a known length the Content-Length is sent and progress reaches the total.
+  @Test
+  public void testKnownLength() throws Exception
+  {
+    var progress = new AtomicLong();
+    var resp = client.insert("sys1", "dir/data.bin", data(), SIZE, (n, total) -> {
+      Assert.assertEquals(total, SIZE);
+      progress.set(n);
+    });
+    Assert.assertEquals(resp.getResult(), "ok");
+    Assert.assertEquals(lastPath, "/v3/files/ops/sys1/dir/data.bin");
+    Assert.assertNotNull(lastContentLength);
+    Assert.assertTrue(Long.parseLong(lastContentLength) > SIZE);
+    Assert.assertEquals(progress.get(), SIZE);
+    checkBody();
+  }
+
+  // Without a length the body is sent chunked.
+  @Test
+  public void testUnknownLength() throws Exception
+  {
+    var progress = new AtomicLong();
+    var resp = client.insert("sys1", "dir/data.bin", data(), -1, (n, total) -> {
+      Assert.assertEquals(total, -1);
+      progress.set(n);
+    });
+    Assert.assertEquals(resp.getResult(), "ok");
+    Assert.assertNull(lastContentLength);
+    Assert.assertEquals(progress.get(), SIZE);
+    checkBody();
+  }
+
+  // A local file is sent from its channel with a Content-Length and can be sent again.
+  @Test
+  public void testPath() throws Exception
+  {
+    Path file = Files.createTempFile("StreamingUploadTest", ".bin");
+    try
+    {
+      Files.copy(data(), file, StandardCopyOption.REPLACE_EXISTING);
+      try (var channel = FileChannel.open(file))
+      {
+        var body = new StreamingRequestBody(channel, 0, SIZE, null, null);
+        Assert.assertFalse(body.isOneShot());
+        for (int i = 0; i < 2; i++)
+        {
+          var sink = new Buffer();
+          body.writeTo(sink);
+          Assert.assertEquals(sink.size(), SIZE);
+        }
+      }
+
+      var progress = new AtomicLong();
+      var resp = client.insert("sys1", "dir/data.bin", file, (n, total) -> progress.set(n));
+      Assert.assertEquals(resp.getResult(), "ok");
+      Assert.assertNotNull(lastContentLength);
+      Assert.assertEquals(progress.get(), SIZE);
+      checkBody();
+
+      // The non-blocking upload sends the same request.
+      lastBody = null;
+      resp = client.insertAsync("sys1", "dir/data.bin", file, null).get(10, TimeUnit.SECONDS);
+      Assert.assertEquals(resp.getResult(), "ok");
+      checkBody();
+    }
+    finally { Files.delete(file); }
+  }
+
+  // A stream shorter than the declared length fails the upload.
+  @Test
+  public void testShortStream()
+  {
+    Assert.assertThrows(TapisClientException.class, () -> client.insert("sys1", "short.bin", data(), SIZE + 1, null));
+  }
+
+  private InputStream data()
+  {
+    byte[] data = new byte[SIZE];
+    for (int i = 0; i < SIZE; i++) data[i] = (byte) ('a' + i % 26);
+    return new ByteArrayInputStream(data);
+  }
+
+  private void checkBody()
+  {
+    Assert.assertTrue(lastBody.contains("name=\"file\"; filename=\"data.bin\""));
+    int start = lastBody.indexOf("\r\n\r\n") + 4;
+    Assert.assertEquals(lastBody.substring(start, start + 26), "abcdefghijklmnopqrstuvwxyz");
+    Assert.assertEquals(lastBody.indexOf("\r\n--", start) - start, SIZE);
+  }
+}
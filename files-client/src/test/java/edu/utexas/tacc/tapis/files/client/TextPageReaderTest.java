@@ -0,0 +1,140 @@
+package edu.utexas.tacc.tapis.files.client;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static edu.utexas.tacc.tapis.files.client.Utils.*;
+
+/**
+ * Verify paging, decoding across page boundaries and follow mode of TextPageReader.
+ * The local JDK http server serves a text file that tests can append to through the
+ * listing and content endpoints.
+ */
+@Test(groups={"unit"})
+public class TextPageReaderTest
+{
+  private static final String TEXT = "line 1 éè\n line 2 €€\n line 3 😀 end\n";
+
+  private LocalServer server;
+  private FilesClient client;
+  private volatile byte[] content;
+  private volatile boolean ignoreRange;
+  private final AtomicInteger requests = new AtomicInteger();
+
+  @BeforeClass
+  public void setUp() throws Exception
+  {
+    server = startLocalServer(Map.of(
+      "/v3/files/ops/", exchange -> respond(exchange, 200, "{\"status\":\"success\",\"result\":[{\"name\":\"log.txt\","
+                                            + "\"path\":\"log.txt\",\"type\":\"file\",\"size\":" + content.length
+                                            + "}]}"),
+      "/v3/files/content/", exchange -> {
+        requests.incrementAndGet();
+        String query = exchange.getRequestURI().getQuery();
+        String[] range = query.substring(query.indexOf("range=") + 6).split("&")[0].split(",");
+        int start = Integer.parseInt(range[0]);
+        int end = Math.min(content.length, start + Integer.parseInt(range[1]));
+        // Only pages after the first are answered with the whole file.
+        if (ignoreRange && start > 0) { start = 0; end = content.length; }
+        respond(exchange, 200, Arrays.copyOfRange(content, start, end));
+      }));
+    client = server.client;
+  }
+
+  @AfterClass
+  public void tearDown()
+  {
+    server.close();
+  }
+
+  @BeforeMethod
+  public void reset()
+  {
+    content = TEXT.getBytes(StandardCharsets.UTF_8);
+    ignoreRange = false;
+    requests.set(0);
+  }
+
+  // Small pages split multi-byte characters, which are still decoded correctly.
+  @Test
+  public void testRead() throws Exception
+  {
+    for (int pageSize : new int[] {1, 3, 7, 1000})
+    {
+      requests.set(0);
+      try (var reader = new TextPageReader(client, "sys1", "log.txt", 0, pageSize, null))
+      {
+        Assert.assertEquals(readAll(reader), TEXT, "pageSize " + pageSize);
+        Assert.assertEquals(requests.get(), (content.length + pageSize - 1) / pageSize);
+        Assert.assertEquals(reader.getOffset(), content.length);
+      }
+    }
+  }
+
+  // A negative start offset reads the end of the file.
+  @Test
+  public void testStartOffset() throws Exception
+  {
+    try (var reader = new TextPageReader(client, "sys1", "log.txt", -4, 3, null))
+    {
+      Assert.assertEquals(readAll(reader), "end\n");
+    }
+  }
+
+  // In follow mode appended text is returned and close() ends a blocked read.
+  @Test
+  public void testFollow() throws Exception
+  {
+    try (var reader = new TextPageReader(client, "sys1", "log.txt", -4, 64, Duration.ofMillis(20)))
+    {
+      char[] buf = new char[64];
+      int n = reader.read(buf, 0, buf.length);
+      Assert.assertEquals(new String(buf, 0, n), "end\n");
+
+      content = (TEXT + "more €\n").getBytes(StandardCharsets.UTF_8);
+      var more = new StringBuilder();
+      while (more.length() < 7) more.append(buf, 0, reader.read(buf, 0, buf.length));
+      Assert.assertEquals(more.toString(), "more €\n");
+
+      CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS).execute(reader::close);
+      Assert.assertEquals(reader.read(buf, 0, buf.length), -1);
+    }
+  }
+
+  // A server that ignores the range and sends the whole file fails the read instead of
+  // repeating the file at every offset.  The first case fails on a prefetched page, the
+  // second on the page fetched when reading starts.
+  @Test
+  public void testRangeIgnored() throws Exception
+  {
+    ignoreRange = true;
+    for (int pageSize : new int[] {7, 1000})
+    {
+      try (var reader = new TextPageReader(client, "sys1", "log.txt", pageSize == 7 ? 0 : 4, pageSize, null))
+      {
+        var e = Assert.expectThrows(IOException.class, () -> readAll(reader));
+        Assert.assertTrue(e.getMessage().contains("Expected"), e.getMessage());
+      }
+    }
+  }
+
+  private static String readAll(TextPageReader reader) throws IOException
+  {
+    var out = new StringWriter();
+    reader.transferTo(out);
+    return out.toString();
+  }
+}
@@ -0,0 +1,152 @@
+package edu.utexas.tacc.tapis.files.client;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+import edu.utexas.tacc.tapis.files.client.gen.model.TransferTask;
+import edu.utexas.tacc.tapis.files.client.gen.model.TransferTask.StatusEnum;
+
+import static edu.utexas.tacc.tapis.files.client.Utils.*;
+
+/**
+ * Verify that TransferWatcher completes many tasks from one thread with bounded
+ * outstanding polls, backs off on idle tasks, reports progress and fails unknown tasks.
+ * The local JDK http server scripts each task as a list of states, advancing one state
+ * per poll and repeating the last one.
+ */
+@Test(groups={"unit"})
+public class TransferWatcherTest
+{
+  private LocalServer server;
+  private FilesClient client;
+  private final Map<String, List<String>> scripts = new ConcurrentHashMap<>();
+  private final Map<String, AtomicInteger> polls = new ConcurrentHashMap<>();
+  private final AtomicInteger active = new AtomicInteger();
+  private final AtomicInteger maxActive = new AtomicInteger();
+
+  @BeforeClass
+  public void setUp() throws Exception
+  {
+    server = startLocalServer(Map.of("/v3/files/transfers/", this::transfer));
+    client = server.client;
+  }
+
+  @AfterClass
+  public void tearDown()
+  {
+    server.close();
+  }
+
+  @BeforeMethod
+  public void reset()
+  {
+    scripts.clear();
+    polls.clear();
+    maxActive.set(0);
+  }
+
+  // Many tasks complete with no more than maxInFlight polls outstanding.
+  @Test
+  public void testManyTasks() throws Exception
+  {
+    int n = 300;
+    for (int i = 0; i < n; i++)
+      scripts.put("t" + i, List.of("ACCEPTED", "IN_PROGRESS:10", "IN_PROGRESS:50", "COMPLETED:100"));
+    int threadsBefore = Thread.activeCount();
+    try (var watcher = new TransferWatcher(client, Duration.ofMillis(5), Duration.ofMillis(50), 4))
+    {
+      var futures = new ArrayList<CompletableFuture<TransferTask>>();
+      for (int i = 0; i < n; i++) futures.add(watcher.watch("t" + i));
+      Assert.assertTrue(Thread.activeCount() - threadsBefore < 10);
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+      for (var f : futures) Assert.assertEquals(f.get().getStatus(), StatusEnum.COMPLETED);
+      Assert.assertTrue(maxActive.get() <= 4, "maxActive " + maxActive.get());
+      Assert.assertEquals(watcher.getWatchedCount(), 0);
+    }
+  }
+
+  // Progress events are emitted once per change, and an idle task is polled less and less.
+  @Test
+  public void testProgressAndBackoff() throws Exception
+  {
+    scripts.put("busy", List.of("ACCEPTED", "ACCEPTED", "IN_PROGRESS:10", "IN_PROGRESS:10", "IN_PROGRESS:60",
+                                "FAILED:60"));
+    scripts.put("idle", List.of("ACCEPTED"));
+    try (var watcher = new TransferWatcher(client, Duration.ofMillis(10), Duration.ofMillis(400), 4))
+    {
+      var events = new CopyOnWriteArrayList<String>();
+      var busy = watcher.watch("busy", task -> events.add(task.getStatus() + ":" + task.getTotalBytesTransferred()));
+      var idle = watcher.watch("idle");
+      Assert.assertSame(watcher.watch("idle"), idle);
+      Assert.assertEquals(busy.get(10, TimeUnit.SECONDS).getStatus(), StatusEnum.FAILED);
+      Assert.assertEquals(events, List.of("ACCEPTED:0", "IN_PROGRESS:10", "IN_PROGRESS:60", "FAILED:60"));
+
+      // At a fixed 10ms interval an idle task would be polled about 150 times in 1.5s.
+      Thread.sleep(1500);
+      int idlePolls = polls.get("idle").get();
+      Assert.assertTrue(idlePolls < 15, "idle polls " + idlePolls);
+
+      // Cancelling the future stops the watch.
+      idle.cancel(false);
+      Assert.assertEquals(watcher.getWatchedCount(), 0);
+      Thread.sleep(600);
+      Assert.assertTrue(polls.get("idle").get() <= idlePolls + 1);
+    }
+  }
+
+  // An unknown task fails with the service's 404 and close() fails pending futures.
+  @Test
+  public void testNotFoundAndClose() throws Exception
+  {
+    scripts.put("idle", List.of("PAUSED"));
+    var watcher = new TransferWatcher(client, Duration.ofMillis(5), Duration.ofMillis(50), 2);
+    var missing = watcher.watch("missing");
+    var e = Assert.expectThrows(ExecutionException.class, () -> missing.get(10, TimeUnit.SECONDS));
+    Assert.assertEquals(((TapisClientException) e.getCause()).getCode(), 404);
+
+    var idle = watcher.watch("idle");
+    Thread.sleep(50);
+    watcher.close();
+    Assert.assertTrue(idle.isCompletedExceptionally());
+    Assert.assertThrows(IllegalStateException.class, () -> watcher.watch("other"));
+  }
+
+  private void transfer(HttpExchange exchange) throws IOException
+  {
+    String id = exchange.getRequestURI().getPath().substring("/v3/files/transfers/".length());
+    List<String> script = scripts.get(id);
+    if (script == null)
+    {
+      respond(exchange, 404, "{\"status\":\"error\",\"message\":\"not found\"}");
+      return;
+    }
+    int poll = polls.computeIfAbsent(id, k -> new AtomicInteger()).getAndIncrement();
+    String[] state = script.get(Math.min(poll, script.size() - 1)).split(":");
+    long bytes = state.length > 1 ? Long.parseLong(state[1]) : 0;
+
+    // Not counted while sending, since the client may poll again as soon as a response arrives.
+    maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+    try { Thread.sleep(2); } catch (InterruptedException ie) {}
+    finally { active.decrementAndGet(); }
+    respond(exchange, 200, "{\"status\":\"success\",\"result\":{\"tag\":\"" + id + "\",\"status\":\"" + state[0]
+                           + "\",\"totalBytesTransferred\":" + bytes + ",\"estimatedTotalBytes\":100}}");
+  }
+}
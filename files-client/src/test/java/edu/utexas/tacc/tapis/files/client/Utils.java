@@ -20,10 +20,21 @@ package edu.utexas.tacc.tapis.files.client;
  *  NOTE that service port is ignored if TAPIS_SVC_URL is set
  */
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import org.apache.commons.lang3.StringUtils;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
 /*
- * Utilities and data for integration testing
+ * Utilities and data for integration testing and for unit testing against a local http server
  */
 public final class Utils
 {
@@ -87,4 +98,59 @@ public final class Utils
     return new FilesClient(serviceURL, userJWT);
   }
 
+  /*
+   * Start a local JDK http server on an ephemeral port with the given handlers, keyed by context path,
+   *   and create a FilesClient pointed at it. Handlers run on a cached thread pool so concurrent
+   *   client requests are served concurrently.
+   */
+  public static LocalServer startLocalServer(Map<String, HttpHandler> handlers) throws IOException
+  {
+    // Avoid Nagle delays on the many small responses.
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+    var server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    var executor = Executors.newCachedThreadPool();
+    server.setExecutor(executor);
+    handlers.forEach(server::createContext);
+    server.start();
+    return new LocalServer(server, executor);
+  }
+
+  // Send a complete response. An empty body is sent with a Content-Length of 0.
+  public static void respond(HttpExchange exchange, int status, byte[] body) throws IOException
+  {
+    exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+    exchange.getResponseBody().write(body);
+    exchange.close();
+  }
+
+  public static void respond(HttpExchange exchange, int status, String text) throws IOException
+  {
+    respond(exchange, status, text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /*
+   * Local http server started by startLocalServer and the client pointed at it.
+   * Closing stops both.
+   */
+  public static final class LocalServer implements AutoCloseable
+  {
+    public final HttpServer server;
+    public final FilesClient client;
+    private final ExecutorService executor;
+
+    private LocalServer(HttpServer server, ExecutorService executor)
+    {
+      this.server = server;
+      this.executor = executor;
+      client = new FilesClient("http://127.0.0.1:" + server.getAddress().getPort(), "jwt");
+    }
+
+    @Override
+    public void close()
+    {
+      client.close();
+      server.stop(0);
+      executor.shutdownNow();
+    }
+  }
 }
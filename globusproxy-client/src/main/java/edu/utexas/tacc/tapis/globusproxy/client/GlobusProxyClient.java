@@ -2,11 +2,13 @@ package edu.utexas.tacc.tapis.globusproxy.client;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import org.apache.commons.lang3.StringUtils;
 
 import edu.utexas.tacc.tapis.client.shared.Utils;
 import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
 import edu.utexas.tacc.tapis.client.shared.ITapisClient;
+import edu.utexas.tacc.tapis.client.shared.TapisHttpTransport;
 
 import edu.utexas.tacc.tapis.globusproxy.client.gen.model.GlobusTransferItem;
 import edu.utexas.tacc.tapis.globusproxy.client.gen.model.V3GlobusProxyTransfersClientIdTransferItems;
@@ -40,6 +42,9 @@ public class GlobusProxyClient implements ITapisClient
   // *********************** Constants **************************************
   // ************************************************************************
 
+  // Configuration defaults.
+  private static final String GLOBUSPROXY_CLIENT_USER_AGENT = "GlobusProxyClient";
+
   // Header key for JWT
   public static final String TAPIS_JWT_HEADER = "X-Tapis-Token";
 
@@ -52,6 +57,8 @@ public class GlobusProxyClient implements ITapisClient
   // ************************************************************************
   // Instance of the underlying autogenerated client.
   private final ApiClient apiClient;
+  // Shared transport, null if apiClient owns its http client.
+  private final TapisHttpTransport transport;
 
   private final AuthApi authApi;
   private final FileOperationsApi operationsApi;
@@ -69,6 +76,8 @@ public class GlobusProxyClient implements ITapisClient
   public GlobusProxyClient()
   {
     apiClient = new ApiClient();
+    apiClient.setUserAgent(GLOBUSPROXY_CLIENT_USER_AGENT);
+    transport = null;
     authApi = new AuthApi(apiClient);
     operationsApi = new FileOperationsApi(apiClient);
     transfersApi = new TransfersApi(apiClient);
@@ -86,7 +95,23 @@ public class GlobusProxyClient implements ITapisClient
    */
   public GlobusProxyClient(String path, String jwt)
   {
-    apiClient = new ApiClient();
+    this(path, jwt, null);
+  }
+
+  /**
+   * Constructor that overrides the compiled-in basePath value in ApiClient and uses
+   * the connection pool and dispatcher of a shared transport.
+   * If transport is null the client creates its own http client.
+   *
+   * @param path the base path URL prefix up to and including the service root
+   * @param jwt the token to set in an HTTP header
+   * @param transport1 shared http transport, may be null
+   */
+  public GlobusProxyClient(String path, String jwt, TapisHttpTransport transport1)
+  {
+    transport = transport1;
+    apiClient = (transport == null ? new ApiClient() : new ApiClient(transport.getHttpClient()));
+    apiClient.setUserAgent(GLOBUSPROXY_CLIENT_USER_AGENT);
     if (!StringUtils.isBlank(path)) apiClient.setBasePath(path);
     if (!StringUtils.isBlank(jwt)) apiClient.addDefaultHeader(TAPIS_JWT_HEADER, jwt);
     authApi = new AuthApi(apiClient);
@@ -116,6 +141,7 @@ public class GlobusProxyClient implements ITapisClient
    */
   public void close()
   {
+    if (transport != null) return;
     try {
       // Best effort attempt to shut things down.
       var okClient = apiClient.getHttpClient();
@@ -491,6 +517,27 @@ public class GlobusProxyClient implements ITapisClient
     return transferTask;
   }
 
+  /**
+   * Non-blocking getTransferTask.  See getTransferTask for a description of the parameters.
+   *   The future fails with a TapisClientException.
+   *
+   * @return future transfer task, completed with null if an argument is blank or there is no result
+   */
+  public CompletableFuture<GlobusTransferTask> getTransferTaskAsync(String clientId, String accessToken,
+                                                                    String refreshToken, String taskId)
+  {
+    if (StringUtils.isBlank(clientId) || StringUtils.isBlank(accessToken) || StringUtils.isBlank(taskId))
+      return CompletableFuture.completedFuture(null);
+    try
+    {
+      var call = transfersApi.getTransferTaskCall(clientId, taskId, accessToken, refreshToken, null);
+      return Utils.executeAsync(apiClient.getHttpClient(), call, InlineResponse2004Result.class,
+                                (InlineResponse2004Result r) -> r == null ? null : buildTransferTask(r));
+    }
+    catch (ApiException e) { return Utils.failedFuture(e.getCode(), e.getResponseBody(), e); }
+    catch (Exception e) { return Utils.failedFuture(-1, null, e); }
+  }
+
   /**
    * Request to cancel a transfer task
    *
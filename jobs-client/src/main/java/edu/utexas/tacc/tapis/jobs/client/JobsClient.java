@@ -2,11 +2,16 @@ package edu.utexas.tacc.tapis.jobs.client;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Type;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.commons.lang3.StringUtils;
+import com.google.gson.reflect.TypeToken;
 
 import edu.utexas.tacc.tapis.client.shared.ITapisClient;
+import edu.utexas.tacc.tapis.client.shared.TapisExecutor;
+import edu.utexas.tacc.tapis.client.shared.TapisHttpTransport;
 import edu.utexas.tacc.tapis.client.shared.Utils;
 import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
 import edu.utexas.tacc.tapis.jobs.client.gen.ApiClient;
@@ -73,12 +78,24 @@ public class JobsClient
     // Configuration defaults.
     private static final String JOBS_CLIENT_USER_AGENT = "JobsClient";
     
+    // Result type of the job list, used by the non-blocking call.
+    private static final Type JOB_LIST_TYPE = new TypeToken<List<JobListDTO>>(){}.getType();
+    
     /* **************************************************************************** */
     /*                                    Fields                                    */
     /* **************************************************************************** */
     // This client instance's underlying generated client.
     private final ApiClient _apiClient;
     
+    // Shared transport, null if _apiClient owns its http client.
+    private final TapisHttpTransport _transport;
+    
+    // Generated api facades, created once and reused on every call.
+    private final JobsApi _jobsApi;
+    private final ShareApi _shareApi;
+    private final GeneralApi _generalApi;
+    private final SubscriptionsApi _subApi;
+    
     /* **************************************************************************** */
     /*                                 Constructors                                 */
     /* **************************************************************************** */
@@ -109,10 +126,26 @@ public class JobsClient
      * 
      * @param path the base path 
      */
-    public JobsClient(String path, String jwt) 
+    public JobsClient(String path, String jwt) {this(path, jwt, null);}
+    
+    /* ---------------------------------------------------------------------------- */
+    /* constructor:                                                                 */
+    /* ---------------------------------------------------------------------------- */
+    /** Constructor that overrides the compiled-in basePath value in ApiClient and
+     * builds on a shared http transport.  The connection pool and dispatcher of the
+     * transport are shared with all other clients using it, while the base path, 
+     * headers and timeouts set on this client remain private to this client.  If 
+     * transport is null this client creates its own http client.
+     * 
+     * @param path the base path 
+     * @param jwt the user or service jwt, can be null
+     * @param transport the shared transport, can be null
+     */
+    public JobsClient(String path, String jwt, TapisHttpTransport transport) 
     {
     	// Create actual client.
-    	_apiClient = new ApiClient();
+    	_transport = transport;
+    	_apiClient = transport == null ? new ApiClient() : new ApiClient(transport.getHttpClient());
     	
         // Process input.
         if (!StringUtils.isBlank(path)) _apiClient.setBasePath(path);
@@ -120,6 +153,12 @@ public class JobsClient
         
         // Other defaults.
         _apiClient.setUserAgent(JOBS_CLIENT_USER_AGENT);
+        
+        // Api facades.
+        _jobsApi = new JobsApi(_apiClient);
+        _shareApi = new ShareApi(_apiClient);
+        _generalApi = new GeneralApi(_apiClient);
+        _subApi = new SubscriptionsApi(_apiClient);
     }
     
     /* **************************************************************************** */
@@ -225,9 +264,12 @@ public class JobsClient
     /* close:                                                                       */
     /* ---------------------------------------------------------------------------- */
     /** Close connections and stop threads that can sometimes prevent JVM shutdown.
+     * Clients using a shared transport leave the transport untouched.
      */
     public void close()
     {
+        // The shared transport outlives this client.
+        if (_transport != null) return;
         try {
             // Best effort attempt to shut things down.
             var okClient = _apiClient.getHttpClient();
@@ -249,9 +291,7 @@ public class JobsClient
     {
         RespSubmitJob resp = null;
         try {
-            // Get the API object using default networking.
-            var jobsApi = new JobsApi(_apiClient);
-            resp = jobsApi.submitJob(reqSubmitJob, false);
+            resp = _jobsApi.submitJob(reqSubmitJob, false);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -267,9 +307,7 @@ public class JobsClient
     {
         RespSubmitJob resp = null;
         try {
-            // Get the API object using default networking.
-            var jobsApi = new JobsApi(_apiClient);
-            resp = jobsApi.resubmitJob(jobUuid, false);
+            resp = _jobsApi.resubmitJob(jobUuid, false);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -285,9 +323,7 @@ public class JobsClient
     {
         RespGetJob resp = null;
         try {
-            // Get the API object using default networking.
-            var jobsApi = new JobsApi(_apiClient);
-            resp = jobsApi.getJob(jobUuid, false);
+            resp = _jobsApi.getJob(jobUuid, false);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -303,9 +339,7 @@ public class JobsClient
     {
         RespGetJobStatus resp = null;
         try {
-            // Get the API object using default networking.
-            var jobsApi = new JobsApi(_apiClient);
-            resp = jobsApi.getJobStatus(jobUuid,false);
+            resp = _jobsApi.getJobStatus(jobUuid,false);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -313,6 +347,81 @@ public class JobsClient
         return resp == null ? null : resp.getResult();
     }
     
+    /* ---------------------------------------------------------------------------- */
+    /* getJobStatuses:                                                              */
+    /* ---------------------------------------------------------------------------- */
+    /** Get the status of many jobs using the default TapisExecutor, which runs the
+     * requests on virtual threads when the JVM supports them.
+     * 
+     * @param jobUuids the jobs to query
+     * @param maxConcurrency the maximum number of concurrent requests
+     * @return the statuses in the same order as the input
+     * @throws TapisClientException the first failed request
+     */
+    public List<JobStatusDisplay> getJobStatuses(List<String> jobUuids, int maxConcurrency)
+     throws TapisClientException
+    {
+        return TapisExecutor.getDefault().invokeAll(jobUuids, maxConcurrency, this::getJobStatus);
+    }
+    
+    /* ---------------------------------------------------------------------------- */
+    /* getJobAsync:                                                                 */
+    /* ---------------------------------------------------------------------------- */
+    /** Non-blocking getJob.  The future fails with a TapisClientException. */
+    public CompletableFuture<Job> getJobAsync(String jobUuid)
+    {
+        try {
+            return Utils.executeAsync(_apiClient.getHttpClient(), 
+                                      _jobsApi.getJobCall(jobUuid, false, null), Job.class);
+        }
+        catch (ApiException e) {return Utils.failedFuture(e.getCode(), e.getResponseBody(), e);}
+        catch (Exception e) {return Utils.failedFuture(-1, null, e);}
+    }
+    
+    /* ---------------------------------------------------------------------------- */
+    /* getJobStatusAsync:                                                           */
+    /* ---------------------------------------------------------------------------- */
+    /** Non-blocking getJobStatus.  The future fails with a TapisClientException. */
+    public CompletableFuture<JobStatusDisplay> getJobStatusAsync(String jobUuid)
+    {
+        try {
+            return Utils.executeAsync(_apiClient.getHttpClient(), 
+                                      _jobsApi.getJobStatusCall(jobUuid, false, null), 
+                                      JobStatusDisplay.class);
+        }
+        catch (ApiException e) {return Utils.failedFuture(e.getCode(), e.getResponseBody(), e);}
+        catch (Exception e) {return Utils.failedFuture(-1, null, e);}
+    }
+    
+    /* ---------------------------------------------------------------------------- */
+    /* submitJobAsync:                                                              */
+    /* ---------------------------------------------------------------------------- */
+    /** Non-blocking submitJob.  The future fails with a TapisClientException. */
+    public CompletableFuture<Job> submitJobAsync(ReqSubmitJob reqSubmitJob)
+    {
+        try {
+            return Utils.executeAsync(_apiClient.getHttpClient(), 
+                                      _jobsApi.submitJobCall(reqSubmitJob, false, null), Job.class);
+        }
+        catch (ApiException e) {return Utils.failedFuture(e.getCode(), e.getResponseBody(), e);}
+        catch (Exception e) {return Utils.failedFuture(-1, null, e);}
+    }
+    
+    /* ---------------------------------------------------------------------------- */
+    /* cancelJobAsync:                                                              */
+    /* ---------------------------------------------------------------------------- */
+    /** Non-blocking cancelJob.  The future fails with a TapisClientException. */
+    public CompletableFuture<JobCancelDisplay> cancelJobAsync(String jobUuid)
+    {
+        try {
+            return Utils.executeAsync(_apiClient.getHttpClient(), 
+                                      _jobsApi.cancelJobCall(jobUuid, false, null), 
+                                      JobCancelDisplay.class);
+        }
+        catch (ApiException e) {return Utils.failedFuture(e.getCode(), e.getResponseBody(), e);}
+        catch (Exception e) {return Utils.failedFuture(-1, null, e);}
+    }
+    
     /* ---------------------------------------------------------------------------- */
     /* sendEvent:                                                                   */
     /* ---------------------------------------------------------------------------- */
@@ -321,9 +430,7 @@ public class JobsClient
     {
         RespBasic resp = null;
         try {
-            // Get the API object using default networking.
-            var jobsApi = new JobsApi(_apiClient);
-            resp = jobsApi.sendEvent(jobUuid, reqSubmitJob, false);
+            resp = _jobsApi.sendEvent(jobUuid, reqSubmitJob, false);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -341,9 +448,7 @@ public class JobsClient
     {
         RespCancelJob resp = null;
         try {
-            // Get the API object using default networking.
-            var jobsApi = new JobsApi(_apiClient);
-            resp = jobsApi.cancelJob(jobUuid, false);
+            resp = _jobsApi.cancelJob(jobUuid, false);
             		
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
@@ -360,9 +465,7 @@ public class JobsClient
     {
         RespJobHistory resp = null;
         try {
-            // Get the API object using default networking.
-            var jobsApi = new JobsApi(_apiClient);
-            resp = jobsApi.getJobHistory(jobUuid, limit, skip, false);
+            resp = _jobsApi.getJobHistory(jobUuid, limit, skip, false);
             		
             		
         }
@@ -380,9 +483,7 @@ public class JobsClient
     {
     	RespGetJobList resp = null;
         try {
-            // Get the API object using default networking.
-            var jobsApi = new JobsApi(_apiClient);
-            resp = jobsApi.getJobList(limit, skip, startAfter, orderBy, computeTotal, listType, false);
+            resp = _jobsApi.getJobList(limit, skip, startAfter, orderBy, computeTotal, listType, false);
             		
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
@@ -391,6 +492,24 @@ public class JobsClient
         return resp == null ? null : resp.getResult();
     }
     
+    /* ---------------------------------------------------------------------------- */
+    /* getJobListAsync:                                                             */
+    /* ---------------------------------------------------------------------------- */
+    /** Non-blocking getJobList.  The future fails with a TapisClientException. */
+    public CompletableFuture<List<JobListDTO>> getJobListAsync(int limit, int skip, int startAfter, 
+                                                               String orderBy, boolean computeTotal, 
+                                                               String listType)
+    {
+        try {
+            return Utils.executeAsync(_apiClient.getHttpClient(), 
+                                      _jobsApi.getJobListCall(limit, skip, startAfter, orderBy, computeTotal, 
+                                                              listType, false, null), 
+                                      JOB_LIST_TYPE);
+        }
+        catch (ApiException e) {return Utils.failedFuture(e.getCode(), e.getResponseBody(), e);}
+        catch (Exception e) {return Utils.failedFuture(-1, null, e);}
+    }
+    
     /* ---------------------------------------------------------------------------- */
     /* getJobSearchList:                                                            */
     /* ---------------------------------------------------------------------------- */
@@ -400,9 +519,7 @@ public class JobsClient
     {
     	RespJobSearchAllAttributes resp = null;
         try {
-            // Get the API object using default networking.
-            var jobsApi = new JobsApi(_apiClient);
-            resp = jobsApi.getJobSearchList(limit, skip, startAfter, orderBy, computeTotal, select, listType, false);
+            resp = _jobsApi.getJobSearchList(limit, skip, startAfter, orderBy, computeTotal, select, listType, false);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -418,9 +535,7 @@ public class JobsClient
     {
     	RespGetJobOutputList resp = null;
         try {
-            // Get the API object using default networking.
-            var jobsApi = new JobsApi(_apiClient);
-            resp = jobsApi.getJobOutputList(jobUuid, path, limit, skip, allowIfRunning=false,false);
+            resp = _jobsApi.getJobOutputList(jobUuid, path, limit, skip, allowIfRunning=false,false);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -437,10 +552,8 @@ public class JobsClient
     	
     	
        
-        	// Get the API object using default networking.
-            var jobsApi = new JobsApi(_apiClient);
              try {
-				Call outputFile = jobsApi.getJobOutputDownloadCall(jobUuid, path, compress, format, allowIfRunning=false,false,null);
+				Call outputFile = _jobsApi.getJobOutputDownloadCall(jobUuid, path, compress, format, allowIfRunning=false,false,null);
 						Response response =  outputFile.execute();
 		          stream = response.body().byteStream();
              } catch (ApiException e) {
@@ -459,8 +572,8 @@ public class JobsClient
     {
 
     	RespJobSearchAllAttributes resp = null;
-        try {  var jobsApi = new JobsApi(_apiClient);
-        	resp = jobsApi.getJobSearchListByPostSqlStr(limit, skip, startAfter, orderBy, computeTotal,
+        try {
+        	resp = _jobsApi.getJobSearchListByPostSqlStr(limit, skip, startAfter, orderBy, computeTotal,
         			select, listType, false, req);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
@@ -477,8 +590,7 @@ public class JobsClient
     {	
     	RespHideJob resp = new RespHideJob();
     	try {
-    		var jobsApi = new JobsApi(_apiClient);
-    		resp=jobsApi.hideJob(jobUuid, false);
+    		resp=_jobsApi.hideJob(jobUuid, false);
     	}catch (ApiException e) {Utils.throwTapisClientException(e.getCode(),e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
     	return resp == null ? null : resp.getResult();
@@ -492,8 +604,7 @@ public class JobsClient
     {	
     	RespHideJob resp = new RespHideJob();
     	try {
-    		var jobsApi = new JobsApi(_apiClient);
-    		resp = jobsApi.unhideJob(jobUuid, false);
+    		resp = _jobsApi.unhideJob(jobUuid, false);
     	}catch (ApiException e) {Utils.throwTapisClientException(e.getCode(),e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
     	return resp == null ? null : resp.getResult();
@@ -507,8 +618,7 @@ public class JobsClient
     {
     	RespShareJob resp = new  RespShareJob();
     	try {
-    		var shareApi = new ShareApi(_apiClient);
-    		resp = shareApi.shareJob(jobUuid, req, false);
+    		resp = _shareApi.shareJob(jobUuid, req, false);
     	}catch (ApiException e) {Utils.throwTapisClientException(e.getCode(),e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
     	return resp == null ? null : resp.getResult();
@@ -522,8 +632,7 @@ public class JobsClient
     {
     	RespGetJobShareList resp = new  RespGetJobShareList();
     	try {
-    		var shareApi = new ShareApi(_apiClient);
-    		resp = shareApi.getJobShare(jobUuid, limit, skip, false);
+    		resp = _shareApi.getJobShare(jobUuid, limit, skip, false);
     	}catch (ApiException e) {Utils.throwTapisClientException(e.getCode(),e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
     	return resp == null ? null : resp.getResult();
@@ -537,8 +646,7 @@ public class JobsClient
     {
     	RespUnShareJob resp = new  RespUnShareJob() ;
     	try {
-    		var shareApi = new ShareApi(_apiClient);
-    		resp = shareApi.deleteJobShare(jobUuid, user, false);
+    		resp = _shareApi.deleteJobShare(jobUuid, user, false);
     	}catch (ApiException e) {Utils.throwTapisClientException(e.getCode(),e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
     	return resp == null ? null : resp.getResult();
@@ -555,9 +663,7 @@ public class JobsClient
     {
         RespResourceUrl resp = null;
         try {
-            // Get the API object using default networking.
-            var subApi = new SubscriptionsApi(_apiClient);
-            resp = subApi.subscribe(jobUuid, reqSubscribe, false);
+            resp = _subApi.subscribe(jobUuid, reqSubscribe, false);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -574,9 +680,7 @@ public class JobsClient
     {
         RespGetSubscriptions resp = null;
         try {
-            // Get the API object using default networking.
-            var subApi = new SubscriptionsApi(_apiClient);
-            resp = subApi.getSubscriptions(jobUuid, limit, skip, false);
+            resp = _subApi.getSubscriptions(jobUuid, limit, skip, false);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -592,9 +696,7 @@ public class JobsClient
     {
         ResultChangeCount resp = null;
         try {
-            // Get the API object using default networking.
-            var subApi = new SubscriptionsApi(_apiClient);
-            resp = subApi.deleteSubscriptions(jobUuid, false);
+            resp = _subApi.deleteSubscriptions(jobUuid, false);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -615,9 +717,7 @@ public class JobsClient
         // Make the REST call.
         RespBasic resp = null;
         try {
-            // Get the API object using default networking.
-            var generalApi = new GeneralApi(_apiClient);
-            resp = generalApi.sayHello(false);
+            resp = _generalApi.sayHello(false);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -636,9 +736,7 @@ public class JobsClient
         // Make the REST call.
         RespProbe resp = null;
         try {
-            // Get the API object using default networking.
-            var generalApi = new GeneralApi(_apiClient);
-            resp = generalApi.checkHealth();
+            resp = _generalApi.checkHealth();
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -657,9 +755,7 @@ public class JobsClient
         // Make the REST call.
         RespProbe resp = null;
         try {
-            // Get the API object using default networking.
-            var generalApi = new GeneralApi(_apiClient);
-            resp = generalApi.ready();
+            resp = _generalApi.ready();
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
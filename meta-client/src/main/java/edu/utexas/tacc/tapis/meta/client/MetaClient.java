@@ -1,14 +1,18 @@
 package edu.utexas.tacc.tapis.meta.client;
 
+import java.lang.reflect.Type;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.commons.lang3.StringUtils;
 
 import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
 
 import edu.utexas.tacc.tapis.client.shared.ClientTapisGsonUtils;
 import edu.utexas.tacc.tapis.client.shared.ITapisClient;
+import edu.utexas.tacc.tapis.client.shared.TapisHttpTransport;
 import edu.utexas.tacc.tapis.client.shared.Utils;
 import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
 import edu.utexas.tacc.tapis.meta.client.gen.ApiClient;
@@ -38,7 +42,12 @@ public class MetaClient
   // Response body serializer
   private static final Gson gson = ClientTapisGsonUtils.getGson();
   
+  // Type of document lists.  Meta responses are the raw documents, not a Tapis envelope.
+  private static final Type OBJECT_LIST_TYPE = new TypeToken<List<Object>>(){}.getType();
+  
   private final ApiClient apiClient;
+  // Shared transport, null if apiClient owns its http client.
+  private final TapisHttpTransport transport;
   
   private final GeneralApi generalApi;
   private final RootApi rootApi;
@@ -58,6 +67,7 @@ public class MetaClient
    */
   public MetaClient(){
     apiClient = new ApiClient();
+    transport = null;
     generalApi = new GeneralApi(apiClient);
     rootApi = new RootApi(apiClient);
     dbApi = new DbApi(apiClient);
@@ -80,7 +90,22 @@ public class MetaClient
    */
   public MetaClient(String path, String jwt)
   {
-    apiClient = new ApiClient();
+    this(path, jwt, null);
+  }
+
+  /**
+   * Constructor that overrides the compiled-in basePath value in ApiClient and uses
+   * the connection pool and dispatcher of a shared transport.
+   * If transport is null the client creates its own http client.
+   *
+   * @param path the base path URL prefix up to and including the service root
+   * @param jwt the token to set in an HTTP header
+   * @param transport1 shared http transport, may be null
+   */
+  public MetaClient(String path, String jwt, TapisHttpTransport transport1)
+  {
+    transport = transport1;
+    apiClient = (transport == null ? new ApiClient() : new ApiClient(transport.getHttpClient()));
     if (!StringUtils.isBlank(path)) apiClient.setBasePath(path);
     if (!StringUtils.isBlank(jwt)) apiClient.addDefaultHeader(TAPIS_JWT_HEADER, jwt);
     apiClient.setUserAgent(METACLIENT_USER_AGENT);
@@ -150,6 +175,7 @@ public class MetaClient
    */
   public void close()
   {
+    if (transport != null) return;
     try {
       // Best effort attempt to shut things down.
       var okClient = apiClient.getHttpClient();
@@ -255,6 +281,17 @@ public class MetaClient
     return resp == null ? null : resp;
   }
   
+  //---------------------------- listDocumentsAsync --------------------------
+  /** Non-blocking listDocuments.  The future fails with a TapisClientException. */
+  public CompletableFuture<List<Object>> listDocumentsAsync(String db, String collection) {
+    try {
+      var call = collectionApi.listDocumentsCall(db,collection,null,null,null,null,null,null);
+      return Utils.executeAsyncForBody(apiClient.getHttpClient(), call, OBJECT_LIST_TYPE, (List<Object> docs) -> docs);
+    }
+    catch (ApiException e) { return Utils.failedFuture(e.getCode(), e.getResponseBody(), e); }
+    catch (Exception e) { return Utils.failedFuture(-1, null, e); }
+  }
+  
   //---------------------------- deleteCollection ----------------------------
   public void deleteCollection(String ifMatch, String db, String collection) throws TapisClientException {
     // TODO currently this endpoint is quiet unless there is an exception. We should return a basic response.
@@ -303,6 +340,19 @@ public class MetaClient
     return resp == null ? null : resp;
   }
   
+  //---------------------------- submitLargeQueryAsync -----------------------
+  /** Non-blocking submitLargeQuery.  The future fails with a TapisClientException. */
+  public CompletableFuture<List<Object>> submitLargeQueryAsync(String db, String collection, Integer page,
+                                                               Integer pagesize, Object sort, List<String> keys,
+                                                               Object body) {
+    try {
+      var call = collectionApi.submitLargeQueryCall(db,collection,page,pagesize,sort,keys,body,null);
+      return Utils.executeAsyncForBody(apiClient.getHttpClient(), call, OBJECT_LIST_TYPE, (List<Object> docs) -> docs);
+    }
+    catch (ApiException e) { return Utils.failedFuture(e.getCode(), e.getResponseBody(), e); }
+    catch (Exception e) { return Utils.failedFuture(-1, null, e); }
+  }
+  
   /*------------------------------------------------------------------------
    *                              Document Resource
    * -----------------------------------------------------------------------*/
@@ -330,6 +380,18 @@ public class MetaClient
     return obj == null ? null : obj.toString();
   }
   
+  //---------------------------- getDocumentAsync --------------------------
+  /** Non-blocking getDocument.  The future fails with a TapisClientException. */
+  public CompletableFuture<Object> getDocumentAsync(String db, String collection, String docId) {
+    try {
+      var call = documentApi.getDocumentCall(db,collection,docId,null);
+      return Utils.executeAsyncForBody(apiClient.getHttpClient(), call, Object.class,
+                                       (Object doc) -> doc == null ? null : doc.toString());
+    }
+    catch (ApiException e) { return Utils.failedFuture(e.getCode(), e.getResponseBody(), e); }
+    catch (Exception e) { return Utils.failedFuture(-1, null, e); }
+  }
+  
   //---------------------------- replaceDocument ---------------------------
   public void replaceDocument(String db, String collection, String docId, Object body) throws TapisClientException {
     try { documentApi.replaceDocument(db,collection,docId,body); }
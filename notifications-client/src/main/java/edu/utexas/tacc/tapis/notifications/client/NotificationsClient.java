@@ -1,6 +1,7 @@
 package edu.utexas.tacc.tapis.notifications.client;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import com.google.gson.Gson;
 import edu.utexas.tacc.tapis.notifications.client.gen.api.TestApi;
@@ -10,6 +11,7 @@ import edu.utexas.tacc.tapis.client.shared.Utils;
 import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
 import edu.utexas.tacc.tapis.client.shared.ClientTapisGsonUtils;
 import edu.utexas.tacc.tapis.client.shared.ITapisClient;
+import edu.utexas.tacc.tapis.client.shared.TapisHttpTransport;
 
 
 import edu.utexas.tacc.tapis.notifications.client.gen.ApiClient;
@@ -53,6 +55,9 @@ public class NotificationsClient implements ITapisClient
   // *********************** Constants **************************************
   // ************************************************************************
 
+  // Configuration defaults.
+  private static final String NOTIFICATIONS_CLIENT_USER_AGENT = "NotificationsClient";
+
   // Filter wildcard
   public static final String FILTER_WILDCARD = "*";
 
@@ -71,6 +76,8 @@ public class NotificationsClient implements ITapisClient
 
   // Instance of the underlying autogenerated client.
   private final ApiClient apiClient;
+  // Shared transport, null if apiClient owns its http client.
+  private final TapisHttpTransport transport;
   private final SubscriptionsApi subscriptionsApi;
   private final EventsApi eventsApi;
   private final GeneralApi generalApi;
@@ -87,6 +94,8 @@ public class NotificationsClient implements ITapisClient
   public NotificationsClient()
   {
     apiClient = new ApiClient();
+    apiClient.setUserAgent(NOTIFICATIONS_CLIENT_USER_AGENT);
+    transport = null;
     subscriptionsApi = new SubscriptionsApi(apiClient);
     eventsApi = new EventsApi(apiClient);
     generalApi = new GeneralApi(apiClient);
@@ -104,7 +113,23 @@ public class NotificationsClient implements ITapisClient
    */
   public NotificationsClient(String path, String jwt)
   {
-    apiClient = new ApiClient();
+    this(path, jwt, null);
+  }
+
+  /**
+   * Constructor that overrides the compiled-in basePath value in ApiClient and uses
+   * the connection pool and dispatcher of a shared transport.
+   * If transport is null the client creates its own http client.
+   *
+   * @param path the base path URL prefix up to and including the service root
+   * @param jwt the token to set in an HTTP header
+   * @param transport1 shared http transport, may be null
+   */
+  public NotificationsClient(String path, String jwt, TapisHttpTransport transport1)
+  {
+    transport = transport1;
+    apiClient = (transport == null ? new ApiClient() : new ApiClient(transport.getHttpClient()));
+    apiClient.setUserAgent(NOTIFICATIONS_CLIENT_USER_AGENT);
     if (!StringUtils.isBlank(path)) apiClient.setBasePath(path);
     if (!StringUtils.isBlank(jwt)) apiClient.addDefaultHeader(TAPIS_JWT_HEADER, jwt);
     subscriptionsApi = new SubscriptionsApi(apiClient);
@@ -134,6 +159,7 @@ public class NotificationsClient implements ITapisClient
    */
   public void close()
   {
+    if (transport != null) return;
     try {
       // Best effort attempt to shut things down.
       var okClient = apiClient.getHttpClient();
@@ -316,6 +342,25 @@ public class NotificationsClient implements ITapisClient
     return resp.getResult();
   }
 
+  /**
+   * Non-blocking getSubscriptionByName.  See getSubscriptionByName for a description of the parameters.
+   *   The future fails with a TapisClientException.
+   *
+   * @return future subscription, completed with null if resource not found
+   */
+  public CompletableFuture<TapisSubscription> getSubscriptionByNameAsync(String name, String selectStr, String ownedBy)
+  {
+    String selectStr1 = DEFAULT_SELECT_ALL;
+    if (!StringUtils.isBlank(selectStr)) selectStr1 = selectStr;
+    try
+    {
+      var call = subscriptionsApi.getSubscriptionByNameCall(name, selectStr1, ownedBy, null);
+      return Utils.executeAsync(apiClient.getHttpClient(), call, TapisSubscription.class);
+    }
+    catch (ApiException e) { return Utils.failedFuture(e.getCode(), e.getResponseBody(), e); }
+    catch (Exception e) { return Utils.failedFuture(-1, null, e); }
+  }
+
   /**
    * Delete a subscription by name
    *
@@ -368,6 +413,28 @@ public class NotificationsClient implements ITapisClient
     return resp.getResult();
   }
 
+  /**
+   * Non-blocking getSubscriptionByUuid.  See getSubscriptionByUuid for a description of the parameters.
+   *   The future fails with a TapisClientException.
+   *
+   * @return future subscription, completed with null if resource not found
+   * @throws IllegalArgumentException - If UUID is blank
+   */
+  public CompletableFuture<TapisSubscription> getSubscriptionByUuidAsync(String uuid, String selectStr)
+  {
+    if (StringUtils.isBlank(uuid))
+      throw new IllegalArgumentException("Invalid UUID. Subscription UUID may not be blank.");
+    String selectStr1 = DEFAULT_SELECT_ALL;
+    if (!StringUtils.isBlank(selectStr)) selectStr1 = selectStr;
+    try
+    {
+      var call = subscriptionsApi.getSubscriptionByUuidCall(uuid, selectStr1, null);
+      return Utils.executeAsync(apiClient.getHttpClient(), call, TapisSubscription.class);
+    }
+    catch (ApiException e) { return Utils.failedFuture(e.getCode(), e.getResponseBody(), e); }
+    catch (Exception e) { return Utils.failedFuture(-1, null, e); }
+  }
+
   /**
    * Delete a subscription given the subscription UUID
    *
@@ -0,0 +1,444 @@
+package edu.utexas.tacc.tapis.security.client;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.utexas.tacc.tapis.client.shared.TapisHttpTransport;
+import edu.utexas.tacc.tapis.client.shared.cache.ExpiringLruCache;
+import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+
+/** SKClient that memoizes authorization decisions.
+ *
+ * The results of isPermitted, isPermittedAny, isPermittedAll, hasRole, hasRoleAny,
+ * hasRoleAll, isAdmin and their asynchronous variants are cached per (tenant, user,
+ * permSpecs or roleNames).
+ * Positive and negative results have separate time-to-live values so that grants
+ * made by other processes become visible quickly while denials are still cached.
+ * The cache is bounded and evicts the least recently used decisions.
+ *
+ * Grants and revocations made through this client invalidate the affected entries.
+ * User level changes invalidate the decisions of that user; role level changes, which
+ * can affect any user holding the role, invalidate all decisions in the tenant.
+ * Changes made through other clients are only seen once the cached decisions expire.
+ */
+public class CachingSKClient
+ extends SKClient
+{
+    /* **************************************************************************** */
+    /*                                   Constants                                  */
+    /* **************************************************************************** */
+    // Defaults.
+    public static final Duration DEFAULT_POSITIVE_TTL = Duration.ofSeconds(30);
+    public static final Duration DEFAULT_NEGATIVE_TTL = Duration.ofSeconds(5);
+    public static final int      DEFAULT_MAX_ENTRIES  = 10000;
+
+    /* **************************************************************************** */
+    /*                                     Enums                                    */
+    /* **************************************************************************** */
+    // The cached operations.
+    private enum Check {IS_PERMITTED, IS_PERMITTED_ANY, IS_PERMITTED_ALL,
+                        HAS_ROLE, HAS_ROLE_ANY, HAS_ROLE_ALL, IS_ADMIN}
+
+    /* **************************************************************************** */
+    /*                                    Fields                                    */
+    /* **************************************************************************** */
+    private final ExpiringLruCache<DecisionKey, Boolean> _decisions;
+    private final long _positiveTtlNanos;
+    private final long _negativeTtlNanos;
+
+    // Incremented on every invalidation so that decisions computed concurrently
+    // with an invalidation are not cached.
+    private final AtomicLong _generation = new AtomicLong();
+
+    /* **************************************************************************** */
+    /*                                 Constructors                                 */
+    /* **************************************************************************** */
+    /* ---------------------------------------------------------------------------- */
+    /* constructor:                                                                 */
+    /* ---------------------------------------------------------------------------- */
+    /** Constructor that uses the default cache settings.
+     *
+     * @param path the base path
+     * @param jwt the user or service jwt, can be null
+     */
+    public CachingSKClient(String path, String jwt)
+    {
+        this(path, jwt, null, DEFAULT_POSITIVE_TTL, DEFAULT_NEGATIVE_TTL, DEFAULT_MAX_ENTRIES);
+    }
+
+    /* ---------------------------------------------------------------------------- */
+    /* constructor:                                                                 */
+    /* ---------------------------------------------------------------------------- */
+    /** Constructor with explicit cache settings.  A zero ttl disables caching of
+     * the corresponding results.
+     *
+     * @param path the base path
+     * @param jwt the user or service jwt, can be null
+     * @param transport the shared transport, can be null
+     * @param positiveTtl time-to-live of true results
+     * @param negativeTtl time-to-live of false results
+     * @param maxEntries maximum number of cached decisions
+     */
+    public CachingSKClient(String path, String jwt, TapisHttpTransport transport,
+                           Duration positiveTtl, Duration negativeTtl, int maxEntries)
+    {
+        super(path, jwt, transport);
+        _decisions = new ExpiringLruCache<>(maxEntries);
+        _positiveTtlNanos = positiveTtl.toNanos();
+        _negativeTtlNanos = negativeTtl.toNanos();
+    }
+
+    /* **************************************************************************** */
+    /*                                Cache Methods                                 */
+    /* **************************************************************************** */
+    /* ---------------------------------------------------------------------------- */
+    /* invalidateUser:                                                              */
+    /* ---------------------------------------------------------------------------- */
+    /** Discard all cached decisions for a user. */
+    public void invalidateUser(String tenant, String user)
+    {
+        _generation.incrementAndGet();
+        _decisions.invalidateIf(k -> Objects.equals(k.tenant, tenant) && Objects.equals(k.user, user));
+    }
+
+    /* ---------------------------------------------------------------------------- */
+    /* invalidateTenant:                                                            */
+    /* ---------------------------------------------------------------------------- */
+    /** Discard all cached decisions for a tenant. */
+    public void invalidateTenant(String tenant)
+    {
+        _generation.incrementAndGet();
+        _decisions.invalidateIf(k -> Objects.equals(k.tenant, tenant));
+    }
+
+    /* ---------------------------------------------------------------------------- */
+    /* invalidateAll:                                                               */
+    /* ---------------------------------------------------------------------------- */
+    /** Discard all cached decisions. */
+    public void invalidateAll()
+    {
+        _generation.incrementAndGet();
+        _decisions.invalidateAll();
+    }
+
+    /* ---------------------------------------------------------------------------- */
+    /* getDecisionCache:                                                            */
+    /* ---------------------------------------------------------------------------- */
+    /** Expose the underlying cache for size and hit/miss metrics. */
+    public ExpiringLruCache<?, ?> getDecisionCache() {return _decisions;}
+
+    /* **************************************************************************** */
+    /*                            Cached Decision Methods                           */
+    /* **************************************************************************** */
+    @Override
+    public boolean isPermitted(String tenant, String user, String permSpec)
+     throws TapisClientException
+    {
+        var key = new DecisionKey(Check.IS_PERMITTED, tenant, user, permSpec);
+        long gen = _generation.get();
+        var b = _decisions.get(key);
+        if (b != null) return b;
+        return remember(key, gen, super.isPermitted(tenant, user, permSpec));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isPermittedAsync(String tenant, String user, String permSpec)
+    {
+        var key = new DecisionKey(Check.IS_PERMITTED, tenant, user, permSpec);
+        long gen = _generation.get();
+        var b = _decisions.get(key);
+        if (b != null) return CompletableFuture.completedFuture(b);
+        return super.isPermittedAsync(tenant, user, permSpec).thenApply(d -> remember(key, gen, d));
+    }
+
+    @Override
+    public boolean isPermittedAny(String tenant, String user, String[] permSpecs)
+     throws TapisClientException
+    {
+        var key = new DecisionKey(Check.IS_PERMITTED_ANY, tenant, user, permSpecs);
+        long gen = _generation.get();
+        var b = _decisions.get(key);
+        if (b != null) return b;
+        return remember(key, gen, super.isPermittedAny(tenant, user, permSpecs));
+    }
+
+    @Override
+    public boolean isPermittedAll(String tenant, String user, String[] permSpecs)
+     throws TapisClientException
+    {
+        var key = new DecisionKey(Check.IS_PERMITTED_ALL, tenant, user, permSpecs);
+        long gen = _generation.get();
+        var b = _decisions.get(key);
+        if (b != null) return b;
+        return remember(key, gen, super.isPermittedAll(tenant, user, permSpecs));
+    }
+
+    @Override
+    public boolean hasRole(String tenant, String user, String roleName)
+     throws TapisClientException
+    {
+        var key = new DecisionKey(Check.HAS_ROLE, tenant, user, roleName);
+        long gen = _generation.get();
+        var b = _decisions.get(key);
+        if (b != null) return b;
+        return remember(key, gen, super.hasRole(tenant, user, roleName));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> hasRoleAsync(String tenant, String user, String roleName)
+    {
+        var key = new DecisionKey(Check.HAS_ROLE, tenant, user, roleName);
+        long gen = _generation.get();
+        var b = _decisions.get(key);
+        if (b != null) return CompletableFuture.completedFuture(b);
+        return super.hasRoleAsync(tenant, user, roleName).thenApply(d -> remember(key, gen, d));
+    }
+
+    @Override
+    public boolean hasRoleAny(String tenant, String user, String[] roleNames)
+     throws TapisClientException
+    {
+        var key = new DecisionKey(Check.HAS_ROLE_ANY, tenant, user, roleNames);
+        long gen = _generation.get();
+        var b = _decisions.get(key);
+        if (b != null) return b;
+        return remember(key, gen, super.hasRoleAny(tenant, user, roleNames));
+    }
+
+    @Override
+    public boolean hasRoleAll(String tenant, String user, String[] roleNames)
+     throws TapisClientException
+    {
+        var key = new DecisionKey(Check.HAS_ROLE_ALL, tenant, user, roleNames);
+        long gen = _generation.get();
+        var b = _decisions.get(key);
+        if (b != null) return b;
+        return remember(key, gen, super.hasRoleAll(tenant, user, roleNames));
+    }
+
+    @Override
+    public boolean isAdmin(String tenant, String user)
+     throws TapisClientException
+    {
+        var key = new DecisionKey(Check.IS_ADMIN, tenant, user, (String) null);
+        long gen = _generation.get();
+        var b = _decisions.get(key);
+        if (b != null) return b;
+        return remember(key, gen, super.isAdmin(tenant, user));
+    }
+
+    /* **************************************************************************** */
+    /*                          User Level Invalidations                            */
+    /* **************************************************************************** */
+    @Override
+    public int grantUserRole(String tenant, String user, String roleName)
+     throws TapisClientException
+    {
+        try {return super.grantUserRole(tenant, user, roleName);}
+        finally {invalidateUser(tenant, user);}
+    }
+
+    @Override
+    public int revokeUserRole(String tenant, String user, String roleName)
+     throws TapisClientException
+    {
+        try {return super.revokeUserRole(tenant, user, roleName);}
+        finally {invalidateUser(tenant, user);}
+    }
+
+    @Override
+    public int grantAdminRole(String tenant, String user)
+     throws TapisClientException
+    {
+        try {return super.grantAdminRole(tenant, user);}
+        finally {invalidateUser(tenant, user);}
+    }
+
+    @Override
+    public int revokeAdminRole(String tenant, String user)
+     throws TapisClientException
+    {
+        try {return super.revokeAdminRole(tenant, user);}
+        finally {invalidateUser(tenant, user);}
+    }
+
+    @Override
+    public int grantRoleWithPermission(String tenant, String user, String roleName,
+                                       String permSpec)
+     throws TapisClientException
+    {
+        // The role may already be held by other users.
+        try {return super.grantRoleWithPermission(tenant, user, roleName, permSpec);}
+        finally {invalidateTenant(tenant);}
+    }
+
+    @Override
+    public int grantUserPermission(String tenant, String user, String permSpec)
+     throws TapisClientException
+    {
+        try {return super.grantUserPermission(tenant, user, permSpec);}
+        finally {invalidateUser(tenant, user);}
+    }
+
+    @Override
+    public int revokeUserPermission(String tenant, String user, String permSpec)
+     throws TapisClientException
+    {
+        try {return super.revokeUserPermission(tenant, user, permSpec);}
+        finally {invalidateUser(tenant, user);}
+    }
+
+    /* **************************************************************************** */
+    /*                          Role Level Invalidations                            */
+    /* **************************************************************************** */
+    @Override
+    public int deleteRoleByName(String tenant, String roleName)
+     throws TapisClientException
+    {
+        try {return super.deleteRoleByName(tenant, roleName);}
+        finally {invalidateTenant(tenant);}
+    }
+
+    @Override
+    public void updateRoleName(String roleTenant, String roleName, String newRoleName)
+     throws TapisClientException
+    {
+        try {super.updateRoleName(roleTenant, roleName, newRoleName);}
+        finally {invalidateTenant(roleTenant);}
+    }
+
+    @Override
+    public void updateRoleOwner(String tenant, String roleName, String newOwner)
+     throws TapisClientException
+    {
+        try {super.updateRoleOwner(tenant, roleName, newOwner);}
+        finally {invalidateTenant(tenant);}
+    }
+
+    @Override
+    public int addRolePermission(String roleTenant, String roleName, String permSpec)
+     throws TapisClientException
+    {
+        try {return super.addRolePermission(roleTenant, roleName, permSpec);}
+        finally {invalidateTenant(roleTenant);}
+    }
+
+    @Override
+    public int removeRolePermission(String roleTenant, String roleName, String permSpec)
+     throws TapisClientException
+    {
+        try {return super.removeRolePermission(roleTenant, roleName, permSpec);}
+        finally {invalidateTenant(roleTenant);}
+    }
+
+    @Override
+    public int addChildRole(String roleTenant, String parentRoleName, String childRoleName)
+     throws TapisClientException
+    {
+        try {return super.addChildRole(roleTenant, parentRoleName, childRoleName);}
+        finally {invalidateTenant(roleTenant);}
+    }
+
+    @Override
+    public int removeChildRole(String roleTenant, String parentRoleName, String childRoleName)
+     throws TapisClientException
+    {
+        try {return super.removeChildRole(roleTenant, parentRoleName, childRoleName);}
+        finally {invalidateTenant(roleTenant);}
+    }
+
+    @Override
+    public int replacePathPrefix(String tenant, String schema, String roleName,
+                                 String oldSystemId, String newSystemId,
+                                 String oldPrefix, String newPrefix)
+     throws TapisClientException
+    {
+        try {return super.replacePathPrefix(tenant, schema, roleName, oldSystemId, newSystemId,
+                                            oldPrefix, newPrefix);}
+        finally {invalidateTenant(tenant);}
+    }
+
+    @Override
+    public int removePathPermissionFromAllRoles(String tenant, String permSpec)
+     throws TapisClientException
+    {
+        try {return super.removePathPermissionFromAllRoles(tenant, permSpec);}
+        finally {invalidateTenant(tenant);}
+    }
+
+    @Override
+    public int removePermissionFromAllRoles(String tenant, String permSpec)
+     throws TapisClientException
+    {
+        try {return super.removePermissionFromAllRoles(tenant, permSpec);}
+        finally {invalidateTenant(tenant);}
+    }
+
+    /* **************************************************************************** */
+    /*                               Private Methods                                */
+    /* **************************************************************************** */
+    /* ---------------------------------------------------------------------------- */
+    /* remember:                                                                    */
+    /* ---------------------------------------------------------------------------- */
+    /** Cache a decision unless an invalidation happened since the lookup started.
+     * An invalidation that lands between the check and the put may scan the cache
+     * before the entry is added, so the generation is checked again afterwards and
+     * the entry is dropped if it changed.
+     */
+    private boolean remember(DecisionKey key, long gen, boolean decision)
+    {
+        if (_generation.get() != gen) return decision;
+        _decisions.put(key, decision, decision ? _positiveTtlNanos : _negativeTtlNanos);
+        if (_generation.get() != gen) _decisions.invalidate(key);
+        return decision;
+    }
+
+    /* **************************************************************************** */
+    /*                                  DecisionKey                                 */
+    /* **************************************************************************** */
+    /** Cache key.  Multi-valued checks are order independent, so their values are
+     * sorted before being joined.
+     */
+    private static final class DecisionKey
+    {
+        private final Check  check;
+        private final String tenant;
+        private final String user;
+        private final String subject;
+
+        private DecisionKey(Check check1, String tenant1, String user1, String subject1)
+        {
+            check = check1; tenant = tenant1; user = user1; subject = subject1;
+        }
+
+        private DecisionKey(Check check1, String tenant1, String user1, String[] subjects)
+        {
+            this(check1, tenant1, user1, join(subjects));
+        }
+
+        private static String join(String[] subjects)
+        {
+            if (subjects == null) return null;
+            var sorted = new String[subjects.length];
+            for (int i = 0; i < subjects.length; i++) sorted[i] = String.valueOf(subjects[i]);
+            Arrays.sort(sorted);
+            return String.join("\0", sorted);
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) return true;
+            if (!(o instanceof DecisionKey)) return false;
+            var k = (DecisionKey) o;
+            return check == k.check && Objects.equals(tenant, k.tenant) &&
+                   Objects.equals(user, k.user) && Objects.equals(subject, k.subject);
+        }
+
+        @Override
+        public int hashCode() {return Objects.hash(check, tenant, user, subject);}
+    }
+}
@@ -1,13 +1,20 @@
 package edu.utexas.tacc.tapis.security.client;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.commons.lang3.StringUtils;
 
 import edu.utexas.tacc.tapis.client.shared.ITapisClient;
+import edu.utexas.tacc.tapis.client.shared.TapisExecutor;
+import edu.utexas.tacc.tapis.client.shared.TapisHttpTransport;
 import edu.utexas.tacc.tapis.client.shared.Utils;
 import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+import edu.utexas.tacc.tapis.client.shared.resilience.RequestHedger;
 import edu.utexas.tacc.tapis.security.client.gen.ApiClient;
 import edu.utexas.tacc.tapis.security.client.gen.ApiException;
 import edu.utexas.tacc.tapis.security.client.gen.api.GeneralApi;
@@ -60,6 +67,7 @@ import edu.utexas.tacc.tapis.security.client.gen.model.RespSecretVersionMetadata
 import edu.utexas.tacc.tapis.security.client.gen.model.RespShare;
 import edu.utexas.tacc.tapis.security.client.gen.model.RespShareList;
 import edu.utexas.tacc.tapis.security.client.gen.model.RespVersions;
+import edu.utexas.tacc.tapis.security.client.gen.model.ResultAuthorized;
 import edu.utexas.tacc.tapis.security.client.gen.model.ResultBoolean;
 import edu.utexas.tacc.tapis.security.client.gen.model.ResultChangeCount;
 import edu.utexas.tacc.tapis.security.client.gen.model.ResultResourceUrl;
@@ -71,6 +79,8 @@ import edu.utexas.tacc.tapis.security.client.gen.model.SkSecretVersionMetadata;
 import edu.utexas.tacc.tapis.security.client.gen.model.SkShare;
 import edu.utexas.tacc.tapis.security.client.gen.model.SkShareList;
 import edu.utexas.tacc.tapis.security.client.gen.model.Transformation;
+import edu.utexas.tacc.tapis.security.client.model.SKPermissionCheck;
+import edu.utexas.tacc.tapis.security.client.model.SKPermissionCheckResult;
 import edu.utexas.tacc.tapis.security.client.model.SKSecretDeleteParms;
 import edu.utexas.tacc.tapis.security.client.model.SKSecretMetaParms;
 import edu.utexas.tacc.tapis.security.client.model.SKSecretReadParms;
@@ -101,12 +111,36 @@ public class SKClient
     // Configuration defaults.
     private static final String SKCLIENT_USER_AGENT = "SKClient";
     
+    // Default number of concurrent requests used by batch operations.
+    public static final int DEFAULT_BATCH_CONCURRENCY = 16;
+    
+    // Read-only SK endpoints that use POST to carry their parameters in a json body.
+    // They are safe to retry, see ResilienceInterceptor.markIdempotent().
+    public static final List<String> IDEMPOTENT_POST_PATHS = 
+        List.of("/security/user/isPermitted", "/security/user/isPermittedAll",
+                "/security/user/isPermittedAny", "/security/user/hasRole",
+                "/security/user/hasRoleAll", "/security/user/hasRoleAny",
+                "/security/user/isAdmin", "/security/role/previewPathPrefix");
+    
     /* **************************************************************************** */
     /*                                    Fields                                    */
     /* **************************************************************************** */
     // This client instance's underlying generated client.
     private final ApiClient _apiClient;
     
+    // Shared transport, null if _apiClient owns its http client.
+    private final TapisHttpTransport _transport;
+    
+    // Generated api facades, created once and reused on every call.
+    private final RoleApi _roleApi;
+    private final UserApi _userApi;
+    private final ShareApi _shareApi;
+    private final VaultApi _vaultApi;
+    private final GeneralApi _generalApi;
+    
+    // Optional hedging of latency critical read calls.
+    private volatile RequestHedger _hedger;
+    
     /* **************************************************************************** */
     /*                                 Constructors                                 */
     /* **************************************************************************** */
@@ -137,10 +171,26 @@ public class SKClient
      * 
      * @param path the base path 
      */
-    public SKClient(String path, String jwt) 
+    public SKClient(String path, String jwt) {this(path, jwt, null);}
+    
+    /* ---------------------------------------------------------------------------- */
+    /* constructor:                                                                 */
+    /* ---------------------------------------------------------------------------- */
+    /** Constructor that overrides the compiled-in basePath value in ApiClient and
+     * builds on a shared http transport.  The connection pool and dispatcher of the
+     * transport are shared with all other clients using it, while the base path, 
+     * headers and timeouts set on this client remain private to this client.  If 
+     * transport is null this client creates its own http client.
+     * 
+     * @param path the base path 
+     * @param jwt the user or service jwt, can be null
+     * @param transport the shared transport, can be null
+     */
+    public SKClient(String path, String jwt, TapisHttpTransport transport) 
     {
     	// Create actual client.
-    	_apiClient = new ApiClient();
+    	_transport = transport;
+    	_apiClient = transport == null ? new ApiClient() : new ApiClient(transport.getHttpClient());
     	
         // Process input.
         if (!StringUtils.isBlank(path)) _apiClient.setBasePath(path);
@@ -148,6 +198,13 @@ public class SKClient
         
         // Other defaults.
         _apiClient.setUserAgent(SKCLIENT_USER_AGENT);
+        
+        // Api facades.
+        _roleApi = new RoleApi(_apiClient);
+        _userApi = new UserApi(_apiClient);
+        _shareApi = new ShareApi(_apiClient);
+        _vaultApi = new VaultApi(_apiClient);
+        _generalApi = new GeneralApi(_apiClient);
     }
     
     /* **************************************************************************** */
@@ -217,6 +274,21 @@ public class SKClient
         return this;
     }
     
+    /* ---------------------------------------------------------------------------- */
+    /* setRequestHedger:                                                            */
+    /* ---------------------------------------------------------------------------- */
+    /** Hedge the operations enabled in the hedger.  Currently only "isPermitted" 
+     * supports hedging.  Pass null to turn hedging off.
+     * 
+     * @param hedger the hedger or null
+     * @return this client
+     */
+    public SKClient setRequestHedger(RequestHedger hedger)
+    {
+        _hedger = hedger;
+        return this;
+    }
+    
     /* ---------------------------------------------------------------------------- */
     /* getConnectTimeout:                                                           */
     /* ---------------------------------------------------------------------------- */
@@ -253,9 +325,12 @@ public class SKClient
     /* close:                                                                       */
     /* ---------------------------------------------------------------------------- */
     /** Close connections and stop threads that can sometimes prevent JVM shutdown.
+     * Clients using a shared transport leave the transport untouched.
      */
     public void close()
     {
+        // The shared transport outlives this client.
+        if (_transport != null) return;
         try {
             // Best effort attempt to shut things down.
             var okClient = _apiClient.getHttpClient();
@@ -278,9 +353,7 @@ public class SKClient
         // Make the REST call.
         RespNameArray resp = null;
         try {
-            // Get the API object using default networking.
-            RoleApi roleApi = new RoleApi(_apiClient);
-            resp = roleApi.getRoleNames(tenant, Boolean.FALSE);
+            resp = _roleApi.getRoleNames(tenant, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -298,9 +371,7 @@ public class SKClient
         // Make the REST call.
         RespRole resp = null;
         try {
-            // Get the API object using default networking.
-            RoleApi roleApi = new RoleApi(_apiClient);
-            resp = roleApi.getRoleByName(roleName, tenant, Boolean.FALSE);
+            resp = _roleApi.getRoleByName(roleName, tenant, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -324,9 +395,7 @@ public class SKClient
         // Make the REST call.
         RespResourceUrl resp = null;
         try {
-            // Get the API object using default networking.
-            RoleApi roleApi = new RoleApi(_apiClient);
-            resp = roleApi.createRole(body, Boolean.FALSE);
+            resp = _roleApi.createRole(body, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -344,9 +413,7 @@ public class SKClient
         // Make the REST call.
         RespChangeCount resp = null;
         try {
-            // Get the API object using default networking.
-            RoleApi roleApi = new RoleApi(_apiClient);
-            resp = roleApi.deleteRoleByName(roleName, tenant, Boolean.FALSE);
+            resp = _roleApi.deleteRoleByName(roleName, tenant, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -371,9 +438,7 @@ public class SKClient
         @SuppressWarnings("unused")
         RespBasic resp = null;
         try {
-            // Get the API object using default networking.
-            RoleApi roleApi = new RoleApi(_apiClient);
-            resp = roleApi.updateRoleName(roleName, body, Boolean.FALSE);
+            resp = _roleApi.updateRoleName(roleName, body, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -394,9 +459,7 @@ public class SKClient
         @SuppressWarnings("unused")
         RespBasic resp = null;
         try {
-            // Get the API object using default networking.
-            RoleApi roleApi = new RoleApi(_apiClient);
-            resp = roleApi.updateRoleOwner(roleName, body, Boolean.FALSE);
+            resp = _roleApi.updateRoleOwner(roleName, body, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -417,9 +480,7 @@ public class SKClient
         @SuppressWarnings("unused")
         RespBasic resp = null;
         try {
-            // Get the API object using default networking.
-            RoleApi roleApi = new RoleApi(_apiClient);
-            resp = roleApi.updateRoleDescription(roleName, body, Boolean.FALSE);
+            resp = _roleApi.updateRoleDescription(roleName, body, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -434,9 +495,7 @@ public class SKClient
         // Make the REST call.
     	RespNameArray resp = null;
         try {
-            // Get the API object using default networking.
-            RoleApi roleApi = new RoleApi(_apiClient);
-            resp = roleApi.getRolePermissions(roleName, roleTenant, immediate, Boolean.FALSE);
+            resp = _roleApi.getRolePermissions(roleName, roleTenant, immediate, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -461,9 +520,7 @@ public class SKClient
         // Make the REST call.
         RespChangeCount resp = null;
         try {
-            // Get the API object using default networking.
-            RoleApi roleApi = new RoleApi(_apiClient);
-            resp = roleApi.addRolePermission(body, Boolean.FALSE);
+            resp = _roleApi.addRolePermission(body, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -488,9 +545,7 @@ public class SKClient
         // Make the REST call.
         RespChangeCount resp = null;
         try {
-            // Get the API object using default networking.
-            RoleApi roleApi = new RoleApi(_apiClient);
-            resp = roleApi.removeRolePermission(body, Boolean.FALSE);
+            resp = _roleApi.removeRolePermission(body, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -515,9 +570,7 @@ public class SKClient
         // Make the REST call.
         RespChangeCount resp = null;
         try {
-            // Get the API object using default networking.
-            RoleApi roleApi = new RoleApi(_apiClient);
-            resp = roleApi.addChildRole(body, Boolean.FALSE);
+            resp = _roleApi.addChildRole(body, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -542,9 +595,7 @@ public class SKClient
         // Make the REST call.
         RespChangeCount resp = null;
         try {
-            // Get the API object using default networking.
-            RoleApi roleApi = new RoleApi(_apiClient);
-            resp = roleApi.removeChildRole(body, Boolean.FALSE);
+            resp = _roleApi.removeChildRole(body, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -575,9 +626,7 @@ public class SKClient
         // Make the REST call.
         RespPathPrefixes resp = null;
         try {
-            // Get the API object using default networking.
-            RoleApi roleApi = new RoleApi(_apiClient);
-            resp = roleApi.previewPathPrefix(body, Boolean.FALSE);
+            resp = _roleApi.previewPathPrefix(body, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -607,9 +656,7 @@ public class SKClient
         // Make the REST call.
         RespChangeCount resp = null;
         try {
-            // Get the API object using default networking.
-            RoleApi roleApi = new RoleApi(_apiClient);
-            resp = roleApi.replacePathPrefix(body, Boolean.FALSE);
+            resp = _roleApi.replacePathPrefix(body, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -631,9 +678,7 @@ public class SKClient
         // Make the REST call.
         RespNameArray resp = null;
         try {
-            // Get the API object using default networking.
-            var userApi = new UserApi(_apiClient);
-            resp = userApi.getUserNames(tenant, Boolean.FALSE);
+            resp = _userApi.getUserNames(tenant, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -651,9 +696,7 @@ public class SKClient
         // Make the REST call.
         RespNameArray resp = null;
         try {
-            // Get the API object using default networking.
-            var userApi = new UserApi(_apiClient);
-            resp = userApi.getUserRoles(user, tenant, Boolean.FALSE);
+            resp = _userApi.getUserRoles(user, tenant, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -681,9 +724,7 @@ public class SKClient
         // Make the REST call.
         RespNameArray resp = null;
         try {
-            // Get the API object using default networking.
-            var userApi = new UserApi(_apiClient);
-            resp = userApi.getUserPerms(user, tenant, implies, impliedBy, Boolean.FALSE);
+            resp = _userApi.getUserPerms(user, tenant, implies, impliedBy, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -707,9 +748,7 @@ public class SKClient
         // Make the REST call.
         RespChangeCount resp = null;
         try {
-            // Get the API object using default networking.
-            var userApi = new UserApi(_apiClient);
-            resp = userApi.grantRole(body, Boolean.FALSE);
+            resp = _userApi.grantRole(body, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -734,9 +773,7 @@ public class SKClient
         // Make the REST call.
         RespChangeCount resp = null;
         try {
-            // Get the API object using default networking.
-            var userApi = new UserApi(_apiClient);
-            resp = userApi.revokeUserRole(body, Boolean.FALSE);
+            resp = _userApi.revokeUserRole(body, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -755,9 +792,7 @@ public class SKClient
       // Make the REST call.
       RespNameArray resp = null;
       try {
-        // Get the API object using default networking.
-        var userApi = new UserApi(_apiClient);
-        resp = userApi.getAdmins(tenant, Boolean.FALSE);
+        resp = _userApi.getAdmins(tenant, Boolean.FALSE);
       }
       catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
       catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -780,9 +815,7 @@ public class SKClient
       // Make the REST call.
       RespChangeCount resp = null;
       try {
-        // Get the API object using default networking.
-        var userApi = new UserApi(_apiClient);
-        resp = userApi.grantAdminRole(body, Boolean.FALSE);
+        resp = _userApi.grantAdminRole(body, Boolean.FALSE);
       }
       catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
       catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -806,9 +839,7 @@ public class SKClient
       // Make the REST call.
       RespChangeCount resp = null;
       try {
-        // Get the API object using default networking.
-        var userApi = new UserApi(_apiClient);
-        resp = userApi.revokeAdminRole(body, Boolean.FALSE);
+        resp = _userApi.revokeAdminRole(body, Boolean.FALSE);
       }
       catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
       catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -835,9 +866,7 @@ public class SKClient
         // Make the REST call.
         RespChangeCount resp = null;
         try {
-            // Get the API object using default networking.
-            var userApi = new UserApi(_apiClient);
-            resp = userApi.grantRoleWithPermission(body, Boolean.FALSE);
+            resp = _userApi.grantRoleWithPermission(body, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -862,9 +891,7 @@ public class SKClient
         // Make the REST call.
         RespChangeCount resp = null;
         try {
-            // Get the API object using default networking.
-            var userApi = new UserApi(_apiClient);
-            resp = userApi.grantUserPermission(body, Boolean.FALSE);
+            resp = _userApi.grantUserPermission(body, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -889,9 +916,7 @@ public class SKClient
         // Make the REST call.
         RespChangeCount resp = null;
         try {
-            // Get the API object using default networking.
-            var userApi = new UserApi(_apiClient);
-            resp = userApi.revokeUserPermission(body, Boolean.FALSE);
+            resp = _userApi.revokeUserPermission(body, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -916,9 +941,7 @@ public class SKClient
         // Make the REST call.
         RespAuthorized resp = null;
         try {
-            // Get the API object using default networking.
-            var userApi = new UserApi(_apiClient);
-            resp = userApi.hasRole(body, Boolean.FALSE);
+            resp = _userApi.hasRole(body, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -928,6 +951,28 @@ public class SKClient
         return b == null ? false : b;
     }
     
+    /* ---------------------------------------------------------------------------- */
+    /* hasRoleAsync:                                                                */
+    /* ---------------------------------------------------------------------------- */
+    /** Non-blocking hasRole.  The future fails with a TapisClientException. */
+    public CompletableFuture<Boolean> hasRoleAsync(String tenant, String user, String roleName)
+    {
+        // Assign input body.
+        var body = new ReqUserHasRole();
+        body.setTenant(tenant);
+        body.setUser(user);
+        body.setRoleName(roleName);
+        
+        // Start the REST call.
+        try {
+            return Utils.executeAsync(_apiClient.getHttpClient(), 
+                                      _userApi.hasRoleCall(body, Boolean.FALSE, null), 
+                                      ResultAuthorized.class, SKClient::isAuthorized);
+        }
+        catch (ApiException e) {return Utils.failedFuture(e.getCode(), e.getResponseBody(), e);}
+        catch (Exception e) {return Utils.failedFuture(-1, null, e);}
+    }
+    
     /* ---------------------------------------------------------------------------- */
     /* hasAnyRole:                                                                  */
     /* ---------------------------------------------------------------------------- */
@@ -943,9 +988,7 @@ public class SKClient
         // Make the REST call.
         RespAuthorized resp = null;
         try {
-            // Get the API object using default networking.
-            var userApi = new UserApi(_apiClient);
-            resp = userApi.hasRoleAny(body, Boolean.FALSE);
+            resp = _userApi.hasRoleAny(body, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -970,9 +1013,7 @@ public class SKClient
         // Make the REST call.
         RespAuthorized resp = null;
         try {
-            // Get the API object using default networking.
-            var userApi = new UserApi(_apiClient);
-            resp = userApi.hasRoleAll(body, Boolean.FALSE);
+            resp = _userApi.hasRoleAll(body, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -996,9 +1037,7 @@ public class SKClient
     // Make the REST call.
     RespAuthorized resp = null;
     try {
-      // Get the API object using default networking.
-      var userApi = new UserApi(_apiClient);
-      resp = userApi.isAdmin(body, Boolean.FALSE);
+      resp = _userApi.isAdmin(body, Boolean.FALSE);
     }
     catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
     catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -1020,12 +1059,25 @@ public class SKClient
         body.setUser(user);
         body.setPermSpec(permSpec);
         
+        // Hedged requests stream the result directly.
+        var hedger = _hedger;
+        if (hedger != null && hedger.isEnabled("isPermitted")) {
+            ResultAuthorized result = null;
+            try {
+                result = Utils.executeHedged(hedger, "isPermitted", _apiClient.getHttpClient(),
+                                             _userApi.isPermittedCall(body, Boolean.FALSE, null),
+                                             ResultAuthorized.class);
+            }
+            catch (TapisClientException e) {throw e;}
+            catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
+            catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
+            return isAuthorized(result);
+        }
+        
         // Make the REST call.
         RespAuthorized resp = null;
         try {
-            // Get the API object using default networking.
-            var userApi = new UserApi(_apiClient);
-            resp = userApi.isPermitted(body, Boolean.FALSE);
+            resp = _userApi.isPermitted(body, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -1035,6 +1087,28 @@ public class SKClient
         return b == null ? false : b;
     }
     
+    /* ---------------------------------------------------------------------------- */
+    /* isPermittedAsync:                                                            */
+    /* ---------------------------------------------------------------------------- */
+    /** Non-blocking isPermitted.  The future fails with a TapisClientException. */
+    public CompletableFuture<Boolean> isPermittedAsync(String tenant, String user, String permSpec)
+    {
+        // Assign input body.
+        var body = new ReqUserIsPermitted();
+        body.setTenant(tenant);
+        body.setUser(user);
+        body.setPermSpec(permSpec);
+        
+        // Start the REST call.
+        try {
+            return Utils.executeAsync(_apiClient.getHttpClient(), 
+                                      _userApi.isPermittedCall(body, Boolean.FALSE, null), 
+                                      ResultAuthorized.class, SKClient::isAuthorized);
+        }
+        catch (ApiException e) {return Utils.failedFuture(e.getCode(), e.getResponseBody(), e);}
+        catch (Exception e) {return Utils.failedFuture(-1, null, e);}
+    }
+    
     /* ---------------------------------------------------------------------------- */
     /* isPermittedAny:                                                              */
     /* ---------------------------------------------------------------------------- */
@@ -1050,9 +1124,7 @@ public class SKClient
         // Make the REST call.
         RespAuthorized resp = null;
         try {
-            // Get the API object using default networking.
-            var userApi = new UserApi(_apiClient);
-            resp = userApi.isPermittedAny(body, Boolean.FALSE);
+            resp = _userApi.isPermittedAny(body, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -1077,9 +1149,7 @@ public class SKClient
         // Make the REST call.
         RespAuthorized resp = null;
         try {
-            // Get the API object using default networking.
-            var userApi = new UserApi(_apiClient);
-            resp = userApi.isPermittedAll(body, Boolean.FALSE);
+            resp = _userApi.isPermittedAll(body, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -1089,6 +1159,84 @@ public class SKClient
         return b == null ? false : b;
     }
     
+    /* ---------------------------------------------------------------------------- */
+    /* isPermittedBatch:                                                            */
+    /* ---------------------------------------------------------------------------- */
+    /** Evaluate many authorization checks using up to DEFAULT_BATCH_CONCURRENCY 
+     * concurrent requests.
+     * 
+     * @param checks the checks to evaluate
+     * @return one result per check in the same order as the input
+     */
+    public List<SKPermissionCheckResult> isPermittedBatch(List<SKPermissionCheck> checks)
+    {
+        return isPermittedBatch(checks, DEFAULT_BATCH_CONCURRENCY);
+    }
+    
+    /* ---------------------------------------------------------------------------- */
+    /* isPermittedBatch:                                                            */
+    /* ---------------------------------------------------------------------------- */
+    /** Evaluate many authorization checks concurrently.  Identical checks are sent to
+     * SK only once and their result is shared.  Each check is evaluated with 
+     * isPermitted(), so subclasses that cache decisions are honored.  The calling 
+     * thread's TapisRequestContext, if any, applies to every check.  Checks run on
+     * the default TapisExecutor, which uses virtual threads when the JVM supports them.
+     * 
+     * A check that fails does not affect the others; its result carries the 
+     * exception instead of a decision.  If the calling thread is interrupted the
+     * checks without a decision carry the interruption and the thread's interrupt
+     * status is left set.
+     * 
+     * @param checks the checks to evaluate
+     * @param maxConcurrency the maximum number of concurrent requests
+     * @return one result per check in the same order as the input
+     */
+    public List<SKPermissionCheckResult> isPermittedBatch(List<SKPermissionCheck> checks,
+                                                          int maxConcurrency)
+    {
+        if (maxConcurrency < 1) 
+            throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+        
+        // De-duplicate while preserving the input order.
+        var unique = new ArrayList<>(new LinkedHashSet<>(checks));
+        var decisions = new HashMap<SKPermissionCheck,SKPermissionCheckResult>(unique.size() * 2);
+        
+        // Evaluate on the shared bulk executor.  Failures are captured per check, so
+        // invokeAll() only throws if the calling thread is interrupted.
+        TapisClientException interrupted = null;
+        try {
+            var results = TapisExecutor.getDefault().invokeAll(unique, maxConcurrency, check -> {
+                try {
+                    boolean b = isPermitted(check.getTenant(), check.getUser(), check.getPermSpec());
+                    return new SKPermissionCheckResult(check, b);
+                }
+                catch (TapisClientException e) {return new SKPermissionCheckResult(check, e);}
+                catch (Exception e) {
+                    return new SKPermissionCheckResult(check, new TapisClientException(e.getMessage(), e));
+                }
+            });
+            for (var result : results) decisions.put(result.getCheck(), result);
+        }
+        catch (TapisClientException e) {
+            interrupted = e;
+            Thread.currentThread().interrupt();
+        }
+        
+        // Map the decisions back onto the input.
+        var results = new ArrayList<SKPermissionCheckResult>(checks.size());
+        for (var check : checks) {
+            var result = decisions.get(check);
+            if (result == null) 
+                result = new SKPermissionCheckResult(check, 
+                             new TapisClientException("Permission check interrupted: " + check, interrupted));
+            else if (result.getCheck() != check)
+                result = result.isFailed() ? new SKPermissionCheckResult(check, result.getError()) :
+                                             new SKPermissionCheckResult(check, result.isPermitted());
+            results.add(result);
+        }
+        return results;
+    }
+    
     /* ---------------------------------------------------------------------------- */
     /* getUsersWithRole:                                                            */
     /* ---------------------------------------------------------------------------- */
@@ -1098,9 +1246,7 @@ public class SKClient
         // Make the REST call.
         RespNameArray resp = null;
         try {
-            // Get the API object using default networking.
-            var userApi = new UserApi(_apiClient);
-            resp = userApi.getUsersWithRole(roleName, tenant, Boolean.FALSE);
+            resp = _userApi.getUsersWithRole(roleName, tenant, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -1118,9 +1264,7 @@ public class SKClient
         // Make the REST call.
         RespNameArray resp = null;
         try {
-            // Get the API object using default networking.
-            var userApi = new UserApi(_apiClient);
-            resp = userApi.getUsersWithPermission(permSpec, tenant, Boolean.FALSE);
+            resp = _userApi.getUsersWithPermission(permSpec, tenant, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -1138,9 +1282,7 @@ public class SKClient
         // Make the REST call.
         RespName resp = null;
         try {
-            // Get the API object using default networking.
-            var userApi = new UserApi(_apiClient);
-            resp = userApi.getDefaultUserRole1(user, Boolean.FALSE);
+            resp = _userApi.getDefaultUserRole1(user, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -1158,12 +1300,10 @@ public class SKClient
         // Make the REST call.
         RespChangeCount resp = null;
         try {
-            // Get the API object using default networking.
-            var roleApi = new RoleApi(_apiClient);
             var req = new ReqRemovePermissionFromAllRoles();
             req.setTenant(tenant);
             req.setPermSpec(permSpec);
-            resp = roleApi.removePathPermissionFromAllRoles(req, Boolean.FALSE);
+            resp = _roleApi.removePathPermissionFromAllRoles(req, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -1181,12 +1321,10 @@ public class SKClient
         // Make the REST call.
         RespChangeCount resp = null;
         try {
-            // Get the API object using default networking.
-            var roleApi = new RoleApi(_apiClient);
             var req = new ReqRemovePermissionFromAllRoles();
             req.setTenant(tenant);
             req.setPermSpec(permSpec);
-            resp = roleApi.removePermissionFromAllRoles(req, Boolean.FALSE);
+            resp = _roleApi.removePermissionFromAllRoles(req, Boolean.FALSE);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -1205,8 +1343,7 @@ public class SKClient
        throws TapisClientException
     {
         RespResourceUrl resp = null;
-        var shareApi = new ShareApi(_apiClient);
-        try {resp = shareApi.shareResource(reqShareResource, Boolean.FALSE);}
+        try {resp = _shareApi.shareResource(reqShareResource, Boolean.FALSE);}
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
         
@@ -1219,8 +1356,7 @@ public class SKClient
     public SkShare getShare(int id, String tenant) throws TapisClientException
     {
         RespShare resp = null;
-        var shareApi = new ShareApi(_apiClient);
-        try {resp = shareApi.getShare(id, tenant, Boolean.FALSE);}
+        try {resp = _shareApi.getShare(id, tenant, Boolean.FALSE);}
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
         
@@ -1233,8 +1369,7 @@ public class SKClient
     public SkShareList getShares(SKShareGetSharesParms p) throws TapisClientException
     {
         RespShareList resp = null;
-        var shareApi = new ShareApi(_apiClient);
-        try {resp = shareApi.getShares(p.getGrantor(), p.getGrantee(), p.getTenant(), p.getResourceType(),
+        try {resp = _shareApi.getShares(p.getGrantor(), p.getGrantee(), p.getTenant(), p.getResourceType(),
                 p.getResourceId1(), p.getResourceId2(), p.getPrivilege(), p.getCreatedBy(),
                 p.getCreatedByTenant(), p.isIncludePublicGrantees(), p.isRequireNullId2(), 
                 p.getId(), Boolean.FALSE);}
@@ -1250,8 +1385,7 @@ public class SKClient
     public int deleteShareById(int id, String tenant) throws TapisClientException
     {
         RespChangeCount resp = null;
-        var shareApi = new ShareApi(_apiClient);
-        try {resp = shareApi.deleteShareById(id, tenant, Boolean.FALSE);}
+        try {resp = _shareApi.deleteShareById(id, tenant, Boolean.FALSE);}
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
         
@@ -1265,8 +1399,7 @@ public class SKClient
     public int deleteShare(SKShareDeleteShareParms p) throws TapisClientException
     {
         RespChangeCount resp = null;
-        var shareApi = new ShareApi(_apiClient);
-        try {resp = shareApi.deleteShare(p.getGrantor(), p.getGrantee(), p.getTenant(), p.getResourceType(),
+        try {resp = _shareApi.deleteShare(p.getGrantor(), p.getGrantee(), p.getTenant(), p.getResourceType(),
                 p.getResourceId1(), p.getResourceId2(), p.getPrivilege(), Boolean.FALSE);}
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -1282,8 +1415,7 @@ public class SKClient
         throws TapisClientException
     {
         RespBoolean resp = null;
-        var shareApi = new ShareApi(_apiClient);
-        try {resp = shareApi.hasPrivilege(p.getGrantee(), p.getTenant(), p.getResourceType(),
+        try {resp = _shareApi.hasPrivilege(p.getGrantee(), p.getTenant(), p.getResourceType(),
                 p.getResourceId1(), p.getResourceId2(), p.getPrivilege(), 
                 p.isExcludePublic(), p.isExcludePublicNoAuthn(), Boolean.FALSE);}
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
@@ -1305,9 +1437,7 @@ public class SKClient
         // Make the REST call.
         RespSecret resp = null;
         try {
-            // Get the API object using default networking.
-            var vaultApi = new VaultApi(_apiClient);
-            resp = vaultApi.readSecret(parms.getSecretType().getUrlText(),
+            resp = _vaultApi.readSecret(parms.getSecretType().getUrlText(),
                                        parms.getSecretName(),
                                        parms.getTenant(),
                                        parms.getUser(),
@@ -1344,9 +1474,7 @@ public class SKClient
         // Make the REST call.
         RespSecretMeta resp = null;
         try {
-            // Get the API object using default networking.
-            var vaultApi = new VaultApi(_apiClient);
-            resp = vaultApi.writeSecret(parms.getSecretType().getUrlText(),
+            resp = _vaultApi.writeSecret(parms.getSecretType().getUrlText(),
                                         parms.getSecretName(),
                                         reqWriteSecret,
                                         false, // pretty
@@ -1380,9 +1508,7 @@ public class SKClient
         // Make the REST call.
         RespVersions resp = null;
         try {
-            // Get the API object using default networking.
-            var vaultApi = new VaultApi(_apiClient);
-            resp = vaultApi.deleteSecret(parms.getSecretType().getUrlText(),
+            resp = _vaultApi.deleteSecret(parms.getSecretType().getUrlText(),
                                          parms.getSecretName(),
                                          reqVersions,
                                          false, // pretty
@@ -1415,9 +1541,7 @@ public class SKClient
         // Make the REST call.
         RespVersions resp = null;
         try {
-            // Get the API object using default networking.
-            var vaultApi = new VaultApi(_apiClient);
-            resp = vaultApi.undeleteSecret(parms.getSecretType().getUrlText(),
+            resp = _vaultApi.undeleteSecret(parms.getSecretType().getUrlText(),
                                            parms.getSecretName(),
                                            reqVersions,
                                            false, // pretty
@@ -1450,9 +1574,7 @@ public class SKClient
         // Make the REST call.
         RespVersions resp = null;
         try {
-            // Get the API object using default networking.
-            var vaultApi = new VaultApi(_apiClient);
-            resp = vaultApi.destroySecret(parms.getSecretType().getUrlText(),
+            resp = _vaultApi.destroySecret(parms.getSecretType().getUrlText(),
                                           parms.getSecretName(),
                                           reqVersions,
                                           false, // pretty
@@ -1479,9 +1601,7 @@ public class SKClient
         // Make the REST call.
         RespSecretVersionMetadata resp = null;
         try {
-            // Get the API object using default networking.
-            var vaultApi = new VaultApi(_apiClient);
-            resp = vaultApi.readSecretMeta(parms.getSecretType().getUrlText(),
+            resp = _vaultApi.readSecretMeta(parms.getSecretType().getUrlText(),
                                            parms.getSecretName(),
                                            parms.getTenant(),
                                            parms.getUser(),
@@ -1509,9 +1629,7 @@ public class SKClient
         // Make the REST call.
         RespSecretList resp = null;
         try {
-            // Get the API object using default networking.
-            var vaultApi = new VaultApi(_apiClient);
-            resp = vaultApi.listSecretMeta(parms.getSecretType().getUrlText(),
+            resp = _vaultApi.listSecretMeta(parms.getSecretType().getUrlText(),
                                            parms.getTenant(),
                                            parms.getUser(),
                                            false, // pretty
@@ -1539,9 +1657,7 @@ public class SKClient
         @SuppressWarnings("unused")
         RespBasic resp = null;
         try {
-            // Get the API object using default networking.
-            var vaultApi = new VaultApi(_apiClient);
-            resp = vaultApi.destroySecretMeta(parms.getSecretType().getUrlText(),
+            resp = _vaultApi.destroySecretMeta(parms.getSecretType().getUrlText(),
                                               parms.getSecretName(),
                                               parms.getTenant(),
                                               parms.getUser(),
@@ -1573,9 +1689,7 @@ public class SKClient
         // Make the REST call.
         RespAuthorized resp = null;
         try {
-            // Get the API object using default networking.
-            var vaultApi = new VaultApi(_apiClient);
-            resp = vaultApi.validateServicePassword(serviceName, 
+            resp = _vaultApi.validateServicePassword(serviceName, 
                                                     reqValidateServicePwd, Boolean.FALSE);
             
         }
@@ -1599,9 +1713,7 @@ public class SKClient
         // Make the REST call.
         RespBasic resp = null;
         try {
-            // Get the API object using default networking.
-            var generalApi = new GeneralApi(_apiClient);
-            resp = generalApi.sayHello(false);
+            resp = _generalApi.sayHello(false);
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -1620,9 +1732,7 @@ public class SKClient
         // Make the REST call.
         RespProbe resp = null;
         try {
-            // Get the API object using default networking.
-            var generalApi = new GeneralApi(_apiClient);
-            resp = generalApi.checkHealth();
+            resp = _generalApi.checkHealth();
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -1641,9 +1751,7 @@ public class SKClient
         // Make the REST call.
         RespProbe resp = null;
         try {
-            // Get the API object using default networking.
-            var generalApi = new GeneralApi(_apiClient);
-            resp = generalApi.ready();
+            resp = _generalApi.ready();
         }
         catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e);}
         catch (Exception e) {Utils.throwTapisClientException(-1, null, e);}
@@ -1656,5 +1764,11 @@ public class SKClient
     /* **************************************************************************** */
     /*                               Private Methods                                */
     /* **************************************************************************** */
-
+    /* ---------------------------------------------------------------------------- */
+    /* isAuthorized:                                                                */
+    /* ---------------------------------------------------------------------------- */
+    private static Boolean isAuthorized(ResultAuthorized result)
+    {
+        return result != null && Boolean.TRUE.equals(result.getIsAuthorized());
+    }
 }
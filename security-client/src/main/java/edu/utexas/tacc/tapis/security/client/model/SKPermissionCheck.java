@@ -0,0 +1,41 @@
+package edu.utexas.tacc.tapis.security.client.model;
+
+import java.util.Objects;
+
+/** One (tenant, user, permSpec) authorization check in a batch.  Checks with equal
+ * fields are evaluated only once per batch.
+ */
+public final class SKPermissionCheck 
+{
+    private final String tenant;
+    private final String user;
+    private final String permSpec;
+    
+    public SKPermissionCheck(String tenant, String user, String permSpec)
+    {
+        this.tenant = tenant;
+        this.user = user;
+        this.permSpec = permSpec;
+    }
+    
+    // Accessors.
+    public String getTenant() { return tenant; }
+    public String getUser() { return user; }
+    public String getPermSpec() { return permSpec; }
+    
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (!(o instanceof SKPermissionCheck)) return false;
+        var c = (SKPermissionCheck) o;
+        return Objects.equals(tenant, c.tenant) && Objects.equals(user, c.user) && 
+               Objects.equals(permSpec, c.permSpec);
+    }
+    
+    @Override
+    public int hashCode() { return Objects.hash(tenant, user, permSpec); }
+    
+    @Override
+    public String toString() { return tenant + "/" + user + ": " + permSpec; }
+}
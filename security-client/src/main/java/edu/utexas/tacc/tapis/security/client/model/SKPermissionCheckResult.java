@@ -0,0 +1,33 @@
+package edu.utexas.tacc.tapis.security.client.model;
+
+import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+
+/** The outcome of one check in a batch.  Either the authorization decision is set 
+ * or, if the check could not be evaluated, the exception that caused the failure.
+ */
+public final class SKPermissionCheckResult 
+{
+    private final SKPermissionCheck   check;
+    private final boolean             permitted;
+    private final TapisClientException error;
+    
+    public SKPermissionCheckResult(SKPermissionCheck check, boolean permitted)
+    {
+        this.check = check;
+        this.permitted = permitted;
+        this.error = null;
+    }
+    
+    public SKPermissionCheckResult(SKPermissionCheck check, TapisClientException error)
+    {
+        this.check = check;
+        this.permitted = false;
+        this.error = error;
+    }
+    
+    // Accessors.
+    public SKPermissionCheck getCheck() { return check; }
+    public boolean isPermitted() { return permitted; }
+    public boolean isFailed() { return error != null; }
+    public TapisClientException getError() { return error; }
+}
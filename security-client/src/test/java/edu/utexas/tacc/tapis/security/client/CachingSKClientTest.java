@@ -0,0 +1,232 @@
+package edu.utexas.tacc.tapis.security.client;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+
+/** Verify decision caching and invalidation in CachingSKClient.  A local JDK http
+ * server answers isPermitted and grant/revoke requests from an in-memory permission
+ * set, so no SK service is required.
+ */
+@Test
+public class CachingSKClientTest
+{
+    /* ********************************************************************** */
+    /*                                 Fields                                 */
+    /* ********************************************************************** */
+    private HttpServer _server;
+    private String     _baseUrl;
+    private final Set<String> _perms = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger _checks = new AtomicInteger();
+
+    /* ********************************************************************** */
+    /*                              Setup Methods                             */
+    /* ********************************************************************** */
+    @BeforeClass
+    public void setUp() throws Exception
+    {
+        _server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        _server.createContext("/v3/security/user/isPermitted", ex -> {
+            _checks.incrementAndGet();
+            var req = readBody(ex);
+            boolean b = _perms.contains(key(req, "permSpec"));
+            reply(ex, "{\"status\":\"success\",\"result\":{\"isAuthorized\":" + b + "}}");
+        });
+        _server.createContext("/v3/security/user/grantUserPermission", ex -> {
+            _perms.add(key(readBody(ex), "permSpec"));
+            reply(ex, "{\"status\":\"success\",\"result\":{\"changes\":1}}");
+        });
+        _server.createContext("/v3/security/user/revokeUserPermission", ex -> {
+            _perms.remove(key(readBody(ex), "permSpec"));
+            reply(ex, "{\"status\":\"success\",\"result\":{\"changes\":1}}");
+        });
+        _server.createContext("/v3/security/role/", ex -> {
+            readBody(ex);
+            reply(ex, "{\"status\":\"success\",\"result\":{\"changes\":1}}");
+        });
+        _server.start();
+        _baseUrl = "http://127.0.0.1:" + _server.getAddress().getPort() + "/v3";
+    }
+
+    @AfterClass
+    public void tearDown() {_server.stop(0);}
+
+    @BeforeMethod
+    public void reset() {_perms.clear(); _checks.set(0);}
+
+    /* ********************************************************************** */
+    /*                                  Tests                                 */
+    /* ********************************************************************** */
+    /* ---------------------------------------------------------------------- */
+    /* testCaching:                                                           */
+    /* ---------------------------------------------------------------------- */
+    // Repeated checks are answered from the cache.
+    @Test
+    public void testCaching() throws Exception
+    {
+        var sk = new CachingSKClient(_baseUrl, null, null, Duration.ofMinutes(1),
+                                     Duration.ofMinutes(1), 100);
+        _perms.add("dev|bud|files:dev:read:sys1");
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(sk.isPermitted("dev", "bud", "files:dev:read:sys1"));
+            Assert.assertFalse(sk.isPermitted("dev", "bud", "files:dev:write:sys1"));
+        }
+        Assert.assertEquals(_checks.get(), 2);
+        Assert.assertEquals(sk.getDecisionCache().getHitCount(), 8);
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /* testInvalidation:                                                      */
+    /* ---------------------------------------------------------------------- */
+    // Grants and revocations through the client invalidate the user's decisions
+    // but leave other users' decisions cached.
+    @Test
+    public void testInvalidation() throws Exception
+    {
+        var sk = new CachingSKClient(_baseUrl, null, null, Duration.ofMinutes(1),
+                                     Duration.ofMinutes(1), 100);
+        String spec = "files:dev:read:sys1";
+        Assert.assertFalse(sk.isPermitted("dev", "bud", spec));
+        Assert.assertFalse(sk.isPermitted("dev", "lou", spec));
+
+        sk.grantUserPermission("dev", "bud", spec);
+        Assert.assertTrue(sk.isPermitted("dev", "bud", spec));
+        Assert.assertFalse(sk.isPermitted("dev", "lou", spec));
+        Assert.assertEquals(_checks.get(), 3);
+
+        sk.revokeUserPermission("dev", "bud", spec);
+        Assert.assertFalse(sk.isPermitted("dev", "bud", spec));
+        Assert.assertEquals(_checks.get(), 4);
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /* testRoleInvalidation:                                                  */
+    /* ---------------------------------------------------------------------- */
+    // Renaming a role or changing its owner invalidates the tenant's decisions.
+    @Test
+    public void testRoleInvalidation() throws Exception
+    {
+        var sk = new CachingSKClient(_baseUrl, null, null, Duration.ofMinutes(1),
+                                     Duration.ofMinutes(1), 100);
+        Assert.assertFalse(sk.isPermitted("dev", "bud", "files:dev:read:sys1"));
+        Assert.assertFalse(sk.isPermitted("other", "bud", "files:other:read:sys1"));
+        sk.updateRoleName("dev", "r1", "r2");
+        Assert.assertEquals(sk.getDecisionCache().size(), 1);
+        Assert.assertFalse(sk.isPermitted("dev", "bud", "files:dev:read:sys1"));
+        sk.updateRoleOwner("dev", "r1", "lou");
+        Assert.assertEquals(sk.getDecisionCache().size(), 1);
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /* testConcurrentInvalidation:                                            */
+    /* ---------------------------------------------------------------------- */
+    // Checks that are answered while a role changes never leave a revoked
+    // grant cached once the change has returned.  Every check is for a new user so
+    // that each one reaches the server and races with the invalidation.
+    @Test
+    public void testConcurrentInvalidation() throws Exception
+    {
+        var sk = new CachingSKClient(_baseUrl, null, null, Duration.ofMinutes(1),
+                                     Duration.ofMinutes(1), 100000);
+        String spec = "files:dev:read:sys3";
+        var users = new AtomicInteger();
+        for (int round = 0; round < 20; round++) {
+            int first = users.get();
+            for (int u = first; u < first + 10000; u++) _perms.add("dev|u" + u + "|" + spec);
+            var stop = new AtomicBoolean();
+            var checkers = new ArrayList<Thread>();
+            for (int i = 0; i < 4; i++) {
+                var t = new Thread(() -> {
+                    try {while (!stop.get()) sk.isPermitted("dev", "u" + users.getAndIncrement(), spec);}
+                    catch (TapisClientException e) {throw new RuntimeException(e);}
+                });
+                t.start();
+                checkers.add(t);
+            }
+            Thread.sleep(10);
+            _perms.clear();
+            sk.updateRoleName("dev", "r1", "r2");
+            stop.set(true);
+            for (var t : checkers) t.join();
+            for (int u = first; u < users.get(); u++)
+                Assert.assertFalse(sk.isPermitted("dev", "u" + u, spec), "round " + round + " user u" + u);
+        }
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /* testAsync:                                                             */
+    /* ---------------------------------------------------------------------- */
+    // Asynchronous checks share the decision cache with synchronous ones.
+    @Test
+    public void testAsync() throws Exception
+    {
+        var sk = new CachingSKClient(_baseUrl, null, null, Duration.ofMinutes(1),
+                                     Duration.ofMinutes(1), 100);
+        _perms.add("dev|bud|apps:dev:read:app1");
+        Assert.assertTrue(sk.isPermittedAsync("dev", "bud", "apps:dev:read:app1").get(5, TimeUnit.SECONDS));
+        Assert.assertTrue(sk.isPermitted("dev", "bud", "apps:dev:read:app1"));
+        Assert.assertTrue(sk.isPermittedAsync("dev", "bud", "apps:dev:read:app1").get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(_checks.get(), 1);
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /* testNegativeTtl:                                                       */
+    /* ---------------------------------------------------------------------- */
+    // Denials expire after the negative ttl and pick up outside grants.
+    @Test
+    public void testNegativeTtl() throws Exception
+    {
+        var sk = new CachingSKClient(_baseUrl, null, null, Duration.ofMinutes(1),
+                                     Duration.ofMillis(100), 100);
+        String spec = "files:dev:read:sys2";
+        Assert.assertFalse(sk.isPermitted("dev", "bud", spec));
+        _perms.add("dev|bud|" + spec);
+        Assert.assertFalse(sk.isPermitted("dev", "bud", spec));
+        Thread.sleep(200);
+        Assert.assertTrue(sk.isPermitted("dev", "bud", spec));
+        Assert.assertEquals(_checks.get(), 2);
+    }
+
+    /* ********************************************************************** */
+    /*                             Private Methods                            */
+    /* ********************************************************************** */
+    private static JsonObject readBody(HttpExchange ex) throws java.io.IOException
+    {
+        var s = new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        return JsonParser.parseString(s).getAsJsonObject();
+    }
+
+    private static String key(JsonObject req, String specField)
+    {
+        return req.get("tenant").getAsString() + "|" + req.get("user").getAsString() + "|" +
+               req.get(specField).getAsString();
+    }
+
+    private static void reply(HttpExchange ex, String body) throws java.io.IOException
+    {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().add("Content-Type", "application/json");
+        ex.sendResponseHeaders(200, bytes.length);
+        ex.getResponseBody().write(bytes);
+        ex.close();
+    }
+}
@@ -0,0 +1,180 @@
+package edu.utexas.tacc.tapis.security.client;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.utexas.tacc.tapis.client.shared.TapisHttpTransport;
+import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+import edu.utexas.tacc.tapis.client.shared.metrics.InMemoryTapisMetrics;
+import edu.utexas.tacc.tapis.security.client.model.SKPermissionCheck;
+import edu.utexas.tacc.tapis.security.client.model.SKPermissionCheckResult;
+
+/** Verify concurrency, de-duplication and per-item failures of batched permission
+ * checks against a local JDK http server.  Specs ending in ":read" are permitted,
+ * specs ending in ":fail" produce a server error.
+ */
+@Test
+public class SKClientBatchTest
+{
+    /* ********************************************************************** */
+    /*                                 Fields                                 */
+    /* ********************************************************************** */
+    private HttpServer _server;
+    private String     _baseUrl;
+    private final AtomicInteger _calls = new AtomicInteger();
+    private final AtomicInteger _active = new AtomicInteger();
+    private final AtomicInteger _maxActive = new AtomicInteger();
+
+    /* ********************************************************************** */
+    /*                              Setup Methods                             */
+    /* ********************************************************************** */
+    @BeforeClass
+    public void setUp() throws Exception
+    {
+        _server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 64);
+        _server.setExecutor(Executors.newCachedThreadPool());
+        _server.createContext("/v3/security/user/isPermitted", ex -> {
+            _calls.incrementAndGet();
+            _maxActive.accumulateAndGet(_active.incrementAndGet(), Math::max);
+            try {
+                var body = new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                String spec = JsonParser.parseString(body).getAsJsonObject().get("permSpec").getAsString();
+                try {Thread.sleep(20);} catch (InterruptedException e) {}
+                if (spec.endsWith(":fail")) reply(ex, 500, "{\"status\":\"error\",\"message\":\"boom\"}");
+                else reply(ex, 200, "{\"status\":\"success\",\"result\":{\"isAuthorized\":" +
+                                    spec.endsWith(":read") + "}}");
+            }
+            finally {_active.decrementAndGet();}
+        });
+        _server.start();
+        _baseUrl = "http://127.0.0.1:" + _server.getAddress().getPort() + "/v3";
+    }
+
+    @AfterClass
+    public void tearDown() {_server.stop(0);}
+
+    @BeforeMethod
+    public void reset() {_calls.set(0); _active.set(0); _maxActive.set(0);}
+
+    /* ********************************************************************** */
+    /*                                  Tests                                 */
+    /* ********************************************************************** */
+    /* ---------------------------------------------------------------------- */
+    /* testBatch:                                                             */
+    /* ---------------------------------------------------------------------- */
+    // Results are returned in input order, duplicates are evaluated once and
+    // concurrency stays within the limit.
+    @Test
+    public void testBatch()
+    {
+        var checks = new ArrayList<SKPermissionCheck>();
+        for (int i = 0; i < 40; i++) {
+            checks.add(new SKPermissionCheck("dev", "bud", "systems:dev:sys" + i + ":read"));
+            checks.add(new SKPermissionCheck("dev", "bud", "systems:dev:sys" + i + ":modify"));
+        }
+        checks.add(new SKPermissionCheck("dev", "bud", "systems:dev:sys0:read"));
+
+        var sk = new SKClient(_baseUrl, null);
+        var results = sk.isPermittedBatch(checks, 8);
+        Assert.assertEquals(results.size(), checks.size());
+        for (int i = 0; i < checks.size(); i++) {
+            Assert.assertSame(results.get(i).getCheck(), checks.get(i));
+            Assert.assertFalse(results.get(i).isFailed());
+            Assert.assertEquals(results.get(i).isPermitted(), checks.get(i).getPermSpec().endsWith(":read"));
+        }
+        Assert.assertEquals(_calls.get(), 80);
+        Assert.assertTrue(_maxActive.get() <= 8, "Too many concurrent requests: " + _maxActive.get());
+        Assert.assertTrue(_maxActive.get() > 1, "Requests were not concurrent");
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /* testPartialFailure:                                                    */
+    /* ---------------------------------------------------------------------- */
+    // A failed check is reported on its own item only.
+    @Test
+    public void testPartialFailure()
+    {
+        var checks = new ArrayList<SKPermissionCheck>();
+        checks.add(new SKPermissionCheck("dev", "bud", "files:dev:read"));
+        checks.add(new SKPermissionCheck("dev", "bud", "files:dev:fail"));
+        checks.add(new SKPermissionCheck("dev", "bud", "files:dev:write"));
+
+        var results = new SKClient(_baseUrl, null).isPermittedBatch(checks);
+        Assert.assertTrue(results.get(0).isPermitted());
+        Assert.assertTrue(results.get(1).isFailed());
+        Assert.assertEquals(results.get(1).getError().getCode(), 500);
+        Assert.assertFalse(results.get(2).isFailed());
+        Assert.assertFalse(results.get(2).isPermitted());
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /* testInterrupted:                                                       */
+    /* ---------------------------------------------------------------------- */
+    // An interrupted batch reports the interruption on unanswered checks and
+    // leaves the caller's interrupt status set.
+    @Test
+    public void testInterrupted()
+    {
+        var checks = new ArrayList<SKPermissionCheck>();
+        for (int i = 0; i < 10; i++) 
+            checks.add(new SKPermissionCheck("dev", "bud", "systems:dev:sys" + i + ":read"));
+        Thread.currentThread().interrupt();
+        List<SKPermissionCheckResult> results;
+        try {results = new SKClient(_baseUrl, null).isPermittedBatch(checks, 2);}
+        finally {Assert.assertTrue(Thread.interrupted(), "Interrupt status was cleared");}
+        
+        Assert.assertEquals(results.size(), 10);
+        var failed = results.stream().filter(SKPermissionCheckResult::isFailed).findFirst().orElseThrow();
+        Assert.assertTrue(failed.getError().getCause() instanceof TapisClientException);
+        Assert.assertTrue(failed.getError().getCause().getCause() instanceof InterruptedException);
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /* testMetrics:                                                           */
+    /* ---------------------------------------------------------------------- */
+    // Batched checks on an instrumented transport are reported under the
+    // generated operationId.
+    @Test
+    public void testMetrics()
+    {
+        var metrics = new InMemoryTapisMetrics();
+        var transport = new TapisHttpTransport().enableMetrics("sk", metrics);
+        var checks = new ArrayList<SKPermissionCheck>();
+        for (int i = 0; i < 10; i++) 
+            checks.add(new SKPermissionCheck("dev", "bud", "systems:dev:sys" + i + ":read"));
+        new SKClient(_baseUrl, null, transport).isPermittedBatch(checks, 4);
+        
+        var latency = metrics.getLatency("SKClient", "isPermitted", 200);
+        Assert.assertNotNull(latency, metrics.toString());
+        Assert.assertEquals(latency.getCount(), 10);
+        Assert.assertEquals(metrics.getInFlight("SKClient"), 0);
+        Assert.assertTrue(metrics.getBytesReceived("SKClient", "isPermitted") > 0);
+        transport.shutdown();
+    }
+
+    /* ********************************************************************** */
+    /*                             Private Methods                            */
+    /* ********************************************************************** */
+    private static void reply(HttpExchange ex, int code, String body) throws java.io.IOException
+    {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().add("Content-Type", "application/json");
+        ex.sendResponseHeaders(code, bytes.length);
+        ex.getResponseBody().write(bytes);
+        ex.close();
+    }
+}
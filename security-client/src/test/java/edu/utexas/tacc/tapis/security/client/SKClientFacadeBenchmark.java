@@ -0,0 +1,81 @@
+package edu.utexas.tacc.tapis.security.client;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpServer;
+
+import edu.utexas.tacc.tapis.client.shared.BenchmarkHarness;
+import edu.utexas.tacc.tapis.security.client.gen.ApiClient;
+import edu.utexas.tacc.tapis.security.client.gen.api.UserApi;
+import edu.utexas.tacc.tapis.security.client.gen.model.ReqUserIsPermitted;
+
+/**
+ * Compare creating a generated UserApi facade for every call, which is what SKClient
+ * used to do, with reusing one facade, which is what SKClient, JobsClient and
+ * TenantsClient now do.  This is not a unit test, run it by hand with the test
+ * classpath:
+ * <pre>
+ *   java -cp ... edu.utexas.tacc.tapis.security.client.SKClientFacadeBenchmark [calls] [rounds]
+ * </pre>
+ * Two measurements are reported for each mode:
+ *   facade  - the facade lookup alone, without a request, in ns and bytes allocated per call,
+ *   request - isPermitted against a local JDK http server that answers immediately, in
+ *             calls/s and bytes allocated per call.
+ * Allocation is measured on the calling thread only.
+ */
+public class SKClientFacadeBenchmark
+{
+  public static void main(String[] args) throws Exception
+  {
+    int calls = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+    int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+    var server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext("/v3/security/user/isPermitted", exchange -> {
+      exchange.getRequestBody().readAllBytes();
+      byte[] body = "{\"status\":\"success\",\"result\":{\"isAuthorized\":true}}".getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, body.length);
+      exchange.getResponseBody().write(body);
+      exchange.close();
+    });
+    server.start();
+
+    var apiClient = new ApiClient();
+    apiClient.setBasePath("http://127.0.0.1:" + server.getAddress().getPort() + "/v3");
+    var reused = new UserApi(apiClient);
+    var body = new ReqUserIsPermitted();
+    body.setTenant("dev");
+    body.setUser("bud");
+    body.setPermSpec("files:dev:read:sys1");
+
+    System.out.printf("calls=%d rounds=%d%n", calls, rounds);
+    try
+    {
+      Facade perCall = () -> new UserApi(apiClient);
+      Facade cached = () -> reused;
+      run("new", "facade", calls * 50, rounds, () -> perCall.get().getApiClient());
+      run("reused", "facade", calls * 50, rounds, () -> cached.get().getApiClient());
+      run("new", "request", calls, rounds, () -> perCall.get().isPermitted(body, Boolean.FALSE));
+      run("reused", "request", calls, rounds, () -> cached.get().isPermitted(body, Boolean.FALSE));
+    }
+    finally { server.stop(0); }
+  }
+
+  private interface Facade { UserApi get(); }
+
+  private static void run(String mode, String what, int calls, int rounds, BenchmarkHarness.Call call)
+          throws Exception
+  {
+    var result = BenchmarkHarness.measure(calls, rounds, call);
+    if (what.equals("facade"))
+      System.out.printf("%-7s %-8s %8.1f ns/call  %8.1f bytes/call%n", what, mode,
+                        result.nanosPerCall(), result.bytesPerCall());
+    else
+      System.out.printf("%-7s %-8s %8.0f calls/s  %8.1f bytes/call%n", what, mode,
+                        result.callsPerSecond(), result.bytesPerCall());
+  }
+}
@@ -1,10 +1,25 @@
 package edu.utexas.tacc.tapis.client.shared;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Type;
+
 import com.google.gson.*;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import edu.utexas.tacc.tapis.client.shared.javatime.ClientConverters;
 
 public class ClientTapisGsonUtils
 {
+	/* **************************************************************************** */
+	/*                                    Fields                                    */
+	/* **************************************************************************** */
+	// Gson instances are immutable and thread-safe, so a single compact and a single
+	// pretty printing instance are built when the class loads and shared by all callers.
+	private static final Gson _compactGson = newGsonBuilder(false).create();
+	private static final Gson _prettyGson  = newGsonBuilder(true).create();
+	
 	/* **************************************************************************** */
 	/*                                Public Methods                                */
 	/* **************************************************************************** */
@@ -19,47 +34,77 @@ public class ClientTapisGsonUtils
 	 * _links object in the job submission response. A detailed discussion on HTML escaping in
 	 *  gson can be found in: https://groups.google.com/forum/#!topic/google-gson/JDHUo9DWyyM\ .
 	 * 
+	 * The builder is derived from a cached gson instance, so the converters are not
+	 * registered again on each call.  Callers can customize the returned builder 
+	 * without affecting the cached instances.
+	 * 
 	 * @param prettyPrint true to turn on pretty printing, false otherwise
 	 * @return a gson builder
 	 */
 	public static GsonBuilder getGsonBuilder(boolean prettyPrint)
 	{
-		// Set the date/time translators.
-		GsonBuilder builder = new GsonBuilder().serializeNulls().disableHtmlEscaping();
-		if (prettyPrint) builder.setPrettyPrinting();
-		ClientConverters.registerAll(builder);
-		
-		return builder;
+		return getGson(prettyPrint).newBuilder();
 	}
 
 	/* ---------------------------------------------------------------------------- */
 	/* getGson:                                                                     */
 	/* ---------------------------------------------------------------------------- */
-	/** Provide a gson object with registered serializers and deserializers.
+	/** Provide the shared gson object with registered serializers and deserializers.
 	 * Pretty printing is turned off by default.
 	 * 
 	 * @return a gson object
 	 */
 	public static Gson getGson()
 	{
-		return getGsonBuilder(false).create();
+		return _compactGson;
 	}
 	
     /* ---------------------------------------------------------------------------- */
     /* getGson:                                                                     */
     /* ---------------------------------------------------------------------------- */
-    /** Provide a gson object with registered serializers and deserializers.
+    /** Provide the shared gson object with registered serializers and deserializers.
      * Specify whether or not to turn on pretty printing.
      * 
      * @return a gson object
      */
     public static Gson getGson(boolean prettyPrint)
     {
-        return getGsonBuilder(prettyPrint).create();
+        return prettyPrint ? _prettyGson : _compactGson;
     }
 
     /* ---------------------------------------------------------------------------- */
-    /* getGson:                                                                     */
+    /* readResult:                                                                  */
+    /* ---------------------------------------------------------------------------- */
+    /** Read the "result" element of a standard Tapis response envelope directly into
+     * an object of the given type.  The envelope is streamed: elements other than the
+     * result are skipped without being materialized and the result is deserialized 
+     * without an intermediate map or json string.  Reading stops once the result has
+     * been read.
+     * 
+     * @param reader the response body
+     * @param type the type of the result element
+     * @return the deserialized result or null if the result is missing or null
+     * @throws IOException on read or parse errors
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T readResult(Reader reader, Type type) throws IOException
+    {
+        var jsonReader = new JsonReader(reader);
+        if (jsonReader.peek() != JsonToken.BEGIN_OBJECT) return null;
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            if (!"result".equals(jsonReader.nextName())) {
+                jsonReader.skipValue();
+                continue;
+            }
+            if (jsonReader.peek() == JsonToken.NULL) return null;
+            return (T) _compactGson.getAdapter(TypeToken.get(type)).read(jsonReader);
+        }
+        return null;
+    }
+    
+    /* ---------------------------------------------------------------------------- */
+    /* addTo:                                                                       */
     /* ---------------------------------------------------------------------------- */
     /** Add an element to an existing json object allowing for some flexibility on
      * how strings are interpreted.
@@ -84,12 +129,10 @@ public class ClientTapisGsonUtils
             // Get rid unnecessary spaces.
             String v = ((String) value).trim();
             if (v.startsWith("[")){
-                 Gson gson = getGson();
-                 obj.add(key, gson.fromJson(v, JsonArray.class));
+                 obj.add(key, _compactGson.fromJson(v, JsonArray.class));
              }
             else if (v.startsWith("{")){
-                Gson gson = getGson();
-                obj.add(key, gson.fromJson(v, JsonObject.class));
+                obj.add(key, _compactGson.fromJson(v, JsonObject.class));
             }
             else obj.addProperty(key, (String)v);
         }
@@ -105,4 +148,25 @@ public class ClientTapisGsonUtils
             
         return obj;
     }
+
+    /* **************************************************************************** */
+    /*                               Private Methods                                */
+    /* **************************************************************************** */
+    /* ---------------------------------------------------------------------------- */
+    /* newGsonBuilder:                                                              */
+    /* ---------------------------------------------------------------------------- */
+    /** Build a new gson builder and register all date/time translators.  Only used
+     * to create the cached gson instances.
+     * 
+     * @param prettyPrint true to turn on pretty printing, false otherwise
+     * @return a new gson builder
+     */
+    private static GsonBuilder newGsonBuilder(boolean prettyPrint)
+    {
+        // Set the date/time translators.
+        GsonBuilder builder = new GsonBuilder().serializeNulls().disableHtmlEscaping();
+        if (prettyPrint) builder.setPrettyPrinting();
+        ClientConverters.registerAll(builder);
+        return builder;
+    }
 }
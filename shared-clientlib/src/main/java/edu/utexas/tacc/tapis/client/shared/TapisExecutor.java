@@ -0,0 +1,272 @@
+package edu.utexas.tacc.tapis.client.shared;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+import edu.utexas.tacc.tapis.client.shared.tracing.TraceContext;
+
+/**
+ * Executor used by the bulk helpers of the Tapis clients to fan out blocking calls.
+ *
+ * Bulk operations such as checking the status of many jobs spend nearly all of their
+ * time blocked in OkHttp's Call.execute().  An executor runs each item of a bulk
+ * operation as its own task, either on platform threads or, when the JVM supports
+ * them (Java 21 and later), on virtual threads.  Virtual threads make it cheap to
+ * have one thread per in-flight request, so the useful concurrency is limited only by
+ * the maxConcurrency setting and by the server.
+ *
+ * The mode of the default executor can be chosen with the tapis.client.executor
+ * system property, set to "virtual" or "platform".  Without the property virtual
+ * threads are used when available.  Asking for VIRTUAL on a JVM without virtual
+ * threads falls back to PLATFORM, check getMode() for the effective mode.
+ *
+ * Blocking calls are not limited by the OkHttp dispatcher, but asynchronous calls
+ * are.  newTransport() creates a TapisHttpTransport whose dispatcher limits match the
+ * concurrency of this executor, so that sync and async fan-out behave the same.
+ */
+public final class TapisExecutor
+{
+  // ************************************************************************
+  // *********************** Constants **************************************
+  // ************************************************************************
+
+  // System property selecting the mode of the default executor.
+  public static final String MODE_PROPERTY = "tapis.client.executor";
+
+  // Default limit on concurrent tasks of a single bulk operation.
+  public static final int DEFAULT_MAX_CONCURRENCY = 64;
+
+  // Thread mode of an executor.
+  public enum Mode {PLATFORM, VIRTUAL}
+
+  // ************************************************************************
+  // *********************** Fields *****************************************
+  // ************************************************************************
+  // Lazily created executor shared by all clients that ask for the default.
+  private static volatile TapisExecutor _defaultExecutor;
+
+  // Used to name platform threads.
+  private static final AtomicInteger _threadSeqno = new AtomicInteger();
+
+  private final Mode mode;
+  private final int maxConcurrency;
+  private final ExecutorService executorService;
+
+  // ************************************************************************
+  // *********************** Constructors ***********************************
+  // ************************************************************************
+
+  /**
+   * Create an executor.  Threads of a platform executor are daemon threads that are
+   *   reclaimed when idle.
+   *
+   * @param mode1 the requested thread mode
+   * @param maxConcurrency1 default limit on concurrent tasks of one bulk operation
+   */
+  public TapisExecutor(Mode mode1, int maxConcurrency1)
+  {
+    if (maxConcurrency1 < 1)
+      throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency1);
+    maxConcurrency = maxConcurrency1;
+    ExecutorService svc = (mode1 == Mode.VIRTUAL) ? newVirtualThreadExecutor() : null;
+    if (svc == null)
+    {
+      mode = Mode.PLATFORM;
+      executorService = Executors.newCachedThreadPool(r -> {
+        var t = new Thread(r, "TapisExecutor-" + _threadSeqno.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      });
+    }
+    else
+    {
+      mode = Mode.VIRTUAL;
+      executorService = svc;
+    }
+  }
+
+  // ************************************************************************
+  // *********************** Public Methods *********************************
+  // ************************************************************************
+
+  /**
+   * Return the process-wide default executor, creating it on first use.
+   *
+   * @return the shared default executor
+   */
+  public static TapisExecutor getDefault()
+  {
+    TapisExecutor executor = _defaultExecutor;
+    if (executor == null)
+    {
+      synchronized (TapisExecutor.class)
+      {
+        executor = _defaultExecutor;
+        if (executor == null)
+        {
+          Mode m = "platform".equalsIgnoreCase(System.getProperty(MODE_PROPERTY)) ? Mode.PLATFORM : Mode.VIRTUAL;
+          _defaultExecutor = executor = new TapisExecutor(m, DEFAULT_MAX_CONCURRENCY);
+        }
+      }
+    }
+    return executor;
+  }
+
+  /**
+   * Determine whether this JVM supports virtual threads.
+   *
+   * @return true if virtual thread executors can be created
+   */
+  public static boolean isVirtualThreadSupported()
+  {
+    ExecutorService svc = newVirtualThreadExecutor();
+    if (svc == null) return false;
+    svc.shutdown();
+    return true;
+  }
+
+  /**
+   * Run a task for each item using at most getMaxConcurrency() concurrent tasks.
+   *
+   * @param items the items to process
+   * @param task the task applied to each item
+   * @return the task results in the same order as the items
+   * @throws TapisClientException the first failure of any task
+   */
+  public <T, R> List<R> invokeAll(List<T> items, Task<? super T, ? extends R> task)
+    throws TapisClientException
+  {
+    return invokeAll(items, maxConcurrency, task);
+  }
+
+  /**
+   * Run a task for each item using at most maxConcurrency1 concurrent tasks.  The
+   *   calling thread's TapisRequestContext and TraceContext, if any, are bound while
+   *   each task runs.
+   * Once a task fails no further tasks are started, the remaining tasks are cancelled
+   *   and the failure is thrown.  Tasks that need per-item error reporting should
+   *   catch their exceptions and return them as part of their result.
+   *
+   * @param items the items to process
+   * @param maxConcurrency1 the maximum number of concurrent tasks
+   * @param task the task applied to each item
+   * @return the task results in the same order as the items
+   * @throws TapisClientException the first failure of any task, or if interrupted
+   */
+  public <T, R> List<R> invokeAll(List<T> items, int maxConcurrency1, Task<? super T, ? extends R> task)
+    throws TapisClientException
+  {
+    if (maxConcurrency1 < 1)
+      throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency1);
+
+    var ctx = TapisRequestContext.current();
+    var trace = TraceContext.current();
+    var permits = new Semaphore(maxConcurrency1);
+    var failed = new AtomicBoolean();
+    var futures = new ArrayList<Future<? extends R>>(items.size());
+    try
+    {
+      // Submit tasks as permits become available.
+      for (T item : items)
+      {
+        permits.acquire();
+        if (failed.get()) { permits.release(); break; }
+        futures.add(executorService.submit(() -> {
+          try (var scope = ctx == null ? null : ctx.bind();
+               var traceScope = trace == null ? null : trace.bind())
+          {
+            return task.apply(item);
+          }
+          catch (Exception e) { failed.set(true); throw e; }
+          finally { permits.release(); }
+        }));
+      }
+
+      // Collect results in input order.
+      var results = new ArrayList<R>(items.size());
+      for (var future : futures) results.add(future.get());
+      return results;
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new TapisClientException("Interrupted while waiting for bulk operation", e);
+    }
+    catch (ExecutionException e)
+    {
+      Throwable cause = e.getCause();
+      if (cause instanceof TapisClientException) throw (TapisClientException) cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      throw new TapisClientException(cause.getMessage(), cause);
+    }
+    finally
+    {
+      // Only does something if we are leaving early.
+      for (var future : futures) future.cancel(true);
+    }
+  }
+
+  /**
+   * Create a transport whose dispatcher allows as many concurrent asynchronous
+   *   requests as this executor runs tasks.  All Tapis services of a tenant are
+   *   normally reached through one host, so the per-host limit is the same.  The
+   *   dispatcher of a virtual thread executor runs calls on virtual threads.
+   *
+   * @return a new transport sized for this executor
+   */
+  public TapisHttpTransport newTransport()
+  {
+    ExecutorService dispatcherService = (mode == Mode.VIRTUAL) ? newVirtualThreadExecutor() : null;
+    return new TapisHttpTransport(Math.max(TapisHttpTransport.DEFAULT_MAX_IDLE_CONNECTIONS, maxConcurrency),
+                                  TapisHttpTransport.DEFAULT_KEEP_ALIVE_SECONDS, maxConcurrency, maxConcurrency,
+                                  dispatcherService);
+  }
+
+  // Accessors
+  public Mode getMode() { return mode; }
+  public int getMaxConcurrency() { return maxConcurrency; }
+  public ExecutorService getExecutorService() { return executorService; }
+
+  /**
+   * Stop accepting tasks.  Running tasks complete normally.
+   */
+  public void shutdown() { executorService.shutdown(); }
+
+  // ************************************************************************
+  // *********************** Public Interfaces ******************************
+  // ************************************************************************
+
+  /**
+   * Work applied to one item of a bulk operation.
+   */
+  @FunctionalInterface
+  public interface Task<T, R>
+  {
+    R apply(T item) throws TapisClientException;
+  }
+
+  // ************************************************************************
+  // *********************** Private Methods ********************************
+  // ************************************************************************
+
+  /*
+   * Create a virtual thread per task executor, or return null if the JVM does not
+   *   support virtual threads.  Reflection keeps this library usable on Java 17.
+   */
+  private static ExecutorService newVirtualThreadExecutor()
+  {
+    try
+    {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    }
+    catch (ReflectiveOperationException | RuntimeException e) { return null; }
+  }
+}
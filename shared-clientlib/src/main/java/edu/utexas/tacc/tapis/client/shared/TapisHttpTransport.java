@@ -0,0 +1,209 @@
+package edu.utexas.tacc.tapis.client.shared;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import edu.utexas.tacc.tapis.client.shared.metrics.MetricsInterceptor;
+import edu.utexas.tacc.tapis.client.shared.metrics.TapisMetrics;
+import edu.utexas.tacc.tapis.client.shared.tracing.TapisTracer;
+import edu.utexas.tacc.tapis.client.shared.tracing.TracingInterceptor;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+/**
+ * Process-wide HTTP transport that can be shared by all Tapis clients.
+ *
+ * By default each client wrapper creates its own generated ApiClient which in turn
+ * creates its own OkHttpClient, so every client instance gets a private connection
+ * pool, dispatcher and TLS session cache.  Services that create a client per request
+ * (for example, one per user JWT) churn through those resources quickly.
+ *
+ * A transport owns a single tuned OkHttpClient.  Clients constructed with a transport
+ * use it as the base of their ApiClient.  Per-client settings such as base path,
+ * default headers (including the JWT) and timeouts are held by the ApiClient and
+ * layered on top of the shared transport.  OkHttpClient.newBuilder() is used by the
+ * generated code when timeouts or debugging are changed, and the derived clients
+ * continue to share the connection pool and dispatcher of this transport.
+ *
+ * The transport always installs a TapisRequestContextInterceptor, so a client built on
+ * it can be shared by many threads acting for different users.  Each thread binds its
+ * own TapisRequestContext and the context headers replace the client's defaults.
+ *
+ * Closing a client that uses a shared transport does not affect the transport.  Call
+ * shutdown() on the transport itself when the process no longer needs it.
+ */
+public final class TapisHttpTransport
+{
+  // ************************************************************************
+  // *********************** Constants **************************************
+  // ************************************************************************
+
+  // Connection pool defaults
+  public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 32;
+  public static final long DEFAULT_KEEP_ALIVE_SECONDS = 300;
+
+  // Dispatcher defaults, these limit concurrent asynchronous calls
+  public static final int DEFAULT_MAX_REQUESTS = 256;
+  public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 64;
+
+  // ************************************************************************
+  // *********************** Fields *****************************************
+  // ************************************************************************
+  // Lazily created transport shared by all clients that ask for the default.
+  private static volatile TapisHttpTransport _defaultTransport;
+
+  // Resources shared by every OkHttpClient derived from this transport.
+  private final ConnectionPool connectionPool;
+  private final Dispatcher dispatcher;
+
+  // The base client, replaced only when interceptors are added.
+  private volatile OkHttpClient httpClient;
+
+  // ************************************************************************
+  // *********************** Constructors ***********************************
+  // ************************************************************************
+
+  /**
+   * Create a transport using the default pool and dispatcher settings.
+   */
+  public TapisHttpTransport()
+  {
+    this(DEFAULT_MAX_IDLE_CONNECTIONS, DEFAULT_KEEP_ALIVE_SECONDS, DEFAULT_MAX_REQUESTS, DEFAULT_MAX_REQUESTS_PER_HOST);
+  }
+
+  /**
+   * Create a transport with explicit pool and dispatcher settings.
+   *
+   * @param maxIdleConnections maximum number of idle connections kept in the pool
+   * @param keepAliveSeconds time an idle connection is kept before eviction
+   * @param maxRequests maximum number of concurrent asynchronous requests
+   * @param maxRequestsPerHost maximum number of concurrent asynchronous requests per host
+   */
+  public TapisHttpTransport(int maxIdleConnections, long keepAliveSeconds, int maxRequests, int maxRequestsPerHost)
+  {
+    this(maxIdleConnections, keepAliveSeconds, maxRequests, maxRequestsPerHost, null);
+  }
+
+  /**
+   * Create a transport with explicit pool and dispatcher settings whose dispatcher runs
+   *   asynchronous calls on the given executor service.  The transport takes ownership
+   *   of the executor service and shuts it down in shutdown().
+   * See TapisExecutor.newTransport() for a transport sized to match a bulk executor.
+   *
+   * @param maxIdleConnections maximum number of idle connections kept in the pool
+   * @param keepAliveSeconds time an idle connection is kept before eviction
+   * @param maxRequests maximum number of concurrent asynchronous requests
+   * @param maxRequestsPerHost maximum number of concurrent asynchronous requests per host
+   * @param dispatcherService executor service for asynchronous calls, null for OkHttp's default
+   */
+  public TapisHttpTransport(int maxIdleConnections, long keepAliveSeconds, int maxRequests, int maxRequestsPerHost,
+                            ExecutorService dispatcherService)
+  {
+    connectionPool = new ConnectionPool(maxIdleConnections, keepAliveSeconds, TimeUnit.SECONDS);
+    dispatcher = (dispatcherService == null) ? new Dispatcher() : new Dispatcher(dispatcherService);
+    dispatcher.setMaxRequests(maxRequests);
+    dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+    httpClient = new OkHttpClient.Builder()
+            .connectionPool(connectionPool)
+            .dispatcher(dispatcher)
+            .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .retryOnConnectionFailure(true)
+            .addInterceptor(TapisRequestContextInterceptor.INSTANCE)
+            .build();
+  }
+
+  // ************************************************************************
+  // *********************** Public Methods *********************************
+  // ************************************************************************
+
+  /**
+   * Return the process-wide default transport, creating it on first use.
+   *
+   * @return the shared default transport
+   */
+  public static TapisHttpTransport getDefault()
+  {
+    TapisHttpTransport transport = _defaultTransport;
+    if (transport == null)
+    {
+      synchronized (TapisHttpTransport.class)
+      {
+        transport = _defaultTransport;
+        if (transport == null) _defaultTransport = transport = new TapisHttpTransport();
+      }
+    }
+    return transport;
+  }
+
+  /**
+   * Return the shared OkHttpClient.  Clients should use this as the base http client
+   *   of their ApiClient.
+   *
+   * @return the base http client of this transport
+   */
+  public OkHttpClient getHttpClient() { return httpClient; }
+
+  /**
+   * Add an application interceptor to the shared http client.
+   * Only clients created after this call see the interceptor, so interceptors should be
+   *   added before the transport is handed to any client.
+   *
+   * @param interceptor the interceptor to add
+   * @return this transport
+   */
+  public synchronized TapisHttpTransport addInterceptor(Interceptor interceptor)
+  {
+    httpClient = httpClient.newBuilder().addInterceptor(interceptor).build();
+    return this;
+  }
+
+  /**
+   * Report every call made through this transport, and the state of its connection
+   *   pool, to a metrics implementation.  Like addInterceptor(), this should be called
+   *   before the transport is handed to any client.
+   *
+   * @param poolName name under which the connection pool is registered
+   * @param metrics the metrics implementation
+   * @return this transport
+   */
+  public synchronized TapisHttpTransport enableMetrics(String poolName, TapisMetrics metrics)
+  {
+    metrics.registerConnectionPool(poolName, connectionPool);
+    return addInterceptor(new MetricsInterceptor(metrics));
+  }
+
+  /**
+   * Create a span for every call made through this transport and propagate W3C trace
+   *   context headers.  Like addInterceptor(), this should be called before the
+   *   transport is handed to any client.
+   *
+   * @param tracer the tracer, for example a SimpleTapisTracer or an OpenTelemetry bridge
+   * @return this transport
+   */
+  public TapisHttpTransport enableTracing(TapisTracer tracer)
+  {
+    return addInterceptor(new TracingInterceptor(tracer));
+  }
+
+  // Accessors for the shared resources.
+  public ConnectionPool getConnectionPool() { return connectionPool; }
+  public Dispatcher getDispatcher() { return dispatcher; }
+
+  /**
+   * Release connections and stop dispatcher threads.  The transport must not be used
+   *   after it has been shut down.
+   */
+  public void shutdown()
+  {
+    try {
+      // Best effort attempt to shut things down.
+      dispatcher.executorService().shutdown();
+      connectionPool.evictAll();
+    } catch (Exception e) {}
+  }
+}
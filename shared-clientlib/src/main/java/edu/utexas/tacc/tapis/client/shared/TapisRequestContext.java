@@ -0,0 +1,180 @@
+package edu.utexas.tacc.tapis.client.shared;
+
+import org.apache.commons.lang3.StringUtils;
+
+import okhttp3.Request;
+
+/**
+ * Immutable set of per-request credentials and identity headers.
+ *
+ * Clients normally carry the caller's JWT as a default header, which ties each client
+ * instance to one user.  A request context lets a single client instance serve many
+ * users concurrently: the context is bound to the current thread for the duration of
+ * one or more calls and its values override the client's default headers on every
+ * request sent from that thread.
+ *
+ * Contexts are honored by clients built on a TapisHttpTransport, which installs a
+ * TapisRequestContextInterceptor.  Typical usage:
+ * <pre>
+ *   var ctx = new TapisRequestContext(jwt, tenant, user, null, null);
+ *   try (var scope = ctx.bind()) {
+ *     TapisSystem sys = sharedSystemsClient.getSystem(systemId);
+ *   }
+ * </pre>
+ * Bindings nest, closing a scope restores whatever context was bound before it.
+ * Any field may be null.  A context without a JWT only overrides the headers it sets,
+ * so the client's defaults (if any) are used for the others.  A context with a JWT
+ * carries a complete identity: the client's default obo tenant, obo user and token hash
+ * headers belong to the default JWT and are removed unless the context sets them.
+ */
+public final class TapisRequestContext
+{
+  // ************************************************************************
+  // *********************** Constants **************************************
+  // ************************************************************************
+
+  // Header names
+  public static final String TAPIS_JWT_HEADER  = "X-Tapis-Token";
+  public static final String TAPIS_JWT_TENANT  = "X-Tapis-Tenant";
+  public static final String TAPIS_JWT_USER    = "X-Tapis-User";
+  public static final String TAPIS_HASH_HEADER = "X-Tapis-User-Token-Hash";
+
+  // ************************************************************************
+  // *********************** Fields *****************************************
+  // ************************************************************************
+  // Context bound to the current thread, null when none is bound.
+  private static final ThreadLocal<TapisRequestContext> _current = new ThreadLocal<>();
+
+  private final String jwt;
+  private final String tenant;
+  private final String user;
+  private final String userTokenHash;
+  private final String impersonationId;
+
+  // ************************************************************************
+  // *********************** Constructors ***********************************
+  // ************************************************************************
+
+  /**
+   * Create a context holding only a JWT.
+   *
+   * @param jwt1 the user or service JWT
+   */
+  public TapisRequestContext(String jwt1)
+  {
+    this(jwt1, null, null, null, null);
+  }
+
+  /**
+   * Create a context.  Any argument may be null.
+   *
+   * @param jwt1 the user or service JWT sent as X-Tapis-Token
+   * @param tenant1 the obo tenant sent as X-Tapis-Tenant, service JWTs only
+   * @param user1 the obo user sent as X-Tapis-User, service JWTs only
+   * @param userTokenHash1 the hash of the originating user JWT sent as X-Tapis-User-Token-Hash
+   * @param impersonationId1 the Tapis user to impersonate on calls that support impersonation
+   */
+  public TapisRequestContext(String jwt1, String tenant1, String user1, String userTokenHash1,
+                             String impersonationId1)
+  {
+    jwt = jwt1;
+    tenant = tenant1;
+    user = user1;
+    userTokenHash = userTokenHash1;
+    impersonationId = impersonationId1;
+  }
+
+  // ************************************************************************
+  // *********************** Public Methods *********************************
+  // ************************************************************************
+
+  /**
+   * Return the context bound to the current thread.
+   *
+   * @return the current context or null
+   */
+  public static TapisRequestContext current() { return _current.get(); }
+
+  /**
+   * Bind this context to the current thread.  The returned scope must be closed on the
+   *   same thread, normally using try-with-resources.
+   *
+   * @return the scope that restores the previous binding when closed
+   */
+  public Scope bind()
+  {
+    var previous = _current.get();
+    _current.set(this);
+    return new Scope(previous);
+  }
+
+  /**
+   * Resolve the impersonationId to send on a call.  An explicit value always wins,
+   *   otherwise the value from the current context, if any, is used.
+   *
+   * @param impersonationId the value passed to the client method, may be null
+   * @return the impersonationId to use or null
+   */
+  public static String resolveImpersonationId(String impersonationId)
+  {
+    if (impersonationId != null) return impersonationId;
+    var ctx = _current.get();
+    return ctx == null ? null : ctx.impersonationId;
+  }
+
+  /**
+   * Set the headers of this context on a request, replacing any defaults already
+   *   present.  Without a JWT null or blank fields leave the request unchanged.  With a
+   *   JWT they remove the default, so one caller's token is never sent with another
+   *   caller's obo identity.
+   *
+   * @param builder the request being built
+   * @return the same builder
+   */
+  public Request.Builder applyHeaders(Request.Builder builder)
+  {
+    boolean hasJwt = !StringUtils.isBlank(jwt);
+    if (hasJwt) builder.header(TAPIS_JWT_HEADER, jwt);
+    applyHeader(builder, TAPIS_JWT_TENANT, tenant, hasJwt);
+    applyHeader(builder, TAPIS_JWT_USER, user, hasJwt);
+    applyHeader(builder, TAPIS_HASH_HEADER, userTokenHash, hasJwt);
+    return builder;
+  }
+
+  // Accessors
+  public String getJwt() { return jwt; }
+  public String getTenant() { return tenant; }
+  public String getUser() { return user; }
+  public String getUserTokenHash() { return userTokenHash; }
+  public String getImpersonationId() { return impersonationId; }
+
+  // ************************************************************************
+  // *********************** Private Methods ********************************
+  // ************************************************************************
+
+  private static void applyHeader(Request.Builder builder, String name, String value, boolean removeDefault)
+  {
+    if (!StringUtils.isBlank(value)) builder.header(name, value);
+    else if (removeDefault) builder.removeHeader(name);
+  }
+
+  // ************************************************************************
+  // *********************** Scope ******************************************
+  // ************************************************************************
+  /**
+   * Binding of a context to the current thread.  Closing restores the previous binding.
+   */
+  public static final class Scope implements AutoCloseable
+  {
+    private final TapisRequestContext previous;
+
+    private Scope(TapisRequestContext previous1) { previous = previous1; }
+
+    @Override
+    public void close()
+    {
+      if (previous == null) _current.remove();
+      else _current.set(previous);
+    }
+  }
+}
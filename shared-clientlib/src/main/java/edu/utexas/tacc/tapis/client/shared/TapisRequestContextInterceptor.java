@@ -0,0 +1,31 @@
+package edu.utexas.tacc.tapis.client.shared;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Application interceptor that applies the TapisRequestContext bound to the calling
+ * thread to each outgoing request.  Requests sent without a bound context are not
+ * modified, so clients configured with a default JWT header keep working unchanged.
+ *
+ * Synchronous calls run interceptors on the calling thread, which is where the context
+ * is bound.  Asynchronous calls run on dispatcher threads, so callers of enqueue must
+ * apply the context to the request themselves using TapisRequestContext.applyHeaders().
+ */
+public final class TapisRequestContextInterceptor implements Interceptor
+{
+  // The interceptor is stateless so a single instance is shared.
+  public static final TapisRequestContextInterceptor INSTANCE = new TapisRequestContextInterceptor();
+
+  private TapisRequestContextInterceptor() {}
+
+  @Override
+  public Response intercept(Chain chain) throws IOException
+  {
+    var ctx = TapisRequestContext.current();
+    if (ctx == null) return chain.proceed(chain.request());
+    return chain.proceed(ctx.applyHeaders(chain.request().newBuilder()).build());
+  }
+}
@@ -1,8 +1,20 @@
 package edu.utexas.tacc.tapis.client.shared;
 
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.concurrent.CompletableFuture;
+
 import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+import edu.utexas.tacc.tapis.client.shared.resilience.RequestHedger;
+import edu.utexas.tacc.tapis.client.shared.tracing.TraceContext;
 import org.apache.commons.lang3.StringUtils;
 import com.google.gson.Gson;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
 
 /**
  * Utility class containing code shared among clients.
@@ -66,6 +78,17 @@ public class Utils
   /* ---------------------------------------------------------------------------- */
   public static void throwTapisClientException(int code, String respBody, Exception e)
           throws TapisClientException
+  {
+    throw newTapisClientException(code, respBody, e);
+  }
+
+  /* ---------------------------------------------------------------------------- */
+  /* newTapisClientException:                                                     */
+  /* ---------------------------------------------------------------------------- */
+  /** Create the exception that throwTapisClientException would throw.  Used where the
+   * exception is delivered rather than thrown, such as when completing a future.
+   */
+  public static TapisClientException newTapisClientException(int code, String respBody, Exception e)
   {
     // Initialize fields to be assigned to tapis exception.
     TapisResponse tapisResponse = null;
@@ -98,13 +121,256 @@ public class Utils
       clientException.setVersion(tapisResponse.version);
       clientException.setResult(tapisResponse.result);
     }
-    // Throw the client exception.
-    throw clientException;
+    return clientException;
+  }
+
+  /* ---------------------------------------------------------------------------- */
+  /* executeForResult:                                                            */
+  /* ---------------------------------------------------------------------------- */
+  /** Execute a call built by a generated api and stream the "result" element of the
+   * response body directly into the given type.  This avoids the generated code's 
+   * untyped deserialization followed by a second serialize/parse round trip.
+   * 
+   * Error status codes are reported the same way as ApiExceptions thrown by the
+   * generated code.
+   * 
+   * @param call a call created by a generated xxxCall() method
+   * @param type the type of the result element
+   * @return the result or null if the response has no result
+   * @throws TapisClientException on error status or i/o failure
+   */
+  public static <T> T executeForResult(Call call, Type type) throws TapisClientException
+  {
+    try (var response = call.execute())
+    {
+      var body = response.body();
+      if (!response.isSuccessful())
+        throwTapisClientException(response.code(), body == null ? null : body.string(), null);
+      if (body == null) return null;
+      return ClientTapisGsonUtils.readResult(body.charStream(), type);
+    }
+    catch (TapisClientException e) { throw e; }
+    catch (Exception e) { throwTapisClientException(-1, null, e); }
+    return null;
+  }
+
+  /* ---------------------------------------------------------------------------- */
+  /* executeHedged:                                                               */
+  /* ---------------------------------------------------------------------------- */
+  /** Same as executeForResult but sends the request through a RequestHedger.  If the
+   * hedger does not have the operation enabled the call is executed normally.
+   * 
+   * Hedged requests run on dispatcher threads, so the TapisRequestContext and
+   * TraceContext bound to the calling thread, if any, are applied to the request here.
+   * 
+   * @param hedger the hedger, may be null
+   * @param operation the client method name used to enable hedging
+   * @param httpClient the http client of the generated ApiClient that built the call
+   * @param call a call created by a generated xxxCall() method with a null callback
+   * @param type the type of the result element
+   * @return the result or null if the response has no result
+   * @throws TapisClientException on error status or i/o failure
+   */
+  public static <T> T executeHedged(RequestHedger hedger, String operation, OkHttpClient httpClient,
+                                    Call call, Type type)
+    throws TapisClientException
+  {
+    if (hedger == null || !hedger.isEnabled(operation)) return executeForResult(call, type);
+    var request = applyThreadContext(call.request());
+    try (var response = hedger.execute(operation, httpClient, request))
+    {
+      var body = response.body();
+      if (!response.isSuccessful())
+        throwTapisClientException(response.code(), body == null ? null : body.string(), null);
+      if (body == null) return null;
+      return ClientTapisGsonUtils.readResult(body.charStream(), type);
+    }
+    catch (TapisClientException e) { throw e; }
+    catch (Exception e) { throwTapisClientException(-1, null, e); }
+    return null;
+  }
+
+  /* ---------------------------------------------------------------------------- */
+  /* executeAsync:                                                                */
+  /* ---------------------------------------------------------------------------- */
+  /** Asynchronous counterpart of executeForResult.  The call is enqueued on the
+   * OkHttp dispatcher so no thread is blocked while the request is in flight.
+   * 
+   * Interceptors of asynchronous calls run on dispatcher threads, so the 
+   * TapisRequestContext and TraceContext bound to the calling thread, if any, are
+   * applied to the request here.  Cancelling the returned future cancels the http call.
+   * 
+   * @param httpClient the http client of the generated ApiClient that built the call
+   * @param call a call created by a generated xxxCall() method with a null callback
+   * @param type the type of the result element
+   * @return a future completed with the result, or exceptionally with a 
+   *         TapisClientException built the same way as throwTapisClientException
+   */
+  public static <T> CompletableFuture<T> executeAsync(OkHttpClient httpClient, Call call, Type type)
+  {
+    return executeAsync(httpClient, call, type, (T result) -> result);
+  }
+
+  /* ---------------------------------------------------------------------------- */
+  /* executeAsync:                                                                */
+  /* ---------------------------------------------------------------------------- */
+  /** Same as executeAsync(httpClient, call, type) but applies a post-processing step
+   * to the result before completing the future.  The processor runs on a dispatcher
+   * thread and should be cheap.
+   */
+  public static <T, R> CompletableFuture<R> executeAsync(OkHttpClient httpClient, Call call, Type type,
+                                                         ResultProcessor<T, R> processor)
+  {
+    return enqueue(httpClient, call, null, body -> {
+      T result = body == null ? null : ClientTapisGsonUtils.readResult(body.charStream(), type);
+      return processor.apply(result);
+    });
+  }
+
+  /* ---------------------------------------------------------------------------- */
+  /* executeAsyncForBody:                                                         */
+  /* ---------------------------------------------------------------------------- */
+  /** Same as executeAsync(httpClient, call, type, processor) but parses the whole
+   * response body into the type instead of its "result" element.  Used for services,
+   * such as Meta, whose responses are not wrapped in the Tapis response envelope and
+   * for wrappers that return the envelope itself.
+   */
+  public static <T, R> CompletableFuture<R> executeAsyncForBody(OkHttpClient httpClient, Call call, Type type,
+                                                                ResultProcessor<T, R> processor)
+  {
+    return enqueue(httpClient, call, null, body -> {
+      T result = body == null ? null : _gson.fromJson(body.charStream(), type);
+      return processor.apply(result);
+    });
+  }
+
+  /* ---------------------------------------------------------------------------- */
+  /* executeAsyncForBytes:                                                        */
+  /* ---------------------------------------------------------------------------- */
+  /** Same as executeAsync(httpClient, call, type) but completes the future with the
+   * raw response body, for endpoints that return file content rather than json.
+   */
+  public static CompletableFuture<byte[]> executeAsyncForBytes(OkHttpClient httpClient, Call call)
+  {
+    return executeAsyncForBytes(httpClient, call, null);
+  }
+
+  /* ---------------------------------------------------------------------------- */
+  /* executeAsyncForBytes:                                                        */
+  /* ---------------------------------------------------------------------------- */
+  /** Same as executeAsyncForBytes(httpClient, call) but first passes the successful
+   * response to a check, for example of its length or Content-Range, that fails the
+   * future by throwing.
+   */
+  public static CompletableFuture<byte[]> executeAsyncForBytes(OkHttpClient httpClient, Call call,
+                                                               ResponseCheck check)
+  {
+    return enqueue(httpClient, call, check, body -> body == null ? new byte[0] : body.bytes());
+  }
+
+  /* ---------------------------------------------------------------------------- */
+  /* failedFuture:                                                                */
+  /* ---------------------------------------------------------------------------- */
+  /** Return a future that has already failed with the exception that 
+   * throwTapisClientException would throw.  Used when an asynchronous call cannot 
+   * even be built.
+   */
+  public static <T> CompletableFuture<T> failedFuture(int code, String respBody, Exception e)
+  {
+    return CompletableFuture.failedFuture(newTapisClientException(code, respBody, e));
   }
 
   /* **************************************************************************** */
   /*                               Private Methods                                */
   /* **************************************************************************** */
+  /* ---------------------------------------------------------------------------- */
+  /* applyThreadContext:                                                          */
+  /* ---------------------------------------------------------------------------- */
+  /** Apply the TapisRequestContext and TraceContext bound to the calling thread to a
+   * request that will be sent from another thread.  The request is returned 
+   * unchanged if neither is bound.
+   */
+  private static Request applyThreadContext(Request request)
+  {
+    var ctx = TapisRequestContext.current();
+    var trace = TraceContext.current();
+    if (ctx == null && trace == null) return request;
+    var builder = request.newBuilder();
+    if (ctx != null) ctx.applyHeaders(builder);
+    if (trace != null) trace.applyHeaders(builder);
+    return builder.build();
+  }
+
+
+  /* ---------------------------------------------------------------------------- */
+  /* enqueue:                                                                     */
+  /* ---------------------------------------------------------------------------- */
+  /** Enqueue a call with the calling thread's context applied and complete the
+   * returned future with whatever the reader makes of a successful response body.
+   * The check, if not null, sees the successful response before the reader.
+   */
+  private static <R> CompletableFuture<R> enqueue(OkHttpClient httpClient, Call call, ResponseCheck check,
+                                                  BodyReader<R> reader)
+  {
+    var request = applyThreadContext(call.request());
+    var asyncCall = request == call.request() ? call : httpClient.newCall(request);
+    var future = new CompletableFuture<R>();
+    future.whenComplete((r, t) -> { if (future.isCancelled()) asyncCall.cancel(); });
+    asyncCall.enqueue(new Callback()
+    {
+      @Override
+      public void onFailure(Call c, IOException e)
+      {
+        future.completeExceptionally(newTapisClientException(-1, null, e));
+      }
+
+      @Override
+      public void onResponse(Call c, Response response)
+      {
+        try (response)
+        {
+          var body = response.body();
+          if (!response.isSuccessful())
+            future.completeExceptionally(newTapisClientException(response.code(), body == null ? null : body.string(), null));
+          else
+          {
+            if (check != null) check.check(response);
+            future.complete(reader.read(body));
+          }
+        }
+        catch (TapisClientException e) { future.completeExceptionally(e); }
+        catch (Exception e) { future.completeExceptionally(newTapisClientException(-1, null, e)); }
+      }
+    });
+    return future;
+  }
+
+  /** Turns a successful response body into the result of an asynchronous call. */
+  @FunctionalInterface
+  private interface BodyReader<R>
+  {
+    R read(ResponseBody body) throws Exception;
+  }
+
+  /* **************************************************************************** */
+  /*                               ResultProcessor                                */
+  /* **************************************************************************** */
+  /** Post-processing step applied to the result of an asynchronous call. */
+  @FunctionalInterface
+  public interface ResultProcessor<T, R>
+  {
+    R apply(T result) throws TapisClientException;
+  }
+
+  /* **************************************************************************** */
+  /*                                ResponseCheck                                 */
+  /* **************************************************************************** */
+  /** Check of a successful response of an asynchronous call before its body is read. */
+  @FunctionalInterface
+  public interface ResponseCheck
+  {
+    void check(Response response) throws Exception;
+  }
 
   /* **************************************************************************** */
   /*                                TapisResponse                                 */
@@ -0,0 +1,175 @@
+package edu.utexas.tacc.tapis.client.shared.cache;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Small bounded cache whose entries expire individually.
+ *
+ * Each entry records when it was last read and the least recently used entries are
+ * evicted once the maximum size is exceeded.  Each entry carries its own time-to-live
+ * so that, for example, positive and negative results can expire at different rates.
+ * Expired entries are dropped when they are read or when the cache is trimmed.
+ *
+ * Entries live in a ConcurrentHashMap so reads take no lock.  Only eviction is
+ * serialized: the writer that pushes the cache over its limit removes the expired
+ * entries and then the least recently used ones, down to a little below the limit for
+ * larger caches so that the cost of the scan is shared by the following writes.
+ */
+public final class ExpiringLruCache<K, V>
+{
+  // ************************************************************************
+  // *********************** Fields *****************************************
+  // ************************************************************************
+  private final int maxEntries;
+  private final int trimTo;
+  private final ConcurrentHashMap<K, Entry<V>> map = new ConcurrentHashMap<>();
+  private final Object evictLock = new Object();
+
+  // Metrics
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  // ************************************************************************
+  // *********************** Constructors ***********************************
+  // ************************************************************************
+
+  /**
+   * Create a cache holding at most maxEntries entries.
+   *
+   * @param maxEntries1 the maximum number of entries, must be positive
+   */
+  public ExpiringLruCache(int maxEntries1)
+  {
+    if (maxEntries1 <= 0) throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries1);
+    maxEntries = maxEntries1;
+    trimTo = maxEntries - maxEntries / 16;
+  }
+
+  // ************************************************************************
+  // *********************** Public Methods *********************************
+  // ************************************************************************
+
+  /**
+   * Return the value for a key if present and not expired.
+   *
+   * @param key the key
+   * @return the value or null
+   */
+  public V get(K key)
+  {
+    var entry = map.get(key);
+    long now = System.nanoTime();
+    if (entry != null && now - entry.expiresAt < 0)
+    {
+      entry.accessedAt = now;
+      hits.increment();
+      return entry.value;
+    }
+    if (entry != null) map.remove(key, entry);
+    misses.increment();
+    return null;
+  }
+
+  /**
+   * Add or replace a value.  A non-positive ttl leaves the cache unchanged.
+   *
+   * @param key the key
+   * @param value the value, not null
+   * @param ttlNanos time-to-live of the entry in nanoseconds
+   */
+  public void put(K key, V value, long ttlNanos)
+  {
+    if (ttlNanos <= 0) return;
+    long now = System.nanoTime();
+    map.put(key, new Entry<>(value, now, now + ttlNanos));
+    if (map.size() > maxEntries) evict();
+  }
+
+  /**
+   * Remove the entry for a key.
+   *
+   * @param key the key
+   */
+  public void invalidate(K key) { map.remove(key); }
+
+  /**
+   * Remove all entries whose key matches the predicate.
+   *
+   * @param predicate selects the keys to remove
+   */
+  public void invalidateIf(Predicate<? super K> predicate)
+  {
+    map.keySet().removeIf(predicate);
+  }
+
+  /**
+   * Remove all entries.
+   */
+  public void invalidateAll() { map.clear(); }
+
+  // Size and metrics accessors
+  public int size() { return map.size(); }
+  public int getMaxEntries() { return maxEntries; }
+  public long getHitCount() { return hits.sum(); }
+  public long getMissCount() { return misses.sum(); }
+  public long getEvictionCount() { return evictions.sum(); }
+
+  // ************************************************************************
+  // *********************** Private Methods ********************************
+  // ************************************************************************
+
+  /**
+   * Drop expired entries and then the least recently used ones until the cache is
+   * back within its limit.  Concurrent writers that find the cache already trimmed
+   * return without scanning.
+   */
+  private void evict()
+  {
+    synchronized (evictLock)
+    {
+      if (map.size() <= maxEntries) return;
+      long now = System.nanoTime();
+      // Read times are copied since readers keep updating them during the sort.
+      var live = new ArrayList<Candidate<K, V>>(map.size());
+      for (var e : map.entrySet())
+      {
+        if (now - e.getValue().expiresAt >= 0) map.remove(e.getKey(), e.getValue());
+        else live.add(new Candidate<>(e.getKey(), e.getValue(), now - e.getValue().accessedAt));
+      }
+      int excess = live.size() - trimTo;
+      if (excess <= 0) return;
+      live.sort(Comparator.comparingLong((Candidate<K, V> c) -> c.idleNanos).reversed());
+      for (int i = 0; i < excess; i++)
+        if (map.remove(live.get(i).key, live.get(i).entry)) evictions.increment();
+    }
+  }
+
+  // ************************************************************************
+  // *********************** Private Classes ********************************
+  // ************************************************************************
+  private static final class Entry<V>
+  {
+    private final V value;
+    private final long expiresAt;
+    private volatile long accessedAt;
+    private Entry(V value1, long accessedAt1, long expiresAt1)
+    {
+      value = value1;
+      accessedAt = accessedAt1;
+      expiresAt = expiresAt1;
+    }
+  }
+
+  private static final class Candidate<K, V>
+  {
+    private final K key;
+    private final Entry<V> entry;
+    private final long idleNanos;
+    private Candidate(K key1, Entry<V> entry1, long idleNanos1) { key = key1; entry = entry1; idleNanos = idleNanos1; }
+  }
+}
@@ -0,0 +1,21 @@
+package edu.utexas.tacc.tapis.client.shared.exceptions;
+
+import java.io.Serial;
+
+/**
+ * Wraps a TapisClientException where a checked exception cannot be thrown, such as
+ * from an Iterator or a Stream.  The original exception is available from getCause().
+ */
+public class UncheckedTapisClientException
+ extends RuntimeException
+{
+    @Serial
+    private static final long serialVersionUID = -6482095213064773101L;
+
+    // Constructor.
+    public UncheckedTapisClientException(TapisClientException cause) {super(cause.getMessage(), cause);}
+
+    // Accessor.
+    @Override
+    public synchronized TapisClientException getCause() {return (TapisClientException) super.getCause();}
+}
@@ -0,0 +1,321 @@
+package edu.utexas.tacc.tapis.client.shared.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import okhttp3.ConnectionPool;
+
+/**
+ * TapisMetrics implementation that keeps everything in memory.
+ *
+ * Latencies are recorded in histograms with 8 sub-buckets per power of two
+ * microseconds, so percentiles are reported with a relative error of at most about
+ * 6% while each histogram has a fixed size and recording never allocates.  One
+ * histogram is kept per client, operation and status.  Counters are kept per client
+ * and operation, in-flight gauges per client.
+ *
+ * Values accumulate for the life of the object; call reset() to start over.
+ */
+public final class InMemoryTapisMetrics implements TapisMetrics
+{
+  // ************************************************************************
+  // *********************** Fields *****************************************
+  // ************************************************************************
+  private final ConcurrentHashMap<Key, Histogram> latencies = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Key, LongAdder> bytesSent = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Key, LongAdder> bytesReceived = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Key, LongAdder> retries = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, ConnectionPool> pools = new ConcurrentHashMap<>();
+
+  // ************************************************************************
+  // *********************** Public Methods *********************************
+  // ************************************************************************
+
+  @Override
+  public void recordLatency(String client, String operation, int status, long nanos)
+  {
+    latencies.computeIfAbsent(new Key(client, operation, status), k -> new Histogram()).record(nanos);
+  }
+
+  @Override
+  public void recordBytes(String client, String operation, long sent, long received)
+  {
+    var key = new Key(client, operation, 0);
+    if (sent > 0) bytesSent.computeIfAbsent(key, k -> new LongAdder()).add(sent);
+    if (received > 0) bytesReceived.computeIfAbsent(key, k -> new LongAdder()).add(received);
+  }
+
+  @Override
+  public void recordRetry(String client, String operation)
+  {
+    retries.computeIfAbsent(new Key(client, operation, 0), k -> new LongAdder()).increment();
+  }
+
+  @Override
+  public void callStarted(String client)
+  {
+    inFlight.computeIfAbsent(client, k -> new AtomicInteger()).incrementAndGet();
+  }
+
+  @Override
+  public void callFinished(String client)
+  {
+    inFlight.computeIfAbsent(client, k -> new AtomicInteger()).decrementAndGet();
+  }
+
+  @Override
+  public void registerConnectionPool(String name, ConnectionPool pool) { pools.put(name, pool); }
+
+  /**
+   * Return a latency snapshot of one client, operation and status.
+   *
+   * @return the snapshot or null if nothing was recorded
+   */
+  public LatencySnapshot getLatency(String client, String operation, int status)
+  {
+    var histogram = latencies.get(new Key(client, operation, status));
+    return histogram == null ? null : histogram.snapshot(client, operation, status);
+  }
+
+  /**
+   * Return latency snapshots of everything recorded, ordered by client, operation and
+   *   status.
+   *
+   * @return the snapshots
+   */
+  public List<LatencySnapshot> getLatencies()
+  {
+    var list = new ArrayList<LatencySnapshot>(latencies.size());
+    for (Map.Entry<Key, Histogram> e : latencies.entrySet())
+      list.add(e.getValue().snapshot(e.getKey().client, e.getKey().operation, e.getKey().status));
+    list.sort(Comparator.comparing(LatencySnapshot::getClient).thenComparing(LatencySnapshot::getOperation)
+                        .thenComparingInt(LatencySnapshot::getStatus));
+    return list;
+  }
+
+  // Counter and gauge accessors
+  public long getBytesSent(String client, String operation) { return sum(bytesSent, client, operation); }
+  public long getBytesReceived(String client, String operation) { return sum(bytesReceived, client, operation); }
+  public long getRetryCount(String client, String operation) { return sum(retries, client, operation); }
+  public int getInFlight(String client)
+  {
+    var n = inFlight.get(client);
+    return n == null ? 0 : n.get();
+  }
+
+  /**
+   * Return the number of open connections of a registered pool.
+   *
+   * @param name the name the pool was registered with
+   * @return the connection count, -1 if no such pool
+   */
+  public int getConnectionCount(String name)
+  {
+    var pool = pools.get(name);
+    return pool == null ? -1 : pool.connectionCount();
+  }
+
+  /**
+   * Return the number of idle connections of a registered pool.
+   *
+   * @param name the name the pool was registered with
+   * @return the idle connection count, -1 if no such pool
+   */
+  public int getIdleConnectionCount(String name)
+  {
+    var pool = pools.get(name);
+    return pool == null ? -1 : pool.idleConnectionCount();
+  }
+
+  /**
+   * Discard recorded latencies and counters.  In-flight gauges and registered pools
+   *   are kept.
+   */
+  public void reset()
+  {
+    latencies.clear();
+    bytesSent.clear();
+    bytesReceived.clear();
+    retries.clear();
+  }
+
+  /**
+   * Return a multi-line, human readable summary of all latencies.
+   */
+  @Override
+  public String toString()
+  {
+    var sb = new StringBuilder();
+    for (var s : getLatencies()) sb.append(s).append('\n');
+    for (var name : pools.keySet())
+      sb.append("pool ").append(name).append(" connections=").append(getConnectionCount(name))
+        .append(" idle=").append(getIdleConnectionCount(name)).append('\n');
+    return sb.toString();
+  }
+
+  // ************************************************************************
+  // *********************** Private Methods ********************************
+  // ************************************************************************
+
+  private static long sum(Map<Key, LongAdder> map, String client, String operation)
+  {
+    var adder = map.get(new Key(client, operation, 0));
+    return adder == null ? 0 : adder.sum();
+  }
+
+  // ************************************************************************
+  // *********************** Public Classes *********************************
+  // ************************************************************************
+
+  /**
+   * Immutable latency summary of one client, operation and status.  Times are in
+   * nanoseconds.
+   */
+  public static final class LatencySnapshot
+  {
+    private final String client;
+    private final String operation;
+    private final int status;
+    private final long count;
+    private final long mean;
+    private final long max;
+    private final long p50;
+    private final long p90;
+    private final long p95;
+    private final long p99;
+
+    private LatencySnapshot(String client1, String operation1, int status1, long count1, long mean1, long max1,
+                            long p501, long p901, long p951, long p991)
+    {
+      client = client1; operation = operation1; status = status1; count = count1; mean = mean1; max = max1;
+      p50 = p501; p90 = p901; p95 = p951; p99 = p991;
+    }
+
+    public String getClient() { return client; }
+    public String getOperation() { return operation; }
+    public int getStatus() { return status; }
+    public long getCount() { return count; }
+    public long getMean() { return mean; }
+    public long getMax() { return max; }
+    public long getP50() { return p50; }
+    public long getP90() { return p90; }
+    public long getP95() { return p95; }
+    public long getP99() { return p99; }
+
+    @Override
+    public String toString()
+    {
+      return String.format("%s %s %d count=%d mean=%.1fms p50=%.1fms p95=%.1fms p99=%.1fms max=%.1fms",
+                           client, operation, status, count, mean / 1e6, p50 / 1e6, p95 / 1e6, p99 / 1e6, max / 1e6);
+    }
+  }
+
+  // ************************************************************************
+  // *********************** Private Classes ********************************
+  // ************************************************************************
+
+  private static final class Key
+  {
+    private final String client;
+    private final String operation;
+    private final int status;
+
+    private Key(String client1, String operation1, int status1)
+    {
+      client = client1; operation = operation1; status = status1;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      var k = (Key) o;
+      return status == k.status && Objects.equals(client, k.client) && Objects.equals(operation, k.operation);
+    }
+
+    @Override
+    public int hashCode() { return Objects.hash(client, operation, status); }
+  }
+
+  /*
+   * Log-linear histogram of microseconds.  Values below 8us are counted exactly, larger
+   * values fall in one of 8 equal sub-buckets of their power of two.
+   */
+  private static final class Histogram
+  {
+    private static final int SUB_BUCKETS = 8;
+    private static final int GROUPS = 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray(GROUPS * SUB_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    private void record(long nanos)
+    {
+      long v = Math.max(nanos, 0);
+      counts.incrementAndGet(index(v / 1000));
+      count.increment();
+      sum.add(v);
+      max.accumulate(v);
+    }
+
+    private LatencySnapshot snapshot(String client, String operation, int status)
+    {
+      long n = count.sum();
+      long mx = max.get();
+      return new LatencySnapshot(client, operation, status, n, n == 0 ? 0 : sum.sum() / n, mx,
+                                 percentile(0.50, mx), percentile(0.90, mx), percentile(0.95, mx),
+                                 percentile(0.99, mx));
+    }
+
+    /*
+     * Return the midpoint of the bucket holding the given percentile, in nanoseconds,
+     * never more than the recorded maximum.
+     */
+    private long percentile(double p, long maxNanos)
+    {
+      long total = 0;
+      for (int i = 0; i < counts.length(); i++) total += counts.get(i);
+      if (total == 0) return 0;
+      long rank = (long) Math.ceil(p * total);
+      long seen = 0;
+      for (int i = 0; i < counts.length(); i++)
+      {
+        seen += counts.get(i);
+        if (seen >= rank) return Math.min(midpointMicros(i) * 1000, maxNanos);
+      }
+      return maxNanos;
+    }
+
+    private static int index(long micros)
+    {
+      if (micros < SUB_BUCKETS) return (int) micros;
+      int msb = 63 - Long.numberOfLeadingZeros(micros);
+      int group = Math.min(msb - 2, GROUPS - 1);
+      int sub = (int) ((micros >>> (group - 1)) & (SUB_BUCKETS - 1));
+      if (msb - 2 > group) sub = SUB_BUCKETS - 1;
+      return group * SUB_BUCKETS + sub;
+    }
+
+    private static long midpointMicros(int index)
+    {
+      int group = index / SUB_BUCKETS;
+      int sub = index % SUB_BUCKETS;
+      if (group == 0) return sub;
+      long lower = (long) (SUB_BUCKETS + sub) << (group - 1);
+      long width = 1L << (group - 1);
+      return lower + width / 2;
+    }
+  }
+}
@@ -0,0 +1,220 @@
+package edu.utexas.tacc.tapis.client.shared.metrics;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * Application interceptor that reports every call to a TapisMetrics implementation.
+ * Use TapisHttpTransport.enableMetrics() to install it together with connection pool
+ * reporting.  Unlike setDebugging(true), nothing about the request or response
+ * content is logged.
+ *
+ * The client name is taken from the User-Agent header, which every client wrapper
+ * sets to its class name unless the application overrides it.  The operation name is
+ * determined from the calling thread's stack: the operationId of the generated api
+ * method if one is active (for example "isPermitted"), otherwise the name of the
+ * client wrapper method, for calls that the wrappers execute directly.  Asynchronous
+ * calls run on dispatcher threads where neither is visible; they are named by http
+ * method and the first two path segments, such as "GET /jobs/list".  The stack is
+ * walked once per call and the name is attached to the request as a tag, which
+ * later interceptors and retries of the same call reuse.
+ *
+ * If a ResilienceInterceptor is installed, add this interceptor after it to record
+ * each attempt, or before it to record each logical call including its retries.
+ */
+public final class MetricsInterceptor implements Interceptor
+{
+  // ************************************************************************
+  // *********************** Constants **************************************
+  // ************************************************************************
+  private static final String UNKNOWN_CLIENT = "unknown";
+
+  // Suffixes the generator appends to operationIds.
+  private static final String[] GENERATED_SUFFIXES = {"WithHttpInfo", "ValidateBeforeCall", "Call", "Async"};
+
+  private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+  // ************************************************************************
+  // *********************** Fields *****************************************
+  // ************************************************************************
+  private final TapisMetrics metrics;
+
+  // ************************************************************************
+  // *********************** Constructors ***********************************
+  // ************************************************************************
+  public MetricsInterceptor(TapisMetrics metrics1) { metrics = metrics1; }
+
+  // ************************************************************************
+  // *********************** Public Methods *********************************
+  // ************************************************************************
+
+  @Override
+  public Response intercept(Chain chain) throws IOException
+  {
+    Request request = withOperationName(chain.request());
+    String client = getClientName(request);
+    String operation = getOperationName(request);
+    long sent = request.body() == null ? 0 : Math.max(request.body().contentLength(), 0);
+
+    metrics.callStarted(client);
+    long start = System.nanoTime();
+    Response response;
+    try { response = chain.proceed(request); }
+    catch (IOException | RuntimeException e)
+    {
+      metrics.recordLatency(client, operation, -1, System.nanoTime() - start);
+      metrics.recordBytes(client, operation, sent, 0);
+      throw e;
+    }
+    finally { metrics.callFinished(client); }
+    metrics.recordLatency(client, operation, response.code(), System.nanoTime() - start);
+
+    // Received bytes are known once the body has been consumed.
+    ResponseBody body = response.body();
+    if (body == null)
+    {
+      metrics.recordBytes(client, operation, sent, 0);
+      return response;
+    }
+    return response.newBuilder().body(new CountingResponseBody(body, client, operation, sent)).build();
+  }
+
+  /**
+   * Return the client name of a request, the value of its User-Agent header.
+   *
+   * @param request the request
+   * @return the client name
+   */
+  public static String getClientName(Request request)
+  {
+    String agent = request.header("User-Agent");
+    return agent == null ? UNKNOWN_CLIENT : agent;
+  }
+
+  /**
+   * Return the operation name of a request, either the name attached by
+   *   withOperationName() or the name determined from the current thread's stack.
+   *
+   * @param request the request
+   * @return the operation name
+   */
+  public static String getOperationName(Request request)
+  {
+    OperationName tag = request.tag(OperationName.class);
+    if (tag != null) return tag.name;
+    Optional<String> name = STACK_WALKER.walk(frames -> frames
+            .filter(f -> isGeneratedApi(f.getClassName()) || isClientWrapper(f.getClassName()))
+            .findFirst()
+            .map(f -> isGeneratedApi(f.getClassName()) ? stripSuffix(f.getMethodName()) : f.getMethodName()));
+    return name.orElseGet(() -> getPathName(request));
+  }
+
+  /**
+   * Return the request with its operation name attached, determining the name from
+   *   the current thread's stack unless it is already attached.
+   *
+   * @param request the request
+   * @return the request carrying its operation name
+   */
+  public static Request withOperationName(Request request)
+  {
+    if (request.tag(OperationName.class) != null) return request;
+    return request.newBuilder().tag(OperationName.class, new OperationName(getOperationName(request))).build();
+  }
+
+  // ************************************************************************
+  // *********************** Private Methods ********************************
+  // ************************************************************************
+
+  private static boolean isGeneratedApi(String className) { return className.contains(".gen.api."); }
+
+  private static boolean isClientWrapper(String className)
+  {
+    return className.startsWith("edu.utexas.tacc.tapis.") && className.endsWith("Client") &&
+           !className.contains(".gen.") && !className.contains(".client.shared.");
+  }
+
+  private static String stripSuffix(String method)
+  {
+    for (String suffix : GENERATED_SUFFIXES)
+      if (method.endsWith(suffix) && method.length() > suffix.length())
+        return method.substring(0, method.length() - suffix.length());
+    return method;
+  }
+
+  /*
+   * Name a request by method and the first two path segments after the version.
+   */
+  private static String getPathName(Request request)
+  {
+    var segments = request.url().pathSegments();
+    int first = (!segments.isEmpty() && segments.get(0).matches("v\\d+")) ? 1 : 0;
+    var sb = new StringBuilder(request.method()).append(' ');
+    for (int i = first; i < Math.min(first + 2, segments.size()); i++) sb.append('/').append(segments.get(i));
+    return sb.toString();
+  }
+
+  // ************************************************************************
+  // *********************** Private Classes ********************************
+  // ************************************************************************
+
+  /*
+   * Request tag holding the operation name of a call.
+   */
+  private static final class OperationName
+  {
+    private final String name;
+    private OperationName(String name1) { name = name1; }
+  }
+
+  /*
+   * Response body that reports the bytes read when it is closed.
+   */
+  private final class CountingResponseBody extends ResponseBody
+  {
+    private final ResponseBody delegate;
+    private final BufferedSource source;
+    private long received;
+    private boolean reported;
+
+    private CountingResponseBody(ResponseBody delegate1, String client, String operation, long sent)
+    {
+      delegate = delegate1;
+      source = Okio.buffer(new ForwardingSource(delegate1.source())
+      {
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException
+        {
+          long n = super.read(sink, byteCount);
+          if (n > 0) received += n;
+          return n;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+          if (!reported)
+          {
+            reported = true;
+            metrics.recordBytes(client, operation, sent, received);
+          }
+          super.close();
+        }
+      });
+    }
+
+    @Override public MediaType contentType() { return delegate.contentType(); }
+    @Override public long contentLength() { return delegate.contentLength(); }
+    @Override public BufferedSource source() { return source; }
+  }
+}
@@ -0,0 +1,60 @@
+package edu.utexas.tacc.tapis.client.shared.metrics;
+
+import okhttp3.ConnectionPool;
+
+/**
+ * Service provider interface through which the Tapis clients report metrics.
+ *
+ * The clients have no dependency on a metrics library.  Applications that use one,
+ * such as Micrometer or OpenTelemetry, implement this interface as a thin adapter
+ * and register it with TapisHttpTransport.enableMetrics().  InMemoryTapisMetrics is a
+ * self-contained implementation for tests, diagnostics and simple services.
+ *
+ * Calls are identified by the client name, which is the User-Agent set by each client
+ * wrapper (for example "SKClient"), and by the operation, which is the operationId of
+ * the generated api method when it can be determined (see MetricsInterceptor).
+ * The status is the http status code, or -1 if no response was received.
+ *
+ * Implementations must be thread safe and fast; they are called on the request path.
+ */
+public interface TapisMetrics
+{
+  // Implementation that discards everything.
+  TapisMetrics NOOP = new TapisMetrics()
+  {
+    @Override public void recordLatency(String client, String operation, int status, long nanos) {}
+    @Override public void recordBytes(String client, String operation, long sent, long received) {}
+    @Override public void recordRetry(String client, String operation) {}
+    @Override public void callStarted(String client) {}
+    @Override public void callFinished(String client) {}
+  };
+
+  /**
+   * Record the time from sending a request until its response headers arrived, or
+   *   until it failed.
+   */
+  void recordLatency(String client, String operation, int status, long nanos);
+
+  /**
+   * Record the request and response body sizes of a call.  The received bytes are
+   *   reported once the response body has been read and closed.
+   */
+  void recordBytes(String client, String operation, long sent, long received);
+
+  /**
+   * Record that a request is being retried.
+   */
+  void recordRetry(String client, String operation);
+
+  /**
+   * Track requests in flight.  Every callStarted is followed by one callFinished.
+   */
+  void callStarted(String client);
+  void callFinished(String client);
+
+  /**
+   * Make a connection pool available for reporting.  The pool is only read, so
+   *   implementations usually poll it when a gauge is sampled.
+   */
+  default void registerConnectionPool(String name, ConnectionPool pool) {}
+}
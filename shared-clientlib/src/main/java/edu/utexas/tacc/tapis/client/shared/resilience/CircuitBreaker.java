@@ -0,0 +1,174 @@
+package edu.utexas.tacc.tapis.client.shared.resilience;
+
+import java.time.Duration;
+
+/**
+ * Circuit breaker for the requests sent to one host.
+ *
+ * The breaker starts CLOSED and lets every request through.  After failureThreshold
+ * consecutive failures it becomes OPEN and rejects requests without sending them,
+ * which takes load off a service that is struggling.  Once openDuration has passed
+ * the breaker becomes HALF_OPEN and admits a single probe request.  A successful probe
+ * closes the breaker, a failed probe opens it again for another openDuration.
+ *
+ * Every request admitted by tryAcquire() carries a Permit that records the breaker
+ * generation it was granted in.  The generation changes with every state change, so
+ * an outcome that arrives after the state has moved on, such as a slow success of a
+ * request sent while the breaker was still CLOSED, is ignored instead of closing an
+ * OPEN or HALF_OPEN breaker.  Only the probe permit can move the breaker out of
+ * HALF_OPEN or admit the next probe.
+ *
+ * All methods are synchronized; the lock is held only to update a few fields.
+ */
+public final class CircuitBreaker
+{
+  // ************************************************************************
+  // *********************** Constants **************************************
+  // ************************************************************************
+  public enum State {CLOSED, OPEN, HALF_OPEN}
+
+  // ************************************************************************
+  // *********************** Fields *****************************************
+  // ************************************************************************
+  private final int failureThreshold;
+  private final long openNanos;
+
+  private State state = State.CLOSED;
+  private long generation;
+  private int consecutiveFailures;
+  private long openedAt;
+  private boolean probeInFlight;
+
+  // ************************************************************************
+  // *********************** Constructors ***********************************
+  // ************************************************************************
+
+  /**
+   * Create a closed circuit breaker.
+   *
+   * @param failureThreshold1 consecutive failures that open the breaker
+   * @param openDuration time the breaker stays open before a probe is allowed
+   */
+  public CircuitBreaker(int failureThreshold1, Duration openDuration)
+  {
+    if (failureThreshold1 < 1)
+      throw new IllegalArgumentException("failureThreshold must be positive: " + failureThreshold1);
+    failureThreshold = failureThreshold1;
+    openNanos = openDuration.toNanos();
+  }
+
+  // ************************************************************************
+  // *********************** Public Methods *********************************
+  // ************************************************************************
+
+  /**
+   * Ask permission to send a request.  Every granted permit must be followed by a
+   *   call to its onSuccess(), onFailure() or release() method.
+   *
+   * @return the permit, or null if the request may not be sent
+   */
+  public synchronized Permit tryAcquire()
+  {
+    switch (state)
+    {
+      case CLOSED:
+        return new Permit(generation, false);
+      case OPEN:
+        if (System.nanoTime() - openedAt < openNanos) return null;
+        moveTo(State.HALF_OPEN);
+        probeInFlight = true;
+        return new Permit(generation, true);
+      default:
+        // Only one probe at a time while half open.
+        if (probeInFlight) return null;
+        probeInFlight = true;
+        return new Permit(generation, true);
+    }
+  }
+
+  /**
+   * Return the current state.  An open breaker whose open period has elapsed reports
+   *   OPEN until the next request probes it.
+   *
+   * @return the state
+   */
+  public synchronized State getState() { return state; }
+
+  // ************************************************************************
+  // *********************** Public Classes *********************************
+  // ************************************************************************
+
+  /**
+   * Permission to send one request.  Only the first outcome recorded on a permit
+   * counts, later calls are ignored.
+   */
+  public final class Permit
+  {
+    private final long generation;
+    private final boolean probe;
+    private boolean done;
+
+    private Permit(long generation1, boolean probe1) { generation = generation1; probe = probe1; }
+
+    /** Record a successful request. */
+    public void onSuccess() { if (finish()) CircuitBreaker.this.onSuccess(this); }
+
+    /** Record a failed request. */
+    public void onFailure() { if (finish()) CircuitBreaker.this.onFailure(this); }
+
+    /**
+     * Give back the permit without recording an outcome, for example when the request
+     *   was cancelled.  A half-open breaker admits the next probe.
+     */
+    public void release() { if (finish()) CircuitBreaker.this.release(this); }
+
+    /** Return true if this permit is the half-open probe. */
+    public boolean isProbe() { return probe; }
+
+    private synchronized boolean finish()
+    {
+      if (done) return false;
+      done = true;
+      return true;
+    }
+  }
+
+  // ************************************************************************
+  // *********************** Private Methods ********************************
+  // ************************************************************************
+
+  private void moveTo(State newState)
+  {
+    state = newState;
+    generation++;
+    if (newState == State.OPEN) openedAt = System.nanoTime();
+  }
+
+  private synchronized void onSuccess(Permit permit)
+  {
+    // Outcomes of an earlier generation say nothing about the current state.
+    if (permit.generation != generation) return;
+    consecutiveFailures = 0;
+    if (permit.probe)
+    {
+      probeInFlight = false;
+      moveTo(State.CLOSED);
+    }
+  }
+
+  private synchronized void onFailure(Permit permit)
+  {
+    if (permit.generation != generation) return;
+    if (permit.probe)
+    {
+      probeInFlight = false;
+      moveTo(State.OPEN);
+    }
+    else if (++consecutiveFailures >= failureThreshold) moveTo(State.OPEN);
+  }
+
+  private synchronized void release(Permit permit)
+  {
+    if (permit.generation == generation && permit.probe) probeInFlight = false;
+  }
+}
@@ -0,0 +1,303 @@
+package edu.utexas.tacc.tapis.client.shared.resilience;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Sends hedged requests for latency critical, read-only calls.
+ *
+ * A hedged call sends the request and, if no response has arrived after the hedge
+ * delay, sends an identical second request.  The first successful response is used
+ * and the other call is cancelled.  This cuts the tail latency caused by a single
+ * slow server instance at the cost of some extra requests.
+ *
+ * Hedging is opt-in per operation: clients consult isEnabled() with the name of the
+ * client method, such as "isPermitted" or "getSystem", and only enabled operations
+ * are hedged.  Only read-only operations should be enabled.
+ *
+ * The hedge delay is either fixed or, in adaptive mode, the observed p95 latency of
+ * the operation (but never less than the fixed delay) once enough samples exist.
+ * When a hedge wins, the time the cancelled first request had been running is
+ * recorded as a lower bound of its latency, so slow first requests are not left out
+ * of the percentile.
+ * A hedge budget limits extra load: every request earns budgetRatio hedge credits and
+ * every hedge spends one, so with a ratio of 0.1 at most about 10% of requests are
+ * hedged, no matter how slow the service gets.
+ *
+ * Hedged calls, including the first request, are sent with enqueue() and so run on
+ * the Dispatcher of the http client rather than on the calling thread.  The dispatcher
+ * of a client built on a TapisHttpTransport allows many concurrent calls per host, but
+ * the default OkHttpClient dispatcher allows only 5, so with a plain ApiClient hedged
+ * calls beyond that queue behind each other.  Hedge only clients built on a transport
+ * when many threads make enabled calls at the same time.
+ */
+public final class RequestHedger
+{
+  // ************************************************************************
+  // *********************** Constants **************************************
+  // ************************************************************************
+
+  // Defaults
+  public static final Duration DEFAULT_DELAY = Duration.ofMillis(50);
+  public static final double DEFAULT_BUDGET_RATIO = 0.1;
+
+  // Latency samples kept per operation and needed before the p95 is used.
+  private static final int WINDOW_SIZE = 128;
+  private static final int MIN_SAMPLES = 32;
+
+  // Unused credits saved up for bursts of slow requests.
+  private static final double MAX_CREDITS = 10.0;
+
+  // Pending count of a hedged call once a successful response has arrived.
+  private static final int DONE = -1;
+
+  // ************************************************************************
+  // *********************** Fields *****************************************
+  // ************************************************************************
+  private final long delayNanos;
+  private final boolean adaptive;
+  private final double budgetRatio;
+  private final Set<String> enabledOperations = ConcurrentHashMap.newKeySet();
+  private final ConcurrentHashMap<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+
+  // Hedge credits, guarded by this.
+  private double credits;
+
+  // Metrics
+  private final LongAdder hedges = new LongAdder();
+  private final LongAdder hedgeWins = new LongAdder();
+
+  // ************************************************************************
+  // *********************** Constructors ***********************************
+  // ************************************************************************
+
+  /**
+   * Create a hedger.
+   *
+   * @param delay time to wait for the first response before hedging, the minimum delay in
+   *              adaptive mode
+   * @param adaptive1 true to hedge after the observed p95 latency of each operation
+   * @param budgetRatio1 hedges allowed per request, between 0 and 1
+   */
+  public RequestHedger(Duration delay, boolean adaptive1, double budgetRatio1)
+  {
+    if (budgetRatio1 < 0 || budgetRatio1 > 1)
+      throw new IllegalArgumentException("budgetRatio must be between 0 and 1: " + budgetRatio1);
+    delayNanos = delay.toNanos();
+    adaptive = adaptive1;
+    budgetRatio = budgetRatio1;
+  }
+
+  // ************************************************************************
+  // *********************** Public Methods *********************************
+  // ************************************************************************
+
+  /**
+   * Enable hedging of the named operations.
+   *
+   * @param operations client method names such as "isPermitted"
+   * @return this hedger
+   */
+  public RequestHedger enable(String... operations)
+  {
+    enabledOperations.addAll(Arrays.asList(operations));
+    return this;
+  }
+
+  /**
+   * Determine whether an operation is hedged.
+   *
+   * @param operation the client method name
+   * @return true if enabled
+   */
+  public boolean isEnabled(String operation) { return enabledOperations.contains(operation); }
+
+  /**
+   * Execute a request, hedging it if the operation is enabled.  The request is sent on
+   *   dispatcher threads, so it must already carry any per-caller headers.
+   * A response is successful when its status is below 500.  If both calls fail the
+   *   last failure is returned or thrown.  The calls are limited by the dispatcher of
+   *   the client, see the class comment.
+   *
+   * @param operation the client method name
+   * @param client the http client used to send both requests
+   * @param request the request
+   * @return the first successful response, the caller must close it
+   * @throws IOException if all calls fail with an i/o error
+   */
+  public Response execute(String operation, OkHttpClient client, Request request) throws IOException
+  {
+    if (!isEnabled(operation)) return client.newCall(request).execute();
+
+    long start = System.nanoTime();
+    earnCredit();
+    var latency = latencies.computeIfAbsent(operation, k -> new LatencyWindow());
+    var result = new CompletableFuture<Response>();
+    var pending = new AtomicInteger(1);
+    var calls = new Call[2];
+
+    calls[0] = client.newCall(request);
+    calls[0].enqueue(new HedgeCallback(0, calls, result, pending, start, latency));
+    try
+    {
+      try { return result.get(getDelayNanos(latency), TimeUnit.NANOSECONDS); }
+      catch (TimeoutException e) {}
+
+      // Hedge unless the primary already finished or the budget is spent.
+      if (pending.getAndUpdate(p -> p <= 0 ? p : p + 1) > 0)
+      {
+        if (spendCredit())
+        {
+          hedges.increment();
+          synchronized (calls) { calls[1] = client.newCall(request); }
+          calls[1].enqueue(new HedgeCallback(1, calls, result, pending, start, latency));
+        }
+        else pending.decrementAndGet();
+      }
+      return result.get();
+    }
+    catch (InterruptedException e)
+    {
+      cancelAll(calls);
+      // A response that has arrived, or arrives before the cancel takes effect, has no reader.
+      result.thenAccept(Response::close);
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for hedged request");
+    }
+    catch (ExecutionException e)
+    {
+      if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Return the current hedge delay of an operation.
+   *
+   * @param operation the client method name
+   * @return the delay in nanoseconds
+   */
+  public long getDelayNanos(String operation)
+  {
+    return getDelayNanos(latencies.get(operation));
+  }
+
+  // Metrics accessors
+  public long getHedgeCount() { return hedges.sum(); }
+  public long getHedgeWinCount() { return hedgeWins.sum(); }
+
+  // ************************************************************************
+  // *********************** Private Methods ********************************
+  // ************************************************************************
+
+  private long getDelayNanos(LatencyWindow latency)
+  {
+    if (!adaptive || latency == null) return delayNanos;
+    long p95 = latency.p95();
+    return p95 < 0 ? delayNanos : Math.max(p95, delayNanos);
+  }
+
+  private synchronized void earnCredit() { credits = Math.min(credits + budgetRatio, MAX_CREDITS); }
+
+  private synchronized boolean spendCredit()
+  {
+    if (credits < 1.0) return false;
+    credits -= 1.0;
+    return true;
+  }
+
+  private static void cancelAll(Call[] calls)
+  {
+    synchronized (calls) { for (Call c : calls) if (c != null) c.cancel(); }
+  }
+
+  // ************************************************************************
+  // *********************** Private Classes ********************************
+  // ************************************************************************
+
+  /*
+   * Completes the shared result with the first successful response, or with the last
+   * failure once no call is pending.  The first successful response sets the pending
+   * count to DONE, which makes it the winner and prevents a hedge from being sent.
+   */
+  private final class HedgeCallback implements Callback
+  {
+    private final int index;
+    private final Call[] calls;
+    private final CompletableFuture<Response> result;
+    private final AtomicInteger pending;
+    private final long start;
+    private final LatencyWindow latency;
+
+    private HedgeCallback(int index1, Call[] calls1, CompletableFuture<Response> result1,
+                          AtomicInteger pending1, long start1, LatencyWindow latency1)
+    {
+      index = index1; calls = calls1; result = result1; pending = pending1; start = start1; latency = latency1;
+    }
+
+    @Override
+    public void onFailure(Call call, IOException e)
+    {
+      if (pending.decrementAndGet() == 0) result.completeExceptionally(e);
+    }
+
+    @Override
+    public void onResponse(Call call, Response response)
+    {
+      boolean success = response.code() < 500;
+      if (success && pending.getAndSet(DONE) > 0)
+      {
+        // A losing primary is cancelled, so record how long it had run as a lower bound.
+        latency.record(System.nanoTime() - start);
+        if (index == 1) hedgeWins.increment();
+        result.complete(response);
+        Call other;
+        synchronized (calls) { other = calls[1 - index]; }
+        if (other != null) other.cancel();
+        return;
+      }
+      if (!success && pending.decrementAndGet() == 0 && result.complete(response)) return;
+      response.close();
+    }
+  }
+
+  /*
+   * Ring buffer of recent latencies.  The p95 is recomputed every 16 samples.
+   */
+  private static final class LatencyWindow
+  {
+    private final long[] samples = new long[WINDOW_SIZE];
+    private int count;
+    private long p95 = -1;
+
+    private synchronized void record(long nanos)
+    {
+      samples[count % WINDOW_SIZE] = nanos;
+      count++;
+      if (count >= MIN_SAMPLES && count % 16 == 0)
+      {
+        long[] sorted = Arrays.copyOf(samples, Math.min(count, WINDOW_SIZE));
+        Arrays.sort(sorted);
+        p95 = sorted[(int) Math.ceil(sorted.length * 0.95) - 1];
+      }
+    }
+
+    private synchronized long p95() { return p95; }
+  }
+}
@@ -0,0 +1,248 @@
+package edu.utexas.tacc.tapis.client.shared.resilience;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import edu.utexas.tacc.tapis.client.shared.metrics.MetricsInterceptor;
+import edu.utexas.tacc.tapis.client.shared.metrics.TapisMetrics;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Application interceptor that retries transient failures and applies a per-host
+ * circuit breaker.  It can be installed on any client, typically by adding it to the
+ * shared transport before the transport is handed to clients:
+ * <pre>
+ *   var transport = new TapisHttpTransport()
+ *       .addInterceptor(new ResilienceInterceptor().markIdempotent(SKClient.IDEMPOTENT_POST_PATHS));
+ * </pre>
+ *
+ * Only idempotent requests are retried: GET, HEAD, OPTIONS, PUT and DELETE requests,
+ * plus POST requests whose path ends with one of the suffixes registered through
+ * markIdempotent().  Read-only queries such as SK's isPermitted are POSTs because
+ * their parameters are sent in a json body, so they must be marked explicitly.
+ * Requests with a one-shot body, such as an upload streamed from an InputStream, are
+ * never retried since the body cannot be written again.
+ * A request is retried after an IOException or a retryable status code, waiting as
+ * described by the RetryPolicy.
+ *
+ * Every request, idempotent or not, passes through the circuit breaker of its host.
+ * IOExceptions and 5xx responses count as failures.  A request rejected by an open
+ * breaker fails immediately with a CircuitOpenException.
+ */
+public final class ResilienceInterceptor implements Interceptor
+{
+  // ************************************************************************
+  // *********************** Constants **************************************
+  // ************************************************************************
+
+  // Circuit breaker defaults.
+  public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+  public static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(10);
+
+  // Methods that are idempotent by definition.
+  private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "OPTIONS", "PUT", "DELETE");
+
+  // ************************************************************************
+  // *********************** Fields *****************************************
+  // ************************************************************************
+  private final RetryPolicy retryPolicy;
+  private final int failureThreshold;
+  private final Duration openDuration;
+
+  // POST path suffixes that are safe to retry.
+  private final Set<String> idempotentPosts = ConcurrentHashMap.newKeySet();
+
+  // One breaker per host:port.
+  private final ConcurrentHashMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+  // Metrics
+  private volatile TapisMetrics metrics = TapisMetrics.NOOP;
+  private final LongAdder retries = new LongAdder();
+  private final LongAdder rejections = new LongAdder();
+
+  // ************************************************************************
+  // *********************** Constructors ***********************************
+  // ************************************************************************
+
+  /**
+   * Create an interceptor with the default retry policy and breaker settings.
+   */
+  public ResilienceInterceptor()
+  {
+    this(RetryPolicy.DEFAULT, DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_DURATION);
+  }
+
+  /**
+   * Create an interceptor.
+   *
+   * @param retryPolicy1 the retry policy for idempotent requests
+   * @param failureThreshold1 consecutive failures that open a host's breaker
+   * @param openDuration1 time a breaker stays open before a probe is allowed
+   */
+  public ResilienceInterceptor(RetryPolicy retryPolicy1, int failureThreshold1, Duration openDuration1)
+  {
+    retryPolicy = retryPolicy1;
+    failureThreshold = failureThreshold1;
+    openDuration = openDuration1;
+  }
+
+  // ************************************************************************
+  // *********************** Public Methods *********************************
+  // ************************************************************************
+
+  /**
+   * Mark POST requests whose url path ends with one of the suffixes as idempotent.
+   *
+   * @param pathSuffixes path suffixes such as "/security/user/isPermitted"
+   * @return this interceptor
+   */
+  public ResilienceInterceptor markIdempotent(Collection<String> pathSuffixes)
+  {
+    idempotentPosts.addAll(pathSuffixes);
+    return this;
+  }
+
+  /**
+   * Report retries to a metrics implementation.
+   *
+   * @param metrics1 the metrics implementation
+   * @return this interceptor
+   */
+  public ResilienceInterceptor setMetrics(TapisMetrics metrics1)
+  {
+    metrics = metrics1;
+    return this;
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException
+  {
+    Request request = chain.request();
+    CircuitBreaker breaker = getCircuitBreaker(request.url().host() + ":" + request.url().port());
+    boolean idempotent = isIdempotent(request);
+    int maxAttempts = idempotent ? retryPolicy.getMaxAttempts() : 1;
+
+    for (int attempt = 1; ; attempt++)
+    {
+      CircuitBreaker.Permit permit = breaker.tryAcquire();
+      if (permit == null)
+      {
+        rejections.increment();
+        throw new CircuitOpenException("Circuit breaker open for " + request.url().host() +
+                                       ", request not sent: " + request.method() + " " + request.url());
+      }
+
+      // Send the request and record the outcome.  A cancelled call says nothing about
+      // the host, so it only gives back the permit, as does an unexpected exception.
+      Response response;
+      boolean recorded = false;
+      try
+      {
+        response = chain.proceed(request);
+        if (response.code() >= 500) permit.onFailure(); else permit.onSuccess();
+        recorded = true;
+      }
+      catch (IOException e)
+      {
+        if (chain.call().isCanceled()) throw e;
+        permit.onFailure();
+        recorded = true;
+        if (attempt >= maxAttempts) throw e;
+        sleep(retryPolicy.backoffNanos(attempt));
+        request = recordRetry(request);
+        continue;
+      }
+      finally
+      {
+        if (!recorded) permit.release();
+      }
+
+      // Return anything we cannot or should not retry.
+      if (attempt >= maxAttempts || !retryPolicy.isRetryable(response.code())) return response;
+      long waitNanos = RetryPolicy.retryAfterNanos(response.header("Retry-After"));
+      if (waitNanos < 0) waitNanos = retryPolicy.backoffNanos(attempt);
+      else if (waitNanos > retryPolicy.getMaxBackoffNanos()) return response;
+
+      response.close();
+      sleep(waitNanos);
+      request = recordRetry(request);
+    }
+  }
+
+  /**
+   * Return the circuit breaker for a host, creating it on first use.
+   *
+   * @param hostPort the host and port separated by a colon
+   * @return the host's breaker
+   */
+  public CircuitBreaker getCircuitBreaker(String hostPort)
+  {
+    return breakers.computeIfAbsent(hostPort, k -> new CircuitBreaker(failureThreshold, openDuration));
+  }
+
+  // Metrics accessors
+  public long getRetryCount() { return retries.sum(); }
+  public long getRejectionCount() { return rejections.sum(); }
+
+  // ************************************************************************
+  // *********************** Public Classes *********************************
+  // ************************************************************************
+
+  /**
+   * Thrown when a request is rejected by an open circuit breaker.
+   */
+  public static final class CircuitOpenException extends IOException
+  {
+    private static final long serialVersionUID = 1L;
+    public CircuitOpenException(String message) { super(message); }
+  }
+
+  // ************************************************************************
+  // *********************** Private Methods ********************************
+  // ************************************************************************
+
+  /*
+   * Count a retry and return the request to resend, carrying its operation name so
+   * that it is not determined again for every further attempt.
+   */
+  private Request recordRetry(Request request)
+  {
+    retries.increment();
+    request = MetricsInterceptor.withOperationName(request);
+    var m = metrics;
+    if (m != TapisMetrics.NOOP)
+      m.recordRetry(MetricsInterceptor.getClientName(request), MetricsInterceptor.getOperationName(request));
+    return request;
+  }
+
+  private boolean isIdempotent(Request request)
+  {
+    var body = request.body();
+    if (body != null && body.isOneShot()) return false;
+    if (IDEMPOTENT_METHODS.contains(request.method())) return true;
+    if (!"POST".equals(request.method()) || idempotentPosts.isEmpty()) return false;
+    String path = request.url().encodedPath();
+    for (String suffix : idempotentPosts) if (path.endsWith(suffix)) return true;
+    return false;
+  }
+
+  private static void sleep(long nanos) throws InterruptedIOException
+  {
+    if (nanos <= 0) return;
+    try { TimeUnit.NANOSECONDS.sleep(nanos); }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted during retry backoff");
+    }
+  }
+}
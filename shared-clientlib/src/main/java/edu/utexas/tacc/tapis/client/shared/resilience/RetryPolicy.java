@@ -0,0 +1,118 @@
+package edu.utexas.tacc.tapis.client.shared.resilience;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable description of when and how often a failed request is retried.
+ *
+ * Backoff is exponential with full jitter: before retry n the caller waits a random
+ * time between zero and min(maxBackoff, initialBackoff * 2^(n-1)).  Randomizing the
+ * whole interval spreads out the retries of many clients that failed at the same
+ * moment, which matters most when a service is already overloaded.
+ *
+ * A Retry-After header on a retryable response replaces the computed backoff.  If
+ * the server asks for a longer wait than maxBackoff the request is not retried and
+ * the response is returned to the caller.
+ */
+public final class RetryPolicy
+{
+  // ************************************************************************
+  // *********************** Constants **************************************
+  // ************************************************************************
+
+  // Status codes that indicate a transient condition.
+  public static final Set<Integer> DEFAULT_RETRYABLE_STATUS = Set.of(429, 502, 503, 504);
+
+  // Defaults: up to 3 attempts in total, backoff between 100ms and 2s.
+  public static final RetryPolicy DEFAULT =
+          new RetryPolicy(3, Duration.ofMillis(100), Duration.ofSeconds(2), DEFAULT_RETRYABLE_STATUS);
+
+  // Policy that never retries, useful when only the circuit breaker is wanted.
+  public static final RetryPolicy NONE =
+          new RetryPolicy(1, Duration.ZERO, Duration.ZERO, DEFAULT_RETRYABLE_STATUS);
+
+  // ************************************************************************
+  // *********************** Fields *****************************************
+  // ************************************************************************
+  private final int maxAttempts;
+  private final long initialBackoffNanos;
+  private final long maxBackoffNanos;
+  private final Set<Integer> retryableStatus;
+
+  // ************************************************************************
+  // *********************** Constructors ***********************************
+  // ************************************************************************
+
+  /**
+   * Create a retry policy.
+   *
+   * @param maxAttempts1 total number of attempts including the first, at least 1
+   * @param initialBackoff backoff cap before the first retry
+   * @param maxBackoff upper limit of any backoff and of an honored Retry-After
+   * @param retryableStatus1 http status codes that are retried
+   */
+  public RetryPolicy(int maxAttempts1, Duration initialBackoff, Duration maxBackoff, Set<Integer> retryableStatus1)
+  {
+    if (maxAttempts1 < 1) throw new IllegalArgumentException("maxAttempts must be positive: " + maxAttempts1);
+    maxAttempts = maxAttempts1;
+    initialBackoffNanos = initialBackoff.toNanos();
+    maxBackoffNanos = maxBackoff.toNanos();
+    retryableStatus = Set.copyOf(retryableStatus1);
+  }
+
+  // ************************************************************************
+  // *********************** Public Methods *********************************
+  // ************************************************************************
+
+  /**
+   * Compute the jittered backoff before the given retry.
+   *
+   * @param retry the retry number, 1 for the first retry
+   * @return the time to wait in nanoseconds
+   */
+  public long backoffNanos(int retry)
+  {
+    int shift = Math.min(Math.max(retry - 1, 0), 30);
+    long cap = initialBackoffNanos << shift;
+    if (cap <= 0 || cap > maxBackoffNanos) cap = maxBackoffNanos;
+    return cap <= 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+  }
+
+  /**
+   * Determine whether a response status is worth retrying.
+   *
+   * @param status the http status code
+   * @return true if the status is retryable
+   */
+  public boolean isRetryable(int status) { return retryableStatus.contains(status); }
+
+  /**
+   * Parse a Retry-After header given either in seconds or as an http date.
+   *
+   * @param value the header value, can be null
+   * @return the requested wait in nanoseconds, or -1 if the value is missing or cannot
+   *         be parsed
+   */
+  public static long retryAfterNanos(String value)
+  {
+    if (value == null) return -1;
+    try { return TimeUnit.SECONDS.toNanos(Math.max(Long.parseLong(value.trim()), 0)); }
+    catch (NumberFormatException e) {}
+    try
+    {
+      Instant at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+      return Math.max(Duration.between(Instant.now(), at).toNanos(), 0);
+    }
+    catch (Exception e) { return -1; }
+  }
+
+  // Accessors
+  public int getMaxAttempts() { return maxAttempts; }
+  public long getMaxBackoffNanos() { return maxBackoffNanos; }
+}
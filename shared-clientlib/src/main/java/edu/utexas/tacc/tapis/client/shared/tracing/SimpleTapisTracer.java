@@ -0,0 +1,137 @@
+package edu.utexas.tacc.tapis.client.shared.tracing;
+
+import java.time.Instant;
+import java.util.function.Consumer;
+
+import okhttp3.Request;
+
+/**
+ * Built-in tracer that propagates W3C trace context and hands each finished, sampled
+ * span to a listener, for example one that logs slow calls or collects spans in
+ * tests.  Requests without a parent context start a new trace whose sampled flag is
+ * set by sampleNewTraces.
+ */
+public final class SimpleTapisTracer implements TapisTracer
+{
+  // ************************************************************************
+  // *********************** Fields *****************************************
+  // ************************************************************************
+  private final boolean sampleNewTraces;
+  private final Consumer<FinishedSpan> listener;
+
+  // ************************************************************************
+  // *********************** Constructors ***********************************
+  // ************************************************************************
+
+  /**
+   * Create a tracer.
+   *
+   * @param sampleNewTraces1 the sampled flag of traces started by this tracer
+   * @param listener1 receives every finished, sampled span, must be fast and thread safe
+   */
+  public SimpleTapisTracer(boolean sampleNewTraces1, Consumer<FinishedSpan> listener1)
+  {
+    sampleNewTraces = sampleNewTraces1;
+    listener = listener1;
+  }
+
+  // ************************************************************************
+  // *********************** Public Methods *********************************
+  // ************************************************************************
+
+  @Override
+  public Span startSpan(String client, String operation, Request request, TraceContext parent)
+  {
+    var context = parent == null ? TraceContext.newRoot(sampleNewTraces) : parent.newChild();
+    return new SimpleSpan(context, parent == null ? null : parent.getSpanId(), client, operation, request);
+  }
+
+  // ************************************************************************
+  // *********************** Public Classes *********************************
+  // ************************************************************************
+
+  /**
+   * Immutable record of a finished span.  The url path is recorded without the query
+   * string, which may contain user data.
+   */
+  public static final class FinishedSpan
+  {
+    private final TraceContext context;
+    private final String parentSpanId;
+    private final String client;
+    private final String operation;
+    private final String method;
+    private final String path;
+    private final Instant start;
+    private final long durationNanos;
+    private final int status;
+    private final Throwable error;
+
+    private FinishedSpan(TraceContext context1, String parentSpanId1, String client1, String operation1,
+                         String method1, String path1, Instant start1, long durationNanos1, int status1,
+                         Throwable error1)
+    {
+      context = context1; parentSpanId = parentSpanId1; client = client1; operation = operation1;
+      method = method1; path = path1; start = start1; durationNanos = durationNanos1; status = status1;
+      error = error1;
+    }
+
+    public TraceContext getContext() { return context; }
+    public String getTraceId() { return context.getTraceId(); }
+    public String getSpanId() { return context.getSpanId(); }
+    public String getParentSpanId() { return parentSpanId; }
+    public String getClient() { return client; }
+    public String getOperation() { return operation; }
+    public String getMethod() { return method; }
+    public String getPath() { return path; }
+    public Instant getStart() { return start; }
+    public long getDurationNanos() { return durationNanos; }
+    public int getStatus() { return status; }
+    public Throwable getError() { return error; }
+
+    // Spans fail on i/o errors and server errors.
+    public boolean isError() { return error != null || status >= 500; }
+
+    @Override
+    public String toString()
+    {
+      return String.format("trace=%s span=%s parent=%s %s %s %s %s status=%d %.1fms", getTraceId(), getSpanId(),
+                           parentSpanId, client, operation, method, path, status, durationNanos / 1e6);
+    }
+  }
+
+  // ************************************************************************
+  // *********************** Private Classes ********************************
+  // ************************************************************************
+
+  private final class SimpleSpan implements Span
+  {
+    private final TraceContext context;
+    private final String parentSpanId;
+    private final String client;
+    private final String operation;
+    private final String method;
+    private final String path;
+    private final Instant start = Instant.now();
+    private final long startNanos = System.nanoTime();
+
+    private SimpleSpan(TraceContext context1, String parentSpanId1, String client1, String operation1,
+                       Request request)
+    {
+      context = context1; parentSpanId = parentSpanId1; client = client1; operation = operation1;
+      method = request.method();
+      path = request.url().encodedPath();
+    }
+
+    @Override
+    public TraceContext getContext() { return context; }
+
+    @Override
+    public void end(int status, Throwable error)
+    {
+      if (!context.isSampled()) return;
+      listener.accept(new FinishedSpan(context, parentSpanId, client, operation, method, path, start,
+                                       System.nanoTime() - startNanos, status, error));
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package edu.utexas.tacc.tapis.client.shared.tracing;
+
+import okhttp3.Request;
+
+/**
+ * Service provider interface through which TracingInterceptor creates spans.
+ *
+ * SimpleTapisTracer is the built-in implementation.  An OpenTelemetry bridge
+ * implements startSpan() by starting an OpenTelemetry client span whose parent is
+ * built from the given TraceContext, and returns a Span whose context carries the new
+ * span's ids so they are sent in the traceparent header.  The bridge ends the
+ * OpenTelemetry span in Span.end().
+ *
+ * Implementations must be thread safe.
+ */
+public interface TapisTracer
+{
+  /**
+   * Start a span for an outgoing call.
+   *
+   * @param client the client name, the User-Agent of the request
+   * @param operation the operation name, see MetricsInterceptor.getOperationName()
+   * @param request the request about to be sent
+   * @param parent the caller's trace context, null to start a new trace
+   * @return the started span, never null
+   */
+  Span startSpan(String client, String operation, Request request, TraceContext parent);
+
+  /**
+   * A started span.
+   */
+  interface Span
+  {
+    /**
+     * Return the context of this span, which is propagated with the request.
+     */
+    TraceContext getContext();
+
+    /**
+     * End the span.  Called exactly once.
+     *
+     * @param status the http status, -1 if no response was received
+     * @param error the failure, null if a response was received
+     */
+    void end(int status, Throwable error);
+  }
+}
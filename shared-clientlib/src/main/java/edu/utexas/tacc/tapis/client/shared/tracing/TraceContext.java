@@ -0,0 +1,242 @@
+package edu.utexas.tacc.tapis.client.shared.tracing;
+
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.commons.lang3.StringUtils;
+
+import okhttp3.Request;
+
+/**
+ * Immutable W3C trace context, see https://www.w3.org/TR/trace-context/.
+ *
+ * A trace context identifies the trace a request belongs to and the span that sent
+ * it.  It is carried between services in the traceparent header, with vendor specific
+ * data in the tracestate header.  A service that received a request binds the
+ * incoming context to its thread so that calls it makes through the Tapis clients
+ * continue the same trace:
+ * <pre>
+ *   var parent = TraceContext.parse(httpReq.getHeader("traceparent"), httpReq.getHeader("tracestate"));
+ *   try (var scope = parent == null ? null : parent.bind()) {
+ *     jobsClient.submitJob(req);
+ *   }
+ * </pre>
+ * TracingInterceptor creates a child span for each call and sends its context.
+ * Bindings nest like those of TapisRequestContext.
+ */
+public final class TraceContext
+{
+  // ************************************************************************
+  // *********************** Constants **************************************
+  // ************************************************************************
+
+  // Header names
+  public static final String TRACEPARENT_HEADER = "traceparent";
+  public static final String TRACESTATE_HEADER = "tracestate";
+
+  // The only version we produce.
+  private static final String VERSION = "00";
+
+  private static final String INVALID_TRACE_ID = "00000000000000000000000000000000";
+  private static final String INVALID_SPAN_ID = "0000000000000000";
+
+  // ************************************************************************
+  // *********************** Fields *****************************************
+  // ************************************************************************
+  // Context bound to the current thread, null when none is bound.
+  private static final ThreadLocal<TraceContext> _current = new ThreadLocal<>();
+
+  private final String traceId;
+  private final String spanId;
+  private final boolean sampled;
+  private final String traceState;
+
+  // ************************************************************************
+  // *********************** Constructors ***********************************
+  // ************************************************************************
+
+  /**
+   * Create a trace context.
+   *
+   * @param traceId1 32 lowercase hex characters, not all zero
+   * @param spanId1 16 lowercase hex characters, not all zero
+   * @param sampled1 the sampled flag
+   * @param traceState1 the tracestate header value, may be null
+   */
+  public TraceContext(String traceId1, String spanId1, boolean sampled1, String traceState1)
+  {
+    if (!isValidId(traceId1, 32)) throw new IllegalArgumentException("Invalid trace id: " + traceId1);
+    if (!isValidId(spanId1, 16)) throw new IllegalArgumentException("Invalid span id: " + spanId1);
+    traceId = traceId1;
+    spanId = spanId1;
+    sampled = sampled1;
+    traceState = StringUtils.isBlank(traceState1) ? null : traceState1;
+  }
+
+  // ************************************************************************
+  // *********************** Public Methods *********************************
+  // ************************************************************************
+
+  /**
+   * Start a new trace.
+   *
+   * @param sampled the sampled flag
+   * @return a context with new trace and span ids
+   */
+  public static TraceContext newRoot(boolean sampled)
+  {
+    String id;
+    do { id = randomHex(32); } while (INVALID_TRACE_ID.equals(id));
+    return new TraceContext(id, newSpanId(), sampled, null);
+  }
+
+  /**
+   * Create a context for a child span of this one.
+   *
+   * @return a context with the same trace id, flags and state and a new span id
+   */
+  public TraceContext newChild() { return new TraceContext(traceId, newSpanId(), sampled, traceState); }
+
+  /**
+   * Parse traceparent and tracestate header values.  Higher versions are accepted as
+   *   long as their first four fields follow the version 00 format.
+   *
+   * @param traceparent the traceparent value
+   * @param tracestate the tracestate value, may be null
+   * @return the context or null if traceparent is missing or invalid
+   */
+  public static TraceContext parse(String traceparent, String tracestate)
+  {
+    if (traceparent == null) return null;
+    String[] parts = traceparent.trim().split("-");
+    if (parts.length < 4 || parts[0].length() != 2 || !isHex(parts[0]) || "ff".equals(parts[0])) return null;
+    if (VERSION.equals(parts[0]) && parts.length != 4) return null;
+    if (parts[3].length() != 2 || !isHex(parts[3])) return null;
+    if (!isValidId(parts[1], 32) || !isValidId(parts[2], 16)) return null;
+    boolean sampled = (Integer.parseInt(parts[3], 16) & 1) != 0;
+    return new TraceContext(parts[1], parts[2], sampled, tracestate);
+  }
+
+  /**
+   * Return the context bound to the current thread.
+   *
+   * @return the current context or null
+   */
+  public static TraceContext current() { return _current.get(); }
+
+  /**
+   * Bind this context to the current thread.  The returned scope must be closed on the
+   *   same thread, normally using try-with-resources.
+   *
+   * @return the scope that restores the previous binding when closed
+   */
+  public Scope bind()
+  {
+    var previous = _current.get();
+    _current.set(this);
+    return new Scope(previous);
+  }
+
+  /**
+   * Set the traceparent and tracestate headers of this context on a request.
+   *
+   * @param builder the request being built
+   * @return the same builder
+   */
+  public Request.Builder applyHeaders(Request.Builder builder)
+  {
+    builder.header(TRACEPARENT_HEADER, toTraceparent());
+    if (traceState == null) builder.removeHeader(TRACESTATE_HEADER);
+    else builder.header(TRACESTATE_HEADER, traceState);
+    return builder;
+  }
+
+  /**
+   * Return the traceparent header value.
+   *
+   * @return the value in version 00 format
+   */
+  public String toTraceparent() { return VERSION + "-" + traceId + "-" + spanId + (sampled ? "-01" : "-00"); }
+
+  // Accessors
+  public String getTraceId() { return traceId; }
+  public String getSpanId() { return spanId; }
+  public boolean isSampled() { return sampled; }
+  public String getTraceState() { return traceState; }
+
+  @Override
+  public boolean equals(Object o)
+  {
+    if (this == o) return true;
+    if (!(o instanceof TraceContext)) return false;
+    var c = (TraceContext) o;
+    return sampled == c.sampled && traceId.equals(c.traceId) && spanId.equals(c.spanId) &&
+           Objects.equals(traceState, c.traceState);
+  }
+
+  @Override
+  public int hashCode() { return Objects.hash(traceId, spanId, sampled, traceState); }
+
+  @Override
+  public String toString() { return toTraceparent(); }
+
+  // ************************************************************************
+  // *********************** Private Methods ********************************
+  // ************************************************************************
+
+  private static String newSpanId()
+  {
+    String id;
+    do { id = randomHex(16); } while (INVALID_SPAN_ID.equals(id));
+    return id;
+  }
+
+  private static String randomHex(int length)
+  {
+    var random = ThreadLocalRandom.current();
+    var sb = new StringBuilder(length);
+    while (sb.length() < length)
+    {
+      String s = Long.toHexString(random.nextLong());
+      for (int i = s.length(); i < 16; i++) sb.append('0');
+      sb.append(s);
+    }
+    return sb.substring(0, length);
+  }
+
+  private static boolean isValidId(String id, int length)
+  {
+    return id != null && id.length() == length && isHex(id) && !id.chars().allMatch(c -> c == '0');
+  }
+
+  // Lowercase hex only, as required by the specification.
+  private static boolean isHex(String s)
+  {
+    for (int i = 0; i < s.length(); i++)
+    {
+      char c = s.charAt(i);
+      if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) return false;
+    }
+    return true;
+  }
+
+  // ************************************************************************
+  // *********************** Scope ******************************************
+  // ************************************************************************
+  /**
+   * Binding of a context to the current thread.  Closing restores the previous binding.
+   */
+  public static final class Scope implements AutoCloseable
+  {
+    private final TraceContext previous;
+
+    private Scope(TraceContext previous1) { previous = previous1; }
+
+    @Override
+    public void close()
+    {
+      if (previous == null) _current.remove();
+      else _current.set(previous);
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package edu.utexas.tacc.tapis.client.shared.tracing;
+
+import java.io.IOException;
+
+import edu.utexas.tacc.tapis.client.shared.metrics.MetricsInterceptor;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Application interceptor that creates a span for each call and propagates its W3C
+ * trace context in the traceparent and tracestate headers.  Use
+ * TapisHttpTransport.enableTracing() to install it.
+ *
+ * The parent of the span is the TraceContext bound to the calling thread.  If none is
+ * bound, a traceparent header already on the request is used, which is how contexts
+ * reach asynchronous calls (see Utils.executeAsync) and how a traceparent set as a
+ * client default header is forwarded.  Without either a new trace is started.
+ *
+ * Spans are named like metrics, by client and operation, see MetricsInterceptor.
+ */
+public final class TracingInterceptor implements Interceptor
+{
+  private final TapisTracer tracer;
+
+  public TracingInterceptor(TapisTracer tracer1) { tracer = tracer1; }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException
+  {
+    Request request = MetricsInterceptor.withOperationName(chain.request());
+    TraceContext parent = TraceContext.current();
+    if (parent == null)
+      parent = TraceContext.parse(request.header(TraceContext.TRACEPARENT_HEADER),
+                                  request.header(TraceContext.TRACESTATE_HEADER));
+
+    var span = tracer.startSpan(MetricsInterceptor.getClientName(request),
+                                MetricsInterceptor.getOperationName(request), request, parent);
+    Response response;
+    try { response = chain.proceed(span.getContext().applyHeaders(request.newBuilder()).build()); }
+    catch (IOException | RuntimeException e)
+    {
+      span.end(-1, e);
+      throw e;
+    }
+    span.end(response.code(), null);
+    return response;
+  }
+}
@@ -0,0 +1,71 @@
+package edu.utexas.tacc.tapis.client.shared;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Timing loop for the hand-run benchmarks of the client modules.  The shared-clientlib
+ * test jar puts it on the test classpath of the other modules.
+ * <p>
+ * A call is run once per iteration to warm up and then timed over several rounds.  The
+ * best round is reported, along with the fewest bytes allocated by the calling thread
+ * in any round.  Allocation on other threads, such as OkHttp dispatcher or connection
+ * threads, is not counted.
+ */
+public final class BenchmarkHarness
+{
+  public interface Call { Object run() throws Exception; }
+
+  /** Best time and allocation of a measured call. */
+  public static final class Result
+  {
+    private final int calls;
+    private final long bestNanos;
+    private final long bytes;
+
+    private Result(int calls1, long bestNanos1, long bytes1)
+    {
+      calls = calls1;
+      bestNanos = bestNanos1;
+      bytes = bytes1;
+    }
+
+    public double nanosPerCall() { return (double) bestNanos / calls; }
+    public double callsPerSecond() { return calls / (bestNanos / 1e9); }
+    public double bytesPerCall() { return (double) bytes / calls; }
+  }
+
+  // Sink for call results so the work is not optimized away.
+  private static volatile Object blackhole;
+
+  private BenchmarkHarness() {}
+
+  /**
+   * Warm up and time a call.
+   *
+   * @param calls number of calls per round
+   * @param rounds number of timed rounds
+   * @param call the work to measure
+   * @return the best round
+   * @throws Exception if a call fails
+   */
+  public static Result measure(int calls, int rounds, Call call) throws Exception
+  {
+    for (int i = 0; i < calls; i++) blackhole = call.run();
+    long best = Long.MAX_VALUE, bytes = Long.MAX_VALUE;
+    for (int r = 0; r < rounds; r++)
+    {
+      long allocated = allocatedBytes();
+      long start = System.nanoTime();
+      for (int i = 0; i < calls; i++) blackhole = call.run();
+      best = Math.min(best, System.nanoTime() - start);
+      bytes = Math.min(bytes, allocatedBytes() - allocated);
+    }
+    return new Result(calls, best, bytes);
+  }
+
+  private static long allocatedBytes()
+  {
+    var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+}
@@ -0,0 +1,54 @@
+package edu.utexas.tacc.tapis.client.shared;
+
+import java.time.Instant;
+import java.util.HashMap;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Verify that the cached gson instances keep the configuration of the builders
+ * they were created from.
+ */
+@Test
+public class ClientTapisGsonUtilsTest
+{
+  // The same instances are returned on every call.
+  @Test
+  public void testCachedInstances()
+  {
+    Assert.assertSame(ClientTapisGsonUtils.getGson(), ClientTapisGsonUtils.getGson());
+    Assert.assertSame(ClientTapisGsonUtils.getGson(false), ClientTapisGsonUtils.getGson());
+    Assert.assertSame(ClientTapisGsonUtils.getGson(true), ClientTapisGsonUtils.getGson(true));
+    Assert.assertNotSame(ClientTapisGsonUtils.getGson(true), ClientTapisGsonUtils.getGson(false));
+  }
+
+  // Nulls are serialized, html is not escaped and java.time converters are registered.
+  @Test
+  public void testConfiguration()
+  {
+    var map = new HashMap<String, Object>();
+    map.put("a", null);
+    Assert.assertEquals(ClientTapisGsonUtils.getGson().toJson(map), "{\"a\":null}");
+    Assert.assertEquals(ClientTapisGsonUtils.getGson().toJson("x=<y>&"), "\"x=<y>&\"");
+    Assert.assertEquals(ClientTapisGsonUtils.getGson(true).toJson(new JsonObject()), "{}");
+
+    Instant now = Instant.parse("2024-01-02T03:04:05Z");
+    String json = ClientTapisGsonUtils.getGson().toJson(now);
+    Assert.assertEquals(ClientTapisGsonUtils.getGson().fromJson(json, Instant.class), now);
+  }
+
+  // Builders derived from the cache keep the configuration and do not alter the cache.
+  @Test
+  public void testBuilder()
+  {
+    var gson = ClientTapisGsonUtils.getGsonBuilder(false).setPrettyPrinting().create();
+    var map = new HashMap<String, Object>();
+    map.put("a", null);
+    Assert.assertEquals(gson.toJson(map), "{\n  \"a\": null\n}");
+    Assert.assertEquals(ClientTapisGsonUtils.getGson().toJson(map), "{\"a\":null}");
+    Assert.assertEquals(ClientTapisGsonUtils.getGsonBuilder(true).create().toJson(map), "{\n  \"a\": null\n}");
+  }
+}
@@ -0,0 +1,82 @@
+package edu.utexas.tacc.tapis.client.shared;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpServer;
+
+import okhttp3.Request;
+
+/**
+ * Compare platform thread and virtual thread fan-out of blocking calls against a
+ * local JDK http server that delays each response.  This is not a unit test, run it
+ * by hand with the test classpath:
+ * <pre>
+ *   java -cp ... edu.utexas.tacc.tapis.client.shared.TapisExecutorBenchmark [calls] [concurrency] [delayMs]
+ * </pre>
+ * Each mode is warmed up once and then timed over several rounds.
+ */
+public class TapisExecutorBenchmark
+{
+  public static void main(String[] args) throws Exception
+  {
+    int calls = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+    int delayMs = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+    int rounds = 5;
+
+    // The server must be able to hold every in-flight request.
+    var server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), concurrency * 2);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext("/status", exchange -> {
+      try { Thread.sleep(delayMs); } catch (InterruptedException e) {}
+      byte[] body = "{\"status\":\"success\",\"result\":\"RUNNING\"}".getBytes();
+      exchange.sendResponseHeaders(200, body.length);
+      exchange.getResponseBody().write(body);
+      exchange.close();
+    });
+    server.start();
+    String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/status";
+
+    var items = new ArrayList<Integer>(calls);
+    for (int i = 0; i < calls; i++) items.add(i);
+
+    System.out.printf("calls=%d concurrency=%d delayMs=%d%n", calls, concurrency, delayMs);
+    for (var mode : TapisExecutor.Mode.values())
+    {
+      var executor = new TapisExecutor(mode, concurrency);
+      if (executor.getMode() != mode)
+      {
+        System.out.println(mode + ": not supported by this JVM, skipped");
+        executor.shutdown();
+        continue;
+      }
+      var transport = executor.newTransport();
+      var client = transport.getHttpClient();
+      TapisExecutor.Task<Integer, Integer> task = i -> {
+        try (var resp = client.newCall(new Request.Builder().url(url + "?job=" + i).build()).execute())
+        {
+          return resp.body().string().length();
+        }
+        catch (java.io.IOException e) { throw new RuntimeException(e); }
+      };
+
+      executor.invokeAll(items, task);
+      long best = Long.MAX_VALUE, total = 0;
+      for (int r = 0; r < rounds; r++)
+      {
+        long start = System.nanoTime();
+        executor.invokeAll(items, task);
+        long elapsed = System.nanoTime() - start;
+        best = Math.min(best, elapsed);
+        total += elapsed;
+      }
+      System.out.printf("%-8s best %8.1f ms  mean %8.1f ms  %10.0f calls/s%n", mode,
+                        best / 1e6, total / 1e6 / rounds, calls / (best / 1e9));
+      transport.shutdown();
+      executor.shutdown();
+    }
+    server.stop(0);
+  }
+}
@@ -0,0 +1,90 @@
+package edu.utexas.tacc.tapis.client.shared;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+
+/**
+ * Verify ordering, concurrency limits, context propagation and failure handling of
+ * TapisExecutor in both thread modes.
+ */
+@Test
+public class TapisExecutorTest
+{
+  // Results keep input order and concurrency stays within the limit.
+  @Test
+  public void testInvokeAll() throws Exception
+  {
+    for (var mode : TapisExecutor.Mode.values())
+    {
+      var executor = new TapisExecutor(mode, 64);
+      var active = new AtomicInteger();
+      var maxActive = new AtomicInteger();
+      var items = new ArrayList<Integer>();
+      for (int i = 0; i < 100; i++) items.add(i);
+      List<Integer> results = executor.invokeAll(items, 5, i -> {
+        maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        try { Thread.sleep(5); } catch (InterruptedException e) {}
+        active.decrementAndGet();
+        return i * 2;
+      });
+      for (int i = 0; i < 100; i++) Assert.assertEquals(results.get(i).intValue(), i * 2);
+      Assert.assertTrue(maxActive.get() <= 5, "Too many concurrent tasks: " + maxActive.get());
+      Assert.assertTrue(maxActive.get() > 1, "Tasks were not concurrent");
+      executor.shutdown();
+    }
+  }
+
+  // The caller's request context is bound in every task.
+  @Test
+  public void testContext() throws Exception
+  {
+    var ctx = new TapisRequestContext("jwt1", "dev", "bud", null, null);
+    List<String> users;
+    try (var scope = ctx.bind())
+    {
+      users = TapisExecutor.getDefault().invokeAll(List.of(1, 2, 3), i -> TapisRequestContext.current().getUser());
+    }
+    Assert.assertEquals(users, List.of("bud", "bud", "bud"));
+  }
+
+  // A failure stops the operation and is rethrown.
+  @Test
+  public void testFailure()
+  {
+    var executor = new TapisExecutor(TapisExecutor.Mode.PLATFORM, 1);
+    var started = new AtomicInteger();
+    try
+    {
+      executor.invokeAll(List.of(1, 2, 3, 4, 5), i -> {
+        started.incrementAndGet();
+        if (i == 2) throw new TapisClientException("boom");
+        return i;
+      });
+      Assert.fail("Expected exception");
+    }
+    catch (TapisClientException e) { Assert.assertEquals(e.getMessage(), "boom"); }
+    Assert.assertTrue(started.get() <= 3, "Tasks started after failure: " + started.get());
+    executor.shutdown();
+  }
+
+  // A virtual executor falls back to platform threads when they are not supported,
+  // and its transport dispatcher is sized to match.
+  @Test
+  public void testModeAndTransport()
+  {
+    var executor = new TapisExecutor(TapisExecutor.Mode.VIRTUAL, 100);
+    var expected = TapisExecutor.isVirtualThreadSupported() ? TapisExecutor.Mode.VIRTUAL : TapisExecutor.Mode.PLATFORM;
+    Assert.assertEquals(executor.getMode(), expected);
+    var transport = executor.newTransport();
+    Assert.assertEquals(transport.getDispatcher().getMaxRequests(), 100);
+    Assert.assertEquals(transport.getDispatcher().getMaxRequestsPerHost(), 100);
+    transport.shutdown();
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,147 @@
+package edu.utexas.tacc.tapis.client.shared;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+/**
+ * Verify that request contexts bound on different threads override default headers
+ * on a single shared http client.  Uses a local JDK http server that echoes the
+ * X-Tapis-Token, X-Tapis-User and X-Tapis-Tenant headers it receives.
+ */
+@Test
+public class TapisRequestContextTest
+{
+  private HttpServer server;
+  private String baseUrl;
+  private TapisHttpTransport transport;
+
+  @BeforeClass
+  public void setUp() throws Exception
+  {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/echo", exchange -> {
+      var hdrs = exchange.getRequestHeaders();
+      byte[] body = (hdrs.getFirst(TapisRequestContext.TAPIS_JWT_HEADER) + "|" +
+                     hdrs.getFirst(TapisRequestContext.TAPIS_JWT_USER) + "|" +
+                     hdrs.getFirst(TapisRequestContext.TAPIS_JWT_TENANT)).getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, body.length);
+      exchange.getResponseBody().write(body);
+      exchange.close();
+    });
+    server.setExecutor(Executors.newFixedThreadPool(4));
+    server.start();
+    baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/echo";
+    transport = new TapisHttpTransport();
+  }
+
+  @AfterClass
+  public void tearDown()
+  {
+    transport.shutdown();
+    server.stop(0);
+  }
+
+  // Without a bound context the default header passes through unchanged.
+  @Test
+  public void testNoContext() throws Exception
+  {
+    Assert.assertNull(TapisRequestContext.current());
+    Assert.assertEquals(echo(transport.getHttpClient()), "defaultJwt|null|null");
+  }
+
+  // Bound contexts replace the default header and nested scopes restore the outer context.
+  @Test
+  public void testNestedScopes() throws Exception
+  {
+    var outer = new TapisRequestContext("jwt1", "tenant1", "user1", null, "imp1");
+    var inner = new TapisRequestContext("jwt2");
+    try (var scope1 = outer.bind())
+    {
+      Assert.assertEquals(echo(transport.getHttpClient()), "jwt1|user1|tenant1");
+      try (var scope2 = inner.bind())
+      {
+        Assert.assertEquals(echo(transport.getHttpClient()), "jwt2|null|null");
+        Assert.assertNull(TapisRequestContext.resolveImpersonationId(null));
+      }
+      Assert.assertEquals(echo(transport.getHttpClient()), "jwt1|user1|tenant1");
+      Assert.assertEquals(TapisRequestContext.resolveImpersonationId(null), "imp1");
+      Assert.assertEquals(TapisRequestContext.resolveImpersonationId("explicit"), "explicit");
+    }
+    Assert.assertNull(TapisRequestContext.current());
+  }
+
+  // A context with a JWT drops the default obo headers it does not set, one without a
+  // JWT keeps them.
+  @Test
+  public void testDefaultIdentity() throws Exception
+  {
+    try (var scope = new TapisRequestContext("jwt1").bind())
+    {
+      Assert.assertEquals(echo(transport.getHttpClient(), "defaultUser", "defaultTenant"), "jwt1|null|null");
+    }
+    try (var scope = new TapisRequestContext("jwt1", null, "user1", null, null).bind())
+    {
+      Assert.assertEquals(echo(transport.getHttpClient(), "defaultUser", "defaultTenant"), "jwt1|user1|null");
+    }
+    try (var scope = new TapisRequestContext(null, null, "user1", null, null).bind())
+    {
+      Assert.assertEquals(echo(transport.getHttpClient(), "defaultUser", "defaultTenant"),
+                          "defaultJwt|user1|defaultTenant");
+    }
+  }
+
+  // Many threads sharing one client each see only their own credentials.
+  @Test
+  public void testConcurrentUsers() throws Exception
+  {
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    try
+    {
+      Map<Integer, Future<String>> results = new ConcurrentHashMap<>();
+      for (int i = 0; i < 64; i++)
+      {
+        final int n = i;
+        results.put(n, pool.submit(() -> {
+          try (var scope = new TapisRequestContext("jwt" + n, "tenant", "user" + n, null, null).bind())
+          {
+            return echo(transport.getHttpClient());
+          }
+        }));
+      }
+      for (var entry : results.entrySet())
+        Assert.assertEquals(entry.getValue().get(), "jwt" + entry.getKey() + "|user" + entry.getKey() + "|tenant");
+    }
+    finally { pool.shutdownNow(); }
+  }
+
+  // Send a request carrying a default jwt header, as the generated clients do.
+  private String echo(OkHttpClient client) throws Exception { return echo(client, null, null); }
+
+  // Send a request carrying a default jwt header and optional default obo headers.
+  private String echo(OkHttpClient client, String defaultUser, String defaultTenant) throws Exception
+  {
+    var builder = new Request.Builder().url(baseUrl).header(TapisRequestContext.TAPIS_JWT_HEADER, "defaultJwt");
+    if (defaultUser != null) builder.header(TapisRequestContext.TAPIS_JWT_USER, defaultUser);
+    if (defaultTenant != null) builder.header(TapisRequestContext.TAPIS_JWT_TENANT, defaultTenant);
+    var req = builder.build();
+    try (var resp = client.newCall(req).execute())
+    {
+      return resp.body().string();
+    }
+  }
+}
@@ -0,0 +1,167 @@
+package edu.utexas.tacc.tapis.client.shared;
+
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+/**
+ * Verify streaming of the result element of Tapis response envelopes.  Uses a local
+ * JDK http server so no Tapis services are required.
+ */
+@Test
+public class UtilsTest
+{
+  // Simple model used as a result type.
+  static final class Thing { String name; int size; }
+
+  private HttpServer server;
+  private String baseUrl;
+  private final OkHttpClient client = new OkHttpClient();
+
+  @BeforeClass
+  public void setUp() throws Exception
+  {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    respond("/ok", 200, "{\"status\":\"success\",\"message\":\"ok\",\"result\":{\"name\":\"a\",\"size\":3},\"version\":\"1\"}");
+    respond("/null", 200, "{\"status\":\"success\",\"result\":null}");
+    respond("/err", 404, "{\"status\":\"error\",\"message\":\"not found\",\"result\":null,\"version\":\"1\"}");
+    respond("/text", 500, "plain failure");
+    respond("/raw", 200, "[{\"name\":\"d1\",\"size\":1},{\"name\":\"d2\",\"size\":2}]");
+    server.createContext("/echo", exchange -> {
+      String jwt = exchange.getRequestHeaders().getFirst(TapisRequestContext.TAPIS_JWT_HEADER);
+      byte[] bytes = ("{\"result\":\"" + jwt + "\"}").getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, bytes.length);
+      exchange.getResponseBody().write(bytes);
+      exchange.close();
+    });
+    server.start();
+    baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  @AfterClass
+  public void tearDown() { server.stop(0); }
+
+  @Test
+  public void testReadResult() throws Exception
+  {
+    // Elements before the result, including nested ones, are skipped.
+    String json = "{\"metadata\":{\"a\":[1,2,{\"b\":null}]},\"result\":[{\"name\":\"x\",\"size\":1},{\"name\":\"y\",\"size\":2}]}";
+    List<Thing> list = ClientTapisGsonUtils.readResult(new StringReader(json), new TypeToken<List<Thing>>(){}.getType());
+    Assert.assertEquals(list.size(), 2);
+    Assert.assertEquals(list.get(1).name, "y");
+
+    // Missing result.
+    Assert.assertNull(ClientTapisGsonUtils.readResult(new StringReader("{\"status\":\"success\"}"), Thing.class));
+    JsonObject obj = ClientTapisGsonUtils.readResult(new StringReader("{\"result\":{\"k\":\"v\"}}"), JsonObject.class);
+    Assert.assertEquals(obj.get("k").getAsString(), "v");
+  }
+
+  @Test
+  public void testExecuteForResult() throws Exception
+  {
+    Thing thing = Utils.executeForResult(call("/ok"), Thing.class);
+    Assert.assertEquals(thing.name, "a");
+    Assert.assertEquals(thing.size, 3);
+    Assert.assertNull(Utils.executeForResult(call("/null"), Thing.class));
+  }
+
+  @Test
+  public void testExecuteForResultErrors()
+  {
+    try {
+      Utils.executeForResult(call("/err"), Thing.class);
+      Assert.fail("Expected exception");
+    } catch (TapisClientException e) {
+      Assert.assertEquals(e.getCode(), 404);
+      Assert.assertEquals(e.getStatus(), "error");
+      Assert.assertEquals(e.getTapisMessage(), "not found");
+    }
+    try {
+      Utils.executeForResult(call("/text"), Thing.class);
+      Assert.fail("Expected exception");
+    } catch (TapisClientException e) {
+      Assert.assertEquals(e.getCode(), 500);
+      Assert.assertEquals(e.getMessage(), "plain failure");
+    }
+  }
+
+  @Test
+  public void testExecuteAsync() throws Exception
+  {
+    Thing thing = Utils.<Thing>executeAsync(client, call("/ok"), Thing.class).get(5, TimeUnit.SECONDS);
+    Assert.assertEquals(thing.name, "a");
+    Integer size = Utils.executeAsync(client, call("/ok"), Thing.class, (Thing t) -> t.size).get(5, TimeUnit.SECONDS);
+    Assert.assertEquals(size, Integer.valueOf(3));
+
+    // Errors are delivered as TapisClientExceptions.
+    try {
+      Utils.executeAsync(client, call("/err"), Thing.class).get(5, TimeUnit.SECONDS);
+      Assert.fail("Expected exception");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof TapisClientException);
+      Assert.assertEquals(((TapisClientException) e.getCause()).getCode(), 404);
+      Assert.assertEquals(((TapisClientException) e.getCause()).getTapisMessage(), "not found");
+    }
+  }
+
+  @Test
+  public void testExecuteAsyncForBody() throws Exception
+  {
+    // The whole body is parsed, for responses without the result envelope.
+    List<Thing> docs = Utils.executeAsyncForBody(client, call("/raw"), new TypeToken<List<Thing>>(){}.getType(),
+                                                 (List<Thing> l) -> l).get(5, TimeUnit.SECONDS);
+    Assert.assertEquals(docs.size(), 2);
+    Assert.assertEquals(docs.get(1).name, "d2");
+    String status = Utils.executeAsyncForBody(client, call("/ok"), JsonObject.class,
+                                              (JsonObject o) -> o.get("status").getAsString()).get(5, TimeUnit.SECONDS);
+    Assert.assertEquals(status, "success");
+    try {
+      Utils.executeAsyncForBody(client, call("/err"), JsonObject.class, (JsonObject o) -> o).get(5, TimeUnit.SECONDS);
+      Assert.fail("Expected exception");
+    } catch (ExecutionException e) {
+      Assert.assertEquals(((TapisClientException) e.getCause()).getCode(), 404);
+    }
+  }
+
+  @Test
+  public void testExecuteAsyncContext() throws Exception
+  {
+    // The calling thread's context is applied even though the request runs on a dispatcher thread.
+    try (var scope = new TapisRequestContext("jwt-async").bind())
+    {
+      String jwt = Utils.<String>executeAsync(client, call("/echo"), String.class).get(5, TimeUnit.SECONDS);
+      Assert.assertEquals(jwt, "jwt-async");
+    }
+  }
+
+  private okhttp3.Call call(String path)
+  {
+    return client.newCall(new Request.Builder().url(baseUrl + path).build());
+  }
+
+  private void respond(String path, int code, String body)
+  {
+    server.createContext(path, exchange -> {
+      byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(code, bytes.length);
+      exchange.getResponseBody().write(bytes);
+      exchange.close();
+    });
+  }
+}
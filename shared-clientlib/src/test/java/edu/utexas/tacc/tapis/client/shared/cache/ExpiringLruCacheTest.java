@@ -0,0 +1,111 @@
+package edu.utexas.tacc.tapis.client.shared.cache;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Verify expiry, LRU eviction and invalidation in ExpiringLruCache.
+ */
+@Test
+public class ExpiringLruCacheTest
+{
+  private static final long HOUR = TimeUnit.HOURS.toNanos(1);
+
+  // Entries expire individually.
+  @Test
+  public void testExpiry() throws Exception
+  {
+    var cache = new ExpiringLruCache<String, Boolean>(10);
+    cache.put("short", true, TimeUnit.MILLISECONDS.toNanos(50));
+    cache.put("long", false, HOUR);
+    cache.put("never", true, 0);
+    Assert.assertEquals(cache.get("short"), Boolean.TRUE);
+    Assert.assertNull(cache.get("never"));
+    Thread.sleep(100);
+    Assert.assertNull(cache.get("short"));
+    Assert.assertEquals(cache.get("long"), Boolean.FALSE);
+    Assert.assertEquals(cache.size(), 1);
+    Assert.assertEquals(cache.getHitCount(), 2);
+    Assert.assertEquals(cache.getMissCount(), 2);
+  }
+
+  // The least recently used entry is evicted.
+  @Test
+  public void testEviction()
+  {
+    var cache = new ExpiringLruCache<Integer, Integer>(2);
+    cache.put(1, 1, HOUR);
+    cache.put(2, 2, HOUR);
+    cache.get(1);
+    cache.put(3, 3, HOUR);
+    Assert.assertEquals(cache.get(1), Integer.valueOf(1));
+    Assert.assertNull(cache.get(2));
+    Assert.assertEquals(cache.get(3), Integer.valueOf(3));
+    Assert.assertEquals(cache.getEvictionCount(), 1);
+  }
+
+  // A larger cache is trimmed a little below its limit, keeping the recently read entries.
+  @Test
+  public void testTrim()
+  {
+    var cache = new ExpiringLruCache<Integer, Integer>(64);
+    for (int i = 0; i < 64; i++) cache.put(i, i, HOUR);
+    for (int i = 32; i < 64; i++) cache.get(i);
+    cache.put(64, 64, HOUR);
+    Assert.assertEquals(cache.size(), 60);
+    Assert.assertEquals(cache.getEvictionCount(), 5);
+    for (int i = 32; i <= 64; i++) Assert.assertEquals(cache.get(i), Integer.valueOf(i));
+  }
+
+  // Concurrent readers and writers keep the cache within its limit.
+  @Test
+  public void testConcurrentAccess() throws Exception
+  {
+    var cache = new ExpiringLruCache<Integer, Integer>(100);
+    var pool = Executors.newFixedThreadPool(8);
+    try
+    {
+      var futures = new ArrayList<Future<?>>();
+      for (int t = 0; t < 8; t++)
+      {
+        int seed = t;
+        futures.add(pool.submit(() -> {
+          for (int i = 0; i < 20000; i++)
+          {
+            int key = (i * 31 + seed) % 400;
+            Integer v = cache.get(key);
+            if (v == null) cache.put(key, key, HOUR);
+            else Assert.assertEquals(v.intValue(), key);
+          }
+        }));
+      }
+      for (var f : futures) f.get();
+    }
+    finally { pool.shutdownNow(); }
+    Assert.assertTrue(cache.size() <= 100, "size " + cache.size());
+    Assert.assertEquals(cache.getHitCount() + cache.getMissCount(), 8 * 20000);
+  }
+
+  // Selected entries can be invalidated.
+  @Test
+  public void testInvalidate()
+  {
+    var cache = new ExpiringLruCache<String, Integer>(10);
+    cache.put("a:1", 1, HOUR);
+    cache.put("a:2", 2, HOUR);
+    cache.put("b:1", 3, HOUR);
+    cache.invalidate("a:1");
+    Assert.assertNull(cache.get("a:1"));
+    Assert.assertEquals(cache.size(), 2);
+    cache.invalidateIf(k -> k.startsWith("a:"));
+    Assert.assertEquals(cache.size(), 1);
+    Assert.assertEquals(cache.get("b:1"), Integer.valueOf(3));
+    cache.invalidateAll();
+    Assert.assertEquals(cache.size(), 0);
+  }
+}
@@ -0,0 +1,111 @@
+package edu.utexas.tacc.tapis.client.shared.metrics;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import edu.utexas.tacc.tapis.client.shared.TapisHttpTransport;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Verify percentile snapshots of InMemoryTapisMetrics and the values reported by
+ * MetricsInterceptor for calls against a local JDK http server.
+ */
+@Test
+public class InMemoryTapisMetricsTest
+{
+  // Percentiles are within the histogram's resolution.
+  @Test
+  public void testPercentiles()
+  {
+    var metrics = new InMemoryTapisMetrics();
+    for (int ms = 1; ms <= 100; ms++) metrics.recordLatency("SKClient", "isPermitted", 200, TimeUnit.MILLISECONDS.toNanos(ms));
+    var s = metrics.getLatency("SKClient", "isPermitted", 200);
+    Assert.assertEquals(s.getCount(), 100);
+    Assert.assertEquals(s.getMax(), TimeUnit.MILLISECONDS.toNanos(100));
+    Assert.assertEquals(s.getMean(), TimeUnit.MICROSECONDS.toNanos(50500));
+    assertNear(s.getP50(), TimeUnit.MILLISECONDS.toNanos(50));
+    assertNear(s.getP95(), TimeUnit.MILLISECONDS.toNanos(95));
+    assertNear(s.getP99(), TimeUnit.MILLISECONDS.toNanos(99));
+    Assert.assertNull(metrics.getLatency("SKClient", "isPermitted", 500));
+  }
+
+  // Calls through an instrumented transport report latency, bytes, in-flight and pool state.
+  @Test
+  public void testInterceptor() throws Exception
+  {
+    var server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", exchange -> {
+      exchange.getRequestBody().readAllBytes();
+      byte[] body = "0123456789".getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(exchange.getRequestURI().getPath().endsWith("missing") ? 404 : 200, body.length);
+      exchange.getResponseBody().write(body);
+      exchange.close();
+    });
+    server.start();
+    String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/v3/jobs/list";
+
+    var metrics = new InMemoryTapisMetrics();
+    var transport = new TapisHttpTransport().enableMetrics("shared", metrics);
+    var client = transport.getHttpClient();
+    var post = RequestBody.create("{\"a\":1}", MediaType.get("application/json"));
+    for (int i = 0; i < 3; i++)
+      try (var resp = client.newCall(new Request.Builder().url(url).header("User-Agent", "JobsClient")
+                                                         .post(post).build()).execute())
+      {
+        resp.body().string();
+      }
+    client.newCall(new Request.Builder().url(url + "/missing").header("User-Agent", "JobsClient").build())
+          .execute().close();
+
+    Assert.assertEquals(metrics.getLatency("JobsClient", "POST /jobs/list", 200).getCount(), 3);
+    Assert.assertEquals(metrics.getLatency("JobsClient", "GET /jobs/list", 404).getCount(), 1);
+    Assert.assertEquals(metrics.getBytesSent("JobsClient", "POST /jobs/list"), 21);
+    Assert.assertEquals(metrics.getBytesReceived("JobsClient", "POST /jobs/list"), 30);
+    Assert.assertEquals(metrics.getInFlight("JobsClient"), 0);
+    Assert.assertTrue(metrics.getConnectionCount("shared") >= 1);
+    Assert.assertEquals(metrics.getLatencies().size(), 2);
+
+    transport.shutdown();
+    server.stop(0);
+  }
+
+  // The operation name is determined once and travels with the request to later interceptors.
+  @Test
+  public void testOperationNameTag() throws Exception
+  {
+    var request = new Request.Builder().url("http://127.0.0.1/v3/apps/list").build();
+    var tagged = MetricsInterceptor.withOperationName(request);
+    Assert.assertEquals(MetricsInterceptor.getOperationName(tagged), "GET /apps/list");
+    Assert.assertSame(MetricsInterceptor.withOperationName(tagged), tagged);
+
+    var seen = new AtomicReference<Request>();
+    var client = new OkHttpClient.Builder()
+            .addInterceptor(new MetricsInterceptor(new InMemoryTapisMetrics()))
+            .addInterceptor(chain -> {
+              seen.set(chain.request());
+              return new Response.Builder().request(chain.request()).protocol(Protocol.HTTP_1_1)
+                                           .code(200).message("OK")
+                                           .body(ResponseBody.create(new byte[0], null)).build();
+            }).build();
+    client.newCall(request).execute().close();
+    Assert.assertSame(MetricsInterceptor.withOperationName(seen.get()), seen.get());
+  }
+
+  private static void assertNear(long actual, long expected)
+  {
+    Assert.assertTrue(Math.abs(actual - expected) <= expected * 0.07, "Expected about " + expected + " but got " + actual);
+  }
+}
@@ -0,0 +1,158 @@
+package edu.utexas.tacc.tapis.client.shared.resilience;
+
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+/**
+ * Verify hedging, loser cancellation, per-operation enablement and the hedge budget
+ * of RequestHedger.  The local JDK http server delays the first response for each
+ * path by one second and answers all later requests immediately.  Each test uses its
+ * own path so that requests left over from other tests do not interfere.
+ */
+@Test
+public class RequestHedgerTest
+{
+  private HttpServer server;
+  private String baseUrl;
+  private final OkHttpClient client = new OkHttpClient();
+  private final ConcurrentHashMap<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+  @BeforeClass
+  public void setUp() throws Exception
+  {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext("/", exchange -> {
+      int n = count(exchange.getRequestURI().getPath()).incrementAndGet();
+      byte[] body = ("response" + n).getBytes();
+      if (n == 1) try { Thread.sleep(1000); } catch (InterruptedException e) {}
+      try
+      {
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+      }
+      catch (java.io.IOException e) {}
+      exchange.close();
+    });
+    server.createContext("/slow/", exchange -> {
+      // Every first request of a pair is slow and is beaten by its hedge.
+      int n = count(exchange.getRequestURI().getPath()).incrementAndGet();
+      try { Thread.sleep(n % 2 == 1 ? 1000 : 30); } catch (InterruptedException e) {}
+      try { exchange.sendResponseHeaders(200, -1); }
+      catch (java.io.IOException e) {}
+      exchange.close();
+    });
+    server.start();
+    baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/security/user/";
+  }
+
+  @AfterClass
+  public void tearDown() { server.stop(0); }
+
+  // A slow first response is beaten by the hedge.
+  @Test
+  public void testHedge() throws Exception
+  {
+    String path = "hedge";
+    var hedger = new RequestHedger(Duration.ofMillis(50), false, 1.0).enable("isPermitted");
+    long start = System.nanoTime();
+    try (var response = hedger.execute("isPermitted", client, request(path)))
+    {
+      Assert.assertEquals(response.body().string(), "response2");
+    }
+    Assert.assertTrue(System.nanoTime() - start < 800_000_000L, "Hedge did not win");
+    Assert.assertEquals(hedger.getHedgeCount(), 1);
+    Assert.assertEquals(hedger.getHedgeWinCount(), 1);
+  }
+
+  // Operations that are not enabled are sent once.
+  @Test
+  public void testNotEnabled() throws Exception
+  {
+    String path = "notEnabled";
+    var hedger = new RequestHedger(Duration.ofMillis(50), false, 1.0).enable("getSystem");
+    try (var response = hedger.execute("isPermitted", client, request(path)))
+    {
+      Assert.assertEquals(response.body().string(), "response1");
+    }
+    Assert.assertEquals(count("/security/user/" + path).get(), 1);
+    Assert.assertEquals(hedger.getHedgeCount(), 0);
+  }
+
+  // Without budget the slow response is awaited.
+  @Test
+  public void testBudget() throws Exception
+  {
+    String path = "budget";
+    var hedger = new RequestHedger(Duration.ofMillis(50), false, 0.5).enable("isPermitted");
+    try (var response = hedger.execute("isPermitted", client, request(path)))
+    {
+      Assert.assertEquals(response.body().string(), "response1");
+    }
+    Assert.assertEquals(hedger.getHedgeCount(), 0);
+  }
+
+  // In adaptive mode the delay follows the observed p95 but not below the minimum.
+  @Test
+  public void testAdaptiveDelay() throws Exception
+  {
+    String path = "adaptive";
+    count("/security/user/" + path).set(1);
+    var hedger = new RequestHedger(Duration.ofMillis(1), true, 0.0).enable("isPermitted");
+    Assert.assertEquals(hedger.getDelayNanos("isPermitted"), 1_000_000L);
+    for (int i = 0; i < 64; i++)
+      hedger.execute("isPermitted", client, request(path)).close();
+    long delay = hedger.getDelayNanos("isPermitted");
+    Assert.assertTrue(delay >= 1_000_000L && delay < 1_000_000_000L, "Unexpected delay " + delay);
+  }
+
+  // Primaries that lose to their hedge still raise the adaptive delay.
+  @Test
+  public void testLosingPrimaryRecorded() throws Exception
+  {
+    var hedger = new RequestHedger(Duration.ofMillis(10), true, 1.0).enable("isPermitted");
+    var request = new Request.Builder().url(baseUrl.replace("/security/user/", "/slow/") + "losers").build();
+    for (int i = 0; i < 32; i++) hedger.execute("isPermitted", client, request).close();
+    Assert.assertTrue(hedger.getHedgeWinCount() >= 16, "Hedge wins " + hedger.getHedgeWinCount());
+    long delay = hedger.getDelayNanos("isPermitted");
+    Assert.assertTrue(delay >= 40_000_000L, "Unexpected delay " + delay);
+  }
+
+  // A response that arrives for an interrupted caller is closed, so its connection is not leaked.
+  @Test
+  public void testInterruptedCallerClosesResponse() throws Exception
+  {
+    String path = "interrupted";
+    count("/security/user/" + path).set(1);
+    var pool = new ConnectionPool();
+    var poolClient = new OkHttpClient.Builder().connectionPool(pool).build();
+    var hedger = new RequestHedger(Duration.ofMillis(50), false, 0.0).enable("isPermitted");
+    for (int i = 0; i < 20; i++)
+    {
+      Thread.currentThread().interrupt();
+      Assert.expectThrows(InterruptedIOException.class, () -> hedger.execute("isPermitted", poolClient, request(path)));
+      Assert.assertTrue(Thread.interrupted());
+    }
+    for (int i = 0; i < 100 && pool.idleConnectionCount() < pool.connectionCount(); i++) Thread.sleep(10);
+    Assert.assertEquals(pool.idleConnectionCount(), pool.connectionCount(), "Connections left in use");
+  }
+
+  private Request request(String path) { return new Request.Builder().url(baseUrl + path).build(); }
+
+  private AtomicInteger count(String path) { return requests.computeIfAbsent(path, k -> new AtomicInteger()); }
+}
@@ -0,0 +1,257 @@
+package edu.utexas.tacc.tapis.client.shared.resilience;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+ * Verify retries, Retry-After handling and circuit breaking of ResilienceInterceptor
+ * against a local JDK http server.  The server fails the first _failures requests
+ * with _failStatus and then answers 200.
+ */
+@Test
+public class ResilienceInterceptorTest
+{
+  private static final RetryPolicy FAST =
+          new RetryPolicy(3, Duration.ofMillis(1), Duration.ofMillis(500), RetryPolicy.DEFAULT_RETRYABLE_STATUS);
+
+  private HttpServer server;
+  private String baseUrl;
+  private final AtomicInteger requests = new AtomicInteger();
+  private volatile int failures;
+  private volatile int failStatus;
+  private volatile String retryAfter;
+
+  @BeforeClass
+  public void setUp() throws Exception
+  {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", this::handle);
+    server.start();
+    baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  @AfterClass
+  public void tearDown() { server.stop(0); }
+
+  @BeforeMethod
+  public void reset() { requests.set(0); failures = 0; failStatus = 503; retryAfter = null; }
+
+  // GETs and marked POSTs are retried, other POSTs are not.
+  @Test
+  public void testIdempotentRetry() throws Exception
+  {
+    var interceptor = new ResilienceInterceptor(FAST, 100, Duration.ofSeconds(10))
+            .markIdempotent(List.of("/security/user/isPermitted"));
+    var client = new OkHttpClient.Builder().addInterceptor(interceptor).build();
+
+    failures = 2;
+    Assert.assertEquals(send(client, "GET", "/files/ops"), 200);
+    Assert.assertEquals(requests.get(), 3);
+
+    reset(); failures = 2;
+    Assert.assertEquals(send(client, "POST", "/security/user/isPermitted"), 200);
+    Assert.assertEquals(requests.get(), 3);
+
+    reset(); failures = 2;
+    Assert.assertEquals(send(client, "POST", "/jobs/submit"), 503);
+    Assert.assertEquals(requests.get(), 1);
+
+    // Attempts are limited.
+    reset(); failures = 5;
+    Assert.assertEquals(send(client, "GET", "/files/ops"), 503);
+    Assert.assertEquals(requests.get(), 3);
+    Assert.assertEquals(interceptor.getRetryCount(), 6);
+  }
+
+  // Requests with a one-shot body are not retried, whatever their method.
+  @Test
+  public void testOneShotNotRetried() throws Exception
+  {
+    var interceptor = new ResilienceInterceptor(FAST, 100, Duration.ofSeconds(10))
+            .markIdempotent(List.of("/files/ops"));
+    var client = new OkHttpClient.Builder().addInterceptor(interceptor).build();
+    for (String method : List.of("PUT", "POST"))
+    {
+      reset(); failures = 2;
+      var request = new Request.Builder().url(baseUrl + "/files/ops").method(method, oneShotBody()).build();
+      try (var response = client.newCall(request).execute()) { Assert.assertEquals(response.code(), 503); }
+      Assert.assertEquals(requests.get(), 1, method);
+    }
+    Assert.assertEquals(interceptor.getRetryCount(), 0);
+  }
+
+  // Short Retry-After values are honored, ones beyond maxBackoff end the retries.
+  @Test
+  public void testRetryAfter() throws Exception
+  {
+    var client = new OkHttpClient.Builder()
+            .addInterceptor(new ResilienceInterceptor(FAST, 100, Duration.ofSeconds(10))).build();
+    failures = 1; failStatus = 429; retryAfter = "0";
+    Assert.assertEquals(send(client, "GET", "/a"), 200);
+    Assert.assertEquals(requests.get(), 2);
+
+    reset(); failures = 1; failStatus = 429; retryAfter = "120";
+    Assert.assertEquals(send(client, "GET", "/a"), 429);
+    Assert.assertEquals(requests.get(), 1);
+  }
+
+  // The breaker opens after consecutive failures and closes after a good probe.
+  @Test
+  public void testCircuitBreaker() throws Exception
+  {
+    var interceptor = new ResilienceInterceptor(RetryPolicy.NONE, 3, Duration.ofMillis(200));
+    var client = new OkHttpClient.Builder().addInterceptor(interceptor).build();
+    failures = 3;
+    for (int i = 0; i < 3; i++) Assert.assertEquals(send(client, "GET", "/a"), 503);
+    var breaker = interceptor.getCircuitBreaker("127.0.0.1:" + server.getAddress().getPort());
+    Assert.assertEquals(breaker.getState(), CircuitBreaker.State.OPEN);
+
+    try { send(client, "GET", "/a"); Assert.fail("Expected rejection"); }
+    catch (ResilienceInterceptor.CircuitOpenException e) {}
+    Assert.assertEquals(requests.get(), 3);
+    Assert.assertEquals(interceptor.getRejectionCount(), 1);
+
+    Thread.sleep(250);
+    Assert.assertEquals(send(client, "GET", "/a"), 200);
+    Assert.assertEquals(breaker.getState(), CircuitBreaker.State.CLOSED);
+  }
+
+  // A failed half-open probe reopens the breaker.
+  @Test
+  public void testFailedProbe()
+  {
+    var breaker = new CircuitBreaker(1, Duration.ofMillis(50));
+    breaker.tryAcquire().onFailure();
+    Assert.assertNull(breaker.tryAcquire());
+    try { Thread.sleep(80); } catch (InterruptedException e) {}
+    var probe = breaker.tryAcquire();
+    Assert.assertTrue(probe.isProbe());
+    Assert.assertNull(breaker.tryAcquire());
+    probe.onFailure();
+    Assert.assertEquals(breaker.getState(), CircuitBreaker.State.OPEN);
+    Assert.assertNull(breaker.tryAcquire());
+  }
+
+  // Outcomes of requests admitted before the breaker opened neither close it nor
+  // let a second probe through while the real probe is in flight.
+  @Test
+  public void testStaleOutcomes()
+  {
+    var breaker = new CircuitBreaker(1, Duration.ofMillis(50));
+    var staleSuccess = breaker.tryAcquire();
+    var staleFailure = breaker.tryAcquire();
+    var staleRelease = breaker.tryAcquire();
+    breaker.tryAcquire().onFailure();
+    Assert.assertEquals(breaker.getState(), CircuitBreaker.State.OPEN);
+
+    // A late success while open does not close the breaker.
+    staleSuccess.onSuccess();
+    Assert.assertEquals(breaker.getState(), CircuitBreaker.State.OPEN);
+    Assert.assertNull(breaker.tryAcquire());
+
+    try { Thread.sleep(80); } catch (InterruptedException e) {}
+    var probe = breaker.tryAcquire();
+    Assert.assertTrue(probe.isProbe());
+    Assert.assertEquals(breaker.getState(), CircuitBreaker.State.HALF_OPEN);
+
+    // A late failure or release while half open does not admit a second probe.
+    staleFailure.onFailure();
+    staleRelease.release();
+    Assert.assertEquals(breaker.getState(), CircuitBreaker.State.HALF_OPEN);
+    Assert.assertNull(breaker.tryAcquire());
+
+    // Only the probe closes the breaker, and recording it twice changes nothing.
+    probe.onSuccess();
+    Assert.assertEquals(breaker.getState(), CircuitBreaker.State.CLOSED);
+    probe.onFailure();
+    Assert.assertEquals(breaker.getState(), CircuitBreaker.State.CLOSED);
+    Assert.assertNotNull(breaker.tryAcquire());
+  }
+
+  // A probe that ends in an unchecked exception does not leave the breaker stuck half open.
+  @Test
+  public void testProbeReleasedOnException() throws Exception
+  {
+    var interceptor = new ResilienceInterceptor(RetryPolicy.NONE, 1, Duration.ofMillis(50));
+    var explode = new AtomicBoolean();
+    var client = new OkHttpClient.Builder().addInterceptor(interceptor)
+            .addInterceptor(chain -> {
+              if (explode.get()) throw new IllegalStateException("boom");
+              return chain.proceed(chain.request());
+            }).build();
+    failures = 1;
+    Assert.assertEquals(send(client, "GET", "/a"), 503);
+    var breaker = interceptor.getCircuitBreaker("127.0.0.1:" + server.getAddress().getPort());
+    Assert.assertEquals(breaker.getState(), CircuitBreaker.State.OPEN);
+
+    Thread.sleep(80);
+    explode.set(true);
+    Assert.expectThrows(IllegalStateException.class, () -> send(client, "GET", "/a"));
+    Assert.assertEquals(breaker.getState(), CircuitBreaker.State.HALF_OPEN);
+
+    explode.set(false);
+    Assert.assertEquals(send(client, "GET", "/a"), 200);
+    Assert.assertEquals(breaker.getState(), CircuitBreaker.State.CLOSED);
+  }
+
+  // Cancelled calls are not counted as failures of the host.
+  @Test
+  public void testCancelNotCounted() throws Exception
+  {
+    var interceptor = new ResilienceInterceptor(RetryPolicy.NONE, 1, Duration.ofSeconds(10));
+    var client = new OkHttpClient.Builder().addInterceptor(interceptor)
+            .addInterceptor(chain -> {
+              chain.call().cancel();
+              return chain.proceed(chain.request());
+            }).build();
+    Assert.expectThrows(IOException.class, () -> send(client, "GET", "/a"));
+    var breaker = interceptor.getCircuitBreaker("127.0.0.1:" + server.getAddress().getPort());
+    Assert.assertEquals(breaker.getState(), CircuitBreaker.State.CLOSED);
+  }
+
+  private int send(OkHttpClient client, String method, String path) throws Exception
+  {
+    var body = "POST".equals(method) ? RequestBody.create("{}", MediaType.get("application/json")) : null;
+    var request = new Request.Builder().url(baseUrl + path).method(method, body).build();
+    try (var response = client.newCall(request).execute()) { return response.code(); }
+  }
+
+  private static RequestBody oneShotBody()
+  {
+    return new RequestBody()
+    {
+      @Override public MediaType contentType() { return MediaType.get("application/octet-stream"); }
+      @Override public boolean isOneShot() { return true; }
+      @Override public void writeTo(BufferedSink sink) throws IOException { sink.writeUtf8("data"); }
+    };
+  }
+
+  private void handle(HttpExchange exchange) throws IOException
+  {
+    exchange.getRequestBody().readAllBytes();
+    int n = requests.incrementAndGet();
+    int status = n <= failures ? failStatus : 200;
+    if (status != 200 && retryAfter != null) exchange.getResponseHeaders().add("Retry-After", retryAfter);
+    exchange.sendResponseHeaders(status, -1);
+    exchange.close();
+  }
+}
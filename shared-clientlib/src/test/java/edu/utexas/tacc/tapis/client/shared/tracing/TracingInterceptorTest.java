@@ -0,0 +1,145 @@
+package edu.utexas.tacc.tapis.client.shared.tracing;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import edu.utexas.tacc.tapis.client.shared.TapisHttpTransport;
+import edu.utexas.tacc.tapis.client.shared.Utils;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+/**
+ * Verify W3C trace context parsing and propagation by TracingInterceptor.  The local
+ * JDK http server returns the traceparent header it received as the result.
+ */
+@Test
+public class TracingInterceptorTest
+{
+  private HttpServer server;
+  private String url;
+  private TapisHttpTransport transport;
+  private OkHttpClient client;
+  private final List<SimpleTapisTracer.FinishedSpan> spans = new CopyOnWriteArrayList<>();
+
+  @BeforeClass
+  public void setUp() throws Exception
+  {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", exchange -> {
+      String tp = exchange.getRequestHeaders().getFirst(TraceContext.TRACEPARENT_HEADER);
+      byte[] body = ("{\"result\":\"" + tp + "\"}").getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, body.length);
+      exchange.getResponseBody().write(body);
+      exchange.close();
+    });
+    server.start();
+    url = "http://127.0.0.1:" + server.getAddress().getPort() + "/v3/jobs/submit";
+    transport = new TapisHttpTransport().enableTracing(new SimpleTapisTracer(true, spans::add));
+    client = transport.getHttpClient();
+  }
+
+  @AfterClass
+  public void tearDown()
+  {
+    transport.shutdown();
+    server.stop(0);
+  }
+
+  @BeforeMethod
+  public void reset() { spans.clear(); }
+
+  // Header values are parsed and formatted as the specification requires.
+  @Test
+  public void testParse()
+  {
+    var ctx = TraceContext.parse("00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01", "congo=t61rcWkgMzE");
+    Assert.assertEquals(ctx.getTraceId(), "0af7651916cd43dd8448eb211c80319c");
+    Assert.assertEquals(ctx.getSpanId(), "b7ad6b7169203331");
+    Assert.assertTrue(ctx.isSampled());
+    Assert.assertEquals(ctx.getTraceState(), "congo=t61rcWkgMzE");
+    Assert.assertEquals(ctx.toTraceparent(), "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01");
+
+    Assert.assertNull(TraceContext.parse("00-00000000000000000000000000000000-b7ad6b7169203331-01", null));
+    Assert.assertNull(TraceContext.parse("00-0AF7651916CD43DD8448EB211C80319C-b7ad6b7169203331-01", null));
+    Assert.assertNull(TraceContext.parse("ff-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01", null));
+    Assert.assertNull(TraceContext.parse("00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01-xx", null));
+    Assert.assertNotNull(TraceContext.parse("01-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-00-xx", null));
+
+    var root = TraceContext.newRoot(false);
+    var child = root.newChild();
+    Assert.assertEquals(child.getTraceId(), root.getTraceId());
+    Assert.assertNotEquals(child.getSpanId(), root.getSpanId());
+    Assert.assertEquals(TraceContext.parse(child.toTraceparent(), null), child);
+  }
+
+  // A bound context is the parent of the call's span and the span's context is sent.
+  @Test
+  public void testBoundContext() throws Exception
+  {
+    var parent = TraceContext.newRoot(true);
+    String sent;
+    try (var scope = parent.bind()) { sent = send(); }
+
+    Assert.assertEquals(spans.size(), 1);
+    var span = spans.get(0);
+    Assert.assertEquals(span.getTraceId(), parent.getTraceId());
+    Assert.assertEquals(span.getParentSpanId(), parent.getSpanId());
+    Assert.assertEquals(sent, span.getContext().toTraceparent());
+    Assert.assertEquals(span.getOperation(), "GET /jobs/submit");
+    Assert.assertEquals(span.getStatus(), 200);
+    Assert.assertFalse(span.isError());
+    Assert.assertNull(TraceContext.current());
+  }
+
+  // Without a context a new trace is started; unsampled traces are propagated but not reported.
+  @Test
+  public void testNewTraceAndSampling() throws Exception
+  {
+    String sent = send();
+    Assert.assertEquals(spans.size(), 1);
+    Assert.assertNull(spans.get(0).getParentSpanId());
+    Assert.assertEquals(TraceContext.parse(sent, null).getTraceId(), spans.get(0).getTraceId());
+
+    spans.clear();
+    var unsampled = TraceContext.newRoot(false);
+    try (var scope = unsampled.bind()) { sent = send(); }
+    Assert.assertEquals(TraceContext.parse(sent, null).getTraceId(), unsampled.getTraceId());
+    Assert.assertTrue(spans.isEmpty());
+  }
+
+  // Asynchronous calls carry the caller's context to the dispatcher thread.
+  @Test
+  public void testAsync() throws Exception
+  {
+    var parent = TraceContext.newRoot(true);
+    String sent;
+    try (var scope = parent.bind())
+    {
+      var call = client.newCall(new Request.Builder().url(url).build());
+      sent = Utils.<String>executeAsync(client, call, String.class).get(5, TimeUnit.SECONDS);
+    }
+    Assert.assertEquals(spans.size(), 1);
+    Assert.assertEquals(spans.get(0).getParentSpanId(), parent.getSpanId());
+    Assert.assertEquals(sent, spans.get(0).getContext().toTraceparent());
+  }
+
+  private String send() throws Exception
+  {
+    try (var resp = client.newCall(new Request.Builder().url(url).build()).execute())
+    {
+      String body = resp.body().string();
+      return body.substring(body.indexOf(":\"") + 2, body.lastIndexOf('"'));
+    }
+  }
+}
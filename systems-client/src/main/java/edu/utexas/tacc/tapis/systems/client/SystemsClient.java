@@ -3,18 +3,23 @@ package edu.utexas.tacc.tapis.systems.client;
 import java.lang.reflect.Type;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import edu.utexas.tacc.tapis.systems.client.gen.api.ChildSystemsApi;
 import edu.utexas.tacc.tapis.systems.client.gen.model.*;
 import org.apache.commons.lang3.StringUtils;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.internal.LinkedTreeMap;
 
 import edu.utexas.tacc.tapis.client.shared.ClientTapisGsonUtils;
 import edu.utexas.tacc.tapis.client.shared.ITapisClient;
+import edu.utexas.tacc.tapis.client.shared.TapisHttpTransport;
+import edu.utexas.tacc.tapis.client.shared.TapisRequestContext;
 import edu.utexas.tacc.tapis.client.shared.Utils;
 import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+import edu.utexas.tacc.tapis.client.shared.resilience.RequestHedger;
 import edu.utexas.tacc.tapis.systems.client.gen.ApiClient;
 import edu.utexas.tacc.tapis.systems.client.gen.ApiException;
 import edu.utexas.tacc.tapis.systems.client.gen.api.CredentialsApi;
@@ -45,12 +50,18 @@ public class SystemsClient implements ITapisClient
   // *********************** Constants **************************************
   // ************************************************************************
 
+  // Configuration defaults.
+  private static final String SYSTEMS_CLIENT_USER_AGENT = "SystemsClient";
+
   // Header key for JWT
   public static final String TAPIS_JWT_HEADER = "X-Tapis-Token";
 
   // Create a TypeToken to be used by gson for processing of LinkedTreeMap objects
   private static final Type linkedTreeMapType = new TypeToken<LinkedTreeMap<Object,Object>>(){}.getType();
 
+  // Result type of a list of systems, used by the non-blocking calls.
+  private static final Type systemListType = new TypeToken<List<TapisSystem>>(){}.getType();
+
   // Named values to make it clear what is being passed in to a method
   private static final String impersonationIdNull = null;
   private static final AuthnMethod authnMethodNull = null;
@@ -76,14 +87,21 @@ public class SystemsClient implements ITapisClient
   // ************************************************************************
   // *********************** Fields *****************************************
   // ************************************************************************
+  // Response body serializer
+  private static final Gson gson = ClientTapisGsonUtils.getGson();
+
   // Instance of the underlying autogenerated client.
   private final ApiClient apiClient;
+  // Shared transport, null if apiClient owns its http client.
+  private final TapisHttpTransport transport;
   private final SystemsApi sysApi;
   private final ChildSystemsApi childSystemsApi;
   private final SchedulerProfilesApi schedulerProfilesApi;
   private final PermissionsApi permsApi;
   private final CredentialsApi credsApi;
   private final GeneralApi generalApi;
+  // Optional hedging of latency critical read calls.
+  private volatile RequestHedger hedger;
 
   // ************************************************************************
   // *********************** Constructors ***********************************
@@ -96,6 +114,8 @@ public class SystemsClient implements ITapisClient
   public SystemsClient()
   {
     apiClient = new ApiClient();
+    apiClient.setUserAgent(SYSTEMS_CLIENT_USER_AGENT);
+    transport = null;
     sysApi = new SystemsApi(apiClient);
     schedulerProfilesApi = new SchedulerProfilesApi(apiClient);
     permsApi = new PermissionsApi(apiClient);
@@ -115,7 +135,23 @@ public class SystemsClient implements ITapisClient
    */
   public SystemsClient(String path, String jwt)
   {
-    apiClient = new ApiClient();
+    this(path, jwt, null);
+  }
+
+  /**
+   * Constructor that overrides the compiled-in basePath value in ApiClient and uses
+   * the connection pool and dispatcher of a shared transport.
+   * If transport is null the client creates its own http client.
+   *
+   * @param path the base path URL prefix up to and including the service root
+   * @param jwt the token to set in an HTTP header
+   * @param transport1 shared http transport, may be null
+   */
+  public SystemsClient(String path, String jwt, TapisHttpTransport transport1)
+  {
+    transport = transport1;
+    apiClient = (transport == null ? new ApiClient() : new ApiClient(transport.getHttpClient()));
+    apiClient.setUserAgent(SYSTEMS_CLIENT_USER_AGENT);
     if (!StringUtils.isBlank(path)) apiClient.setBasePath(path);
     if (!StringUtils.isBlank(jwt)) apiClient.addDefaultHeader(TAPIS_JWT_HEADER, jwt);
     sysApi = new SystemsApi(apiClient);
@@ -142,11 +178,16 @@ public class SystemsClient implements ITapisClient
   // Add http header to default client
   public SystemsClient addDefaultHeader(String key, String val) { apiClient.addDefaultHeader(key, val); return this;}
 
+  // Hedge the operations enabled in the hedger, currently only "getSystem". Null turns hedging off.
+  public SystemsClient setRequestHedger(RequestHedger hedger1) { hedger = hedger1; return this;}
+
   /**
    *  Close connections and stop threads that can sometimes prevent JVM shutdown.
+   *  A shared transport is left untouched since other clients may be using it.
    */
   public void close()
   {
+    if (transport != null) return;
     try {
       // Best effort attempt to shut things down.
       var okClient = apiClient.getHttpClient();
@@ -227,6 +268,35 @@ public class SystemsClient implements ITapisClient
     if (resp != null && resp.getResult() != null) return resp.getResult().getUrl(); else return null;
   }
 
+  /**
+   * Non-blocking createSystem.  The future fails with a TapisClientException.
+   *
+   * @param req - Pre-populated ReqPostSystem instance
+   * @return future url pointing to created resource
+   */
+  public CompletableFuture<String> createSystemAsync(ReqPostSystem req)
+  {
+    return createSystemAsync(req, DEFAULT_SKIP_CREDENTIAL_CHECK);
+  }
+
+  /**
+   * Non-blocking createSystem.  The future fails with a TapisClientException.
+   *
+   * @param req - Pre-populated ReqPostSystem instance
+   * @return future url pointing to created resource
+   */
+  public CompletableFuture<String> createSystemAsync(ReqPostSystem req, boolean skipCredCheck)
+  {
+    try
+    {
+      var call = sysApi.createSystemCall(req, skipCredCheck, null);
+      return Utils.executeAsync(apiClient.getHttpClient(), call, ResultResourceUrl.class,
+                                (ResultResourceUrl r) -> r == null ? null : r.getUrl());
+    }
+    catch (ApiException e) { return Utils.failedFuture(e.getCode(), e.getResponseBody(), e); }
+    catch (Exception e) { return Utils.failedFuture(-1, null, e); }
+  }
+
   /**
    * Update selected attributes of a system
    *
@@ -504,10 +574,27 @@ public class SystemsClient implements ITapisClient
     if (!StringUtils.isBlank(selectStr)) selectStr1 = selectStr;
     RespSystem resp = null;
     String authnMethodStr = (authnMethod==null ? null : authnMethod.name());
+    // Hedged requests stream the result directly.
+    RequestHedger hedger1 = hedger;
+    if (hedger1 != null && hedger1.isEnabled("getSystem"))
+    {
+      TapisSystem sys = null;
+      try
+      {
+        var call = sysApi.getSystemCall(systemId, authnMethodStr, requireExecPerm, selectStr1, returnCredentials,
+                                        TapisRequestContext.resolveImpersonationId(impersonationId), sharedCtx,
+                                        resourceTenant, null);
+        sys = Utils.executeHedged(hedger1, "getSystem", apiClient.getHttpClient(), call, TapisSystem.class);
+      }
+      catch (TapisClientException e) { throw e; }
+      catch (ApiException e) { Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e); }
+      catch (Exception e) { Utils.throwTapisClientException(-1, null, e); }
+      return sys == null ? null : postProcessSystem(sys);
+    }
     try
     {
       resp = sysApi.getSystem(systemId, authnMethodStr, requireExecPerm, selectStr1, returnCredentials,
-                              impersonationId, sharedCtx, resourceTenant);
+                              TapisRequestContext.resolveImpersonationId(impersonationId), sharedCtx, resourceTenant);
     }
     catch (ApiException e) { Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e); }
     catch (Exception e) { Utils.throwTapisClientException(-1, null, e); }
@@ -516,6 +603,42 @@ public class SystemsClient implements ITapisClient
     return postProcessSystem(resp.getResult());
   }
 
+  /**
+   * Non-blocking getSystem using default attributes.  The future fails with a TapisClientException.
+   *
+   * @param systemId System Id
+   * @return future system, completed with null if system not found
+   */
+  public CompletableFuture<TapisSystem> getSystemAsync(String systemId)
+  {
+    return getSystemAsync(systemId, DEFAULT_AUTHN_METHOD, DEFAULT_REQUIRE_EXEC_PERM, DEFAULT_SELECT_ALL,
+                          DEFAULT_RETURN_CREDENTIALS, impersonationIdNull, sharedCtxNull, resourceTenantNull);
+  }
+
+  /**
+   * Non-blocking getSystem using all supported parameters.  See getSystem for a description
+   *   of the parameters.  The future fails with a TapisClientException.
+   *
+   * @return future system, completed with null if system not found
+   */
+  public CompletableFuture<TapisSystem> getSystemAsync(String systemId, AuthnMethod authnMethod, boolean requireExecPerm,
+                                                       String selectStr, boolean returnCredentials, String impersonationId,
+                                                       String sharedCtx, String resourceTenant)
+  {
+    String selectStr1 = DEFAULT_SELECT_ALL;
+    if (!StringUtils.isBlank(selectStr)) selectStr1 = selectStr;
+    String authnMethodStr = (authnMethod==null ? null : authnMethod.name());
+    try
+    {
+      var call = sysApi.getSystemCall(systemId, authnMethodStr, requireExecPerm, selectStr1, returnCredentials,
+                                      TapisRequestContext.resolveImpersonationId(impersonationId), sharedCtx,
+                                      resourceTenant, null);
+      return Utils.executeAsync(apiClient.getHttpClient(), call, TapisSystem.class, this::postProcessSystem);
+    }
+    catch (ApiException e) { return Utils.failedFuture(e.getCode(), e.getResponseBody(), e); }
+    catch (Exception e) { return Utils.failedFuture(-1, null, e); }
+  }
+
   /**
    * Get list of all systems
    *
@@ -588,7 +711,7 @@ public class SystemsClient implements ITapisClient
     try
     {
       resp = sysApi.getSystems(searchStr, listTypeEnum, limit, orderBy, skip, startAfter, DEFAULT_COMPUTETOTAL,
-                               selectStr1, showDeleted, impersonationId);
+                               selectStr1, showDeleted, TapisRequestContext.resolveImpersonationId(impersonationId));
     }
     catch (ApiException e) { Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e); }
     catch (Exception e) { Utils.throwTapisClientException(-1, null, e); }
@@ -598,6 +721,46 @@ public class SystemsClient implements ITapisClient
     return resp.getResult();
   }
 
+  /**
+   * Non-blocking getSystems using search.  The future fails with a TapisClientException.
+   *
+   * @param searchStr list of conditions used for searching
+   * @return future list of systems available to the caller and matching search conditions.
+   */
+  public CompletableFuture<List<TapisSystem>> getSystemsAsync(String searchStr)
+  {
+    return getSystemsAsync(searchStr, DEFAULT_LIST_TYPE_ENUM, DEFAULT_LIMIT, DEFAULT_ORDERBY, DEFAULT_SKIP,
+                           DEFAULT_STARTAFTER, DEFAULT_SELECT_SUMMARY, DEFAULT_SHOW_DELETED, null);
+  }
+
+  /**
+   * Non-blocking getSystems using all supported parameters.  See getSystems for a description
+   *   of the parameters.  The future fails with a TapisClientException.
+   *
+   * @return future list of systems available to the caller and matching search conditions.
+   */
+  public CompletableFuture<List<TapisSystem>> getSystemsAsync(String searchStr, ListTypeEnum listTypeEnum, int limit,
+                                                              String orderBy, int skip, String startAfter,
+                                                              String selectStr, boolean showDeleted,
+                                                              String impersonationId)
+  {
+    String selectStr1 = DEFAULT_SELECT_SUMMARY;
+    if (!StringUtils.isBlank(selectStr)) selectStr1 = selectStr;
+    try
+    {
+      var call = sysApi.getSystemsCall(searchStr, listTypeEnum, limit, orderBy, skip, startAfter, DEFAULT_COMPUTETOTAL,
+                                       selectStr1, showDeleted, TapisRequestContext.resolveImpersonationId(impersonationId),
+                                       null);
+      return Utils.executeAsync(apiClient.getHttpClient(), call, systemListType, (List<TapisSystem> systems) -> {
+        if (systems == null) return Collections.<TapisSystem>emptyList();
+        for (TapisSystem tSys : systems) postProcessSystem(tSys);
+        return systems;
+      });
+    }
+    catch (ApiException e) { return Utils.failedFuture(e.getCode(), e.getResponseBody(), e); }
+    catch (Exception e) { return Utils.failedFuture(-1, null, e); }
+  }
+
   /**
    * Dedicated search endpoint using all supported parameters
    * Search for systems using an array of strings that represent an SQL-like WHERE clause
@@ -965,7 +1128,7 @@ public class SystemsClient implements ITapisClient
     // Notes requires special handling. It must be null or a JsonObject
     Object notes = sys.getNotes();
     if (notes == null) rSys.notes(null);
-    else if (notes instanceof String) rSys.notes(ClientTapisGsonUtils.getGson().fromJson((String) notes, JsonObject.class));
+    else if (notes instanceof String) rSys.notes(gson.fromJson((String) notes, JsonObject.class));
     else if (notes instanceof JsonObject) rSys.notes(notes);
     else rSys.notes(null);
     rSys.importRefId(sys.getImportRefId());
@@ -1000,7 +1163,7 @@ public class SystemsClient implements ITapisClient
     // Notes requires special handling. It must be null or a JsonObject
     Object notes = sys.getNotes();
     if (notes == null) rSys.notes(null);
-    else if (notes instanceof String) rSys.notes(ClientTapisGsonUtils.getGson().fromJson((String) notes, JsonObject.class));
+    else if (notes instanceof String) rSys.notes(gson.fromJson((String) notes, JsonObject.class));
     else if (notes instanceof JsonObject) rSys.notes(notes);
     else rSys.notes(null);
     rSys.importRefId(sys.getImportRefId());
@@ -1161,6 +1324,6 @@ public class SystemsClient implements ITapisClient
     }
     // Convert the gson LinkedTreeMap to a string.
     var lmap = (LinkedTreeMap<String, String>) notes;
-    return  ClientTapisGsonUtils.getGson().toJson(lmap, linkedTreeMapType);
+    return  gson.toJson(lmap, linkedTreeMapType);
   }
  }
@@ -0,0 +1,129 @@
+package edu.utexas.tacc.tapis.systems.client;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.internal.LinkedTreeMap;
+import com.google.gson.reflect.TypeToken;
+
+import edu.utexas.tacc.tapis.client.shared.BenchmarkHarness;
+import edu.utexas.tacc.tapis.client.shared.ClientTapisGsonUtils;
+import edu.utexas.tacc.tapis.client.shared.javatime.ClientConverters;
+import edu.utexas.tacc.tapis.systems.client.gen.model.KeyValuePair;
+import edu.utexas.tacc.tapis.systems.client.gen.model.TapisSystem;
+
+/**
+ * Measure the client side post-processing of a getSystems listing with the cached Gson
+ * instances of ClientTapisGsonUtils against the per-call Gson construction it replaced.
+ * This is not a unit test, run it by hand with the test classpath:
+ * <pre>
+ *   java -cp ... edu.utexas.tacc.tapis.systems.client.SystemsPostProcessBenchmark [systems] [passes] [rounds]
+ * </pre>
+ * Each pass runs SystemsClient.postProcessSystem over every system of the listing, which
+ * turns the top level and jobEnvVariables notes into json strings, and then adds the
+ * notes of each system to a JsonObject with ClientTapisGsonUtils.addTo, which parses them
+ * back.  The "new" mode repeats the same steps building a Gson for every notes field.
+ * Time and bytes allocated are reported per system.
+ */
+public class SystemsPostProcessBenchmark
+{
+  private static final Type LINKED_TREE_MAP_TYPE = new TypeToken<LinkedTreeMap<Object,Object>>(){}.getType();
+
+  public static void main(String[] args) throws Exception
+  {
+    int systems = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+    int passes = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+    int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+    var listing = new Listing(systems);
+    var client = new SystemsClient();
+
+    System.out.printf("systems=%d passes=%d rounds=%d%n", systems, passes, rounds);
+    report("new", systems, BenchmarkHarness.measure(passes, rounds, () -> {
+      listing.reset();
+      var out = new JsonObject();
+      for (TapisSystem sys : listing.systems)
+      {
+        legacyPostProcess(sys);
+        out.add(sys.getId(), newGson().fromJson(((String) sys.getNotes()).trim(), JsonObject.class));
+      }
+      return out;
+    }));
+    report("cached", systems, BenchmarkHarness.measure(passes, rounds, () -> {
+      listing.reset();
+      var out = new JsonObject();
+      for (TapisSystem sys : listing.systems)
+        ClientTapisGsonUtils.addTo(out, sys.getId(), client.postProcessSystem(sys).getNotes());
+      return out;
+    }));
+  }
+
+  private static void report(String mode, int systems, BenchmarkHarness.Result result)
+  {
+    System.out.printf("%-7s %9.1f ns/system  %9.1f bytes/system%n", mode,
+                      result.nanosPerCall() / systems, result.bytesPerCall() / systems);
+  }
+
+  // The per-call construction ClientTapisGsonUtils.getGson() used to perform.
+  private static Gson newGson()
+  {
+    GsonBuilder builder = new GsonBuilder().serializeNulls().disableHtmlEscaping();
+    ClientConverters.registerAll(builder);
+    return builder.create();
+  }
+
+  // SystemsClient.postProcessSystem as it was before the Gson instances were cached.
+  private static void legacyPostProcess(TapisSystem sys)
+  {
+    sys.setNotes(newGson().toJson(sys.getNotes(), LINKED_TREE_MAP_TYPE));
+    for (KeyValuePair kvp : sys.getJobEnvVariables())
+      if (kvp.getNotes() != null) kvp.setNotes(newGson().toJson(kvp.getNotes(), LINKED_TREE_MAP_TYPE));
+  }
+
+  /*
+   * Systems as the generated client returns them, with notes deserialized into
+   * LinkedTreeMaps.  Post-processing replaces the notes, so they are restored before
+   * each pass.
+   */
+  private static final class Listing
+  {
+    private final List<TapisSystem> systems = new ArrayList<>();
+    private final List<LinkedTreeMap<Object,Object>> notes = new ArrayList<>();
+    private final List<LinkedTreeMap<Object,Object>> envNotes = new ArrayList<>();
+
+    private Listing(int count)
+    {
+      for (int i = 0; i < count; i++)
+      {
+        var sysNotes = new LinkedTreeMap<Object,Object>();
+        sysNotes.put("project", "proj" + (i % 10));
+        sysNotes.put("owner", "user" + i);
+        sysNotes.put("tags", List.of("hpc", "test"));
+        var varNotes = new LinkedTreeMap<Object,Object>();
+        varNotes.put("description", "scratch directory of system " + i);
+        var sys = new TapisSystem();
+        sys.setId("sys" + i);
+        sys.setJobEnvVariables(new ArrayList<>(List.of(new KeyValuePair().key("HOME").value("/home/user" + i),
+                                                       new KeyValuePair().key("SCRATCH").value("/scratch/user" + i))));
+        systems.add(sys);
+        notes.add(sysNotes);
+        envNotes.add(varNotes);
+      }
+      reset();
+    }
+
+    private void reset()
+    {
+      for (int i = 0; i < systems.size(); i++)
+      {
+        var sys = systems.get(i);
+        sys.setNotes(notes.get(i));
+        sys.getJobEnvVariables().get(1).setNotes(envNotes.get(i));
+      }
+    }
+  }
+}
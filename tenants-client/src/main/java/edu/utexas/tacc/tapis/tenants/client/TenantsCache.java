@@ -0,0 +1,358 @@
+package edu.utexas.tacc.tapis.tenants.client;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+import edu.utexas.tacc.tapis.tenants.client.gen.model.Site;
+import edu.utexas.tacc.tapis.tenants.client.gen.model.Tenant;
+
+/** Read-mostly cache of the tenant and site registries.
+ *
+ * All tenants and sites are loaded with a single pair of calls and published as an
+ * immutable snapshot.  Lookups are lock-free map reads against the current snapshot.
+ * The snapshot is replaced when any of the following happens:
+ * <ul>
+ *   <li>the optional background refresh runs,</li>
+ *   <li>a lookup finds the snapshot older than its time-to-live,</li>
+ *   <li>a lookup misses, at most once per miss reload interval.</li>
+ * </ul>
+ * Concurrent reloads are coalesced into a single pair of service calls.  When a
+ * reload fails the previous snapshot, if any, keeps being served and the failure is
+ * counted.  After a failure further reloads are attempted at most once per miss reload
+ * interval; until then lookups that need a reload fail with the last load error.
+ *
+ * Since the cache always holds the complete registry there is no per-entry eviction;
+ * the whole snapshot expires by time-to-live instead.
+ */
+public class TenantsCache
+ implements AutoCloseable
+{
+    /* **************************************************************************** */
+    /*                                   Constants                                  */
+    /* **************************************************************************** */
+    // Defaults.
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(30);
+    public static final Duration DEFAULT_MISS_RELOAD_INTERVAL = Duration.ofSeconds(10);
+
+    /* **************************************************************************** */
+    /*                                    Fields                                    */
+    /* **************************************************************************** */
+    private final TenantsClient _tenantsClient;
+    private final long _ttlNanos;
+    private final long _missReloadNanos;
+
+    // Background refresh, null if disabled.
+    private final ScheduledExecutorService _scheduler;
+
+    // The current snapshot, null until the first load.
+    private volatile Snapshot _snapshot;
+
+    // The in-flight reload, null when no reload is running.
+    private final AtomicReference<CompletableFuture<Snapshot>> _inflight = new AtomicReference<>();
+
+    // The most recent failed reload, null after a successful one.
+    private volatile LoadFailure _lastFailure;
+
+    // Metrics.
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _loads = new LongAdder();
+    private final LongAdder _loadFailures = new LongAdder();
+
+    /* **************************************************************************** */
+    /*                                 Constructors                                 */
+    /* **************************************************************************** */
+    /* ---------------------------------------------------------------------------- */
+    /* constructor:                                                                 */
+    /* ---------------------------------------------------------------------------- */
+    /** Create a cache with the default time-to-live and no background refresh.  The
+     * registry is loaded on first use.
+     *
+     * @param tenantsClient the client used to load the registry
+     */
+    public TenantsCache(TenantsClient tenantsClient)
+    {
+        this(tenantsClient, DEFAULT_TTL, DEFAULT_MISS_RELOAD_INTERVAL, null);
+    }
+
+    /* ---------------------------------------------------------------------------- */
+    /* constructor:                                                                 */
+    /* ---------------------------------------------------------------------------- */
+    /** Create a cache.  If refreshInterval is not null a daemon thread reloads the
+     * registry at that interval, starting immediately.
+     *
+     * @param tenantsClient the client used to load the registry
+     * @param ttl maximum age of a snapshot before a lookup forces a reload
+     * @param missReloadInterval minimum time between reloads caused by misses
+     * @param refreshInterval the background refresh interval or null for none
+     */
+    public TenantsCache(TenantsClient tenantsClient, Duration ttl, Duration missReloadInterval,
+                        Duration refreshInterval)
+    {
+        if (tenantsClient == null) throw new IllegalArgumentException("TenantsClient must not be null");
+        _tenantsClient = tenantsClient;
+        _ttlNanos = ttl.toNanos();
+        _missReloadNanos = missReloadInterval.toNanos();
+
+        if (refreshInterval == null) _scheduler = null;
+        else {
+            _scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                var t = new Thread(r, "TenantsCache-refresh");
+                t.setDaemon(true);
+                return t;
+            });
+            long millis = refreshInterval.toMillis();
+            _scheduler.scheduleWithFixedDelay(() -> {
+                try {reload(_snapshot).join();} catch (Exception e) {} // counted in _loadFailures
+            }, 0, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /* **************************************************************************** */
+    /*                                Public Methods                                */
+    /* **************************************************************************** */
+    /* ---------------------------------------------------------------------------- */
+    /* getTenant:                                                                   */
+    /* ---------------------------------------------------------------------------- */
+    /** Get a tenant by id.
+     *
+     * @param tenantId the tenant id
+     * @return the tenant or null if it does not exist
+     * @throws TapisClientException if the registry could not be loaded
+     */
+    public Tenant getTenant(String tenantId) throws TapisClientException
+    {
+        if (tenantId == null) return null;
+        var tenant = current().tenants.get(tenantId);
+        if (tenant != null) {_hits.increment(); return tenant;}
+        _misses.increment();
+        var snapshot = reloadOnMiss();
+        return snapshot == null ? null : snapshot.tenants.get(tenantId);
+    }
+
+    /* ---------------------------------------------------------------------------- */
+    /* getSite:                                                                     */
+    /* ---------------------------------------------------------------------------- */
+    /** Get a site by id.
+     *
+     * @param siteId the site id
+     * @return the site or null if it does not exist
+     * @throws TapisClientException if the registry could not be loaded
+     */
+    public Site getSite(String siteId) throws TapisClientException
+    {
+        if (siteId == null) return null;
+        var site = current().sites.get(siteId);
+        if (site != null) {_hits.increment(); return site;}
+        _misses.increment();
+        var snapshot = reloadOnMiss();
+        return snapshot == null ? null : snapshot.sites.get(siteId);
+    }
+
+    /* ---------------------------------------------------------------------------- */
+    /* getTenants:                                                                  */
+    /* ---------------------------------------------------------------------------- */
+    /** Get all cached tenants.
+     *
+     * @return an unmodifiable collection of tenants
+     * @throws TapisClientException if the registry could not be loaded
+     */
+    public Collection<Tenant> getTenants() throws TapisClientException
+    {
+        return current().tenants.values();
+    }
+
+    /* ---------------------------------------------------------------------------- */
+    /* getSites:                                                                    */
+    /* ---------------------------------------------------------------------------- */
+    /** Get all cached sites.
+     *
+     * @return an unmodifiable collection of sites
+     * @throws TapisClientException if the registry could not be loaded
+     */
+    public Collection<Site> getSites() throws TapisClientException
+    {
+        return current().sites.values();
+    }
+
+    /* ---------------------------------------------------------------------------- */
+    /* refresh:                                                                     */
+    /* ---------------------------------------------------------------------------- */
+    /** Reload the registry now, joining a reload already in progress.
+     *
+     * @throws TapisClientException if the registry could not be loaded
+     */
+    public void refresh() throws TapisClientException
+    {
+        join(reload(_snapshot));
+    }
+
+    /* ---------------------------------------------------------------------------- */
+    /* metrics:                                                                     */
+    /* ---------------------------------------------------------------------------- */
+    public long getHitCount() {return _hits.sum();}
+    public long getMissCount() {return _misses.sum();}
+    public long getLoadCount() {return _loads.sum();}
+    public long getLoadFailureCount() {return _loadFailures.sum();}
+    public double getHitRate()
+    {
+        long hits = _hits.sum();
+        long total = hits + _misses.sum();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /* ---------------------------------------------------------------------------- */
+    /* close:                                                                       */
+    /* ---------------------------------------------------------------------------- */
+    /** Stop the background refresh thread if there is one. */
+    @Override
+    public void close()
+    {
+        if (_scheduler != null) _scheduler.shutdownNow();
+    }
+
+    /* **************************************************************************** */
+    /*                               Private Methods                                */
+    /* **************************************************************************** */
+    /* ---------------------------------------------------------------------------- */
+    /* current:                                                                     */
+    /* ---------------------------------------------------------------------------- */
+    /** Return a snapshot that has not outlived its time-to-live, loading one if needed.
+     * An expired snapshot is returned if the reload fails or a recent reload failed.
+     */
+    private Snapshot current() throws TapisClientException
+    {
+        var snapshot = _snapshot;
+        if (snapshot != null && System.nanoTime() - snapshot.loadedAt < _ttlNanos) return snapshot;
+        try {return load(snapshot);}
+        catch (TapisClientException e) {
+            if (snapshot != null) return snapshot;
+            throw e;
+        }
+    }
+
+    /* ---------------------------------------------------------------------------- */
+    /* reloadOnMiss:                                                                */
+    /* ---------------------------------------------------------------------------- */
+    /** Reload after a miss unless the snapshot was loaded within the miss reload
+     * interval, in which case the current snapshot is returned.
+     */
+    private Snapshot reloadOnMiss() throws TapisClientException
+    {
+        var snapshot = _snapshot;
+        if (snapshot != null && System.nanoTime() - snapshot.loadedAt < _missReloadNanos) return snapshot;
+        return load(snapshot);
+    }
+
+    /* ---------------------------------------------------------------------------- */
+    /* load:                                                                        */
+    /* ---------------------------------------------------------------------------- */
+    /** Reload unless a reload failed within the miss reload interval, in which case
+     * that failure is thrown again without calling the service.
+     */
+    private Snapshot load(Snapshot seen) throws TapisClientException
+    {
+        var failure = _lastFailure;
+        if (failure != null && System.nanoTime() - failure.failedAt < _missReloadNanos)
+            throw toClientException(failure.cause);
+        return join(reload(seen));
+    }
+
+    /* ---------------------------------------------------------------------------- */
+    /* reload:                                                                      */
+    /* ---------------------------------------------------------------------------- */
+    /** Start a reload on the calling thread or join the one already in flight.  If
+     * another reload replaced the snapshot the caller saw before this one started, its
+     * result is used instead of calling the service again.
+     *
+     * @param seen the snapshot the caller found, possibly null
+     */
+    private CompletableFuture<Snapshot> reload(Snapshot seen)
+    {
+        var future = new CompletableFuture<Snapshot>();
+        var inflight = _inflight.compareAndExchange(null, future);
+        if (inflight != null) return inflight;
+
+        try {
+            var latest = _snapshot;
+            if (latest != seen) {future.complete(latest); return future;}
+
+            _loads.increment();
+            var snapshot = new Snapshot(_tenantsClient.getTenants(), _tenantsClient.getSites());
+            _snapshot = snapshot;
+            _lastFailure = null;
+            future.complete(snapshot);
+        }
+        catch (Exception e) {
+            _loadFailures.increment();
+            _lastFailure = new LoadFailure(e);
+            future.completeExceptionally(e);
+        }
+        finally {_inflight.set(null);}
+        return future;
+    }
+
+    /* ---------------------------------------------------------------------------- */
+    /* join:                                                                        */
+    /* ---------------------------------------------------------------------------- */
+    private static Snapshot join(CompletableFuture<Snapshot> future) throws TapisClientException
+    {
+        try {return future.join();}
+        catch (CompletionException e) {throw toClientException(e.getCause());}
+    }
+
+    /* ---------------------------------------------------------------------------- */
+    /* toClientException:                                                           */
+    /* ---------------------------------------------------------------------------- */
+    private static TapisClientException toClientException(Throwable cause)
+    {
+        if (cause instanceof TapisClientException) return (TapisClientException) cause;
+        return new TapisClientException("Unable to load tenant registry", cause);
+    }
+
+    /* **************************************************************************** */
+    /*                                   Snapshot                                   */
+    /* **************************************************************************** */
+    /** Immutable view of the registry at one point in time. */
+    private static final class Snapshot
+    {
+        private final Map<String, Tenant> tenants;
+        private final Map<String, Site> sites;
+        private final long loadedAt = System.nanoTime();
+
+        private Snapshot(List<Tenant> tenantList, List<Site> siteList)
+        {
+            var t = new HashMap<String, Tenant>();
+            if (tenantList != null)
+                for (var tenant : tenantList) if (tenant.getTenantId() != null) t.put(tenant.getTenantId(), tenant);
+            var s = new HashMap<String, Site>();
+            if (siteList != null)
+                for (var site : siteList) if (site.getSiteId() != null) s.put(site.getSiteId(), site);
+            tenants = Map.copyOf(t);
+            sites = Map.copyOf(s);
+        }
+    }
+
+    /* **************************************************************************** */
+    /*                                 LoadFailure                                  */
+    /* **************************************************************************** */
+    /** A failed reload and when it happened. */
+    private static final class LoadFailure
+    {
+        private final Throwable cause;
+        private final long failedAt = System.nanoTime();
+
+        private LoadFailure(Throwable cause1) {cause = cause1;}
+    }
+}
@@ -2,17 +2,17 @@ package edu.utexas.tacc.tapis.tenants.client;
 
 import java.lang.reflect.Type;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.commons.lang3.StringUtils;
 
-import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
-import edu.utexas.tacc.tapis.client.shared.ClientTapisGsonUtils;
 import edu.utexas.tacc.tapis.client.shared.ITapisClient;
+import edu.utexas.tacc.tapis.client.shared.TapisHttpTransport;
 import edu.utexas.tacc.tapis.client.shared.Utils;
 import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+import edu.utexas.tacc.tapis.client.shared.resilience.RequestHedger;
 import edu.utexas.tacc.tapis.tenants.client.gen.ApiClient;
 import edu.utexas.tacc.tapis.tenants.client.gen.ApiException;
 import edu.utexas.tacc.tapis.tenants.client.gen.api.SitesApi;
@@ -31,8 +31,9 @@ public class TenantsClient
     // Configuration defaults.
     private static final String TENANTS_CLIENT_USER_AGENT = "TenantsClient";
 
-    // Response serializer.
-    private static final Gson _gson = ClientTapisGsonUtils.getGson();
+    // Result types of list calls.
+    private static final Type TENANT_LIST_TYPE = new TypeToken<List<Tenant>>(){}.getType();
+    private static final Type SITE_LIST_TYPE = new TypeToken<List<Site>>(){}.getType();
 
     /* **************************************************************************** */
     /*                                    Fields                                    */
@@ -40,6 +41,16 @@ public class TenantsClient
     // This client instance's underlying generated client.
     private final ApiClient _apiClient;
     
+    // Shared transport, null if _apiClient owns its http client.
+    private final TapisHttpTransport _transport;
+    
+    // Generated api facades, created once and reused on every call.
+    private final TenantsApi _tenantsApi;
+    private final SitesApi _sitesApi;
+    
+    // Optional hedging of latency critical read calls.
+    private volatile RequestHedger _hedger;
+    
     /* **************************************************************************** */
     /*                                 Constructors                                 */
     /* **************************************************************************** */
@@ -63,13 +74,31 @@ public class TenantsClient
      * that environment.  For example, a development environment might define its
      * base url as https://tenant1.develop.tapis.io/v3.
      */
-    public TenantsClient(String path)
+    public TenantsClient(String path) {this(path, null);}
+    
+    /* ---------------------------------------------------------------------------- */
+    /* constructor:                                                                 */
+    /* ---------------------------------------------------------------------------- */
+    /** Constructor that overrides the compiled-in basePath value in ApiClient and
+     * builds on a shared http transport.  The connection pool and dispatcher of the
+     * transport are shared with all other clients using it.  If transport is null 
+     * this client creates its own http client.
+     * 
+     * @param path the base path 
+     * @param transport the shared transport, can be null
+     */
+    public TenantsClient(String path, TapisHttpTransport transport)
     {
-    	_apiClient = new ApiClient();
+    	_transport = transport;
+    	_apiClient = transport == null ? new ApiClient() : new ApiClient(transport.getHttpClient());
     	if (!StringUtils.isBlank(path)) _apiClient.setBasePath(path);
         
         // Other defaults.
         _apiClient.setUserAgent(TENANTS_CLIENT_USER_AGENT);
+        
+        // Api facades.
+        _tenantsApi = new TenantsApi(_apiClient);
+        _sitesApi = new SitesApi(_apiClient);
     }
  
     /* **************************************************************************** */
@@ -81,19 +110,29 @@ public class TenantsClient
     /** Get all Tenant info given tenant name.  */
     public Tenant getTenant(String tenantName) throws TapisClientException
     {
-      // Make the service call.
-      Map resp = null;
+      // Make the service call and stream the result directly into the model.
       try { 
-          var tenantsApi = new TenantsApi(_apiClient);
-          resp = (Map) tenantsApi.getTenant(tenantName); 
+          return Utils.executeHedged(_hedger, "getTenant", _apiClient.getHttpClient(),
+                                     _tenantsApi.getTenantCall(tenantName, null), Tenant.class); 
       }
+      catch (TapisClientException e) { throw e; }
       catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e); }
       catch (Exception e) { Utils.throwTapisClientException(-1, null, e); }
-      
-      // Marshal only the result from the map.
-      String json = _gson.toJson(resp.get("result"));
-      if (StringUtils.isBlank(json)) return null;
-      return _gson.fromJson(json, Tenant.class);
+      return null;
+    }
+
+    /* ---------------------------------------------------------------------------- */
+    /* getTenantAsync:                                                              */
+    /* ---------------------------------------------------------------------------- */
+    /** Non-blocking getTenant.  The future fails with a TapisClientException. */
+    public CompletableFuture<Tenant> getTenantAsync(String tenantName)
+    {
+      try { 
+          return Utils.executeAsync(_apiClient.getHttpClient(), _tenantsApi.getTenantCall(tenantName, null), 
+                                    Tenant.class); 
+      }
+      catch (ApiException e) { return Utils.failedFuture(e.getCode(), e.getResponseBody(), e); }
+      catch (Exception e) { return Utils.failedFuture(-1, null, e); }
     }
 
     /* ---------------------------------------------------------------------------- */
@@ -111,21 +150,14 @@ public class TenantsClient
     /** Get a possibly limited number of Tenant objects. */
     public List<Tenant> getTenants(Integer limit, Integer offset) throws TapisClientException
     {
-      // Make the service call.
-      Map resp = null;
+      // Make the service call and stream the result directly into the model.
       try { 
-          var tenantsApi = new TenantsApi(_apiClient);
-          resp = (Map) tenantsApi.listTenants(limit, offset); 
+          return Utils.executeForResult(_tenantsApi.listTenantsCall(limit, offset, null), TENANT_LIST_TYPE); 
       }
+      catch (TapisClientException e) { throw e; }
       catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e); }
       catch (Exception e) { Utils.throwTapisClientException(-1, null, e); }
-
-      // Marshal only the result from the map.
-      String json = _gson.toJson(resp.get("result"));
-      if (StringUtils.isBlank(json)) return null;
-      Type tenantListType = new TypeToken<List<Tenant>>(){}.getType();
-      List<Tenant> list = _gson.fromJson(json, tenantListType);
-      return list;
+      return null;
     }
     
     /* **************************************************************************** */
@@ -137,19 +169,27 @@ public class TenantsClient
     /** Get all Site info given site id. */
     public Site getSite(String siteId) throws TapisClientException
     {
-      // Make the service call.
-      Map resp = null;
+      // Make the service call and stream the result directly into the model.
       try { 
-          var sitesApi = new SitesApi(_apiClient);
-          resp = (Map) sitesApi.getSite(siteId); 
+          return Utils.executeForResult(_sitesApi.getSiteCall(siteId, null), Site.class); 
       }
+      catch (TapisClientException e) { throw e; }
       catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e); }
       catch (Exception e) { Utils.throwTapisClientException(-1, null, e); }
-      
-      // Marshal only the result from the map.
-      String json = _gson.toJson(resp.get("result"));
-      if (StringUtils.isBlank(json)) return null;
-      return _gson.fromJson(json, Site.class);
+      return null;
+    }
+
+    /* ---------------------------------------------------------------------------- */
+    /* getSiteAsync:                                                                */
+    /* ---------------------------------------------------------------------------- */
+    /** Non-blocking getSite.  The future fails with a TapisClientException. */
+    public CompletableFuture<Site> getSiteAsync(String siteId)
+    {
+      try { 
+          return Utils.executeAsync(_apiClient.getHttpClient(), _sitesApi.getSiteCall(siteId, null), Site.class); 
+      }
+      catch (ApiException e) { return Utils.failedFuture(e.getCode(), e.getResponseBody(), e); }
+      catch (Exception e) { return Utils.failedFuture(-1, null, e); }
     }
 
     /* ---------------------------------------------------------------------------- */
@@ -167,21 +207,14 @@ public class TenantsClient
     /** Get a possibly limited number Site objects. */
     public List<Site> getSites(Integer limit, Integer offset) throws TapisClientException
     {
-      // Make the service call.
-      Map resp = null;
+      // Make the service call and stream the result directly into the model.
       try { 
-          var sitesApi = new SitesApi(_apiClient);
-          resp = (Map) sitesApi.listSites(limit, offset); 
+          return Utils.executeForResult(_sitesApi.listSitesCall(limit, offset, null), SITE_LIST_TYPE); 
       }
+      catch (TapisClientException e) { throw e; }
       catch (ApiException e) {Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e); }
       catch (Exception e) { Utils.throwTapisClientException(-1, null, e); }
-
-      // Marshal only the result from the map.
-      String json = _gson.toJson(resp.get("result"));
-      if (StringUtils.isBlank(json)) return null;
-      Type siteListType = new TypeToken<List<Site>>(){}.getType();
-      List<Site> list = _gson.fromJson(json, siteListType);
-      return list;
+      return null;
     }
     
     /* **************************************************************************** */
@@ -251,6 +284,21 @@ public class TenantsClient
         return this;
     }
     
+    /* ---------------------------------------------------------------------------- */
+    /* setRequestHedger:                                                            */
+    /* ---------------------------------------------------------------------------- */
+    /** Hedge the operations enabled in the hedger.  Currently only "getTenant" 
+     * supports hedging.  Pass null to turn hedging off.
+     * 
+     * @param hedger the hedger or null
+     * @return this client
+     */
+    public TenantsClient setRequestHedger(RequestHedger hedger)
+    {
+        _hedger = hedger;
+        return this;
+    }
+    
     /* ---------------------------------------------------------------------------- */
     /* getConnectTimeout:                                                           */
     /* ---------------------------------------------------------------------------- */
@@ -287,9 +335,12 @@ public class TenantsClient
     /* close:                                                                       */
     /* ---------------------------------------------------------------------------- */
     /** Close connections and stop threads that can sometimes prevent JVM shutdown.
+     * Clients using a shared transport leave the transport untouched.
      */
     public void close()
     {
+        // The shared transport outlives this client.
+        if (_transport != null) return;
         try {
             // Best effort attempt to shut things down.
             var okClient = _apiClient.getHttpClient();
@@ -0,0 +1,156 @@
+package edu.utexas.tacc.tapis.tenants.client;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+import edu.utexas.tacc.tapis.tenants.client.gen.model.Site;
+import edu.utexas.tacc.tapis.tenants.client.gen.model.Tenant;
+
+/**
+ * Test TenantsCache loading, miss handling and coalescing using a TenantsClient
+ * that serves a local registry instead of calling the Tenants service.
+ */
+@Test
+public class TenantsCacheTest
+{
+  // Tenants client backed by a mutable in-memory registry.
+  private static final class FakeTenantsClient extends TenantsClient
+  {
+    private final List<String> tenantIds = new ArrayList<>(List.of("admin", "dev"));
+    private final AtomicInteger loads = new AtomicInteger();
+    private final long delayMillis;
+    private volatile boolean failing;
+
+    private FakeTenantsClient(long delayMillis1) { delayMillis = delayMillis1; }
+
+    @Override
+    public List<Tenant> getTenants() throws TapisClientException
+    {
+      loads.incrementAndGet();
+      if (failing) throw new TapisClientException("unavailable");
+      try { Thread.sleep(delayMillis); } catch (InterruptedException e) { throw new TapisClientException("interrupted"); }
+      var list = new ArrayList<Tenant>();
+      for (String id : tenantIds) { var t = new Tenant(); t.setTenantId(id); list.add(t); }
+      return list;
+    }
+
+    @Override
+    public List<Site> getSites() throws TapisClientException
+    {
+      var site = new Site();
+      site.setSiteId("tacc");
+      return List.of(site);
+    }
+  }
+
+  // Lookups are served from the snapshot after the first load.
+  @Test
+  public void testHits() throws Exception
+  {
+    var client = new FakeTenantsClient(0);
+    try (var cache = new TenantsCache(client))
+    {
+      Assert.assertEquals(cache.getTenant("admin").getTenantId(), "admin");
+      Assert.assertEquals(cache.getTenant("dev").getTenantId(), "dev");
+      Assert.assertEquals(cache.getSite("tacc").getSiteId(), "tacc");
+      Assert.assertEquals(cache.getTenants().size(), 2);
+      Assert.assertEquals(client.loads.get(), 1);
+      Assert.assertEquals(cache.getHitCount(), 3);
+      Assert.assertEquals(cache.getMissCount(), 0);
+    }
+  }
+
+  // Misses reload at most once per miss reload interval.
+  @Test
+  public void testMisses() throws Exception
+  {
+    var client = new FakeTenantsClient(0);
+    try (var cache = new TenantsCache(client, TenantsCache.DEFAULT_TTL, Duration.ZERO, null))
+    {
+      Assert.assertNull(cache.getTenant("new"));
+      Assert.assertEquals(client.loads.get(), 2);
+      client.tenantIds.add("new");
+      Assert.assertEquals(cache.getTenant("new").getTenantId(), "new");
+      Assert.assertEquals(client.loads.get(), 3);
+      Assert.assertEquals(cache.getMissCount(), 2);
+    }
+    try (var cache = new TenantsCache(client, TenantsCache.DEFAULT_TTL, Duration.ofHours(1), null))
+    {
+      Assert.assertNull(cache.getTenant("missing"));
+      Assert.assertNull(cache.getTenant("missing"));
+      Assert.assertEquals(cache.getLoadCount(), 1);
+    }
+  }
+
+  // An expired snapshot keeps being served while the service fails, and failed reloads
+  // are retried at most once per miss reload interval.
+  @Test
+  public void testStaleOnFailure() throws Exception
+  {
+    var client = new FakeTenantsClient(0);
+    try (var cache = new TenantsCache(client, Duration.ofMillis(50), Duration.ofMillis(200), null))
+    {
+      Assert.assertEquals(cache.getTenant("admin").getTenantId(), "admin");
+      client.failing = true;
+      Thread.sleep(250);
+
+      Assert.assertEquals(cache.getTenant("admin").getTenantId(), "admin");
+      Assert.assertEquals(cache.getTenant("dev").getTenantId(), "dev");
+      Assert.assertEquals(cache.getTenants().size(), 2);
+      Assert.assertEquals(cache.getLoadFailureCount(), 1);
+      Assert.assertEquals(client.loads.get(), 2);
+
+      // A miss cannot be answered from the stale snapshot.
+      Assert.assertThrows(TapisClientException.class, () -> cache.getTenant("new"));
+      Assert.assertEquals(client.loads.get(), 2);
+
+      client.failing = false;
+      client.tenantIds.add("new");
+      Thread.sleep(250);
+      Assert.assertEquals(cache.getTenant("new").getTenantId(), "new");
+      Assert.assertEquals(client.loads.get(), 3);
+    }
+  }
+
+  // Without a snapshot a failed first load is thrown.
+  @Test
+  public void testColdFailure() throws Exception
+  {
+    var client = new FakeTenantsClient(0);
+    client.failing = true;
+    try (var cache = new TenantsCache(client, TenantsCache.DEFAULT_TTL, Duration.ofHours(1), null))
+    {
+      Assert.assertThrows(TapisClientException.class, () -> cache.getTenant("admin"));
+      Assert.assertThrows(TapisClientException.class, () -> cache.getTenant("admin"));
+      Assert.assertEquals(client.loads.get(), 1);
+    }
+  }
+
+  // Concurrent first lookups share one load.
+  @Test
+  public void testSingleFlight() throws Exception
+  {
+    var client = new FakeTenantsClient(200);
+    var pool = Executors.newFixedThreadPool(16);
+    try (var cache = new TenantsCache(client))
+    {
+      var start = new CountDownLatch(1);
+      var futures = new ArrayList<Future<Tenant>>();
+      for (int i = 0; i < 16; i++)
+        futures.add(pool.submit(() -> { start.await(); return cache.getTenant("admin"); }));
+      start.countDown();
+      for (var f : futures) Assert.assertEquals(f.get().getTenantId(), "admin");
+      Assert.assertEquals(client.loads.get(), 1);
+    }
+    finally { pool.shutdownNow(); }
+  }
+}
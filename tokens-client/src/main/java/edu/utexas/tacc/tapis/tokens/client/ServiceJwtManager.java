@@ -0,0 +1,320 @@
+package edu.utexas.tacc.tapis.tokens.client;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import edu.utexas.tacc.tapis.client.shared.TapisExecutor;
+import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+import edu.utexas.tacc.tapis.tokens.client.gen.model.InlineObject1;
+import edu.utexas.tacc.tapis.tokens.client.model.CreateTokenParms;
+import edu.utexas.tacc.tapis.tokens.client.model.RefreshTokenParms;
+import edu.utexas.tacc.tapis.tokens.client.model.TokenResponsePackage;
+
+/**
+ * Cache of service JWTs that refreshes tokens before they expire.
+ *
+ * Tokens are cached per (tenant, service, targetSite).  The first request for a key
+ * mints an access and refresh token pair using the TokensClient.  After that a
+ * background thread refreshes each token once the configured fraction of its
+ * lifetime has elapsed.  It uses the refresh token when one is available and falls
+ * back to creating a new token otherwise.  Callers therefore almost always get the
+ * cached token with a single volatile read and no network call.
+ *
+ * Concurrent requests that find no usable token share a single in-flight call to
+ * the Tokens service.  The background thread only schedules refreshes; the calls to
+ * the Tokens service run on TapisExecutor.getDefault(), so a slow refresh for one key
+ * does not delay the refreshes of other keys.
+ *
+ * The TokensClient must be configured with the service's basic auth credentials.
+ */
+public class ServiceJwtManager
+ implements AutoCloseable
+{
+  // ************************************************************************
+  // *********************** Constants **************************************
+  // ************************************************************************
+  // Refresh when this fraction of the token lifetime has elapsed.
+  public static final double DEFAULT_REFRESH_FRACTION = 0.75;
+
+  // A token is not handed out if it expires within this margin.
+  private static final Duration EXPIRY_MARGIN = Duration.ofSeconds(30);
+
+  // Bounds on the delay before a background refresh or a retry after failure.
+  private static final long MIN_REFRESH_DELAY_MS = 1000;
+  private static final long MAX_RETRY_DELAY_MS = 30000;
+
+  // ************************************************************************
+  // *********************** Fields *****************************************
+  // ************************************************************************
+  private final TokensClient tokensClient;
+  private final double refreshFraction;
+  private final ScheduledExecutorService scheduler;
+  private final ConcurrentHashMap<TokenKey, TokenEntry> entries = new ConcurrentHashMap<>();
+  private volatile boolean closed;
+
+  // ************************************************************************
+  // *********************** Constructors ***********************************
+  // ************************************************************************
+
+  /**
+   * Create a manager that refreshes tokens after DEFAULT_REFRESH_FRACTION of their lifetime.
+   *
+   * @param tokensClient1 client configured with the service's credentials
+   */
+  public ServiceJwtManager(TokensClient tokensClient1)
+  {
+    this(tokensClient1, DEFAULT_REFRESH_FRACTION);
+  }
+
+  /**
+   * Create a manager with an explicit refresh fraction.
+   *
+   * @param tokensClient1 client configured with the service's credentials
+   * @param refreshFraction1 fraction of the token lifetime, greater than 0 and less than 1,
+   *                         after which a token is refreshed in the background
+   */
+  public ServiceJwtManager(TokensClient tokensClient1, double refreshFraction1)
+  {
+    if (tokensClient1 == null) throw new IllegalArgumentException("TokensClient must not be null");
+    if (refreshFraction1 <= 0 || refreshFraction1 >= 1)
+      throw new IllegalArgumentException("Refresh fraction must be between 0 and 1: " + refreshFraction1);
+    tokensClient = tokensClient1;
+    refreshFraction = refreshFraction1;
+    scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      var t = new Thread(r, "ServiceJwtManager-refresh");
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  // ************************************************************************
+  // *********************** Public Methods *********************************
+  // ************************************************************************
+
+  /**
+   * Get a service access token for the given tenant, service and target site.
+   * The cached token is returned when it is not about to expire, otherwise a new
+   * token is obtained from the Tokens service.
+   *
+   * @param tenant the tenant of the service
+   * @param service the service name
+   * @param targetSite the site where the token will be used
+   * @return the serialized access token
+   * @throws TapisClientException if no token could be obtained
+   */
+  public String getAccessToken(String tenant, String service, String targetSite)
+          throws TapisClientException
+  {
+    var entry = entries.computeIfAbsent(new TokenKey(tenant, service, targetSite), TokenEntry::new);
+
+    // Fast path: a volatile read of the current token.
+    TokenResponsePackage pkg = entry.tokens;
+    if (isUsable(pkg)) return pkg.getAccessToken().getAccessToken();
+
+    // Slow path: wait for a coalesced refresh.
+    try { pkg = refresh(entry, false).join(); }
+    catch (CompletionException e) {
+      if (e.getCause() instanceof TapisClientException) throw (TapisClientException) e.getCause();
+      throw new TapisClientException("Unable to obtain service token for " + entry.key, e.getCause());
+    }
+    return pkg.getAccessToken().getAccessToken();
+  }
+
+  /**
+   * Discard the cached tokens for a key, for example after a service rejected the
+   * token.  The next request mints a new token.
+   *
+   * @param tenant the tenant of the service
+   * @param service the service name
+   * @param targetSite the site where the token will be used
+   */
+  public void invalidate(String tenant, String service, String targetSite)
+  {
+    var entry = entries.remove(new TokenKey(tenant, service, targetSite));
+    if (entry != null) entry.cancelScheduled();
+  }
+
+  /**
+   * Stop background refreshes and discard all cached tokens.  Refreshes already handed
+   * to the executor do not call the Tokens service once the manager is closed.
+   */
+  @Override
+  public void close()
+  {
+    closed = true;
+    scheduler.shutdownNow();
+    entries.clear();
+  }
+
+  // ************************************************************************
+  // *********************** Private Methods ********************************
+  // ************************************************************************
+
+  /*
+   * Start a refresh unless one is already in flight, in which case the caller joins it.
+   * The call to the Tokens service runs on the thread that starts the refresh.  Unless
+   * forced, a refresh that finds a usable token, installed by a refresh that finished
+   * after the caller's own check, returns that token without calling the service.
+   */
+  private CompletableFuture<TokenResponsePackage> refresh(TokenEntry entry, boolean force)
+  {
+    var future = new CompletableFuture<TokenResponsePackage>();
+    var inflight = entry.inflight.compareAndExchange(null, future);
+    if (inflight != null) return inflight;
+
+    try {
+      var current = entry.tokens;
+      if (!force && isUsable(current))
+      {
+        future.complete(current);
+        return future;
+      }
+      var pkg = fetch(entry);
+      entry.tokens = pkg;
+      future.complete(pkg);
+      schedule(entry, refreshDelayMillis(pkg));
+    }
+    catch (Exception e) {
+      future.completeExceptionally(e);
+      // Keep retrying in the background as long as the current token is still usable.
+      if (isUsable(entry.tokens)) schedule(entry, retryDelayMillis(entry.tokens));
+    }
+    finally { entry.inflight.set(null); }
+    return future;
+  }
+
+  /*
+   * Use the refresh token if there is a valid one, otherwise create a new token pair.
+   */
+  private TokenResponsePackage fetch(TokenEntry entry) throws TapisClientException
+  {
+    checkOpen();
+    var current = entry.tokens;
+    if (current != null && current.isValidRefreshToken() &&
+        current.getRefreshToken().getExpiresAt().isAfter(Instant.now().plus(EXPIRY_MARGIN)))
+    {
+      try {
+        var parms = new RefreshTokenParms();
+        parms.setRefreshToken(current.getRefreshToken().getRefreshToken());
+        var pkg = tokensClient.refreshToken(parms);
+        if (pkg.isValidAccessToken()) return pkg;
+      }
+      catch (TapisClientException e) { /* fall back to creating a new token */ }
+    }
+
+    // The manager may have been closed while the refresh token was in use.
+    checkOpen();
+    var parms = new CreateTokenParms();
+    parms.accountType(InlineObject1.AccountTypeEnum.SERVICE);
+    parms.tokenTenantId(entry.key.tenant);
+    parms.tokenUsername(entry.key.service);
+    parms.setTargetSiteId(entry.key.targetSite);
+    parms.generateRefreshToken(true);
+    var pkg = tokensClient.createToken(parms);
+    if (!pkg.isValidAccessToken())
+      throw new TapisClientException("Tokens service returned no valid access token for " + entry.key);
+    return pkg;
+  }
+
+  /*
+   * Schedule a background refresh of the entry, replacing any refresh already scheduled.
+   */
+  private void schedule(TokenEntry entry, long delayMillis)
+  {
+    if (closed || scheduler.isShutdown()) return;
+    entry.cancelScheduled();
+    entry.scheduled = scheduler.schedule(() -> {
+      // Skip entries that were invalidated after being scheduled.
+      if (entries.get(entry.key) == entry)
+        TapisExecutor.getDefault().getExecutorService().execute(() -> refresh(entry, true));
+    }, delayMillis, TimeUnit.MILLISECONDS);
+  }
+
+  // Keep refreshes that started before close() from reaching the Tokens service.
+  private void checkOpen() throws TapisClientException
+  {
+    if (closed) throw new TapisClientException("ServiceJwtManager is closed");
+  }
+
+  // Delay until refreshFraction of the remaining token lifetime has elapsed.
+  private long refreshDelayMillis(TokenResponsePackage pkg)
+  {
+    long lifetime = Duration.between(Instant.now(), pkg.getAccessToken().getExpiresAt()).toMillis();
+    return Math.max(MIN_REFRESH_DELAY_MS, (long) (lifetime * refreshFraction));
+  }
+
+  // Delay before retrying a failed background refresh, half the remaining usable lifetime.
+  private long retryDelayMillis(TokenResponsePackage pkg)
+  {
+    long usable = Duration.between(Instant.now(), pkg.getAccessToken().getExpiresAt().minus(EXPIRY_MARGIN)).toMillis();
+    return Math.max(MIN_REFRESH_DELAY_MS, Math.min(MAX_RETRY_DELAY_MS, usable / 2));
+  }
+
+  // A token is usable if it is valid and does not expire within the margin.
+  private static boolean isUsable(TokenResponsePackage pkg)
+  {
+    return pkg != null && pkg.isValidAccessToken() &&
+           pkg.getAccessToken().getExpiresAt().isAfter(Instant.now().plus(EXPIRY_MARGIN));
+  }
+
+  // ************************************************************************
+  // *********************** Private Classes ********************************
+  // ************************************************************************
+
+  // Cache key.
+  private static final class TokenKey
+  {
+    private final String tenant;
+    private final String service;
+    private final String targetSite;
+
+    private TokenKey(String tenant1, String service1, String targetSite1)
+    {
+      tenant = tenant1;
+      service = service1;
+      targetSite = targetSite1;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+      if (this == o) return true;
+      if (!(o instanceof TokenKey)) return false;
+      var k = (TokenKey) o;
+      return Objects.equals(tenant, k.tenant) && Objects.equals(service, k.service) &&
+             Objects.equals(targetSite, k.targetSite);
+    }
+
+    @Override
+    public int hashCode() { return Objects.hash(tenant, service, targetSite); }
+
+    @Override
+    public String toString() { return "tenant=" + tenant + " service=" + service + " site=" + targetSite; }
+  }
+
+  // Cached tokens for one key.
+  private static final class TokenEntry
+  {
+    private final TokenKey key;
+    private volatile TokenResponsePackage tokens;
+    private volatile ScheduledFuture<?> scheduled;
+    private final AtomicReference<CompletableFuture<TokenResponsePackage>> inflight = new AtomicReference<>();
+
+    private TokenEntry(TokenKey key1) { key = key1; }
+
+    private void cancelScheduled()
+    {
+      var s = scheduled;
+      if (s != null) s.cancel(false);
+    }
+  }
+}
@@ -1,13 +1,11 @@
 package edu.utexas.tacc.tapis.tokens.client;
 
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.commons.lang3.StringUtils;
 
-import com.google.gson.Gson;
-
-import edu.utexas.tacc.tapis.client.shared.ClientTapisGsonUtils;
 import edu.utexas.tacc.tapis.client.shared.ITapisClient;
+import edu.utexas.tacc.tapis.client.shared.TapisHttpTransport;
 import edu.utexas.tacc.tapis.client.shared.Utils;
 import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
 import edu.utexas.tacc.tapis.tokens.client.gen.ApiClient;
@@ -34,6 +32,9 @@ public class TokensClient
   // *********************** Constants **************************************
   // ************************************************************************
 
+  // Configuration defaults.
+  private static final String TOKENS_CLIENT_USER_AGENT = "TokensClient";
+
   // ************************************************************************
   // ************************* Enums ****************************************
   // ************************************************************************
@@ -41,13 +42,13 @@ public class TokensClient
   // ************************************************************************
   // *********************** Fields *****************************************
   // ************************************************************************
-  // Response serializer.
-  private static final Gson _gson = ClientTapisGsonUtils.getGson();
-
   // Instance of the underlying autogenerated client.
   private final ApiClient apiClient;
   private final TokensApi tokensApi;
 
+  // Shared transport, null if apiClient owns its http client.
+  private final TapisHttpTransport transport;
+
   // ************************************************************************
   // *********************** Constructors ***********************************
   // ************************************************************************
@@ -58,8 +59,10 @@ public class TokensClient
    */
   public TokensClient()
   {
+    transport = null;
     apiClient = new ApiClient();
-    tokensApi = new TokensApi();
+    apiClient.setUserAgent(TOKENS_CLIENT_USER_AGENT);
+    tokensApi = new TokensApi(apiClient);
   }
 
   /**
@@ -70,9 +73,22 @@ public class TokensClient
    *
    * @param path the base path URL prefix up to and including the service root
    */
-  public TokensClient(String path)
+  public TokensClient(String path) { this(path, (TapisHttpTransport) null); }
+
+  /**
+   * Constructor that overrides the compiled-in basePath value in ApiClient and builds
+   * on a shared http transport.  The connection pool and dispatcher of the transport are
+   * shared with all other clients using it.  If transport is null this client creates
+   * its own http client.
+   *
+   * @param path the base path URL prefix up to and including the service root
+   * @param transport1 the shared transport, can be null
+   */
+  public TokensClient(String path, TapisHttpTransport transport1)
   {
-    apiClient = new ApiClient();
+    transport = transport1;
+    apiClient = (transport == null ? new ApiClient() : new ApiClient(transport.getHttpClient()));
+    apiClient.setUserAgent(TOKENS_CLIENT_USER_AGENT);
     if (!StringUtils.isBlank(path)) apiClient.setBasePath(path);
     tokensApi = new TokensApi(apiClient);
   }
@@ -91,7 +107,22 @@ public class TokensClient
    * @param password basic auth password
    */
   public TokensClient(String path, String userName, String password) {
-    apiClient = new ApiClient();
+    this(path, userName, password, null);
+  }
+
+  /**
+   * Constructor that sets basic auth user and password (if provided) and builds on a
+   * shared http transport.  If transport is null this client creates its own http client.
+   *
+   * @param path the base path
+   * @param userName basic auth username
+   * @param password basic auth password
+   * @param transport1 the shared transport, can be null
+   */
+  public TokensClient(String path, String userName, String password, TapisHttpTransport transport1) {
+    transport = transport1;
+    apiClient = (transport == null ? new ApiClient() : new ApiClient(transport.getHttpClient()));
+    apiClient.setUserAgent(TOKENS_CLIENT_USER_AGENT);
     if (!StringUtils.isBlank(path)) apiClient.setBasePath(path);
     if (!StringUtils.isBlank(userName)) apiClient.setUsername(userName);
     if (!StringUtils.isBlank(password)) apiClient.setPassword(password);
@@ -115,6 +146,8 @@ public class TokensClient
    */
   public void close()
   {
+      // The shared transport outlives this client.
+      if (transport != null) return;
       try {
           // Best effort attempt to shut things down.
           var okClient = apiClient.getHttpClient();
@@ -137,45 +170,17 @@ public class TokensClient
   public TokenResponsePackage createToken(CreateTokenParms parms)
    throws TapisClientException
   {
-      // Make the call and return the result
-      Map resp = null;
+      // Make the call and stream the result directly into the token response.
+      NewTokenResponse tokResp = null;
       try { 
-          resp = (Map) tokensApi.createToken(parms);
+          tokResp = Utils.executeForResult(tokensApi.createTokenCall(parms, null), NewTokenResponse.class);
       }
+      catch (TapisClientException e) { throw e; }
       catch (ApiException e) { Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e); }
       catch (Exception e) { Utils.throwTapisClientException(-1, null, e); }
       
-      // Create the result object.
-      var tokenPkg = new TokenResponsePackage();
-      
-      // Marshal only the result from the map.
-      String json = _gson.toJson(resp.get("result"));
-      if (StringUtils.isBlank(json)) return tokenPkg;
-      
-      // Dig down to the access token string.
-      var tokResp = _gson.fromJson(json, NewTokenResponse.class);
-      if (tokResp == null) return tokenPkg;
-      
-      // Get the access token.
-      var tokRespAccess = tokResp.getAccessToken();
-      if (tokRespAccess != null) {
-          var wrapper = new TapisAccessToken();
-          wrapper.setAccessToken(tokRespAccess.getAccessToken());
-          wrapper.setExpiresAt(tokRespAccess.getExpiresAt());
-          tokenPkg.setAccessToken(wrapper);
-      }
-      
-      // Get the refresh token.
-      var tokRespRefresh = tokResp.getRefreshToken();
-      if (tokRespRefresh != null) {
-          var wrapper = new TapisRefreshToken();
-          wrapper.setRefreshToken(tokRespRefresh.getRefreshToken());
-          wrapper.setExpiresAt(tokRespRefresh.getExpiresAt());
-          tokenPkg.setRefreshToken(wrapper);
-      }
-      
       // Non-null but may be empty.
-      return tokenPkg;
+      return toTokenPackage(tokResp);
   }
   
   /** The token refresh handler that allows all possible token parameters.
@@ -187,45 +192,47 @@ public class TokensClient
   public TokenResponsePackage refreshToken(RefreshTokenParms parms) 
    throws TapisClientException
   {
-      // Make the call and return the result
-      Map resp = null;
+      // Make the call and stream the result directly into the token response.
+      NewTokenResponse tokResp = null;
       try { 
-          resp = (Map) tokensApi.refreshToken(parms);
+          tokResp = Utils.executeForResult(tokensApi.refreshTokenCall(parms, null), NewTokenResponse.class);
       }
+      catch (TapisClientException e) { throw e; }
       catch (ApiException e) { Utils.throwTapisClientException(e.getCode(), e.getResponseBody(), e); }
       catch (Exception e) { Utils.throwTapisClientException(-1, null, e); }
       
-      // Create the result object.
-      var tokenPkg = new TokenResponsePackage();
-      
-      // Marshal only the result from the map.
-      String json = _gson.toJson(resp.get("result"));
-      if (StringUtils.isBlank(json)) return tokenPkg;
-      
-      // Dig down to the access token string.
-      var tokResp = _gson.fromJson(json, NewTokenResponse.class);
-      if (tokResp == null) return tokenPkg;
-      
-      // Get the access token.
-      var tokRespAccess = tokResp.getAccessToken();
-      if (tokRespAccess != null) {
-          var wrapper = new TapisAccessToken();
-          wrapper.setAccessToken(tokRespAccess.getAccessToken());
-          wrapper.setExpiresAt(tokRespAccess.getExpiresAt());
-          tokenPkg.setAccessToken(wrapper);
+      // Non-null but may be empty.
+      return toTokenPackage(tokResp);
+  }
+  
+  /** Non-blocking createToken.  The future fails with a TapisClientException.
+   * 
+   * @param parms a container object that holds all the create parameters
+   * @return a future non-null package that contains zero, one or two tokens
+   */
+  public CompletableFuture<TokenResponsePackage> createTokenAsync(CreateTokenParms parms)
+  {
+      try {
+          return Utils.executeAsync(apiClient.getHttpClient(), tokensApi.createTokenCall(parms, null),
+                                    NewTokenResponse.class, TokensClient::toTokenPackage);
       }
-      
-      // Get the refresh token.
-      var tokRespRefresh = tokResp.getRefreshToken();
-      if (tokRespRefresh != null) {
-          var wrapper = new TapisRefreshToken();
-          wrapper.setRefreshToken(tokRespRefresh.getRefreshToken());
-          wrapper.setExpiresAt(tokRespRefresh.getExpiresAt());
-          tokenPkg.setRefreshToken(wrapper);
+      catch (ApiException e) { return Utils.failedFuture(e.getCode(), e.getResponseBody(), e); }
+      catch (Exception e) { return Utils.failedFuture(-1, null, e); }
+  }
+  
+  /** Non-blocking refreshToken.  The future fails with a TapisClientException.
+   * 
+   * @param parms a container object that holds the serialized refresh token
+   * @return a future non-null package that contains zero, one or two tokens
+   */
+  public CompletableFuture<TokenResponsePackage> refreshTokenAsync(RefreshTokenParms parms)
+  {
+      try {
+          return Utils.executeAsync(apiClient.getHttpClient(), tokensApi.refreshTokenCall(parms, null),
+                                    NewTokenResponse.class, TokensClient::toTokenPackage);
       }
-      
-      // Non-null but may be empty.
-      return tokenPkg;
+      catch (ApiException e) { return Utils.failedFuture(e.getCode(), e.getResponseBody(), e); }
+      catch (Exception e) { return Utils.failedFuture(-1, null, e); }
   }
   
   /**
@@ -268,4 +275,36 @@ public class TokensClient
   /* **************************************************************************** */
   /*                               Private Methods                                */
   /* **************************************************************************** */
+  /** Copy the tokens of a service response into a new package.
+   * 
+   * @param tokResp the service response, can be null
+   * @return a non-null package that contains zero, one or two tokens
+   */
+  private static TokenResponsePackage toTokenPackage(NewTokenResponse tokResp)
+  {
+      // Create the result object.
+      var tokenPkg = new TokenResponsePackage();
+      if (tokResp == null) return tokenPkg;
+      
+      // Get the access token.
+      var tokRespAccess = tokResp.getAccessToken();
+      if (tokRespAccess != null) {
+          var wrapper = new TapisAccessToken();
+          wrapper.setAccessToken(tokRespAccess.getAccessToken());
+          wrapper.setExpiresAt(tokRespAccess.getExpiresAt());
+          tokenPkg.setAccessToken(wrapper);
+      }
+      
+      // Get the refresh token.
+      var tokRespRefresh = tokResp.getRefreshToken();
+      if (tokRespRefresh != null) {
+          var wrapper = new TapisRefreshToken();
+          wrapper.setRefreshToken(tokRespRefresh.getRefreshToken());
+          wrapper.setExpiresAt(tokRespRefresh.getExpiresAt());
+          tokenPkg.setRefreshToken(wrapper);
+      }
+      
+      // Non-null but may be empty.
+      return tokenPkg;
+  }
 }
@@ -0,0 +1,238 @@
+package edu.utexas.tacc.tapis.tokens.client;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+import edu.utexas.tacc.tapis.tokens.client.model.CreateTokenParms;
+import edu.utexas.tacc.tapis.tokens.client.model.RefreshTokenParms;
+import edu.utexas.tacc.tapis.tokens.client.model.TapisAccessToken;
+import edu.utexas.tacc.tapis.tokens.client.model.TapisRefreshToken;
+import edu.utexas.tacc.tapis.tokens.client.model.TokenResponsePackage;
+
+/**
+ * Test token caching, coalescing and background refresh in ServiceJwtManager using
+ * a TokensClient that mints tokens locally instead of calling the Tokens service.
+ */
+@Test
+public class ServiceJwtManagerTest
+{
+  // Tokens client that counts calls and returns tokens with a fixed lifetime.
+  private static final class FakeTokensClient extends TokensClient
+  {
+    private final long ttlSeconds;
+    private final long delayMillis;
+    private final AtomicInteger creates = new AtomicInteger();
+    private final AtomicInteger refreshes = new AtomicInteger();
+    private final AtomicInteger serial = new AtomicInteger();
+
+    // Refresh tokens by tenant, refresh counts by tenant and a tenant whose refreshes wait for a latch.
+    private final Map<String, String> tenants = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> tenantRefreshes = new ConcurrentHashMap<>();
+    private volatile String blockedTenant;
+    private volatile boolean failBlocked;
+    private final AtomicInteger blockedFailures = new AtomicInteger();
+    private final CountDownLatch unblock = new CountDownLatch(1);
+
+    private FakeTokensClient(long ttlSeconds1, long delayMillis1)
+    {
+      ttlSeconds = ttlSeconds1;
+      delayMillis = delayMillis1;
+    }
+
+    @Override
+    public TokenResponsePackage createToken(CreateTokenParms parms) throws TapisClientException
+    {
+      creates.incrementAndGet();
+      var pkg = newPackage();
+      tenants.put(pkg.getRefreshToken().getRefreshToken(), parms.getTokenTenantId());
+      return pkg;
+    }
+
+    @Override
+    public TokenResponsePackage refreshToken(RefreshTokenParms parms) throws TapisClientException
+    {
+      refreshes.incrementAndGet();
+      String tenant = tenants.get(parms.getRefreshToken());
+      if (tenant != null && tenant.equals(blockedTenant))
+      {
+        try { unblock.await(); } catch (InterruptedException e) { throw new TapisClientException("interrupted"); }
+        if (failBlocked)
+        {
+          blockedFailures.incrementAndGet();
+          throw new TapisClientException("refresh rejected");
+        }
+      }
+      var pkg = newPackage();
+      if (tenant != null)
+      {
+        tenants.put(pkg.getRefreshToken().getRefreshToken(), tenant);
+        tenantRefreshes.computeIfAbsent(tenant, k -> new AtomicInteger()).incrementAndGet();
+      }
+      return pkg;
+    }
+
+    private TokenResponsePackage newPackage() throws TapisClientException
+    {
+      try { Thread.sleep(delayMillis); } catch (InterruptedException e) { throw new TapisClientException("interrupted"); }
+      var expiresAt = Instant.now().plusSeconds(ttlSeconds);
+      var access = new TapisAccessToken();
+      access.setAccessToken("access-" + serial.incrementAndGet());
+      access.setExpiresAt(expiresAt);
+      var refresh = new TapisRefreshToken();
+      refresh.setRefreshToken("refresh-" + serial.get());
+      refresh.setExpiresAt(expiresAt.plusSeconds(ttlSeconds));
+      var pkg = new TokenResponsePackage();
+      pkg.setAccessToken(access);
+      pkg.setRefreshToken(refresh);
+      return pkg;
+    }
+  }
+
+  // Tokens are cached per key.
+  @Test
+  public void testCaching() throws Exception
+  {
+    var client = new FakeTokensClient(3600, 0);
+    try (var mgr = new ServiceJwtManager(client))
+    {
+      String t1 = mgr.getAccessToken("admin", "systems", "tacc");
+      Assert.assertEquals(mgr.getAccessToken("admin", "systems", "tacc"), t1);
+      Assert.assertEquals(client.creates.get(), 1);
+
+      Assert.assertNotEquals(mgr.getAccessToken("admin", "files", "tacc"), t1);
+      Assert.assertEquals(client.creates.get(), 2);
+
+      mgr.invalidate("admin", "systems", "tacc");
+      Assert.assertNotEquals(mgr.getAccessToken("admin", "systems", "tacc"), t1);
+      Assert.assertEquals(client.creates.get(), 3);
+    }
+  }
+
+  // Concurrent first requests share one call to the Tokens service.
+  @Test
+  public void testCoalescing() throws Exception
+  {
+    var client = new FakeTokensClient(3600, 200);
+    var pool = Executors.newFixedThreadPool(16);
+    try (var mgr = new ServiceJwtManager(client))
+    {
+      var start = new CountDownLatch(1);
+      var futures = new ArrayList<Future<String>>();
+      for (int i = 0; i < 16; i++)
+        futures.add(pool.submit(() -> { start.await(); return mgr.getAccessToken("admin", "jobs", "tacc"); }));
+      start.countDown();
+      String first = futures.get(0).get();
+      for (var f : futures) Assert.assertEquals(f.get(), first);
+      Assert.assertEquals(client.creates.get(), 1);
+    }
+    finally { pool.shutdownNow(); }
+  }
+
+  // Callers arriving one after another never fetch twice, even when the second caller
+  // missed the token installed by the first.
+  @Test
+  public void testBackToBack() throws Exception
+  {
+    var pool = Executors.newFixedThreadPool(8);
+    try
+    {
+      for (int round = 0; round < 50; round++)
+      {
+        var client = new FakeTokensClient(3600, 0);
+        try (var mgr = new ServiceJwtManager(client))
+        {
+          var futures = new ArrayList<Future<String>>();
+          for (int i = 0; i < 8; i++) futures.add(pool.submit(() -> mgr.getAccessToken("admin", "jobs", "tacc")));
+          for (var f : futures) f.get();
+          Assert.assertEquals(client.creates.get(), 1, "round " + round);
+        }
+      }
+    }
+    finally { pool.shutdownNow(); }
+  }
+
+  // Tokens are refreshed in the background using the refresh token.
+  @Test
+  public void testBackgroundRefresh() throws Exception
+  {
+    // Tokens are usable for 4 seconds beyond the expiry margin and refreshed after about 1.7 seconds.
+    var client = new FakeTokensClient(34, 0);
+    try (var mgr = new ServiceJwtManager(client, 0.05))
+    {
+      String t1 = mgr.getAccessToken("admin", "apps", "tacc");
+      Assert.assertTrue(await(() -> client.refreshes.get() >= 1 && !t1.equals(token(mgr, "apps"))),
+                        "Expected a background refresh");
+      Assert.assertEquals(client.creates.get(), 1);
+    }
+  }
+
+  // A refresh that hangs for one tenant does not hold up the refreshes of another.
+  @Test
+  public void testSlowRefreshIsolated() throws Exception
+  {
+    var client = new FakeTokensClient(34, 0);
+    client.blockedTenant = "slow";
+    try (var mgr = new ServiceJwtManager(client, 0.05))
+    {
+      mgr.getAccessToken("slow", "apps", "tacc");
+      mgr.getAccessToken("fast", "apps", "tacc");
+      Assert.assertTrue(await(() -> client.tenantRefreshes.containsKey("fast")), "fast tenant was not refreshed");
+      Assert.assertFalse(client.tenantRefreshes.containsKey("slow"));
+    }
+    finally { client.unblock.countDown(); }
+  }
+
+  // A background refresh already running when the manager is closed does not fall back
+  // to creating a new token, and a closed manager does not call the Tokens service.
+  @Test
+  public void testClosedDuringRefresh() throws Exception
+  {
+    var client = new FakeTokensClient(34, 0);
+    client.blockedTenant = "slow";
+    client.failBlocked = true;
+    var mgr = new ServiceJwtManager(client, 0.05);
+    try
+    {
+      mgr.getAccessToken("slow", "apps", "tacc");
+      Assert.assertTrue(await(() -> client.refreshes.get() >= 1), "Expected a background refresh");
+      mgr.close();
+      client.unblock.countDown();
+      Assert.assertTrue(await(() -> client.blockedFailures.get() >= 1), "Expected the refresh to fail");
+      Thread.sleep(200);
+      Assert.assertEquals(client.creates.get(), 1);
+      Assert.assertThrows(TapisClientException.class, () -> mgr.getAccessToken("slow", "apps", "tacc"));
+      Assert.assertEquals(client.creates.get(), 1);
+    }
+    finally { client.unblock.countDown(); mgr.close(); }
+  }
+
+  private static String token(ServiceJwtManager mgr, String service)
+  {
+    try { return mgr.getAccessToken("admin", service, "tacc"); }
+    catch (TapisClientException e) { throw new IllegalStateException(e); }
+  }
+
+  // Poll a condition for up to 10 seconds.
+  private static boolean await(BooleanSupplier condition) throws InterruptedException
+  {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!condition.getAsBoolean())
+    {
+      if (System.nanoTime() > deadline) return false;
+      Thread.sleep(20);
+    }
+    return true;
+  }
+}
@@ -0,0 +1,97 @@
+package edu.utexas.tacc.tapis.tokens.client;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.utexas.tacc.tapis.client.shared.exceptions.TapisClientException;
+import edu.utexas.tacc.tapis.tokens.client.gen.model.InlineObject1.AccountTypeEnum;
+import edu.utexas.tacc.tapis.tokens.client.model.CreateTokenParms;
+import edu.utexas.tacc.tapis.tokens.client.model.RefreshTokenParms;
+
+/**
+ *  Test the non-blocking token calls against a local JDK http server that answers
+ *  token requests, so no tokens service is required.
+ */
+@Test
+public class TokensClientAsyncTest
+{
+  private HttpServer server;
+  private TokensClient tokensClient;
+
+  @BeforeClass
+  public void setUp() throws Exception
+  {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    // New tokens are posted and refreshed tokens are put to the same path.
+    server.createContext("/v3/tokens", exchange -> {
+      exchange.getRequestBody().readAllBytes();
+      if ("PUT".equals(exchange.getRequestMethod()))
+        respond(exchange, 401, "{\"status\":\"error\",\"message\":\"expired\",\"result\":null}");
+      else
+        respond(exchange, 200, "{\"status\":\"success\",\"result\":{" +
+                               "\"access_token\":{\"access_token\":\"access1\"}," +
+                               "\"refresh_token\":{\"refresh_token\":\"refresh1\"}}}");
+    });
+    server.start();
+    tokensClient = new TokensClient("http://127.0.0.1:" + server.getAddress().getPort());
+  }
+
+  @AfterClass
+  public void tearDown()
+  {
+    tokensClient.close();
+    server.stop(0);
+  }
+
+  // The future carries the same token package as the blocking call.
+  @Test
+  public void testCreateTokenAsync() throws Exception
+  {
+    var createParms = new CreateTokenParms();
+    createParms.setTokenTenantId("dev");
+    createParms.setTokenUsername("systems");
+    createParms.setAccountType(AccountTypeEnum.SERVICE);
+    createParms.generateRefreshToken(true);
+    var tokpkg = tokensClient.createTokenAsync(createParms).get(5, TimeUnit.SECONDS);
+    Assert.assertEquals(tokpkg.getAccessToken().getAccessToken(), "access1");
+    Assert.assertEquals(tokpkg.getRefreshToken().getRefreshToken(), "refresh1");
+    Assert.assertEquals(tokensClient.createToken(createParms).getAccessToken().getAccessToken(), "access1");
+  }
+
+  // Service errors fail the future with a TapisClientException.
+  @Test
+  public void testRefreshTokenAsyncError() throws Exception
+  {
+    var refreshParms = new RefreshTokenParms();
+    refreshParms.setRefreshToken("refresh1");
+    try
+    {
+      tokensClient.refreshTokenAsync(refreshParms).get(5, TimeUnit.SECONDS);
+      Assert.fail("Expected the refresh to fail");
+    }
+    catch (ExecutionException e)
+    {
+      Assert.assertTrue(e.getCause() instanceof TapisClientException);
+      Assert.assertEquals(((TapisClientException) e.getCause()).getCode(), 401);
+    }
+  }
+
+  private static void respond(HttpExchange exchange, int code, String body) throws java.io.IOException
+  {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(code, bytes.length);
+    exchange.getResponseBody().write(bytes);
+    exchange.close();
+  }
+}